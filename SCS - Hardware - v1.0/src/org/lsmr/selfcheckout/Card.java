@@ -1,8 +1,8 @@
 package org.lsmr.selfcheckout;
 
 import java.io.IOException;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import org.lsmr.selfcheckout.devices.SimulationException;
 
@@ -67,12 +67,87 @@ public final class Card {
 		this.hasChip = hasChip;
 	}
 
-	private static final Random random = new Random(0);
-	private static final double PROBABILITY_OF_MAGNETIC_STRIPE_FAILURE = 0.01;
-	private static final double PROBABILITY_OF_TAP_FAILURE = 0.005;
-	private static final double PROBABILITY_OF_INSERT_FAILURE = 0.001;
-	private static final double PROBABILITY_OF_MAGNETIC_STRIPE_CORRUPTION = 0.001;
-	private static final double PROBABILITY_OF_CHIP_CORRUPTION = 0.00001;
+	/*
+	 * Each card has its own generator, split from this one when the card is
+	 * created, so cards used on different threads do not contend for one
+	 * generator. Cards created in the same order behave the same way every run.
+	 */
+	private static final SplittableRandom seeds = new SplittableRandom(0);
+
+	private static synchronized RandomGenerator nextRandom() {
+		return seeds.split();
+	}
+
+	private RandomGenerator random = nextRandom();
+	private double probabilityOfMagneticStripeFailure = 0.01;
+	private double probabilityOfTapFailure = 0.005;
+	private double probabilityOfInsertFailure = 0.001;
+	private double probabilityOfMagneticStripeCorruption = 0.001;
+	private double probabilityOfChipCorruption = 0.00001;
+
+	/**
+	 * Sets the source of randomness that decides whether using this card fails or
+	 * corrupts its data.
+	 * 
+	 * @param random
+	 *            The source of randomness.
+	 * @throws SimulationException
+	 *             If the argument is null.
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		if(random == null)
+			throw new SimulationException(new NullPointerException("random is null"));
+
+		this.random = random;
+	}
+
+	/**
+	 * Sets the probabilities that swiping, tapping or inserting this card fails.
+	 * The defaults are 0.01, 0.005 and 0.001.
+	 * 
+	 * @param swipe
+	 *            The probability that a swipe fails.
+	 * @param tap
+	 *            The probability that a tap fails.
+	 * @param insert
+	 *            The probability that an insertion fails.
+	 * @throws SimulationException
+	 *             If any probability is not between 0 and 1.
+	 */
+	public void setFailureProbabilities(double swipe, double tap, double insert) {
+		checkProbability(swipe);
+		checkProbability(tap);
+		checkProbability(insert);
+
+		probabilityOfMagneticStripeFailure = swipe;
+		probabilityOfTapFailure = tap;
+		probabilityOfInsertFailure = insert;
+	}
+
+	/**
+	 * Sets the probabilities that each piece of data read from this card's
+	 * magnetic stripe or chip is corrupted. The defaults are 0.001 and 0.00001.
+	 * 
+	 * @param magneticStripe
+	 *            The probability for data read from the magnetic stripe.
+	 * @param chip
+	 *            The probability for data read from the chip.
+	 * @throws SimulationException
+	 *             If either probability is not between 0 and 1.
+	 */
+	public void setCorruptionProbabilities(double magneticStripe, double chip) {
+		checkProbability(magneticStripe);
+		checkProbability(chip);
+
+		probabilityOfMagneticStripeCorruption = magneticStripe;
+		probabilityOfChipCorruption = chip;
+	}
+
+	private static void checkProbability(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+	}
 
 	/**
 	 * Simulates the action of swiping the card.
@@ -85,7 +160,7 @@ public final class Card {
 		if(isBlocked)
 			throw new BlockedCardException();
 
-		if(random.nextDouble() <= PROBABILITY_OF_MAGNETIC_STRIPE_FAILURE)
+		if(random.nextDouble() < probabilityOfMagneticStripeFailure)
 			throw new MagneticStripeFailureException();
 
 		return new CardSwipeData();
@@ -103,7 +178,7 @@ public final class Card {
 			throw new BlockedCardException();
 
 		if(isTapEnabled) {
-			if(random.nextDouble() <= PROBABILITY_OF_TAP_FAILURE)
+			if(random.nextDouble() < probabilityOfTapFailure)
 				throw new TapFailureException();
 
 			return new CardTapData();
@@ -124,7 +199,7 @@ public final class Card {
 			throw new BlockedCardException();
 
 		if(hasChip) {
-			if(random.nextDouble() <= PROBABILITY_OF_INSERT_FAILURE)
+			if(random.nextDouble() < probabilityOfInsertFailure)
 				throw new ChipFailureException();
 
 			return new CardInsertData(pin);
@@ -134,7 +209,7 @@ public final class Card {
 	}
 
 	private String randomize(String original, double probability) {
-		if(random.nextDouble() <= probability) {
+		if(random.nextDouble() < probability) {
 			int length = original.length();
 			int index = random.nextInt(length);
 			String first;
@@ -201,17 +276,17 @@ public final class Card {
 	public class CardSwipeData implements CardData {
 		@Override
 		public String getType() {
-			return randomize(type, PROBABILITY_OF_MAGNETIC_STRIPE_CORRUPTION);
+			return randomize(type, probabilityOfMagneticStripeCorruption);
 		}
 
 		@Override
 		public String getNumber() {
-			return randomize(number, PROBABILITY_OF_MAGNETIC_STRIPE_CORRUPTION);
+			return randomize(number, probabilityOfMagneticStripeCorruption);
 		}
 
 		@Override
 		public String getCardholder() {
-			return randomize(cardholder, PROBABILITY_OF_MAGNETIC_STRIPE_CORRUPTION);
+			return randomize(cardholder, probabilityOfMagneticStripeCorruption);
 		}
 
 		@Override
@@ -226,22 +301,22 @@ public final class Card {
 	public final class CardTapData implements CardData {
 		@Override
 		public String getType() {
-			return randomize(type, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(type, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getNumber() {
-			return randomize(number, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(number, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getCardholder() {
-			return randomize(cardholder, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(cardholder, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getCVV() {
-			return randomize(cvv, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(cvv, probabilityOfChipCorruption);
 		}
 	}
 
@@ -256,22 +331,22 @@ public final class Card {
 
 		@Override
 		public String getType() {
-			return randomize(type, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(type, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getNumber() {
-			return randomize(number, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(number, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getCardholder() {
-			return randomize(cardholder, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(cardholder, probabilityOfChipCorruption);
 		}
 
 		@Override
 		public String getCVV() {
-			return randomize(cvv, PROBABILITY_OF_CHIP_CORRUPTION);
+			return randomize(cvv, probabilityOfChipCorruption);
 		}
 
 		private boolean testPIN(String pinToTest) {
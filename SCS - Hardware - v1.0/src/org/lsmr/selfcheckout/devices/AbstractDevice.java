@@ -1,7 +1,10 @@
 package org.lsmr.selfcheckout.devices;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.lsmr.selfcheckout.devices.metrics.DeviceCounters;
+import org.lsmr.selfcheckout.devices.metrics.DeviceMetrics;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
 
 /**
@@ -67,9 +70,20 @@ public abstract class AbstractDevice<T extends AbstractDeviceObserver> {
 	}
 
 	/**
-	 * A list of the registered observers on this device.
+	 * A list of the registered observers on this device. Attaching or detaching
+	 * copies the list, so notifications iterate a snapshot without locking and
+	 * observers may be attached or detached from any thread, even while a
+	 * notification is in progress. A notification already in progress is
+	 * delivered to the observers registered when it began.
 	 */
-	protected ArrayList<T> observers = new ArrayList<>();
+	protected final CopyOnWriteArrayList<T> observers = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The counters of the events of this device, which are reported by
+	 * {@link DeviceMetrics}. Each subclass creates a counter for every event it
+	 * announces or failure it suffers.
+	 */
+	protected final DeviceCounters metrics = DeviceMetrics.countersFor(getClass());
 
 	/**
 	 * Locates the indicated observer and removes it such that it will no longer be
@@ -127,6 +141,8 @@ public abstract class AbstractDevice<T extends AbstractDeviceObserver> {
 	}
 
 	private boolean disabled = false;
+	private final EventCounter enabledMetrics = metrics.counter("enabled");
+	private final EventCounter disabledMetrics = metrics.counter("disabled");
 
 	/**
 	 * Disables this device from receiving input and producing output.
@@ -146,8 +162,12 @@ public abstract class AbstractDevice<T extends AbstractDeviceObserver> {
 	}
 
 	private void notifyDisabled() {
+		long start = disabledMetrics.start();
+
 		for(T observer : observers)
 			observer.disabled(this);
+
+		disabledMetrics.stop(start);
 	}
 
 	/**
@@ -168,8 +188,12 @@ public abstract class AbstractDevice<T extends AbstractDeviceObserver> {
 	}
 
 	private void notifyEnabled() {
+		long start = enabledMetrics.start();
+
 		for(T observer : observers)
 			observer.enabled(this);
+
+		enabledMetrics.stop(start);
 	}
 
 	/**
@@ -1,5 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
+import java.util.List;
+
 import org.lsmr.selfcheckout.Coin;
 
 /**
@@ -23,6 +25,25 @@ public interface Acceptor<T> {
 	 */
 	public void accept(T thing) throws OverloadException, DisabledException;
 
+	/**
+	 * Instructs the device to take all of the things as input, in order. Devices
+	 * that can handle a batch as a whole, announcing one event for it rather than
+	 * one per thing, override this; by default, each thing is accepted in turn.
+	 * <p>
+	 * This operation may not be called during the configuration phase.
+	 * 
+	 * @param things
+	 *            The things to be taken as input.
+	 * @throws OverloadException
+	 *             If the device does not have enough space for the things.
+	 * @throws DisabledException
+	 *             If the device is disabled.
+	 */
+	public default void acceptAll(List<T> things) throws OverloadException, DisabledException {
+		for(T thing : things)
+			accept(thing);
+	}
+
 	/**
 	 * Checks whether the device has enough space to expect one more thing. If this
 	 * method returns true, an immediate call to accept should not throw
@@ -34,4 +55,17 @@ public interface Acceptor<T> {
 	 * @return true If there is space; otherwise, false.
 	 */
 	public boolean hasSpace();
+
+	/**
+	 * Returns how many more things the device has space for. By default this is 1
+	 * if {@link #hasSpace()} is true and 0 otherwise, which is always safe; devices
+	 * that know their capacity override it.
+	 * <p>
+	 * This operation may not be called during the configuration phase.
+	 * 
+	 * @return The number of things that can be accepted now.
+	 */
+	public default int getSpace() {
+		return hasSpace() ? 1 : 0;
+	}
 }
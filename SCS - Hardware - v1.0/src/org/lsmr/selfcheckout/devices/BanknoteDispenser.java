@@ -7,6 +7,7 @@ import java.util.Queue;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.BanknoteDispenserObserver;
 
 /**
@@ -19,6 +20,11 @@ import org.lsmr.selfcheckout.devices.observers.BanknoteDispenserObserver;
  */
 public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserObserver>
 	implements FromStorageEmitter<Banknote> {
+	private final EventCounter banknoteRemovedMetrics = metrics.counter("banknoteRemoved");
+	private final EventCounter banknotesEmptyMetrics = metrics.counter("banknotesEmpty");
+	private final EventCounter banknotesLoadedMetrics = metrics.counter("banknotesLoaded");
+	private final EventCounter banknotesUnloadedMetrics = metrics.counter("banknotesUnloaded");
+
 	private int maxCapacity;
 	private Queue<Banknote> queue = new LinkedList<Banknote>();
 	private UnidirectionalChannel<Banknote> sink;
@@ -192,22 +198,38 @@ public final class BanknoteDispenser extends AbstractDevice<BanknoteDispenserObs
 	}
 
 	private void notifyBanknoteRemoved(Banknote banknote) {
+		long start = banknoteRemovedMetrics.start();
+
 		for(BanknoteDispenserObserver observer : observers)
 			observer.banknoteRemoved(this, banknote);
+
+		banknoteRemovedMetrics.stop(start);
 	}
 
 	private void notifyBanknotesEmpty() {
+		long start = banknotesEmptyMetrics.start();
+
 		for(BanknoteDispenserObserver observer : observers)
 			observer.banknotesEmpty(this);
+
+		banknotesEmptyMetrics.stop(start);
 	}
 
 	private void notifyBanknotesLoaded(Banknote[] banknotes) {
+		long start = banknotesLoadedMetrics.start();
+
 		for(BanknoteDispenserObserver observer : observers)
 			observer.banknotesLoaded(this, banknotes);
+
+		banknotesLoadedMetrics.stop(start);
 	}
 
 	private void notifyBanknotesUnoaded(Banknote[] banknotes) {
+		long start = banknotesUnloadedMetrics.start();
+
 		for(BanknoteDispenserObserver observer : observers)
 			observer.banknotesUnloaded(this, banknotes);
+
+		banknotesUnloadedMetrics.stop(start);
 	}
 }
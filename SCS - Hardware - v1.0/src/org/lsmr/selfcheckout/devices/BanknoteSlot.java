@@ -2,6 +2,7 @@ package org.lsmr.selfcheckout.devices;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.BanknoteSlotObserver;
 
 /**
@@ -11,6 +12,10 @@ import org.lsmr.selfcheckout.devices.observers.BanknoteSlotObserver;
  */
 public class BanknoteSlot extends AbstractDevice<BanknoteSlotObserver>
 	implements Acceptor<Banknote>, FlowThroughEmitter<Banknote> {
+	private final EventCounter banknoteInsertedMetrics = metrics.counter("banknoteInserted");
+	private final EventCounter banknoteEjectedMetrics = metrics.counter("banknoteEjected");
+	private final EventCounter banknoteRemovedMetrics = metrics.counter("banknoteRemoved");
+
 	private BidirectionalChannel<Banknote> sink;
 	private boolean invert;
 
@@ -175,17 +180,29 @@ public class BanknoteSlot extends AbstractDevice<BanknoteSlotObserver>
 	}
 
 	private void notifyBanknoteInserted() {
+		long start = banknoteInsertedMetrics.start();
+
 		for(BanknoteSlotObserver observer : observers)
 			observer.banknoteInserted(this);
+
+		banknoteInsertedMetrics.stop(start);
 	}
 
 	private void notifyBanknoteEjected() {
+		long start = banknoteEjectedMetrics.start();
+
 		for(BanknoteSlotObserver observer : observers)
 			observer.banknoteEjected(this);
+
+		banknoteEjectedMetrics.stop(start);
 	}
 
 	private void notifyBanknoteRemoved() {
+		long start = banknoteRemovedMetrics.start();
+
 		for(BanknoteSlotObserver observer : observers)
 			observer.banknoteRemoved(this);
+
+		banknoteRemovedMetrics.stop(start);
 	}
 }
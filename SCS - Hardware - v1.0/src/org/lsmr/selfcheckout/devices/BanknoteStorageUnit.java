@@ -5,6 +5,7 @@ import java.util.List;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.BanknoteStorageUnitObserver;
 
 /**
@@ -14,6 +15,11 @@ import org.lsmr.selfcheckout.devices.observers.BanknoteStorageUnitObserver;
  * A {@link #load(Banknote...)} method is provided for symmetry.
  */
 public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitObserver> implements Acceptor<Banknote> {
+	private final EventCounter banknotesLoadedMetrics = metrics.counter("banknotesLoaded");
+	private final EventCounter banknotesUnloadedMetrics = metrics.counter("banknotesUnloaded");
+	private final EventCounter banknotesFullMetrics = metrics.counter("banknotesFull");
+	private final EventCounter banknoteAddedMetrics = metrics.counter("banknoteAdded");
+
 	private Banknote[] storage;
 	private int nextIndex = 0;
 
@@ -178,22 +184,38 @@ public class BanknoteStorageUnit extends AbstractDevice<BanknoteStorageUnitObser
 	}
 
 	private void notifyBanknotesLoaded() {
+		long start = banknotesLoadedMetrics.start();
+
 		for(BanknoteStorageUnitObserver l : observers)
 			l.banknotesLoaded(this);
+
+		banknotesLoadedMetrics.stop(start);
 	}
 
 	private void notifyBanknotesUnloaded() {
+		long start = banknotesUnloadedMetrics.start();
+
 		for(BanknoteStorageUnitObserver l : observers)
 			l.banknotesUnloaded(this);
+
+		banknotesUnloadedMetrics.stop(start);
 	}
 
 	private void notifyBanknotesFull() {
+		long start = banknotesFullMetrics.start();
+
 		for(BanknoteStorageUnitObserver l : observers)
 			l.banknotesFull(this);
+
+		banknotesFullMetrics.stop(start);
 	}
 
 	private void notifyBanknoteAdded() {
+		long start = banknoteAddedMetrics.start();
+
 		for(BanknoteStorageUnitObserver l : observers)
 			l.banknoteAdded(this);
+
+		banknoteAddedMetrics.stop(start);
 	}
 }
@@ -2,12 +2,12 @@ package org.lsmr.selfcheckout.devices;
 
 import java.util.Arrays;
 import java.util.Currency;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import org.lsmr.selfcheckout.Banknote;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.BanknoteValidatorObserver;
 
 /**
@@ -17,8 +17,13 @@ import org.lsmr.selfcheckout.devices.observers.BanknoteValidatorObserver;
  */
 public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorObserver>
 	implements Acceptor<Banknote>, Emitter<Banknote> {
+	private final EventCounter validBanknoteDetectedMetrics = metrics.counter("validBanknoteDetected");
+	private final EventCounter invalidBanknoteDetectedMetrics = metrics.counter("invalidBanknoteDetected");
+	private final EventCounter falseRejectionMetrics = metrics.counter("falseRejection");
+
 	private final Currency currency;
-	private final int[] denominations;
+	// The valid denominations, so that a banknote's is found in one lookup
+	private final DenominationTable<Boolean> table;
 	private BidirectionalChannel<Banknote> source;
 	private UnidirectionalChannel<Banknote> sink;
 
@@ -55,21 +60,17 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorObs
 		this.currency = currency;
 		Arrays.sort(denominations);
 
-		HashSet<Integer> set = new HashSet<>();
+		table = new DenominationTable<>(denominations.length);
 
 		for(int denomination : denominations) {
 			if(denomination <= 0)
 				throw new SimulationException(
 					new IllegalArgumentException("Non-positive denomination detected: " + denomination + "."));
 
-			if(set.contains(denomination))
+			if(!table.put(denomination, Boolean.TRUE))
 				throw new SimulationException(new IllegalArgumentException(
 					"Each denomination must be unique, but " + denomination + " is repeated."));
-
-			set.add(denomination);
 		}
-
-		this.denominations = denominations;
 	}
 
 	/**
@@ -92,14 +93,53 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorObs
 		this.sink = sink;
 	}
 
-	private final Random pseudoRandomNumberGenerator = new Random();
-	private static final int PROBABILITY_OF_FALSE_REJECTION = 1; /* out of 100 */
+	private RandomGenerator random = new SplittableRandom();
+	private double probabilityOfFalseRejection = 0.01;
+
+	/**
+	 * Sets the source of randomness that decides whether a valid banknote is falsely rejected. A station
+	 * created from a generator gives its devices generators split from it; see
+	 * {@link SelfCheckoutStation}.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param random
+	 *            The source of randomness.
+	 * @throws SimulationException
+	 *             If the argument is null.
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		if(random == null)
+			throw new SimulationException(new NullPointerException("random is null"));
+
+		this.random = random;
+	}
+
+	/**
+	 * Sets the probability that a valid banknote is falsely rejected. The default is 0.01.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfFalseRejection(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfFalseRejection = probability;
+	}
 
 	private boolean isValid(Banknote banknote) {
-		if(currency.equals(banknote.getCurrency()))
-			for(int denomination : denominations)
-				if(denomination == banknote.getValue())
-					return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
+		if(currency.equals(banknote.getCurrency()) && table.contains(banknote.getValue())) {
+			if(random.nextDouble() >= probabilityOfFalseRejection)
+				return true;
+
+			falseRejectionMetrics.increment();
+		}
 
 		return false;
 	}
@@ -190,12 +230,20 @@ public final class BanknoteValidator extends AbstractDevice<BanknoteValidatorObs
 	}
 
 	private void notifyValidBanknoteDetected(Banknote banknote) {
+		long start = validBanknoteDetectedMetrics.start();
+
 		for(BanknoteValidatorObserver observer : observers)
 			observer.validBanknoteDetected(this, banknote.getCurrency(), banknote.getValue());
+
+		validBanknoteDetectedMetrics.stop(start);
 	}
 
 	private void notifyInvalidBanknoteDetected() {
+		long start = invalidBanknoteDetectedMetrics.start();
+
 		for(BanknoteValidatorObserver observer : observers)
 			observer.invalidBanknoteDetected(this);
+
+		invalidBanknoteDetectedMetrics.stop(start);
 	}
 }
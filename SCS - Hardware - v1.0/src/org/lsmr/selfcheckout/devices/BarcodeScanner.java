@@ -1,10 +1,12 @@
 package org.lsmr.selfcheckout.devices;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import org.lsmr.selfcheckout.BarcodedItem;
 import org.lsmr.selfcheckout.Item;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.BarcodeScannerObserver;
 
 /**
@@ -12,13 +14,53 @@ import org.lsmr.selfcheckout.devices.observers.BarcodeScannerObserver;
  * about all.
  */
 public class BarcodeScanner extends AbstractDevice<BarcodeScannerObserver> {
+	private final EventCounter barcodeScannedMetrics = metrics.counter("barcodeScanned");
+	private final EventCounter scanFailedMetrics = metrics.counter("scanFailed");
+
 	/**
 	 * Create a barcode scanner.
 	 */
 	public BarcodeScanner() {}
 
-	private Random random = new Random();
-	private static final int PROBABILITY_OF_FAILED_SCAN = 10; /* out of 100 */
+	private RandomGenerator random = new SplittableRandom();
+	private double probabilityOfFailedScan = 0.1;
+
+	/**
+	 * Sets the source of randomness that decides whether a scan fails. A station
+	 * created from a generator gives its devices generators split from it; see
+	 * {@link SelfCheckoutStation}.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param random
+	 *            The source of randomness.
+	 * @throws SimulationException
+	 *             If the argument is null.
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		if(random == null)
+			throw new SimulationException(new NullPointerException("random is null"));
+
+		this.random = random;
+	}
+
+	/**
+	 * Sets the probability that a scan fails, even though the item has a barcode. The default is 0.1.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfFailedScan(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfFailedScan = probability;
+	}
 
 	/**
 	 * Simulates the customer's action of scanning an item. The result of the scan
@@ -47,14 +89,22 @@ public class BarcodeScanner extends AbstractDevice<BarcodeScannerObserver> {
 			throw new SimulationException(
 				new NullPointerException("item is null, which has no analogue in the real world."));
 
-		if(item instanceof BarcodedItem && random.nextInt(100) >= PROBABILITY_OF_FAILED_SCAN)
-			notifyBarcodeScanned((BarcodedItem)item);
+		if(item instanceof BarcodedItem) {
+			if(random.nextDouble() >= probabilityOfFailedScan)
+				notifyBarcodeScanned((BarcodedItem)item);
+			else
+				scanFailedMetrics.increment();
+		}
 
 		// otherwise, silently ignore it
 	}
 
 	private void notifyBarcodeScanned(BarcodedItem item) {
+		long start = barcodeScannedMetrics.start();
+
 		for(BarcodeScannerObserver l : observers)
 			l.barcodeScanned(this, item.getBarcode());
+
+		barcodeScannedMetrics.stop(start);
 	}
 }
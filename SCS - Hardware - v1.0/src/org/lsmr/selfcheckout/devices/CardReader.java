@@ -2,13 +2,15 @@ package org.lsmr.selfcheckout.devices;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import org.lsmr.selfcheckout.Card;
 import org.lsmr.selfcheckout.Card.CardData;
 import org.lsmr.selfcheckout.ChipFailureException;
 import org.lsmr.selfcheckout.MagneticStripeFailureException;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CardReaderObserver;
 
 /**
@@ -17,6 +19,15 @@ import org.lsmr.selfcheckout.devices.observers.CardReaderObserver;
  * varying probabilities.
  */
 public class CardReader extends AbstractDevice<CardReaderObserver> {
+	private final EventCounter cardTappedMetrics = metrics.counter("cardTapped");
+	private final EventCounter cardInsertedMetrics = metrics.counter("cardInserted");
+	private final EventCounter cardSwipedMetrics = metrics.counter("cardSwiped");
+	private final EventCounter cardDataReadMetrics = metrics.counter("cardDataRead");
+	private final EventCounter cardRemovedMetrics = metrics.counter("cardRemoved");
+	private final EventCounter tapFailedMetrics = metrics.counter("tapFailed");
+	private final EventCounter swipeFailedMetrics = metrics.counter("swipeFailed");
+	private final EventCounter insertFailedMetrics = metrics.counter("insertFailed");
+
 	private boolean cardIsInserted = false;
 
 	/**
@@ -24,10 +35,83 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 	 */
 	public CardReader() {}
 
-	private final static ThreadLocalRandom random = ThreadLocalRandom.current();
-	private final static double PROBABILITY_OF_TAP_FAILURE = 0.01;
-	private final static double PROBABILITY_OF_INSERT_FAILURE = 0.01;
-	private final static double PROBABILITY_OF_SWIPE_FAILURE = 0.1;
+	private RandomGenerator random = new SplittableRandom();
+	private double probabilityOfTapFailure = 0.01;
+	private double probabilityOfInsertFailure = 0.01;
+	private double probabilityOfSwipeFailure = 0.1;
+
+	/**
+	 * Sets the source of randomness that decides whether reading a card fails. A station
+	 * created from a generator gives its devices generators split from it; see
+	 * {@link SelfCheckoutStation}.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param random
+	 *            The source of randomness.
+	 * @throws SimulationException
+	 *             If the argument is null.
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		if(random == null)
+			throw new SimulationException(new NullPointerException("random is null"));
+
+		this.random = random;
+	}
+
+	/**
+	 * Sets the probability that the reader fails to read a tapped card. The default is 0.01.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfTapFailure(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfTapFailure = probability;
+	}
+
+	/**
+	 * Sets the probability that the reader fails to read an inserted card. The default is 0.01.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfInsertFailure(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfInsertFailure = probability;
+	}
+
+	/**
+	 * Sets the probability that the reader fails to read a swiped card. The default is 0.1.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfSwipeFailure(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfSwipeFailure = probability;
+	}
 
 	/**
 	 * Tap the card.
@@ -53,15 +137,17 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 		if(card.isTapEnabled) {
 			notifyCardTapped();
 
-			if(random.nextDouble(0.0, 1.0) > PROBABILITY_OF_TAP_FAILURE) {
+			if(random.nextDouble() >= probabilityOfTapFailure) {
 				CardData data = card.tap();
 
 				notifyCardDataRead(data);
 
 				return data;
 			}
-			else
+			else {
+				tapFailedMetrics.increment();
 				throw new ChipFailureException();
+			}
 		}
 
 		// else ignore
@@ -89,7 +175,7 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 
 		notifyCardSwiped();
 
-		if(random.nextDouble(0.0, 1.0) > PROBABILITY_OF_SWIPE_FAILURE) {
+		if(random.nextDouble() >= probabilityOfSwipeFailure) {
 			CardData data = card.swipe();
 
 			notifyCardDataRead(data);
@@ -97,6 +183,7 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 			return data;
 		}
 
+		swipeFailedMetrics.increment();
 		throw new MagneticStripeFailureException();
 	}
 
@@ -130,7 +217,7 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 
 		notifyCardInserted();
 
-		if(card.hasChip && random.nextDouble(0.0, 1.0) > PROBABILITY_OF_INSERT_FAILURE) {
+		if(card.hasChip && random.nextDouble() >= probabilityOfInsertFailure) {
 			CardData data = card.insert(pin);
 
 			notifyCardDataRead(data);
@@ -138,6 +225,7 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 			return data;
 		}
 
+		insertFailedMetrics.increment();
 		throw new ChipFailureException();
 	}
 
@@ -159,27 +247,47 @@ public class CardReader extends AbstractDevice<CardReaderObserver> {
 	}
 
 	private void notifyCardTapped() {
+		long start = cardTappedMetrics.start();
+
 		for(CardReaderObserver l : observers)
 			l.cardTapped(this);
+
+		cardTappedMetrics.stop(start);
 	}
 
 	private void notifyCardInserted() {
+		long start = cardInsertedMetrics.start();
+
 		for(CardReaderObserver l : observers)
 			l.cardInserted(this);
+
+		cardInsertedMetrics.stop(start);
 	}
 
 	private void notifyCardSwiped() {
+		long start = cardSwipedMetrics.start();
+
 		for(CardReaderObserver l : observers)
 			l.cardSwiped(this);
+
+		cardSwipedMetrics.stop(start);
 	}
 
 	private void notifyCardDataRead(CardData data) {
+		long start = cardDataReadMetrics.start();
+
 		for(CardReaderObserver l : observers)
 			l.cardDataRead(this, data);
+
+		cardDataReadMetrics.stop(start);
 	}
 
 	private void notifyCardRemoved() {
+		long start = cardRemovedMetrics.start();
+
 		for(CardReaderObserver l : observers)
 			l.cardRemoved(this);
+
+		cardRemovedMetrics.stop(start);
 	}
 }
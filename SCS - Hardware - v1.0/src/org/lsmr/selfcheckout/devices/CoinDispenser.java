@@ -7,6 +7,7 @@ import java.util.Queue;
 
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CoinDispenserObserver;
 
 /**
@@ -20,6 +21,14 @@ import org.lsmr.selfcheckout.devices.observers.CoinDispenserObserver;
  */
 public final class CoinDispenser extends AbstractDevice<CoinDispenserObserver>
 	implements Acceptor<Coin>, FromStorageEmitter<Coin> {
+	private final EventCounter coinsLoadedMetrics = metrics.counter("coinsLoaded");
+	private final EventCounter coinsUnloadedMetrics = metrics.counter("coinsUnloaded");
+	private final EventCounter coinAddedMetrics = metrics.counter("coinAdded");
+	private final EventCounter coinsAddedMetrics = metrics.counter("coinsAdded");
+	private final EventCounter coinRemovedMetrics = metrics.counter("coinRemoved");
+	private final EventCounter coinsFullMetrics = metrics.counter("coinsFull");
+	private final EventCounter coinsEmptyMetrics = metrics.counter("coinsEmpty");
+
 	private int maxCapacity;
 	private Queue<Coin> queue = new LinkedList<Coin>();
 	private UnidirectionalChannel<Coin> sink;
@@ -84,8 +93,12 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserObserver>
 	}
 
 	private void notifyLoad(Coin[] coins) {
+		long start = coinsLoadedMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinsLoaded(this, coins);
+
+		coinsLoadedMetrics.stop(start);
 	}
 
 	/**
@@ -110,8 +123,12 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserObserver>
 	}
 
 	private void notifyUnload(Coin[] coins) {
+		long start = coinsUnloadedMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinsUnloaded(this, coins);
+
+		coinsUnloadedMetrics.stop(start);
 	}
 
 	/**
@@ -184,6 +201,56 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserObserver>
 			notifyCoinsFull();
 	}
 
+	/**
+	 * Causes a batch of coins to be added into the dispenser at once. If
+	 * successful, one "coinsAdded" event is announced to its observers for them
+	 * all. If the addition causes the dispenser to become full, a "coinsFull" event
+	 * is announced to its observers.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 * 
+	 * @throws DisabledException
+	 *             If the coin dispenser is currently disabled.
+	 * @throws SimulationException
+	 *             If any coin is null.
+	 * @throws OverloadException
+	 *             If the coin dispenser does not have space for all of the coins,
+	 *             in which case none is added.
+	 */
+	@Override
+	public void acceptAll(List<Coin> coins) throws OverloadException, DisabledException {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		if(isDisabled())
+			throw new DisabledException();
+
+		for(Coin coin : coins)
+			if(coin == null)
+				throw new SimulationException(
+					new NullPointerException("coin is null, which has no analogue in the real world."));
+
+		if(queue.size() + coins.size() > maxCapacity)
+			throw new OverloadException();
+
+		if(coins.isEmpty())
+			return;
+
+		Coin[] added = coins.toArray(new Coin[coins.size()]);
+
+		for(Coin coin : added)
+			queue.add(coin);
+
+		notifyCoinsAdded(added);
+
+		if(queue.size() >= maxCapacity)
+			notifyCoinsFull();
+	}
+
 	/**
 	 * Releases a single coin from this coin dispenser. If successful, a
 	 * "coinRemoved" event is announced to its observers. If a successful coin
@@ -240,23 +307,66 @@ public final class CoinDispenser extends AbstractDevice<CoinDispenserObserver>
 		return queue.size() < maxCapacity;
 	}
 
+	/**
+	 * Returns how many more coins this coin dispenser has space for. Announces no
+	 * events.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 */
+	@Override
+	public int getSpace() {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		return maxCapacity - queue.size();
+	}
+
 	private void notifyCoinAdded(Coin coin) {
+		long start = coinAddedMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinAdded(this, coin);
+
+		coinAddedMetrics.stop(start);
+	}
+
+	private void notifyCoinsAdded(Coin[] coins) {
+		long start = coinsAddedMetrics.start();
+
+		for(CoinDispenserObserver observer : observers)
+			observer.coinsAdded(this, coins);
+
+		coinsAddedMetrics.stop(start);
 	}
 
 	private void notifyCoinRemoved(Coin coin) {
+		long start = coinRemovedMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinRemoved(this, coin);
+
+		coinRemovedMetrics.stop(start);
 	}
 
 	private void notifyCoinsFull() {
+		long start = coinsFullMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinsFull(this);
+
+		coinsFullMetrics.stop(start);
 	}
 
 	private void notifyCoinsEmpty() {
+		long start = coinsEmptyMetrics.start();
+
 		for(CoinDispenserObserver observer : observers)
 			observer.coinsEmpty(this);
+
+		coinsEmptyMetrics.stop(start);
 	}
 }
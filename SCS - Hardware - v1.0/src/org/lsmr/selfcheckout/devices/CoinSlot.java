@@ -1,7 +1,11 @@
 package org.lsmr.selfcheckout.devices;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CoinSlotObserver;
 
 /**
@@ -10,6 +14,9 @@ import org.lsmr.selfcheckout.devices.observers.CoinSlotObserver;
  * determine the value and currency of the coin.
  */
 public final class CoinSlot extends AbstractDevice<CoinSlotObserver> implements Acceptor<Coin> {
+	private final EventCounter coinInsertedMetrics = metrics.counter("coinInserted");
+	private final EventCounter coinsInsertedMetrics = metrics.counter("coinsInserted");
+
 	private UnidirectionalChannel<Coin> sink;
 
 	/**
@@ -78,6 +85,78 @@ public final class CoinSlot extends AbstractDevice<CoinSlotObserver> implements
 			throw new SimulationException("Unable to route coin: Output channel is full");
 	}
 
+	/**
+	 * Tells the coin slot that the indicated coins are being inserted together, as
+	 * a coin counter or cash recycler would feed them. If the slot is enabled, this
+	 * causes one "coinsInserted" event to be announced to its observers, and the
+	 * coins are passed on as one batch, so that the devices downstream also
+	 * announce one event per batch rather than one per coin. Observers that do not
+	 * handle batches see the same events as if each coin were inserted alone, but
+	 * each device's events for the batch come together rather than interleaved
+	 * with those of the other devices.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 * 
+	 * @param coins
+	 *            The coins to be added. None can be null.
+	 * @throws DisabledException
+	 *             If the coin slot is currently disabled.
+	 * @throws SimulationException
+	 *             If any coin is null.
+	 */
+	public void acceptAll(Coin... coins) throws DisabledException {
+		if(coins == null)
+			throw new SimulationException(new NullPointerException("coins is null"));
+
+		acceptAll(Arrays.asList(coins));
+	}
+
+	/**
+	 * Tells the coin slot that the indicated coins are being inserted together.
+	 * 
+	 * @param coins
+	 *            The coins to be added. None can be null.
+	 * @throws DisabledException
+	 *             If the coin slot is currently disabled.
+	 * @throws SimulationException
+	 *             If any coin is null.
+	 * @see #acceptAll(Coin...)
+	 */
+	@Override
+	public void acceptAll(List<Coin> coins) throws DisabledException {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		if(isDisabled())
+			throw new DisabledException();
+
+		for(Coin coin : coins)
+			if(coin == null)
+				throw new SimulationException(new NullPointerException("coin is null"));
+
+		if(coins.isEmpty())
+			return;
+
+		notifyCoinsInserted(coins.size());
+
+		if(sink.hasSpace()) {
+			try {
+				sink.deliverAll(coins);
+			}
+			catch(OverloadException e) {
+				// Should never happen
+				phase = Phase.ERROR;
+				throw new SimulationException(e);
+			}
+		}
+		else
+			throw new SimulationException("Unable to route coins: Output channel is full");
+	}
+
 	@Override
 	public boolean hasSpace() {
 		if(phase == Phase.ERROR)
@@ -91,7 +170,20 @@ public final class CoinSlot extends AbstractDevice<CoinSlotObserver> implements
 	}
 
 	private void notifyCoinInserted() {
+		long start = coinInsertedMetrics.start();
+
 		for(CoinSlotObserver observer : observers)
 			observer.coinInserted(this);
+
+		coinInsertedMetrics.stop(start);
+	}
+
+	private void notifyCoinsInserted(int count) {
+		long start = coinsInsertedMetrics.start();
+
+		for(CoinSlotObserver observer : observers)
+			observer.coinsInserted(this, count);
+
+		coinsInsertedMetrics.stop(start);
 	}
 }
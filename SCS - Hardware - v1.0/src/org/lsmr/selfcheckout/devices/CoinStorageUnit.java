@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CoinStorageUnitObserver;
 
 /**
@@ -15,6 +16,11 @@ import org.lsmr.selfcheckout.devices.observers.CoinStorageUnitObserver;
  * {@link #load(Coin...)} method is provided for symmetry.
  */
 public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitObserver> implements Acceptor<Coin> {
+	private final EventCounter coinsLoadedMetrics = metrics.counter("coinsLoaded");
+	private final EventCounter coinsUnloadedMetrics = metrics.counter("coinsUnloaded");
+	private final EventCounter coinsFullMetrics = metrics.counter("coinsFull");
+	private final EventCounter coinAddedMetrics = metrics.counter("coinAdded");
+
 	private Coin[] storage;
 	private int nextIndex = 0;
 
@@ -165,22 +171,38 @@ public class CoinStorageUnit extends AbstractDevice<CoinStorageUnitObserver> imp
 	}
 
 	private void notifyCoinsLoaded() {
+		long start = coinsLoadedMetrics.start();
+
 		for(CoinStorageUnitObserver l : observers)
 			l.coinsLoaded(this);
+
+		coinsLoadedMetrics.stop(start);
 	}
 
 	private void notifyCoinsUnloaded() {
+		long start = coinsUnloadedMetrics.start();
+
 		for(CoinStorageUnitObserver l : observers)
 			l.coinsUnloaded(this);
+
+		coinsUnloadedMetrics.stop(start);
 	}
 
 	private void notifyCoinsFull() {
+		long start = coinsFullMetrics.start();
+
 		for(CoinStorageUnitObserver l : observers)
 			l.coinsFull(this);
+
+		coinsFullMetrics.stop(start);
 	}
 
 	private void notifyCoinAdded() {
+		long start = coinAddedMetrics.start();
+
 		for(CoinStorageUnitObserver l : observers)
 			l.coinAdded(this);
+
+		coinAddedMetrics.stop(start);
 	}
 }
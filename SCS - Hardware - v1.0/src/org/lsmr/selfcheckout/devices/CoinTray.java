@@ -5,12 +5,16 @@ import java.util.List;
 
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CoinTrayObserver;
 
 /**
  * Simulates the tray where dispensed coins go for the user to collect them.
  */
 public class CoinTray extends AbstractDevice<CoinTrayObserver> implements Acceptor<Coin> {
+	private final EventCounter coinAddedMetrics = metrics.counter("coinAdded");
+	private final EventCounter coinsAddedMetrics = metrics.counter("coinsAdded");
+
 	private Coin[] coins;
 	private int nextIndex = 0;
 
@@ -63,6 +67,46 @@ public class CoinTray extends AbstractDevice<CoinTrayObserver> implements Accept
 			throw new OverloadException("The tray has overflowed.");
 	}
 
+	/**
+	 * Adds a batch of coins to the tray at once, announcing one "coinsAdded"
+	 * event for them all.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 * 
+	 * @param coins
+	 *            The coins to add.
+	 * @throws SimulationException
+	 *             If any coin is null.
+	 * @throws OverloadException
+	 *             If the tray does not have space for all of the coins, in which
+	 *             case none is added.
+	 */
+	@Override
+	public void acceptAll(List<Coin> coins) throws OverloadException, DisabledException {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		for(Coin coin : coins)
+			if(coin == null)
+				throw new SimulationException(
+					new NullPointerException("coin is null, which has no analogue in the real world."));
+
+		if(coins.size() > this.coins.length - nextIndex)
+			throw new OverloadException("The tray has overflowed.");
+
+		if(coins.isEmpty())
+			return;
+
+		for(Coin coin : coins)
+			this.coins[nextIndex++] = coin;
+
+		notifyCoinsAdded(coins.size());
+	}
+
 	/**
 	 * Simulates the act of physically removing coins from the try by a user.
 	 * <p>
@@ -95,8 +139,29 @@ public class CoinTray extends AbstractDevice<CoinTrayObserver> implements Accept
 		return nextIndex < coins.length;
 	}
 
+	/**
+	 * Returns how many more coins the tray has space for. Causes no events.
+	 */
+	@Override
+	public int getSpace() {
+		return coins.length - nextIndex;
+	}
+
 	private void notifyCoinAdded() {
+		long start = coinAddedMetrics.start();
+
 		for(CoinTrayObserver l : observers)
 			l.coinAdded(this);
+
+		coinAddedMetrics.stop(start);
+	}
+
+	private void notifyCoinsAdded(int count) {
+		long start = coinsAddedMetrics.start();
+
+		for(CoinTrayObserver l : observers)
+			l.coinsAdded(this, count);
+
+		coinsAddedMetrics.stop(start);
 	}
 }
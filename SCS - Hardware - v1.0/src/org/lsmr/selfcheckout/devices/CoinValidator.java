@@ -1,16 +1,20 @@
 package org.lsmr.selfcheckout.devices;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Currency;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 import org.lsmr.selfcheckout.Coin;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.CoinValidatorObserver;
 
 /**
@@ -18,10 +22,38 @@ import org.lsmr.selfcheckout.devices.observers.CoinValidatorObserver;
  * deemed valid are moved to storage; coins deemed invalid are ejected.
  */
 public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> implements Acceptor<Coin> {
+	private final EventCounter validCoinDetectedMetrics = metrics.counter("validCoinDetected");
+	private final EventCounter invalidCoinDetectedMetrics = metrics.counter("invalidCoinDetected");
+	private final EventCounter falseRejectionMetrics = metrics.counter("falseRejection");
+	private final EventCounter validCoinsDetectedMetrics = metrics.counter("validCoinsDetected");
+	private final EventCounter invalidCoinsDetectedMetrics = metrics.counter("invalidCoinsDetected");
+
 	public final Currency currency;
 	private List<BigDecimal> denominations;
 	private UnidirectionalChannel<Coin> rejectionSink, overflowSink;
-	private Map<BigDecimal, UnidirectionalChannel<Coin>> standardSinks = null;
+
+	// A valid denomination and the channel its coins are normally routed to
+	private static final class Denomination {
+		private final BigDecimal value;
+		// The denomination's position in order of value
+		private final int index;
+		private UnidirectionalChannel<Coin> sink = null;
+
+		private Denomination(BigDecimal value, int index) {
+			this.value = value;
+			this.index = index;
+		}
+	}
+
+	/*
+	 * The denominations, keyed by their values as whole numbers of the smallest
+	 * unit any of them (or the currency) uses, so that values which differ only in
+	 * scale, like 0.1 and 0.10, are the same denomination.
+	 */
+	private final DenominationTable<Denomination> table;
+	private final Denomination[] byIndex;
+	private final int unitScale;
+	private final double unitsPerCurrencyUnit;
 
 	/**
 	 * Creates a coin validator that recognizes coins of the specified denominations
@@ -54,9 +86,8 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 			throw new SimulationException(new IllegalArgumentException("There must be at least one denomination."));
 
 		this.currency = currency;
-		Collections.sort(denominations);
 
-		standardSinks = new HashMap<>();
+		int scale = Math.max(0, currency.getDefaultFractionDigits());
 
 		for(BigDecimal denomination : denominations) {
 			if(denomination == null)
@@ -66,11 +97,24 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 				throw new SimulationException(
 					new IllegalArgumentException("Non-positive denomination detected: " + denomination + "."));
 
-			if(standardSinks.containsKey(denomination))
+			scale = Math.max(scale, denomination.stripTrailingZeros().scale());
+		}
+
+		Collections.sort(denominations);
+
+		unitScale = scale;
+		unitsPerCurrencyUnit = Math.pow(10, scale);
+		table = new DenominationTable<>(denominations.size());
+		byIndex = new Denomination[denominations.size()];
+
+		for(int i = 0; i < denominations.size(); i++) {
+			BigDecimal denomination = denominations.get(i);
+
+			byIndex[i] = new Denomination(denomination, i);
+
+			if(!table.put(toUnits(denomination), byIndex[i]))
 				throw new SimulationException(new IllegalArgumentException(
 					"Each denomination must be unique, but " + denomination + " is repeated."));
-
-			standardSinks.put(denomination, null);
 		}
 
 		this.denominations = denominations;
@@ -99,6 +143,8 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 	 *             denominations.
 	 * @throws SimulationException
 	 *             If any sink is used in more than one position.
+	 * @throws SimulationException
+	 *             If any standard sink is not for a valid denomination.
 	 */
 	public void connect(UnidirectionalChannel<Coin> rejectionSink,
 		Map<BigDecimal, UnidirectionalChannel<Coin>> standardSinks, UnidirectionalChannel<Coin> overflowSink) {
@@ -126,6 +172,7 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 		this.overflowSink = overflowSink;
 
 		HashSet<UnidirectionalChannel<Coin>> set = new HashSet<>();
+		HashMap<Denomination, UnidirectionalChannel<Coin>> sinks = new HashMap<>();
 
 		for(BigDecimal denomination : standardSinks.keySet()) {
 			UnidirectionalChannel<Coin> sink = standardSinks.get(denomination);
@@ -138,9 +185,20 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 
 				set.add(sink);
 			}
+
+			Denomination entry = lookUp(denomination);
+
+			if(entry == null)
+				throw new SimulationException(
+					new IllegalArgumentException("There is no denomination " + denomination + " to route to a sink."));
+
+			if(sinks.put(entry, sink) != null)
+				throw new SimulationException(new IllegalArgumentException(
+					"Each denomination must have one sink, but " + denomination + " has more."));
 		}
 
-		this.standardSinks = standardSinks;
+		for(Map.Entry<Denomination, UnidirectionalChannel<Coin>> entry : sinks.entrySet())
+			entry.getKey().sink = entry.getValue();
 
 		if(set.contains(rejectionSink))
 			throw new SimulationException(new IllegalArgumentException("Each channel must be unique."));
@@ -153,16 +211,84 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 		this.overflowSink = overflowSink;
 	}
 
-	private final Random pseudoRandomNumberGenerator = new Random();
-	private static final int PROBABILITY_OF_FALSE_REJECTION = 1; /* out of 100 */
+	private RandomGenerator random = new SplittableRandom();
+	private double probabilityOfFalseRejection = 0.01;
 
-	private boolean isValid(Coin coin) {
-		if(currency.equals(coin.getCurrency()))
-			for(BigDecimal denomination : denominations)
-				if(denomination.equals(coin.getValue()))
-					return pseudoRandomNumberGenerator.nextInt(100) >= PROBABILITY_OF_FALSE_REJECTION;
+	/**
+	 * Sets the source of randomness that decides whether a valid coin is falsely rejected. A station
+	 * created from a generator gives its devices generators split from it; see
+	 * {@link SelfCheckoutStation}.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param random
+	 *            The source of randomness.
+	 * @throws SimulationException
+	 *             If the argument is null.
+	 */
+	public void setRandomGenerator(RandomGenerator random) {
+		if(random == null)
+			throw new SimulationException(new NullPointerException("random is null"));
 
-		return false;
+		this.random = random;
+	}
+
+	/**
+	 * Sets the probability that a valid coin is falsely rejected. The default is 0.01.
+	 * <p>
+	 * This operation is permissible during the configuration phase.
+	 * 
+	 * @param probability
+	 *            The probability, between 0 (never) and 1 (always).
+	 * @throws SimulationException
+	 *             If the probability is not between 0 and 1.
+	 */
+	public void setProbabilityOfFalseRejection(double probability) {
+		if(!(probability >= 0 && probability <= 1))
+			throw new SimulationException(
+				new IllegalArgumentException("The probability must be between 0 and 1: " + probability));
+
+		probabilityOfFalseRejection = probability;
+	}
+
+	// Returns the coin's denomination, or null if the coin is deemed invalid
+	private Denomination validate(Coin coin) {
+		if(currency.equals(coin.getCurrency())) {
+			Denomination denomination = lookUp(coin.getValue());
+
+			if(denomination != null) {
+				if(random.nextDouble() >= probabilityOfFalseRejection)
+					return denomination;
+
+				falseRejectionMetrics.increment();
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * Finds the denomination with the indicated value without allocating: the
+	 * value's nearest whole number of units picks the only candidate, which must
+	 * then equal the value exactly.
+	 */
+	private Denomination lookUp(BigDecimal value) {
+		Denomination denomination = table.get(Math.round(value.doubleValue() * unitsPerCurrencyUnit));
+
+		if(denomination == null || denomination.value.compareTo(value) != 0)
+			return null;
+
+		return denomination;
+	}
+
+	private long toUnits(BigDecimal denomination) {
+		try {
+			return denomination.movePointRight(unitScale).longValueExact();
+		}
+		catch(ArithmeticException e) {
+			throw new SimulationException(
+				new IllegalArgumentException("The denomination " + denomination + " is too large."));
+		}
 	}
 
 	/**
@@ -204,10 +330,12 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 			throw new SimulationException(
 				new NullPointerException("coin is null, which has no analogue in the real world."));
 
-		if(isValid(coin)) {
+		Denomination denomination = validate(coin);
+
+		if(denomination != null) {
 			notifyValidCoinDetected(coin);
 
-			UnidirectionalChannel<Coin> sink = standardSinks.get(coin.getValue());
+			UnidirectionalChannel<Coin> sink = denomination.sink;
 
 			if(sink.hasSpace()) {
 				try {
@@ -244,6 +372,113 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 		}
 	}
 
+	/**
+	 * Tells the coin validator that the indicated coins are being inserted as one
+	 * batch. Each coin is validated as {@link #accept(Coin)} would, in order, but
+	 * the results are announced together: one "validCoinsDetected" event for each
+	 * value among the valid coins, in order of value, and one
+	 * "invalidCoinsDetected" event for the invalid ones. The valid coins of each value are then passed to their sink as
+	 * one batch, as many as it has space for; the rest, and the invalid coins, are
+	 * ejected as one batch.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 * 
+	 * @param coins
+	 *            The coins to be added. None can be null.
+	 * @throws DisabledException
+	 *             if the coin validator is currently disabled.
+	 * @throws SimulationException
+	 *             If any coin is null.
+	 * @throws SimulationException
+	 *             If the coins cannot be delivered.
+	 */
+	@Override
+	public void acceptAll(List<Coin> coins) throws DisabledException {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		if(isDisabled())
+			throw new DisabledException();
+
+		for(Coin coin : coins)
+			if(coin == null)
+				throw new SimulationException(
+					new NullPointerException("coin is null, which has no analogue in the real world."));
+
+		// The coins are validated in order, so the random draws are the same as when they are accepted one at a time
+		Denomination[] results = new Denomination[coins.size()];
+		int[] counts = new int[byIndex.length];
+		int invalid = 0;
+
+		for(int i = 0; i < results.length; i++) {
+			results[i] = validate(coins.get(i));
+
+			if(results[i] != null)
+				counts[results[i].index]++;
+			else
+				invalid++;
+		}
+
+		// Sorts the valid coins by denomination, keeping their order within each, with the invalid coins at the end
+		int[] offsets = new int[counts.length + 1];
+
+		for(int i = 0; i < counts.length; i++)
+			offsets[i + 1] = offsets[i] + counts[i];
+
+		Coin[] sorted = new Coin[results.length];
+		int[] next = Arrays.copyOf(offsets, counts.length);
+		int nextInvalid = offsets[counts.length];
+
+		for(int i = 0; i < results.length; i++)
+			sorted[results[i] != null ? next[results[i].index]++ : nextInvalid++] = coins.get(i);
+
+		for(int i = 0; i < counts.length; i++)
+			if(counts[i] > 0)
+				notifyValidCoinsDetected(byIndex[i].value, counts[i]);
+
+		if(invalid > 0)
+			notifyInvalidCoinsDetected(invalid);
+
+		List<Coin> all = Arrays.asList(sorted);
+		List<Coin> rejected = new ArrayList<>(invalid);
+
+		try {
+			for(int i = 0; i < counts.length; i++) {
+				if(counts[i] == 0)
+					continue;
+
+				UnidirectionalChannel<Coin> sink = byIndex[i].sink;
+				int delivered = offsets[i];
+
+				while(delivered < offsets[i + 1]) {
+					int space = Math.min(sink.getSpace(), offsets[i + 1] - delivered);
+
+					if(space <= 0)
+						break;
+
+					sink.deliverAll(all.subList(delivered, delivered + space));
+					delivered += space;
+				}
+
+				rejected.addAll(all.subList(delivered, offsets[i + 1]));
+			}
+
+			rejected.addAll(all.subList(offsets[counts.length], sorted.length));
+
+			if(!rejected.isEmpty())
+				rejectionSink.deliverAll(rejected);
+		}
+		catch(OverloadException e) {
+			// Should never happen
+			phase = Phase.ERROR;
+			throw new SimulationException(e);
+		}
+	}
+
 	@Override
 	public boolean hasSpace() {
 		if(phase == Phase.ERROR)
@@ -257,12 +492,38 @@ public final class CoinValidator extends AbstractDevice<CoinValidatorObserver> i
 	}
 
 	private void notifyValidCoinDetected(Coin coin) {
+		long start = validCoinDetectedMetrics.start();
+
 		for(CoinValidatorObserver observer : observers)
 			observer.validCoinDetected(this, coin.getValue());
+
+		validCoinDetectedMetrics.stop(start);
+	}
+
+	private void notifyValidCoinsDetected(BigDecimal value, int count) {
+		long start = validCoinsDetectedMetrics.start();
+
+		for(CoinValidatorObserver observer : observers)
+			observer.validCoinsDetected(this, value, count);
+
+		validCoinsDetectedMetrics.stop(start);
+	}
+
+	private void notifyInvalidCoinsDetected(int count) {
+		long start = invalidCoinsDetectedMetrics.start();
+
+		for(CoinValidatorObserver observer : observers)
+			observer.invalidCoinsDetected(this, count);
+
+		invalidCoinsDetectedMetrics.stop(start);
 	}
 
 	private void notifyInvalidCoinDetected(Coin coin) {
+		long start = invalidCoinDetectedMetrics.start();
+
 		for(CoinValidatorObserver observer : observers)
 			observer.invalidCoinDetected(this);
+
+		invalidCoinDetectedMetrics.stop(start);
 	}
 }
@@ -0,0 +1,98 @@
+package org.lsmr.selfcheckout.devices;
+
+/**
+ * A fixed-size lookup table from denominations, expressed as whole numbers of
+ * some unit of currency, to whatever a device needs to know about them. It is
+ * filled when the device is configured and is only read afterwards, so a
+ * lookup is a single probe sequence over primitive arrays that allocates
+ * nothing.
+ */
+final class DenominationTable<T> {
+	private final long[] keys;
+	private final Object[] values;
+	private final boolean[] occupied;
+	private final int mask;
+	private int size = 0;
+
+	/**
+	 * Creates an empty table.
+	 *
+	 * @param capacity
+	 *            The number of denominations the table must be able to hold.
+	 */
+	DenominationTable(int capacity) {
+		// Keep the table at most half full, so probe sequences stay short
+		int length = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+
+		keys = new long[length];
+		values = new Object[length];
+		occupied = new boolean[length];
+		mask = length - 1;
+	}
+
+	/**
+	 * Adds a denomination to the table, or replaces what is recorded for it.
+	 *
+	 * @param key
+	 *            The denomination.
+	 * @param value
+	 *            What is recorded for it.
+	 * @return true if the denomination was not already in the table.
+	 */
+	boolean put(long key, T value) {
+		int index = find(key);
+
+		if(occupied[index]) {
+			values[index] = value;
+			return false;
+		}
+
+		if(size == keys.length / 2)
+			throw new IllegalStateException("The table is full.");
+
+		keys[index] = key;
+		values[index] = value;
+		occupied[index] = true;
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param key
+	 *            The denomination.
+	 * @return What is recorded for the denomination, or null if it is not in the
+	 *             table.
+	 */
+	@SuppressWarnings("unchecked")
+	T get(long key) {
+		int index = find(key);
+		return occupied[index] ? (T)values[index] : null;
+	}
+
+	/**
+	 * @param key
+	 *            The denomination.
+	 * @return true if the denomination is in the table.
+	 */
+	boolean contains(long key) {
+		return occupied[find(key)];
+	}
+
+	/**
+	 * @return The number of denominations in the table.
+	 */
+	int size() {
+		return size;
+	}
+
+	// Returns the slot of the key, or the empty slot where it would go
+	private int find(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		int index = (int)(hash ^ (hash >>> 32)) & mask;
+
+		while(occupied[index] && keys[index] != key)
+			index = (index + 1) & mask;
+
+		return index;
+	}
+}
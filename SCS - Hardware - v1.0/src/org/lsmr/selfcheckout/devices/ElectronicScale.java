@@ -1,16 +1,27 @@
 package org.lsmr.selfcheckout.devices;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import org.lsmr.selfcheckout.Item;
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.ElectronicScaleObserver;
 
 public class ElectronicScale extends AbstractDevice<ElectronicScaleObserver> {
-	private ArrayList<Item> items = new ArrayList<>();
+	private final EventCounter overloadMetrics = metrics.counter("overload");
+	private final EventCounter outOfOverloadMetrics = metrics.counter("outOfOverload");
+	private final EventCounter weightChangedMetrics = metrics.counter("weightChanged");
+
+	// Items are compared by identity, so checking for and removing an item does not depend on how many are on the scale
+	private Set<Item> items = Collections.newSetFromMap(new IdentityHashMap<>());
 
 	private double weightLimitInGrams;
 	private double currentWeightInGrams = 0;
+	// The running sum of the weights and the round-off it has lost, kept with Neumaier's compensated summation
+	private double weightSumInGrams = 0;
+	private double weightCompensationInGrams = 0;
 	private double weightAtLastEvent = 0;
 	private double sensitivity;
 
@@ -101,12 +112,10 @@ public class ElectronicScale extends AbstractDevice<ElectronicScaleObserver> {
 			throw new SimulationException(
 				new IllegalStateException("This method may not be called during the configuration phase."));
 
-		if(items.contains(item))
+		if(!items.add(item))
 			throw new SimulationException("The same item cannot be added more than once to the scale.");
 
-		currentWeightInGrams += item.getWeight();
-
-		items.add(item);
+		accumulate(item.getWeight());
 
 		if(currentWeightInGrams > weightLimitInGrams)
 			notifyOverload();
@@ -135,37 +144,63 @@ public class ElectronicScale extends AbstractDevice<ElectronicScaleObserver> {
 		if(!items.remove(item))
 			throw new SimulationException("The item was not found amongst those on the scale.");
 
-		// To avoid drift in the sum due to round-off error, recalculate the weight.
-		double newWeightInGrams = 0.0;
-		for(Item itemOnScale : items)
-			newWeightInGrams += itemOnScale.getWeight();
-
 		double original = currentWeightInGrams;
-		currentWeightInGrams = newWeightInGrams;
 
-		if(original > weightLimitInGrams && newWeightInGrams <= weightLimitInGrams)
+		// An empty scale weighs exactly nothing, whatever round-off the sum had left
+		if(items.isEmpty()) {
+			weightSumInGrams = 0;
+			weightCompensationInGrams = 0;
+			currentWeightInGrams = 0;
+		}
+		else
+			accumulate(-item.getWeight());
+
+		if(original > weightLimitInGrams && currentWeightInGrams <= weightLimitInGrams)
 			notifyOutOfOverload();
 
 		if(currentWeightInGrams <= weightLimitInGrams && weightAtLastEvent - currentWeightInGrams >= sensitivity)
 			notifyWeightChanged();
 	}
 
+	// The round-off lost by each addition is collected and added back, so the error stays bounded without re-summing
+	private void accumulate(double weightInGrams) {
+		double sum = weightSumInGrams + weightInGrams;
+
+		if(Math.abs(weightSumInGrams) >= Math.abs(weightInGrams))
+			weightCompensationInGrams += (weightSumInGrams - sum) + weightInGrams;
+		else
+			weightCompensationInGrams += (weightInGrams - sum) + weightSumInGrams;
+
+		weightSumInGrams = sum;
+		currentWeightInGrams = weightSumInGrams + weightCompensationInGrams;
+	}
+
 	private void notifyOverload() {
+		long start = overloadMetrics.start();
+
 		for(ElectronicScaleObserver l : observers)
 			l.overload(this);
+
+		overloadMetrics.stop(start);
 	}
 
 	private void notifyOutOfOverload() {
 		weightAtLastEvent = currentWeightInGrams;
+		long start = outOfOverloadMetrics.start();
 
 		for(ElectronicScaleObserver l : observers)
 			l.outOfOverload(this);
+
+		outOfOverloadMetrics.stop(start);
 	}
 
 	private void notifyWeightChanged() {
 		weightAtLastEvent = currentWeightInGrams;
+		long start = weightChangedMetrics.start();
 
 		for(ElectronicScaleObserver l : observers)
 			l.weightChanged(this, currentWeightInGrams);
+
+		weightChangedMetrics.stop(start);
 	}
 }
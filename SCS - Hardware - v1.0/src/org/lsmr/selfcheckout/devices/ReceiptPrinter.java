@@ -1,6 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
 import org.lsmr.selfcheckout.devices.AbstractDevice.Phase;
+import org.lsmr.selfcheckout.devices.metrics.EventCounter;
 import org.lsmr.selfcheckout.devices.observers.ReceiptPrinterObserver;
 
 /**
@@ -13,6 +14,11 @@ import org.lsmr.selfcheckout.devices.observers.ReceiptPrinterObserver;
  * </p>
  */
 public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterObserver> {
+	private final EventCounter outOfInkMetrics = metrics.counter("outOfInk");
+	private final EventCounter inkAddedMetrics = metrics.counter("inkAdded");
+	private final EventCounter outOfPaperMetrics = metrics.counter("outOfPaper");
+	private final EventCounter paperAddedMetrics = metrics.counter("paperAdded");
+
 	public static final int MAXIMUM_INK = 1 << 20;
 	public static final int MAXIMUM_PAPER = 1 << 10;
 	private int charactersOfInkRemaining = 0;
@@ -83,6 +89,117 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterObserver> {
 			notifyOutOfPaper();
 	}
 
+	/**
+	 * Prints a sequence of characters to the receipt. The result, including any
+	 * exception and every "outOfInk" and "outOfPaper" event, is exactly the same
+	 * as calling {@link #print(char)} for each character in turn: if a character
+	 * cannot be printed, the characters before it remain printed. The checks are
+	 * made in a single pass and the printed characters are appended in runs rather
+	 * than one at a time.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 *
+	 * @param text
+	 *            The characters to print.
+	 * @throws SimulationException
+	 *             If there is no ink or no paper in the printer.
+	 * @throws SimulationException
+	 *             If a character would spill off the end of a line.
+	 */
+	public void print(CharSequence text) {
+		if(phase == Phase.ERROR)
+			throw new SimulationException(new IllegalStateException(
+				"This method may not be used when the device is in an erroneous operation phase."));
+		if(phase == Phase.CONFIGURATION)
+			throw new SimulationException(
+				new IllegalStateException("This method may not be called during the configuration phase."));
+
+		int length = text.length();
+		int runStart = 0;
+		int ink = charactersOfInkRemaining;
+		int paper = linesOfPaperRemaining;
+		int column = charactersOnCurrentLine;
+
+		for(int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+
+			if(c == '\n') {
+				--paper;
+				column = 0;
+			}
+			else if(c != ' ' && Character.isWhitespace(c)) {
+				// Skipped characters split the run that is appended
+				sb.append(text, runStart, i);
+				runStart = i + 1;
+				continue;
+			}
+			else if(column == CHARACTERS_PER_LINE) {
+				commit(text, runStart, i, ink, paper, column);
+				throw new SimulationException("The line is too long. Add a newline");
+			}
+			else if(paper == 0) {
+				commit(text, runStart, i, ink, paper, column);
+				throw new SimulationException("There is no paper in the printer.");
+			}
+			else
+				column++;
+
+			if(c != ' ' && c != '\n') {
+				if(ink == 0) {
+					// As with print(char), the character has already taken its place on the line
+					commit(text, runStart, i, ink, paper, column);
+					throw new SimulationException("There is no ink in the printer");
+				}
+
+				ink--;
+			}
+
+			if(ink == 0 || paper == 0) {
+				// Observers may refill the printer or print in response, so they see the state as of this character
+				commit(text, runStart, i + 1, ink, paper, column);
+				runStart = i + 1;
+
+				if(charactersOfInkRemaining == 0)
+					notifyOutOfInk();
+
+				if(linesOfPaperRemaining == 0)
+					notifyOutOfPaper();
+
+				ink = charactersOfInkRemaining;
+				paper = linesOfPaperRemaining;
+				column = charactersOnCurrentLine;
+			}
+		}
+
+		commit(text, runStart, length, ink, paper, column);
+	}
+
+	/**
+	 * Prints a line of characters to the receipt, followed by a newline. Behaves
+	 * exactly as {@link #print(CharSequence)} on the line and then '\n'.
+	 * <p>
+	 * This operation is not permissible during the configuration phase.
+	 *
+	 * @param line
+	 *            The characters to print on the line.
+	 * @throws SimulationException
+	 *             If there is no ink or no paper in the printer.
+	 * @throws SimulationException
+	 *             If a character would spill off the end of the line.
+	 */
+	public void printLine(CharSequence line) {
+		print(line);
+		print('\n');
+	}
+
+	// Appends the characters printed since the last commit and stores the printer's state
+	private void commit(CharSequence text, int start, int end, int ink, int paper, int column) {
+		sb.append(text, start, end);
+		charactersOfInkRemaining = ink;
+		linesOfPaperRemaining = paper;
+		charactersOnCurrentLine = column;
+	}
+
 	/**
 	 * The receipt is finished printing, so cut it so that the customer can easily
 	 * remove it. Failure to cut the paper means that the receipt will not be
@@ -183,22 +300,38 @@ public class ReceiptPrinter extends AbstractDevice<ReceiptPrinterObserver> {
 	}
 
 	private void notifyOutOfInk() {
+		long start = outOfInkMetrics.start();
+
 		for(ReceiptPrinterObserver l : observers)
 			l.outOfInk(this);
+
+		outOfInkMetrics.stop(start);
 	}
 
 	private void notifyInkAdded() {
+		long start = inkAddedMetrics.start();
+
 		for(ReceiptPrinterObserver l : observers)
 			l.inkAdded(this);
+
+		inkAddedMetrics.stop(start);
 	}
 
 	private void notifyOutOfPaper() {
+		long start = outOfPaperMetrics.start();
+
 		for(ReceiptPrinterObserver l : observers)
 			l.outOfPaper(this);
+
+		outOfPaperMetrics.stop(start);
 	}
 
 	private void notifyPaperAdded() {
+		long start = paperAddedMetrics.start();
+
 		for(ReceiptPrinterObserver l : observers)
 			l.paperAdded(this);
+
+		paperAddedMetrics.stop(start);
 	}
 }
@@ -7,6 +7,8 @@ import java.util.Currency;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator.SplittableGenerator;
 
 import javax.sound.sampled.AudioSystem;
 
@@ -133,7 +135,39 @@ public class SelfCheckoutStation {
 	 */
 	public SelfCheckoutStation(Currency currency, int[] banknoteDenominations, BigDecimal[] coinDenominations,
 		int scaleMaximumWeight, int scaleSensitivity) {
-		if(currency == null || banknoteDenominations == null || coinDenominations == null)
+		this(currency, banknoteDenominations, coinDenominations, scaleMaximumWeight, scaleSensitivity,
+			new SplittableRandom());
+	}
+
+	/**
+	 * Creates a self-checkout station whose devices' random failures are drawn
+	 * from the indicated generator. The scanner, coin validator, banknote
+	 * validator and card reader, in that order, are each given a generator split
+	 * from it, so a station created from a generator with a known seed fails in
+	 * the same way every run, and stations on different threads share nothing.
+	 * 
+	 * @param currency
+	 *            The kind of currency permitted.
+	 * @param banknoteDenominations
+	 *            The set of denominations (i.e., $5, $10, etc.) to accept.
+	 * @param coinDenominations
+	 *            The set of denominations (i.e., $0.05, $0.10, etc.) to accept.
+	 * @param scaleMaximumWeight
+	 *            The most weight that can be placed on the scale before it
+	 *            overloads.
+	 * @param scaleSensitivity
+	 *            Any weight changes smaller than this will not be detected or
+	 *            announced.
+	 * @param random
+	 *            The generator the devices' generators are split from.
+	 * @throws SimulationException
+	 *             If any argument is null or negative.
+	 * @throws SimulationException
+	 *             If the number of banknote or coin denominations is &lt;1.
+	 */
+	public SelfCheckoutStation(Currency currency, int[] banknoteDenominations, BigDecimal[] coinDenominations,
+		int scaleMaximumWeight, int scaleSensitivity, SplittableGenerator random) {
+		if(currency == null || banknoteDenominations == null || coinDenominations == null || random == null)
 			throw new SimulationException(new NullPointerException("No argument may be null."));
 
 		if(scaleMaximumWeight <= 0)
@@ -178,6 +212,11 @@ public class SelfCheckoutStation {
 		for(int i = 0; i < coinDenominations.length; i++)
 			coinDispensers.put(coinDenominations[i], new CoinDispenser(COIN_DISPENSER_CAPACITY));
 
+		scanner.setRandomGenerator(random.split());
+		coinValidator.setRandomGenerator(random.split());
+		banknoteValidator.setRandomGenerator(random.split());
+		cardReader.setRandomGenerator(random.split());
+
 		// Hook up everything.
 		interconnect(banknoteInput, banknoteValidator);
 		interconnect(banknoteValidator, banknoteStorage);
@@ -1,5 +1,7 @@
 package org.lsmr.selfcheckout.devices;
 
+import java.util.List;
+
 import org.lsmr.selfcheckout.Coin;
 
 /**
@@ -38,6 +40,21 @@ public class UnidirectionalChannel<T> {
 		sink.accept(thing);
 	}
 
+	/**
+	 * Moves the indicated things to the sink as one batch. This method should be
+	 * called by the source device, and not by an external application.
+	 * 
+	 * @param things
+	 *            The things to transport via the channel.
+	 * @throws OverloadException
+	 *             If the sink has no space for the things.
+	 * @throws DisabledException
+	 *             If the sink is currently disabled.
+	 */
+	public void deliverAll(List<T> things) throws OverloadException, DisabledException {
+		sink.acceptAll(things);
+	}
+
 	/**
 	 * Returns whether the sink has space for at least one more thing.
 	 * 
@@ -46,4 +63,13 @@ public class UnidirectionalChannel<T> {
 	public boolean hasSpace() {
 		return sink.hasSpace();
 	}
+
+	/**
+	 * Returns how many more things the sink has space for.
+	 * 
+	 * @return The number of things the channel can accept now.
+	 */
+	public int getSpace() {
+		return sink.getSpace();
+	}
 }
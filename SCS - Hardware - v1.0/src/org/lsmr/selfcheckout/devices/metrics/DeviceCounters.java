@@ -0,0 +1,27 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+/**
+ * The event counters of one device. The counts go straight into the totals of
+ * their events, shared by every device of the type, so nothing needs to be done
+ * when the device is garbage collected. Obtained from
+ * {@link DeviceMetrics#countersFor(Class)}.
+ */
+public final class DeviceCounters {
+	private final Class<?> device;
+
+	DeviceCounters(Class<?> device) {
+		this.device = device;
+	}
+
+	/**
+	 * Creates the counter of an event on the device.
+	 *
+	 * @param event
+	 *            The name of the event, which is the name of the observer method
+	 *            for events that are announced.
+	 * @return The counter.
+	 */
+	public EventCounter counter(String event) {
+		return new EventCounter(DeviceMetrics.event(device, event));
+	}
+}
@@ -0,0 +1,238 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.lsmr.selfcheckout.devices.SimulationException;
+
+/**
+ * The registry of the metrics kept by the devices, one {@link EventMetrics} per
+ * type of device and kind of event. Every device counts each event it
+ * announces and each failure it suffers without notifying anyone, such as a
+ * failed scan or a falsely rejected coin, and samples how long its observers
+ * take to handle the events.
+ * <p>
+ * Only one notification in every sample interval is timed, since reading the
+ * clock costs far more than counting. The registry can be read
+ * directly, through JMX once {@link #registerMBeans(MBeanServer)} has been
+ * called, or as text in the Prometheus exposition format.
+ * <p>
+ * Counting and timing can be turned off for a whole run by starting the
+ * virtual machine with {@code -Dorg.lsmr.selfcheckout.metrics=false}, for when
+ * not even the cost of counting is wanted. The switch is read once, so the
+ * compiler removes the counting from the devices altogether.
+ */
+public final class DeviceMetrics {
+	/**
+	 * The number of notifications of which one is timed, unless changed.
+	 */
+	public static final int DEFAULT_SAMPLE_INTERVAL = 1024;
+
+	/**
+	 * The system property that turns counting and timing off when it is
+	 * {@code false}.
+	 */
+	public static final String ENABLED_PROPERTY = "org.lsmr.selfcheckout.metrics";
+
+	private static final String DOMAIN = "org.lsmr.selfcheckout";
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private static final ConcurrentSkipListMap<String, EventMetrics> events = new ConcurrentSkipListMap<>();
+	private static MBeanServer server = null;
+
+	// Final, so that with counting off the devices compile to what they would be without it
+	static final boolean enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+
+	// One less than the sample interval, or -1 when no notification is timed
+	static volatile int sampleMask = DEFAULT_SAMPLE_INTERVAL - 1;
+
+	private DeviceMetrics() {}
+
+	/**
+	 * Creates the set of counters of a type of device. Every device calls this
+	 * once, when it is created, and then creates a counter for each of its
+	 * events. Nothing is registered: the counts of all the devices of a type go
+	 * into the same totals, and an event is only added to the registry when its
+	 * first counter is created.
+	 *
+	 * @param device
+	 *            The type of device.
+	 * @return The counters.
+	 */
+	public static DeviceCounters countersFor(Class<?> device) {
+		return new DeviceCounters(device);
+	}
+
+	/**
+	 * @return Whether events are counted and timed, which is decided by
+	 *             {@link #ENABLED_PROPERTY} when the devices are first loaded.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Finds the metrics of an event on a type of device, creating them if they do
+	 * not exist yet.
+	 *
+	 * @param device
+	 *            The type of device.
+	 * @param event
+	 *            The name of the event, which is the name of the observer method
+	 *            for events that are announced.
+	 * @return The metrics of the event.
+	 */
+	public static EventMetrics event(Class<?> device, String event) {
+		String key = device.getSimpleName() + "." + event;
+		EventMetrics metrics = events.get(key);
+
+		if(metrics != null)
+			return metrics;
+
+		synchronized(DeviceMetrics.class) {
+			metrics = events.get(key);
+
+			if(metrics == null) {
+				metrics = new EventMetrics(device.getSimpleName(), event);
+				events.put(key, metrics);
+
+				if(server != null)
+					register(server, metrics);
+			}
+
+			return metrics;
+		}
+	}
+
+	/**
+	 * @return The metrics of every event, ordered by type of device and then
+	 *             event.
+	 */
+	public static Collection<EventMetrics> getEvents() {
+		return Collections.unmodifiableCollection(events.values());
+	}
+
+	/**
+	 * Sets how often notifications are timed.
+	 *
+	 * @param interval
+	 *            The number of notifications of which one is timed, which must
+	 *            be a power of two, or 0 to time none. Events are counted
+	 *            regardless.
+	 * @throws SimulationException
+	 *             If the interval is negative or not a power of two.
+	 */
+	public static void setSampleInterval(int interval) {
+		if(interval < 0 || Integer.bitCount(interval) > 1)
+			throw new SimulationException(
+				new IllegalArgumentException("The sample interval must be 0 or a power of two: " + interval));
+
+		sampleMask = interval - 1;
+	}
+
+	/**
+	 * Registers the metrics of every event with a JMX server, as
+	 * {@code org.lsmr.selfcheckout:type=DeviceMetrics,device=...,event=...}.
+	 * Events that are first seen later are registered as they appear.
+	 *
+	 * @param mbeanServer
+	 *            The server, usually the platform's.
+	 * @throws SimulationException
+	 *             If the metrics are already registered.
+	 */
+	public static synchronized void registerMBeans(MBeanServer mbeanServer) {
+		if(server != null)
+			throw new SimulationException("The device metrics are already registered.");
+
+		server = mbeanServer;
+
+		for(EventMetrics metrics : events.values())
+			register(server, metrics);
+	}
+
+	private static void register(MBeanServer mbeanServer, EventMetrics metrics) {
+		try {
+			mbeanServer.registerMBean(metrics,
+				new ObjectName(DOMAIN + ":type=DeviceMetrics,device=" + metrics.getDevice() + ",event=" + metrics.getEvent()));
+		}
+		catch(JMException e) {
+			throw new SimulationException(e);
+		}
+	}
+
+	/**
+	 * Writes the metrics of every event in the Prometheus text exposition format:
+	 * a counter of events and a summary of notification latencies in seconds.
+	 *
+	 * @param out
+	 *            Where to write the metrics.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public static void writePrometheus(Appendable out) throws IOException {
+		out.append("# HELP scs_device_events_total Events announced by devices, and failures that notify nobody.\n");
+		out.append("# TYPE scs_device_events_total counter\n");
+
+		for(EventMetrics metrics : events.values()) {
+			out.append("scs_device_events_total");
+			labels(out, metrics, null);
+			out.append(' ').append(Long.toString(metrics.getCount())).append('\n');
+		}
+
+		out.append("# HELP scs_device_notification_seconds Time taken to notify a device's observers of an event, sampled.\n");
+		out.append("# TYPE scs_device_notification_seconds summary\n");
+
+		for(EventMetrics metrics : events.values()) {
+			LatencyHistogram latency = metrics.getLatency();
+
+			if(latency.getCount() == 0)
+				continue;
+
+			for(double quantile : QUANTILES) {
+				out.append("scs_device_notification_seconds");
+				labels(out, metrics, Double.toString(quantile));
+				out.append(' ').append(Double.toString(latency.getValueAtQuantile(quantile) / 1e9)).append('\n');
+			}
+
+			out.append("scs_device_notification_seconds_sum");
+			labels(out, metrics, null);
+			out.append(' ').append(Double.toString(latency.getSum() / 1e9)).append('\n');
+			out.append("scs_device_notification_seconds_count");
+			labels(out, metrics, null);
+			out.append(' ').append(Long.toString(latency.getCount())).append('\n');
+		}
+	}
+
+	/**
+	 * @return The metrics of every event in the Prometheus text exposition
+	 *             format.
+	 * @see #writePrometheus(Appendable)
+	 */
+	public static String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+
+		try {
+			writePrometheus(sb);
+		}
+		catch(IOException e) {
+			// A StringBuilder does not throw
+		}
+
+		return sb.toString();
+	}
+
+	private static void labels(Appendable out, EventMetrics metrics, String quantile) throws IOException {
+		out.append("{device=\"").append(metrics.getDevice()).append("\",event=\"").append(metrics.getEvent()).append('"');
+
+		if(quantile != null)
+			out.append(",quantile=\"").append(quantile).append('"');
+
+		out.append('}');
+	}
+}
@@ -0,0 +1,73 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the events of one kind on one device, into the striped
+ * {@link LongAdder} of their {@link EventMetrics} that every device of the type
+ * shares. The count is exact and can be read from any thread, however many
+ * threads drive the device.
+ * <p>
+ * A device announces an event by bracketing its notification loop with
+ * {@link #start()} and {@link #stop(long)}, which also time one notification
+ * in every sample interval. Events that notify nobody, such as a failed scan,
+ * are counted with {@link #increment()}. Counters are obtained from
+ * {@link DeviceCounters#counter(String)}, and do nothing when
+ * {@link DeviceMetrics#isEnabled() counting is off}.
+ */
+public final class EventCounter {
+	// Returned by start() when the notification is not timed
+	private static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+	private final EventMetrics metrics;
+	private final LongAdder count;
+	// Only picks which notifications are timed, so an update lost to a second thread costs nothing but a skipped sample
+	private int ticks = 0;
+
+	EventCounter(EventMetrics metrics) {
+		this.metrics = metrics;
+		this.count = metrics.count;
+	}
+
+	/**
+	 * Counts an event and marks the start of its notification.
+	 *
+	 * @return What to pass to {@link #stop(long)} when the notification is over.
+	 */
+	public long start() {
+		if(!DeviceMetrics.enabled)
+			return NOT_SAMPLED;
+
+		count.increment();
+
+		if((++ticks & DeviceMetrics.sampleMask) != 0)
+			return NOT_SAMPLED;
+
+		return sample();
+	}
+
+	/**
+	 * Marks the end of a notification, recording how long it took if it was
+	 * sampled.
+	 *
+	 * @param start
+	 *            What {@link #start()} returned.
+	 */
+	public void stop(long start) {
+		if(start != NOT_SAMPLED)
+			metrics.getLatency().record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Counts an event that notifies nobody.
+	 */
+	public void increment() {
+		if(DeviceMetrics.enabled)
+			count.increment();
+	}
+
+	// Kept out of start() so that the common, unsampled path stays small enough to inline
+	private static long sample() {
+		return DeviceMetrics.sampleMask < 0 ? NOT_SAMPLED : System.nanoTime();
+	}
+}
@@ -0,0 +1,76 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one kind of event on one type of device: how often it has
+ * happened on every device of the type, and how long notifying the observers
+ * took, sampled into a {@link LatencyHistogram}. The count is a striped
+ * {@link LongAdder} that the {@link EventCounter} on each device adds to, so
+ * devices on different threads do not contend for it.
+ * <p>
+ * Instances are obtained from {@link DeviceMetrics#event(Class, String)}.
+ */
+public final class EventMetrics implements EventMetricsMXBean {
+	private final String device;
+	private final String event;
+	final LongAdder count = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	EventMetrics(String device, String event) {
+		this.device = device;
+		this.event = event;
+	}
+
+	/**
+	 * @return The latencies of the sampled notifications.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	@Override
+	public String getDevice() {
+		return device;
+	}
+
+	@Override
+	public String getEvent() {
+		return event;
+	}
+
+	@Override
+	public long getCount() {
+		return count.sum();
+	}
+
+	@Override
+	public long getSampledCount() {
+		return latency.getCount();
+	}
+
+	@Override
+	public double getMeanNanos() {
+		return latency.getMean();
+	}
+
+	@Override
+	public long getMedianNanos() {
+		return latency.getValueAtQuantile(0.5);
+	}
+
+	@Override
+	public long get99thPercentileNanos() {
+		return latency.getValueAtQuantile(0.99);
+	}
+
+	@Override
+	public long get999thPercentileNanos() {
+		return latency.getValueAtQuantile(0.999);
+	}
+
+	@Override
+	public long getMaxNanos() {
+		return latency.getMax();
+	}
+}
@@ -0,0 +1,52 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+/**
+ * The view of an {@link EventMetrics} given through JMX. Latencies are in
+ * nanoseconds and are taken from the sampled notifications only.
+ */
+public interface EventMetricsMXBean {
+	/**
+	 * @return The simple name of the type of device.
+	 */
+	String getDevice();
+
+	/**
+	 * @return The name of the event.
+	 */
+	String getEvent();
+
+	/**
+	 * @return The number of times the event has happened.
+	 */
+	long getCount();
+
+	/**
+	 * @return The number of notifications whose latency was sampled.
+	 */
+	long getSampledCount();
+
+	/**
+	 * @return The mean time taken to notify the observers.
+	 */
+	double getMeanNanos();
+
+	/**
+	 * @return The median time taken to notify the observers.
+	 */
+	long getMedianNanos();
+
+	/**
+	 * @return The 99th percentile of the time taken to notify the observers.
+	 */
+	long get99thPercentileNanos();
+
+	/**
+	 * @return The 99.9th percentile of the time taken to notify the observers.
+	 */
+	long get999thPercentileNanos();
+
+	/**
+	 * @return The longest time taken to notify the observers.
+	 */
+	long getMaxNanos();
+}
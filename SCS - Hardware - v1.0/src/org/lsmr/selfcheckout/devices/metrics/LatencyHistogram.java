@@ -0,0 +1,127 @@
+package org.lsmr.selfcheckout.devices.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds, laid out like an HdrHistogram: each
+ * power of two is split into 16 equal buckets, so every latency from a
+ * nanosecond to several minutes is recorded to within about 6% in a fixed
+ * array of counts. Recording is a few shifts and an atomic increment and never
+ * allocates, so it can be done on a device's notification path.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// Latencies of 2^40 ns (about 18 minutes) or more are counted in the last bucket
+	private static final int MAXIMUM_EXPONENT = 40;
+	private static final int BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records one latency.
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds. Negative latencies, which a clock
+	 *            that is not monotonic can produce, are recorded as zero.
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+
+		counts.incrementAndGet(indexOf(nanos));
+		count.increment();
+		sum.add(nanos);
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * @return The number of latencies recorded.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return The sum of the latencies recorded, in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return The mean latency in nanoseconds, or 0 if none has been recorded.
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double)sum.sum() / n;
+	}
+
+	/**
+	 * @return The greatest latency recorded, in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Finds the latency that the indicated fraction of recorded latencies do not
+	 * exceed. The answer is the upper bound of the bucket it falls in, so it may
+	 * overstate the true value by the bucket's width.
+	 *
+	 * @param quantile
+	 *            The fraction, between 0 and 1.
+	 * @return The latency in nanoseconds, or 0 if none has been recorded.
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+
+		// Counts are read once, so the total agrees with them even while latencies are recorded
+		for(int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		if(total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long)Math.ceil(quantile * total));
+		long seen = 0;
+
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+
+			if(seen >= rank)
+				return Math.min(lowestValueAt(i + 1) - 1, getMax());
+		}
+
+		return getMax();
+	}
+
+	static int indexOf(long nanos) {
+		if(nanos < SUB_BUCKETS)
+			return (int)nanos;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+
+		if(exponent >= MAXIMUM_EXPONENT)
+			return BUCKETS - 1;
+
+		int subBucket = (int)(nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long lowestValueAt(int index) {
+		if(index < SUB_BUCKETS)
+			return index;
+
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return (long)(SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+	}
+}
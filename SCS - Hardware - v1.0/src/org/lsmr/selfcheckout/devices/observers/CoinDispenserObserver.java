@@ -33,6 +33,22 @@ public interface CoinDispenserObserver extends AbstractDeviceObserver {
 	 */
 	void coinAdded(CoinDispenser dispenser, Coin coin);
 
+	/**
+	 * Announces that the indicated coins, from a batch inserted at once, have been
+	 * added to the indicated coin dispenser. By default this is taken as one
+	 * "coinAdded" event per coin; observers that can handle the coins as a whole
+	 * override it.
+	 * 
+	 * @param dispenser
+	 *             The dispenser where the event occurred.
+	 * @param coins
+	 *             The coins that were added.
+	 */
+	default void coinsAdded(CoinDispenser dispenser, Coin... coins) {
+		for(Coin coin : coins)
+			coinAdded(dispenser, coin);
+	}
+
 	/**
 	 * Announces that the indicated coin has been added to the indicated coin dispenser.
 	 * 
@@ -14,4 +14,19 @@ public interface CoinSlotObserver extends AbstractDeviceObserver {
 	 *             The device on which the event occurred.
 	 */
 	void coinInserted(CoinSlot slot);
+
+	/**
+	 * An event announcing that a batch of coins has been inserted at once. By
+	 * default this is taken as one "coinInserted" event per coin; observers that
+	 * can handle the batch as a whole override it.
+	 * 
+	 * @param slot
+	 *             The device on which the event occurred.
+	 * @param count
+	 *             The number of coins inserted.
+	 */
+	default void coinsInserted(CoinSlot slot, int count) {
+		for(int i = 0; i < count; i++)
+			coinInserted(slot);
+	}
 }
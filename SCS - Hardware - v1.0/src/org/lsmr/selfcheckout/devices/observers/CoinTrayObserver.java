@@ -15,4 +15,18 @@ public interface CoinTrayObserver extends AbstractDeviceObserver {
 	 *            The tray where the event occurred.
 	 */
 	void coinAdded(CoinTray tray);
+
+	/**
+	 * Announces that coins from a batch inserted at once have been added to the
+	 * indicated tray. By default this is taken as one "coinAdded" event per coin.
+	 * 
+	 * @param tray
+	 *            The tray where the event occurred.
+	 * @param count
+	 *            The number of coins added.
+	 */
+	default void coinsAdded(CoinTray tray, int count) {
+		for(int i = 0; i < count; i++)
+			coinAdded(tray);
+	}
 }
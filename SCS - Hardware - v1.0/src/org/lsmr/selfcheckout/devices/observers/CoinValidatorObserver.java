@@ -29,4 +29,38 @@ public interface CoinValidatorObserver extends AbstractDeviceObserver {
 	 *            The device on which the event occurred.
 	 */
 	void invalidCoinDetected(CoinValidator validator);
+
+	/**
+	 * An event announcing that coins of the indicated value, from a batch
+	 * inserted at once, have been determined to be valid. A batch announces one
+	 * such event for each value among its valid coins. By default this is taken
+	 * as one "validCoinDetected" event per coin; observers that can handle the
+	 * coins as a whole override it.
+	 * 
+	 * @param validator
+	 *            The device on which the event occurred.
+	 * @param value
+	 *            The value of each of the coins.
+	 * @param count
+	 *            The number of coins, so their total is value times count.
+	 */
+	default void validCoinsDetected(CoinValidator validator, BigDecimal value, int count) {
+		for(int i = 0; i < count; i++)
+			validCoinDetected(validator, value);
+	}
+
+	/**
+	 * An event announcing that coins from a batch inserted at once have been
+	 * determined to be invalid. By default this is taken as one
+	 * "invalidCoinDetected" event per coin.
+	 * 
+	 * @param validator
+	 *            The device on which the event occurred.
+	 * @param count
+	 *            The number of invalid coins.
+	 */
+	default void invalidCoinsDetected(CoinValidator validator, int count) {
+		for(int i = 0; i < count; i++)
+			invalidCoinDetected(validator);
+	}
 }
@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.benchmark.CatalogLookup;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * Fills a BarcodedItemCollection with products under random twelve-digit barcodes, or backs one with a MappedCatalog of
+ * them written to a temporary file.
+ */
+public class CatalogLookupFixture implements CatalogLookup
+{
+    private static final int BARCODE_DIGITS = 12;
+
+    private BarcodedItemCollection collection;
+    private Barcode[] probes;
+
+    @Override
+    public void setUp(int catalogSize, boolean mapped) throws IOException
+    {
+        Random random = new Random(42);
+        long[] codes = new long[catalogSize];
+        ArrayList<CatalogEntry> entries = new ArrayList<CatalogEntry>(catalogSize);
+
+        for (int i = 0; i < catalogSize; i++)
+        {
+            codes[i] = (long) (random.nextDouble() * 1e12);
+            entries.add(new CatalogEntry(new BarcodedProduct(toBarcode(codes[i]), "Product " + i, BigDecimal.valueOf(199, 2)), 100 + i % 900));
+        }
+
+        if (mapped)
+        {
+            // Random codes can repeat; the file holds each barcode once
+            Path file = Files.createTempFile("catalog", ".bin");
+            file.toFile().deleteOnExit();
+            MappedCatalog.write(file, dedupe(entries));
+            collection = new BarcodedItemCollection(MappedCatalog.open(file));
+        }
+        else
+        {
+            collection = new BarcodedItemCollection();
+            collection.addEntries(entries);
+        }
+
+        probes = new Barcode[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            probes[i] = toBarcode(codes[random.nextInt(catalogSize)]);
+    }
+
+    @Override
+    public double lookUp(int probe)
+    {
+        return collection.getEntry(probes[probe]).getExpectedWeight();
+    }
+
+    // Keeps the first entry for each barcode
+    static ArrayList<CatalogEntry> dedupe(ArrayList<CatalogEntry> entries)
+    {
+        LongOpenHashMap<CatalogEntry> seen = new LongOpenHashMap<CatalogEntry>(entries.size());
+        ArrayList<CatalogEntry> unique = new ArrayList<CatalogEntry>(entries.size());
+
+        for (CatalogEntry entry : entries)
+            if (seen.put(BarcodeKey.pack(entry.getBarcode()), entry) == null) unique.add(entry);
+
+        return unique;
+    }
+
+    // Builds a fresh barcode holding the digits of the code, padded with leading zeros
+    static Barcode toBarcode(long code)
+    {
+        Numeral[] digits = new Numeral[BARCODE_DIGITS];
+
+        for (int i = BARCODE_DIGITS - 1; i >= 0; i--)
+        {
+            digits[i] = Numeral.valueOf((byte) (code % 10));
+            code /= 10;
+        }
+
+        return new Barcode(digits);
+    }
+}
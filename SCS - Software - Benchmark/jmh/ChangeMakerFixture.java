@@ -0,0 +1,55 @@
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.Random;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.benchmark.ChangeMaking;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+
+/**
+ * A ChangeMaker over a SelfCheckoutStation with Canadian denominations. The dispensers are filled with random numbers
+ * of pieces, including empty ones, so that many payouts cannot simply take the largest piece first.
+ */
+public class ChangeMakerFixture implements ChangeMaking
+{
+    private static final Currency CAD = Currency.getInstance("CAD");
+    private static final int[] BANKNOTES = {5, 10, 20, 50, 100};
+    private static final BigDecimal[] COINS = {new BigDecimal("0.05"), new BigDecimal("0.10"), new BigDecimal("0.25"), new BigDecimal("1.00"), new BigDecimal("2.00")};
+
+    private ChangeMaker changeMaker;
+    private final Money[] amounts = new Money[AMOUNTS];
+
+    @Override
+    public void setUp(long seed)
+    {
+        Random random = new Random(seed);
+        SelfCheckoutStation station = new SelfCheckoutStation(CAD, BANKNOTES, COINS, 1000, 1);
+
+        try
+        {
+            for (BigDecimal denomination : COINS)
+                for (int i = random.nextInt(3) == 0 ? 0 : random.nextInt(SelfCheckoutStation.COIN_DISPENSER_CAPACITY); i > 0; i--)
+                    station.coinDispensers.get(denomination).load(new Coin(CAD, denomination));
+            for (int denomination : BANKNOTES)
+                for (int i = random.nextInt(3) == 0 ? 0 : random.nextInt(SelfCheckoutStation.BANKNOTE_DISPENSER_CAPACITY); i > 0; i--)
+                    station.banknoteDispensers.get(denomination).load(new Banknote(CAD, denomination));
+        }
+        catch (OverloadException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        changeMaker = new ChangeMaker(station);
+
+        for (int i = 0; i < AMOUNTS; i++)
+            amounts[i] = Money.ofMinor(5 * (1 + random.nextInt(2_000)), CAD);
+    }
+
+    @Override
+    public int plan(int amount)
+    {
+        return changeMaker.plan(amounts[amount]).getPieceCount();
+    }
+}
@@ -0,0 +1,73 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.benchmark.Journal;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+
+/**
+ * A TransactionJournal on a temporary file, fed the events of a SelfCheckoutStation's scanner, scale and validators.
+ */
+public class JournalFixture implements Journal
+{
+    private static final Currency CAD = Currency.getInstance("CAD");
+
+    private SelfCheckoutStation station;
+    private Barcode barcode;
+    private BigDecimal quarter;
+    private Path file;
+    private TransactionJournal journal;
+    private int next;
+
+    @Override
+    public void setUp() throws IOException
+    {
+        station = new SelfCheckoutStation(CAD, new int[] {5, 10, 20, 50}, new BigDecimal[] {new BigDecimal("0.25"), new BigDecimal("1.00")}, 1000, 1);
+        barcode = new Barcode(new Numeral[] {Numeral.one, Numeral.two, Numeral.three, Numeral.four, Numeral.five, Numeral.six, Numeral.seven, Numeral.eight, Numeral.nine, Numeral.zero, Numeral.one, Numeral.two});
+        quarter = new BigDecimal("0.25");
+        file = Files.createTempFile("journal", ".bin");
+        journal = new TransactionJournal(file);
+    }
+
+    @Override
+    public void appendTransaction()
+    {
+        for (int i = 0; i < EVENTS_PER_TRANSACTION; i++, next++)
+        {
+            switch (next & 3)
+            {
+                case 0:
+                    journal.barcodeScanned(station.scanner, barcode);
+                    break;
+                case 1:
+                    journal.weightChanged(station.scale, next);
+                    break;
+                case 2:
+                    journal.validCoinDetected(station.coinValidator, quarter);
+                    break;
+                default:
+                    journal.validBanknoteDetected(station.banknoteValidator, CAD, 20);
+                    break;
+            }
+        }
+
+        journal.transactionCompleted();
+    }
+
+    @Override
+    public void sync() throws InterruptedException
+    {
+        journal.sync();
+    }
+
+    @Override
+    public void tearDown() throws IOException
+    {
+        journal.close();
+        Files.delete(file);
+    }
+}
@@ -0,0 +1,117 @@
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.benchmark.Payment;
+import org.lsmr.selfcheckout.devices.BanknoteStorageUnit;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+
+/**
+ * A SelfCheckoutStation with PayCoin and PayBanknote observing its validators. The station's storage is emptied
+ * whenever it fills up, as staff would, so inserting can go on for as long as the benchmark runs.
+ */
+public class PaymentFixture implements Payment
+{
+    private static final Currency CAD = Currency.getInstance("CAD");
+    private static final int[] BANKNOTE_DENOMINATIONS = {5, 10, 20, 50, 100};
+    private static final BigDecimal[] COIN_DENOMINATIONS = {new BigDecimal("0.05"), new BigDecimal("0.10"), new BigDecimal("0.25"), new BigDecimal("1.00"), new BigDecimal("2.00")};
+
+    private SelfCheckoutStation station;
+    private PayCoin payCoin;
+    private PayBanknote payBanknote;
+    private Coin[] coins;
+    private Banknote[] banknotes;
+    private Coin[] batch = new Coin[0];
+
+    @Override
+    public void setUp()
+    {
+        station = new SelfCheckoutStation(CAD, BANKNOTE_DENOMINATIONS, COIN_DENOMINATIONS, 1000, 1);
+        payCoin = new PayCoin();
+        payBanknote = new PayBanknote();
+        station.coinValidator.attach(payCoin);
+        station.banknoteValidator.attach(payBanknote);
+
+        coins = new Coin[COIN_DENOMINATIONS.length];
+        for (int i = 0; i < coins.length; i++)
+            coins[i] = new Coin(CAD, COIN_DENOMINATIONS[i]);
+
+        banknotes = new Banknote[BANKNOTE_DENOMINATIONS.length];
+        for (int i = 0; i < banknotes.length; i++)
+            banknotes[i] = new Banknote(CAD, BANKNOTE_DENOMINATIONS[i]);
+    }
+
+    @Override
+    public long insertCoin(int index)
+    {
+        Coin coin = coins[(index & Integer.MAX_VALUE) % coins.length];
+
+        try
+        {
+            station.coinSlot.accept(coin);
+        }
+        catch (DisabledException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        CoinDispenser dispenser = station.coinDispensers.get(coin.getValue());
+        if (!dispenser.hasSpace()) dispenser.unload();
+        if (!station.coinTray.hasSpace()) station.coinTray.collectCoins();
+
+        return payCoin.getCoinTotal().getMinorUnits();
+    }
+
+    @Override
+    public long insertCoins(int index, int count)
+    {
+        if (batch.length != count) batch = new Coin[count];
+
+        for (int i = 0; i < count; i++)
+            batch[i] = coins[((index + i) & Integer.MAX_VALUE) % coins.length];
+
+        // The coins take turns, so no denomination gets more than its share of the batch
+        int perDenomination = (count + coins.length - 1) / coins.length;
+
+        for (CoinDispenser dispenser : station.coinDispensers.values())
+            if (dispenser.getCapacity() - dispenser.size() < perDenomination) dispenser.unload();
+        // Falsely rejected coins go to the tray, which holds far fewer than a batch
+        station.coinTray.collectCoins();
+
+        try
+        {
+            station.coinSlot.acceptAll(batch);
+        }
+        catch (DisabledException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        return payCoin.getCoinTotal().getMinorUnits();
+    }
+
+    @Override
+    public long insertBanknote(int index)
+    {
+        try
+        {
+            station.banknoteInput.accept(banknotes[(index & Integer.MAX_VALUE) % banknotes.length]);
+        }
+        catch (DisabledException | OverloadException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        // A banknote the validator rejected is left hanging from the slot
+        if (!station.banknoteInput.hasSpace()) station.banknoteInput.removeDanglingBanknote();
+
+        BanknoteStorageUnit storage = station.banknoteStorage;
+        if (storage.getBanknoteCount() == storage.getCapacity()) storage.unload();
+
+        return payBanknote.getTotalBanknotes().getMinorUnits();
+    }
+}
@@ -0,0 +1,77 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.benchmark.ScanAndTotal;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * A Checkout connected to a ScanItem, a catalog of products and the store's promotions, with no hardware in between.
+ */
+public class ScanAndTotalFixture implements ScanAndTotal
+{
+    // The scanned barcodes are kept by ScanItem forever, so they are cleared now and then to bound memory use
+    private static final int SCANS_KEPT = 1 << 12;
+
+    private ScanItem scanItem;
+    private Checkout checkout;
+    private Barcode[] probes;
+
+    @Override
+    public void setUp(int catalogSize, int promotionCount)
+    {
+        Random random = new Random(42);
+        long[] codes = new long[catalogSize];
+        ArrayList<CatalogEntry> entries = new ArrayList<CatalogEntry>(catalogSize);
+
+        for (int i = 0; i < catalogSize; i++)
+        {
+            codes[i] = (long) (random.nextDouble() * 1e12);
+            entries.add(new CatalogEntry(new BarcodedProduct(CatalogLookupFixture.toBarcode(codes[i]), "Product " + i, BigDecimal.valueOf(100 + i % 900, 2)), 100 + i % 900));
+        }
+
+        BarcodedItemCollection collection = new BarcodedItemCollection();
+        collection.addEntries(entries);
+
+        scanItem = new ScanItem();
+        checkout = new Checkout(new PayBanknote(), new PayCoin(), scanItem, collection, new BaggingArea(), new ReceiptPrinter(), 0, 0);
+        checkout.setPromotions(createPromotions(codes, promotionCount, random));
+
+        probes = new Barcode[PROBES];
+        for (int i = 0; i < PROBES; i++)
+            probes[i] = CatalogLookupFixture.toBarcode(codes[random.nextInt(catalogSize)]);
+    }
+
+    // An even mix of multi-buys on one product, mix-and-match on three and thresholds on two
+    private static PromotionEngine createPromotions(long[] codes, int count, Random random)
+    {
+        ArrayList<Promotion> promotions = new ArrayList<Promotion>(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            Barcode a = CatalogLookupFixture.toBarcode(codes[random.nextInt(codes.length)]);
+            Barcode b = CatalogLookupFixture.toBarcode(codes[random.nextInt(codes.length)]);
+            Barcode c = CatalogLookupFixture.toBarcode(codes[random.nextInt(codes.length)]);
+
+            if (i % 3 == 0) promotions.add(Promotion.buyGetFree("Promotion " + i, Arrays.asList(a), 2, 1));
+            else if (i % 3 == 1) promotions.add(Promotion.mixAndMatch("Promotion " + i, Arrays.asList(a, b, c), 3, Money.ofMajor(10, Money.DEFAULT_CURRENCY)));
+            else promotions.add(Promotion.threshold("Promotion " + i, Arrays.asList(a, b), Money.ofMajor(20, Money.DEFAULT_CURRENCY), Money.ofMajor(2, Money.DEFAULT_CURRENCY)));
+        }
+
+        return new PromotionEngine(promotions);
+    }
+
+    @Override
+    public long scanAndTotal(int probe)
+    {
+        scanItem.barcodeScanned(null, probes[probe]);
+        checkout.calcTotalToBePaid();
+
+        if (scanItem.barcodesScanned.size() == SCANS_KEPT) scanItem.barcodesScanned.clear();
+
+        return checkout.getTotalToBePaid().getMinorUnits();
+    }
+}
@@ -0,0 +1,29 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks, writing the results as JSON to jmh-result.json unless another result format or file is given.
+ * Any other JMH command line options can be passed as usual.
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        ArrayList<String> options = new ArrayList<>(Arrays.asList(args));
+
+        if (!options.contains("-rf"))
+        {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff"))
+        {
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,31 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.io.IOException;
+
+/**
+ * A catalog filled with products, held in memory or mapped from a file, and barcodes to look up in it.
+ */
+public interface CatalogLookup
+{
+    /**
+     * The number of barcodes to look up. A power of two, so a counter can be masked into an index.
+     */
+    int PROBES = 1 << 16;
+
+    /**
+     * Fills the catalog.
+     *
+     * @param catalogSize The number of products in the catalog.
+     * @param mapped      Whether the products are written to a catalog file and mapped, rather than held in memory.
+     * @throws IOException If the catalog file cannot be written or mapped.
+     */
+    void setUp(int catalogSize, boolean mapped) throws IOException;
+
+    /**
+     * Looks up one of the barcodes. The barcode is equal to, but not the same object as, the one in the catalog.
+     *
+     * @param probe Which barcode to look up, from 0 to PROBES - 1.
+     * @return The expected weight of the product found.
+     */
+    double lookUp(int probe);
+}
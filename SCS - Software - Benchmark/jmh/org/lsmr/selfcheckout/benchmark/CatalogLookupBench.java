@@ -0,0 +1,50 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up a scanned barcode in the catalog, for catalogs of growing size held in memory or mapped from a file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogLookupBench
+{
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    private CatalogLookup catalog;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        catalog = Fixtures.create("CatalogLookupFixture", CatalogLookup.class);
+        catalog.setUp(catalogSize, mapped);
+    }
+
+    @Benchmark
+    public double lookUp()
+    {
+        return catalog.lookUp(next++ & (CatalogLookup.PROBES - 1));
+    }
+}
@@ -0,0 +1,44 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Working out a payout with ChangeMaker.plan, for change due of up to one hundred dollars from partly filled
+ * dispensers. Only planning is measured; emitting the pieces is the hardware simulation's cost, not the solver's. The
+ * target is under 50 microseconds per payout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeMakerBench
+{
+    private ChangeMaking changeMaker;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        changeMaker = Fixtures.create("ChangeMakerFixture", ChangeMaking.class);
+        changeMaker.setUp(42);
+    }
+
+    @Benchmark
+    public int plan()
+    {
+        return changeMaker.plan(next++ & (ChangeMaking.AMOUNTS - 1));
+    }
+}
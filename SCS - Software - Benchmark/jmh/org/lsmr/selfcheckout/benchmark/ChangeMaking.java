@@ -0,0 +1,27 @@
+package org.lsmr.selfcheckout.benchmark;
+
+/**
+ * A change maker over a station whose dispensers hold random numbers of pieces, and amounts of change to plan.
+ */
+public interface ChangeMaking
+{
+    /**
+     * The number of distinct amounts planned. A power of two, so a counter can be masked into an index.
+     */
+    int AMOUNTS = 1 << 12;
+
+    /**
+     * Fills the dispensers, some of them not at all, and draws the amounts of change, up to one hundred dollars.
+     *
+     * @param seed The seed of the random numbers, so that every run plans the same payouts.
+     */
+    void setUp(long seed);
+
+    /**
+     * Works out a payout without dispensing it.
+     *
+     * @param amount Which amount to plan, from 0 to AMOUNTS - 1.
+     * @return The number of pieces in the payout.
+     */
+    int plan(int amount);
+}
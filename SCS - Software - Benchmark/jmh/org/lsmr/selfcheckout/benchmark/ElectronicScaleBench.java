@@ -0,0 +1,57 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.BarcodedItem;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding an item to, and removing it from, an ElectronicScale that already holds many items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElectronicScaleBench
+{
+    @Param({"100", "10000", "100000"})
+    public int itemsOnScale;
+
+    private ElectronicScale scale;
+    private BarcodedItem item;
+
+    @Setup
+    public void setUp()
+    {
+        scale = new ElectronicScale(Integer.MAX_VALUE, 1);
+        scale.endConfigurationPhase();
+
+        Barcode barcode = new Barcode(new Numeral[] {Numeral.one});
+        for (int i = 0; i < itemsOnScale; i++)
+            scale.add(new BarcodedItem(barcode, 1 + i % 1000));
+
+        item = new BarcodedItem(barcode, 250);
+    }
+
+    @Benchmark
+    public void addAndRemove()
+    {
+        scale.add(item);
+        scale.remove(item);
+    }
+}
@@ -0,0 +1,25 @@
+package org.lsmr.selfcheckout.benchmark;
+
+/**
+ * Creates the fixtures that drive the self-checkout software. The software's classes are in the default package, which
+ * a benchmark in a named package cannot refer to, so each fixture is a default-package class implementing an interface
+ * from this package, and is created by name.
+ */
+final class Fixtures
+{
+    private Fixtures()
+    {
+    }
+
+    static <T> T create(String className, Class<T> type)
+    {
+        try
+        {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Cannot create the benchmark fixture " + className, e);
+        }
+    }
+}
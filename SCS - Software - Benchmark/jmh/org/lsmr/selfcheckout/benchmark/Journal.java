@@ -0,0 +1,41 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.io.IOException;
+
+/**
+ * A transaction journal on a temporary file, and the device events to append to it.
+ */
+public interface Journal
+{
+    /**
+     * The number of events in each transaction.
+     */
+    int EVENTS_PER_TRANSACTION = 100;
+
+    /**
+     * Opens the journal.
+     *
+     * @throws IOException If the file cannot be created.
+     */
+    void setUp() throws IOException;
+
+    /**
+     * Appends one transaction: a mix of scans, weight changes, coins and banknotes, as the devices would announce them
+     * from one thread, then the end of the transaction.
+     */
+    void appendTransaction();
+
+    /**
+     * Waits until everything appended so far is on disk.
+     *
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    void sync() throws InterruptedException;
+
+    /**
+     * Closes the journal and deletes its file.
+     *
+     * @throws IOException If the file cannot be closed or deleted.
+     */
+    void tearDown() throws IOException;
+}
@@ -0,0 +1,65 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Appending device events to the transaction journal, in events per second. appendTransaction is what a device is held
+ * up by; appendAndSync also waits for the events to reach disk once every hundred transactions, which is the rate the
+ * journal can sustain and should be over 100,000 events per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBench
+{
+    private static final int TRANSACTIONS_PER_SYNC = 100;
+
+    private Journal journal;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        journal = Fixtures.create("JournalFixture", Journal.class);
+        journal.setUp();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        journal.tearDown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Journal.EVENTS_PER_TRANSACTION)
+    public void appendTransaction()
+    {
+        journal.appendTransaction();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Journal.EVENTS_PER_TRANSACTION * TRANSACTIONS_PER_SYNC)
+    public void appendAndSync() throws InterruptedException
+    {
+        for (int i = 0; i < TRANSACTIONS_PER_SYNC; i++)
+            journal.appendTransaction();
+
+        journal.sync();
+    }
+}
@@ -0,0 +1,39 @@
+package org.lsmr.selfcheckout.benchmark;
+
+/**
+ * A self-checkout station with the coin and banknote payment use cases attached to its validators.
+ */
+public interface Payment
+{
+    /**
+     * Creates the station and attaches the use cases.
+     */
+    void setUp();
+
+    /**
+     * Inserts a coin into the coin slot. The station is emptied when its dispensers or tray fill up.
+     *
+     * @param index Picks the coin's denomination.
+     * @return The value of the coins paid so far, in cents.
+     */
+    long insertCoin(int index);
+
+    /**
+     * Inserts a batch of coins into the coin slot at once. The dispensers are emptied beforehand if the batch might not
+     * fit, and the tray is emptied for the coins that are rejected.
+     *
+     * @param index Picks the first coin's denomination; the others follow in turn.
+     * @param count The number of coins.
+     * @return The value of the coins paid so far, in cents.
+     */
+    long insertCoins(int index, int count);
+
+    /**
+     * Inserts a banknote into the banknote slot. The station is emptied when its storage fills up, and a rejected
+     * banknote is taken back.
+     *
+     * @param index Picks the banknote's denomination.
+     * @return The value of the banknotes paid so far, in cents.
+     */
+    long insertBanknote(int index);
+}
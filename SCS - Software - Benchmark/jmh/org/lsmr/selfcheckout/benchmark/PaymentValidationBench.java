@@ -0,0 +1,62 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserting coins and banknotes into a SelfCheckoutStation, through the slot and validator to storage, with the
+ * payment use cases observing the validators. Coins are also inserted in batches, as a coin counter would feed them,
+ * reported per coin so the two can be compared.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentValidationBench
+{
+    private static final int BATCH = 100;
+
+    private Payment payment;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        payment = Fixtures.create("PaymentFixture", Payment.class);
+        payment.setUp();
+    }
+
+    @Benchmark
+    public long insertCoin()
+    {
+        return payment.insertCoin(next++);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long insertCoinBatch()
+    {
+        long total = payment.insertCoins(next, BATCH);
+        next += BATCH;
+        return total;
+    }
+
+    @Benchmark
+    public long insertBanknote()
+    {
+        return payment.insertBanknote(next++);
+    }
+}
@@ -0,0 +1,79 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Printing an itemised receipt, cutting it and handing it to the customer, a character at a time and in one call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReceiptPrintingBench
+{
+    @Param({"40"})
+    public int lines;
+
+    private ReceiptPrinter printer;
+    private String receipt;
+    private int ink;
+
+    @Setup
+    public void setUp()
+    {
+        printer = new ReceiptPrinter();
+        printer.endConfigurationPhase();
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+            text.append(String.format("Item %03d %-32s %8.2f\n", i, "Product description " + i, 1.99 + i));
+
+        receipt = text.toString();
+
+        for (int i = 0; i < receipt.length(); i++)
+            if (!Character.isWhitespace(receipt.charAt(i))) ink++;
+    }
+
+    @Benchmark
+    public String printPerCharacter()
+    {
+        refill();
+
+        for (int i = 0; i < receipt.length(); i++)
+            printer.print(receipt.charAt(i));
+
+        printer.cutPaper();
+        return printer.removeReceipt();
+    }
+
+    @Benchmark
+    public String printBulk()
+    {
+        refill();
+        printer.print(receipt);
+        printer.cutPaper();
+        return printer.removeReceipt();
+    }
+
+    // Each receipt uses up exactly the ink and paper added for it
+    private void refill()
+    {
+        printer.addInk(ink);
+        printer.addPaper(lines);
+    }
+}
@@ -0,0 +1,28 @@
+package org.lsmr.selfcheckout.benchmark;
+
+/**
+ * A checkout whose scanner use case is fed barcodes from a catalog, as the barcode scanner would.
+ */
+public interface ScanAndTotal
+{
+    /**
+     * The number of distinct barcodes scanned. A power of two, so a counter can be masked into an index.
+     */
+    int PROBES = 1 << 12;
+
+    /**
+     * Fills the catalog and creates an empty checkout.
+     *
+     * @param catalogSize The number of products in the catalog.
+     * @param promotions  The number of promotions running, each on a few of the catalog's products.
+     */
+    void setUp(int catalogSize, int promotions);
+
+    /**
+     * Scans one barcode and works out the checkout's total.
+     *
+     * @param probe Which barcode to scan, from 0 to PROBES - 1.
+     * @return The total to be paid, in cents.
+     */
+    long scanAndTotal(int probe);
+}
@@ -0,0 +1,53 @@
+package org.lsmr.selfcheckout.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scanning an item through ScanItem.barcodeScanned and then working out the Checkout total, as happens after every
+ * scan, with and without promotions running.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanAndTotalBench
+{
+    @Param({"10000"})
+    public int catalogSize;
+
+    // The cost of a scan should not grow with the number of promotions, since only the scanned product's are evaluated
+    @Param({"0", "10000"})
+    public int promotions;
+
+    private ScanAndTotal checkout;
+    private int next;
+
+    // A fresh checkout for every iteration, so the basket does not keep growing across the whole run
+    @Setup(Level.Iteration)
+    public void setUp()
+    {
+        checkout = Fixtures.create("ScanAndTotalFixture", ScanAndTotal.class);
+        checkout.setUp(catalogSize, promotions);
+    }
+
+    @Benchmark
+    public long scanAndTotal()
+    {
+        return checkout.scanAndTotal(next++ & (ScanAndTotal.PROBES - 1));
+    }
+}
@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * Compares starting a lane with a catalog built in memory against one mapped from a catalog file, as the number of
+ * products grows from ten thousand to a few million. Building in memory takes time in proportion to the catalog;
+ * mapping should take about the same time at every size.
+ * <p>
+ * Start-up is timed up to the first lookup. The cost of a lookup in the warm mapped catalog is measured by
+ * CatalogLookupBench.
+ */
+public class MappedCatalogBenchmark
+{
+    private static final int[] CATALOG_SIZES = {10_000, 100_000, 1_000_000, 4_000_000};
+    private static final int BARCODE_DIGITS = 12;
+
+    public static void main(String[] args) throws IOException
+    {
+        Random random = new Random(42);
+        Path file = Files.createTempFile("catalog", ".bin");
+
+        System.out.println("catalog size\tbuild ms\tmap ms\t\tfile MB");
+
+        try
+        {
+            for (int size : CATALOG_SIZES)
+            {
+                long[] codes = new long[size];
+                ArrayList<CatalogEntry> entries = new ArrayList<CatalogEntry>(size);
+
+                for (int i = 0; i < size; i++)
+                {
+                    codes[i] = (long) (random.nextDouble() * 1e12);
+                    entries.add(new CatalogEntry(new BarcodedProduct(toBarcode(codes[i]), "Product " + i, BigDecimal.valueOf(199, 2)), 100 + i % 900));
+                }
+
+                // Random codes can repeat; the file holds each barcode once
+                entries = CatalogLookupFixture.dedupe(entries);
+                MappedCatalog.write(file, entries);
+
+                Barcode first = toBarcode(codes[0]);
+
+                // Each start-up ends with the first lookup, whose result is checked so it cannot be skipped
+                long start = System.nanoTime();
+                BarcodedItemCollection built = new BarcodedItemCollection();
+                built.addEntries(entries);
+                checkFound(built, first);
+                double buildMillis = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                BarcodedItemCollection mapped = new BarcodedItemCollection(MappedCatalog.open(file));
+                checkFound(mapped, first);
+                double mapMillis = (System.nanoTime() - start) / 1e6;
+
+                System.out.printf("%d\t\t%.1f\t\t%.2f\t\t%.1f%n", size, buildMillis, mapMillis, Files.size(file) / 1e6);
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    private static void checkFound(BarcodedItemCollection collection, Barcode barcode)
+    {
+        if (collection.getEntry(barcode) == null) throw new IllegalStateException("The catalog is missing " + barcode);
+    }
+
+    // Builds a fresh barcode holding the digits of the code, padded with leading zeros
+    private static Barcode toBarcode(long code)
+    {
+        Numeral[] digits = new Numeral[BARCODE_DIGITS];
+
+        for (int i = BARCODE_DIGITS - 1; i >= 0; i--)
+        {
+            digits[i] = Numeral.valueOf((byte) (code % 10));
+            code /= 10;
+        }
+
+        return new Barcode(digits);
+    }
+}
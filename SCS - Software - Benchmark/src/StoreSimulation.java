@@ -0,0 +1,407 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.BarcodedItem;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.ReceiptPrinter;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.ReceiptPrinterObserver;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * Simulates a whole store: many self-checkout stations, each with its own software, serving shoppers at the same time.
+ * The stations share the store's catalogs, as they would share the store controller's.
+ * It is meant for planning the capacity of a store controller, so it reports how many transactions the stations
+ * complete per second, how long a transaction takes (median and 99th percentile) and how much heap each station retains
+ * once it has served its shoppers.
+ * <p>
+ * Each station runs on its own thread, a virtual thread where the Java runtime has them. A shopper scans a random
+ * number of random products, retrying when the scanner misses, bags each one, and then pays exactly with banknotes and
+ * coins, picking up any that are rejected and trying again. Between actions the shopper can pause for a random think
+ * time. After each transaction an attendant empties the station's cash units and the bagging area.
+ * <p>
+ * Every station's devices, and its shoppers, draw from generators split from the one seed, so a run with the same
+ * arguments scans, rejects and pays in exactly the same way.
+ * <p>
+ * Usage: {@code StoreSimulation [stations] [transactions per station] [mean think time in ms] [seed]}. The defaults are
+ * 1000 stations, 20 transactions each, no think time and seed 42. At most 5000 stations are supported.
+ */
+public class StoreSimulation
+{
+    private static final Currency CAD = Currency.getInstance("CAD");
+    private static final int[] BANKNOTES = {5, 10, 20, 50, 100};
+    private static final BigDecimal[] COINS = {new BigDecimal("0.05"), new BigDecimal("0.10"), new BigDecimal("0.25"), new BigDecimal("1.00"), new BigDecimal("2.00")};
+    private static final int MAX_STATIONS = 5000;
+    private static final int PRODUCTS = 2000;
+    private static final int MAX_ITEMS_PER_TRANSACTION = 40;
+    private static final int SCALE_LIMIT_IN_GRAMS = 100_000;
+    private static final int SCALE_SENSITIVITY_IN_GRAMS = 5;
+
+    private static boolean virtualThreads = false;
+
+    public static void main(String[] args) throws Exception
+    {
+        int stations = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int thinkMillis = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        if (stations < 1 || stations > MAX_STATIONS)
+            throw new IllegalArgumentException("The number of stations must be between 1 and " + MAX_STATIONS + ": " + stations);
+        if (transactions < 1)
+            throw new IllegalArgumentException("Each station must run at least one transaction: " + transactions);
+
+        SplittableRandom random = new SplittableRandom(seed);
+        BarcodedItemCollection catalog = createCatalog(random);
+        PLUCodedItemCollection pluCatalog = new PLUCodedItemCollection();
+
+        // One transaction first, on a generator of its own, so that state created once per process (loaded classes,
+        // formatters, registries) is in the baseline rather than charged to the stations
+        new Station(catalog, pluCatalog, new SplittableRandom(~seed), 1, 0).run();
+
+        long heapBefore = retainedHeap();
+        Station[] store = new Station[stations];
+        for (int i = 0; i < stations; i++)
+            store[i] = new Station(catalog, pluCatalog, random.split(), transactions, thinkMillis);
+
+        ExecutorService executor = newExecutor();
+        ArrayList<Future<?>> running = new ArrayList<Future<?>>(stations);
+
+        long start = System.nanoTime();
+        for (Station station : store)
+            running.add(executor.submit(station::run));
+        for (Future<?> future : running)
+            future.get();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        // Measured after the run, so it counts what the stations built up serving shoppers; the stations are read below,
+        // so they are all still reachable
+        long heapPerStation = (retainedHeap() - heapBefore) / stations;
+
+        long[] latencies = new long[stations * transactions];
+        int completed = 0, cancelled = 0, failed = 0;
+        Throwable firstFailure = null;
+
+        for (Station station : store)
+        {
+            System.arraycopy(station.latencies, 0, latencies, completed + cancelled, station.count);
+            completed += station.completed;
+            cancelled += station.count - station.completed;
+            failed += station.failed;
+            if (firstFailure == null) firstFailure = station.failure;
+        }
+
+        long[] measured = Arrays.copyOf(latencies, completed + cancelled);
+        Arrays.sort(measured);
+
+        System.out.println("threads\t\t" + (virtualThreads ? "virtual" : "platform"));
+        System.out.println("stations\t" + stations);
+        System.out.println("transactions\t" + completed + " completed, " + cancelled + " cancelled, " + failed + " failed");
+        System.out.printf("throughput\t%.0f transactions/s%n", (completed + cancelled) / seconds);
+        System.out.printf("latency\t\tp50 %.2f ms, p99 %.2f ms%n", percentile(measured, 50) / 1e6, percentile(measured, 99) / 1e6);
+        // A station smaller than the collector's noise has no meaningful size to report
+        if (heapPerStation > 0) System.out.printf("heap\t\t%.1f KiB per station%n", heapPerStation / 1024.0);
+
+        if (firstFailure != null)
+        {
+            System.out.println("first failure:");
+            firstFailure.printStackTrace(System.out);
+        }
+    }
+
+    // One station, the software wired to it and the shoppers it serves
+    private static final class Station
+    {
+        private final SelfCheckoutStation hardware;
+        private final BarcodedItemCollection catalog;
+        private final PLUCodedItemCollection pluCatalog;
+        private final SplittableRandom random;
+        private final int thinkMillis;
+
+        private ScanItem scanItem;
+        private BaggingArea baggingArea;
+        private PayCoin payCoin;
+        private PayBanknote payBanknote;
+        private Checkout checkout;
+        private final ArrayList<BarcodedItem> bagged = new ArrayList<BarcodedItem>();
+
+        private final long[] latencies;
+        private int count = 0;
+        private int completed = 0;
+        private int failed = 0;
+        private Throwable failure = null;
+
+        private Station(BarcodedItemCollection catalog, PLUCodedItemCollection pluCatalog, SplittableRandom random, int transactions, int thinkMillis)
+        {
+            this.hardware = new SelfCheckoutStation(CAD, BANKNOTES, COINS, SCALE_LIMIT_IN_GRAMS, SCALE_SENSITIVITY_IN_GRAMS, random.split());
+            this.catalog = catalog;
+            this.pluCatalog = pluCatalog;
+            this.random = random;
+            this.thinkMillis = thinkMillis;
+            this.latencies = new long[transactions];
+
+            hardware.printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+            hardware.printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+            hardware.printer.attach(new Refill());
+
+            wire();
+        }
+
+        private void run()
+        {
+            for (int i = 0; i < latencies.length; i++)
+            {
+                try
+                {
+                    long start = System.nanoTime();
+                    boolean success = serveShopper();
+                    latencies[count++] = System.nanoTime() - start;
+
+                    if (success) completed++;
+                }
+                catch (Exception e)
+                {
+                    failed++;
+                    if (failure == null) failure = e;
+                }
+                finally
+                {
+                    tidyUp();
+                    unwire();
+                    wire();
+                }
+            }
+        }
+
+        private boolean serveShopper() throws DisabledException, OverloadException, InterruptedException
+        {
+            int itemCount = 1 + random.nextInt(MAX_ITEMS_PER_TRANSACTION);
+
+            for (int i = 0; i < itemCount; i++)
+            {
+                CatalogEntry entry = catalog.getEntry(barcodeOf(random.nextInt(PRODUCTS)));
+                BarcodedItem item = new BarcodedItem(entry.getBarcode(), entry.getExpectedWeight());
+
+                int scanned = scanItem.barcodesScanned.size();
+                while (scanItem.barcodesScanned.size() == scanned)
+                {
+                    think();
+                    hardware.scanner.scan(item);
+                }
+
+                think();
+                hardware.scale.add(item);
+                bagged.add(item);
+            }
+
+            checkout.calcTotalToBePaid();
+            Money total = checkout.getTotalToBePaid();
+
+            long remaining;
+            while ((remaining = total.subtract(checkout.calcPaidBC()).getMinorUnits()) > 0)
+            {
+                think();
+                pay(remaining);
+            }
+
+            return checkout.checkoutMain() == 0;
+        }
+
+        // Inserts the largest banknote or coin that is not more than what is left to pay
+        private void pay(long remaining) throws DisabledException, OverloadException
+        {
+            for (int i = BANKNOTES.length - 1; i >= 0; i--)
+            {
+                if (BANKNOTES[i] * 100L <= remaining)
+                {
+                    hardware.banknoteInput.accept(new Banknote(CAD, BANKNOTES[i]));
+
+                    // A rejected banknote is handed back
+                    if (!hardware.banknoteInput.hasSpace()) hardware.banknoteInput.removeDanglingBanknote();
+                    return;
+                }
+            }
+
+            for (int i = COINS.length - 1; i >= 0; i--)
+            {
+                if (Money.of(COINS[i], CAD).getMinorUnits() <= remaining || i == 0)
+                {
+                    hardware.coinSlot.accept(new Coin(CAD, COINS[i]));
+                    return;
+                }
+            }
+        }
+
+        private void think() throws InterruptedException
+        {
+            if (thinkMillis > 0) Thread.sleep(random.nextInt(2 * thinkMillis + 1));
+        }
+
+        // Gives the station fresh software for the next shopper
+        private void wire()
+        {
+            scanItem = new ScanItem();
+            baggingArea = new BaggingArea();
+            payCoin = new PayCoin();
+            payBanknote = new PayBanknote();
+            checkout = new Checkout(payBanknote, payCoin, scanItem, catalog, baggingArea, hardware.printer, 0, 0, new EnterPLUCode(), pluCatalog);
+
+            baggingArea.setScaleSensitivity(hardware.scale);
+            hardware.scanner.attach(scanItem);
+            hardware.scale.attach(baggingArea);
+            hardware.coinValidator.attach(payCoin);
+            hardware.banknoteValidator.attach(payBanknote);
+        }
+
+        private void unwire()
+        {
+            hardware.scanner.detach(scanItem);
+            hardware.scale.detach(baggingArea);
+            hardware.coinValidator.detach(payCoin);
+            hardware.banknoteValidator.detach(payBanknote);
+        }
+
+        // What an attendant does between shoppers: empty the cash units, the coin tray and the bagging area
+        private void tidyUp()
+        {
+            hardware.coinTray.collectCoins();
+            hardware.coinStorage.unload();
+            hardware.banknoteStorage.unload();
+            for (BigDecimal denomination : COINS)
+                hardware.coinDispensers.get(denomination).unload();
+
+            if (!hardware.banknoteInput.hasSpace()) hardware.banknoteInput.removeDanglingBanknote();
+
+            for (BarcodedItem item : bagged)
+                hardware.scale.remove(item);
+            bagged.clear();
+        }
+    }
+
+    // Keeps a station's printer stocked, as an attendant would
+    private static final class Refill implements ReceiptPrinterObserver
+    {
+        @Override
+        public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+        {
+        }
+
+        @Override
+        public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+        {
+        }
+
+        @Override
+        public void outOfPaper(ReceiptPrinter printer)
+        {
+            printer.addPaper(ReceiptPrinter.MAXIMUM_PAPER);
+        }
+
+        @Override
+        public void outOfInk(ReceiptPrinter printer)
+        {
+            printer.addInk(ReceiptPrinter.MAXIMUM_INK);
+        }
+
+        @Override
+        public void paperAdded(ReceiptPrinter printer)
+        {
+        }
+
+        @Override
+        public void inkAdded(ReceiptPrinter printer)
+        {
+        }
+    }
+
+    // Products priced in multiples of five cents, so that every total can be paid exactly in cash
+    private static BarcodedItemCollection createCatalog(SplittableRandom random)
+    {
+        ArrayList<CatalogEntry> entries = new ArrayList<CatalogEntry>(PRODUCTS);
+
+        for (int i = 0; i < PRODUCTS; i++)
+        {
+            BigDecimal price = BigDecimal.valueOf(5L * (1 + random.nextInt(400)), 2);
+            double weight = 50 + random.nextInt(1950);
+            entries.add(new CatalogEntry(new BarcodedProduct(barcodeOf(i), "Product " + i, price), weight));
+        }
+
+        BarcodedItemCollection catalog = new BarcodedItemCollection();
+        catalog.addEntries(entries);
+        return catalog;
+    }
+
+    private static Barcode barcodeOf(int product)
+    {
+        Numeral[] digits = new Numeral[6];
+
+        for (int i = digits.length - 1; i >= 0; i--, product /= 10)
+            digits[i] = Numeral.valueOf((byte) (product % 10));
+
+        return new Barcode(digits);
+    }
+
+    private static long percentile(long[] sorted, int percent)
+    {
+        if (sorted.length == 0) return 0;
+
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1)];
+    }
+
+    // Collects until the heap stops shrinking, so that only what is reachable is counted
+    private static long retainedHeap()
+    {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long retained = Long.MAX_VALUE;
+
+        for (int i = 0; i < 10; i++)
+        {
+            memory.gc();
+            long used = memory.getHeapMemoryUsage().getUsed();
+
+            if (used >= retained) break;
+
+            retained = used;
+        }
+
+        return retained;
+    }
+
+    // Virtual threads where the runtime has them (Java 21 and later), otherwise one platform thread per station
+    private static ExecutorService newExecutor()
+    {
+        try
+        {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            virtualThreads = true;
+            return executor;
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "station");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
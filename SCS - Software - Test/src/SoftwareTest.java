@@ -2,14 +2,42 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.lsmr.selfcheckout.*;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BarcodeScanner;
+import org.lsmr.selfcheckout.devices.CoinValidator;
 import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.ElectronicScale;
 import org.lsmr.selfcheckout.devices.OverloadException;
 import org.lsmr.selfcheckout.devices.ReceiptPrinter;
 import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.SimulationException;
+import org.lsmr.selfcheckout.devices.metrics.DeviceMetrics;
+import org.lsmr.selfcheckout.devices.metrics.EventMetrics;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.CoinValidatorObserver;
+import org.lsmr.selfcheckout.devices.observers.ElectronicScaleObserver;
+import org.lsmr.selfcheckout.devices.observers.ReceiptPrinterObserver;
 import org.lsmr.selfcheckout.products.BarcodedProduct;
+import org.lsmr.selfcheckout.products.PLUCodedProduct;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 public class SoftwareTest
 {
@@ -21,7 +49,9 @@ public class SoftwareTest
 
     // Declares all the software implementations
     BarcodedItemCollection itemLookup;
+    PLUCodedItemCollection pluLookup;
     ScanItem scanItemUseCase;
+    EnterPLUCode pluEntryUseCase;
     BaggingArea baggingAreaUseCase;
     PayCoin coinUseCase;
     PayBanknote banknoteUseCase;
@@ -40,17 +70,24 @@ public class SoftwareTest
     public void setup()
     {
         // Initializes the self checkout station
-        selfCheckoutStation = new SelfCheckoutStation(Currency.getInstance("CAD"), banknoteDenominations, coinDenominations, scaleWeightLimit, scaleSensitivity);
+        selfCheckoutStation = new SelfCheckoutStation(Currency.getInstance("CAD"), banknoteDenominations, coinDenominations, scaleWeightLimit, scaleSensitivity, new SplittableRandom(0));
+
+        // Turns off the hardware's random failures so that each test gives the same result every run
+        selfCheckoutStation.scanner.setProbabilityOfFailedScan(0);
+        selfCheckoutStation.coinValidator.setProbabilityOfFalseRejection(0);
+        selfCheckoutStation.banknoteValidator.setProbabilityOfFalseRejection(0);
 
         // Initialize the receipt printer hardware
         receiptPrinter = new ReceiptPrinter();
 
         // Initialize all the software implementations
         itemLookup = new BarcodedItemCollection();
+        pluLookup = new PLUCodedItemCollection();
         scanItemUseCase = new ScanItem();
+        pluEntryUseCase = new EnterPLUCode();
         baggingAreaUseCase = new BaggingArea();
         coinUseCase = new PayCoin();
-        banknoteUseCase = new PayBanknote(0);
+        banknoteUseCase = new PayBanknote(Money.zero(Money.DEFAULT_CURRENCY));
         checkoutUseCase = new Checkout(banknoteUseCase, coinUseCase, scanItemUseCase, itemLookup, baggingAreaUseCase, receiptPrinter, 1000, 1000);
     }
 
@@ -106,9 +143,181 @@ public class SoftwareTest
         itemLookup.addProduct(testBarcodedProduct2);
 
         Assert.assertEquals(itemLookup.getExpectedWeight(testBarcodedItem1.getBarcode()), testBarcodedItem1.getWeight(), 0);
-        Assert.assertEquals(itemLookup.getPrice(testBarcodedItem1.getBarcode()), testBarcodedProduct1.getPrice());
+        Assert.assertEquals(itemLookup.getPrice(testBarcodedItem1.getBarcode()).toBigDecimal().compareTo(testBarcodedProduct1.getPrice()), 0);
         Assert.assertEquals(itemLookup.getExpectedWeight(testBarcodedItem2.getBarcode()), testBarcodedItem2.getWeight(), 0);
-        Assert.assertEquals(itemLookup.getPrice(testBarcodedItem2.getBarcode()), testBarcodedProduct2.getPrice());
+        Assert.assertEquals(itemLookup.getPrice(testBarcodedItem2.getBarcode()).toBigDecimal().compareTo(testBarcodedProduct2.getPrice()), 0);
+    }
+
+    // Tests to see if an item can be looked up with a barcode that is equal to, but not the same object as, the one it was added with
+    @Test
+    public void testLookingUpItemWithEqualBarcode()
+    {
+        BarcodedItem testBarcodedItem = new BarcodedItem(new Barcode(new Numeral[] {Numeral.one, Numeral.two}), scaleSensitivity);
+        BarcodedProduct testBarcodedProduct = new BarcodedProduct(new Barcode(new Numeral[] {Numeral.one, Numeral.two}), "N/A", BigDecimal.valueOf(10.00));
+
+        itemLookup.addItem(testBarcodedItem);
+        itemLookup.addProduct(testBarcodedProduct);
+
+        Barcode scannedBarcode = new Barcode(new Numeral[] {Numeral.one, Numeral.two});
+        Assert.assertEquals(itemLookup.getExpectedWeight(scannedBarcode), testBarcodedItem.getWeight(), 0);
+        Assert.assertEquals(itemLookup.getPrice(scannedBarcode).toBigDecimal().compareTo(testBarcodedProduct.getPrice()), 0);
+        Assert.assertEquals(itemLookup.size(), 1);
+    }
+
+    // Tests to see if many entries can be loaded into the collections class at once
+    @Test
+    public void testBulkLoadingCollection()
+    {
+        ArrayList<CatalogEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            Barcode barcode = new Barcode(new Numeral[] {Numeral.valueOf((byte) (i / 100)), Numeral.valueOf((byte) (i / 10 % 10)), Numeral.valueOf((byte) (i % 10))});
+            entries.add(new CatalogEntry(new BarcodedProduct(barcode, "N/A", BigDecimal.valueOf(i + 1)), i + 1));
+        }
+
+        itemLookup.addEntries(entries);
+
+        Barcode lastBarcode = new Barcode(new Numeral[] {Numeral.nine, Numeral.nine, Numeral.nine});
+        Assert.assertEquals(itemLookup.size(), 1000);
+        Assert.assertEquals(itemLookup.getPrice(lastBarcode), Money.ofMajor(1000, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(itemLookup.getExpectedWeight(lastBarcode), 1000, 0);
+        Assert.assertNull(itemLookup.getPrice(new Barcode(new Numeral[] {Numeral.one})));
+    }
+
+    // Tests to see if items, products and tax classes loaded one at a time in a batch are published together as one version
+    @Test
+    public void testBatchLoadingCollectionPublishesOnce()
+    {
+        TaxClass hst = new TaxClass("HST", new BigDecimal("0.13"));
+        long versionBefore = itemLookup.snapshot().getVersion();
+
+        CatalogSnapshot published = itemLookup.update(batch ->
+        {
+            for (int i = 0; i < 100; i++)
+            {
+                Barcode barcode = barcodeOf(i);
+                batch.addItem(new BarcodedItem(barcode, i + 1));
+                batch.addProduct(new BarcodedProduct(barcode, "N/A", BigDecimal.valueOf(i + 1)));
+                if (i % 2 == 0) batch.setTaxClass(barcode, hst);
+            }
+        });
+
+        Assert.assertEquals(published.getVersion(), versionBefore + 1);
+        Assert.assertEquals(itemLookup.snapshot(), published);
+        Assert.assertEquals(itemLookup.size(), 100);
+        Assert.assertEquals(itemLookup.getPrice(barcodeOf(42)), Money.ofMajor(43, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(itemLookup.getExpectedWeight(barcodeOf(42)), 43, 0);
+        Assert.assertEquals(itemLookup.getTaxClass(barcodeOf(42)), hst);
+        Assert.assertEquals(itemLookup.getTaxClass(barcodeOf(43)), TaxClass.EXEMPT);
+    }
+
+    // Tests to see if barcodes that only differ in leading zeros are kept apart by the packed lookup key
+    @Test
+    public void testBarcodeKeyKeepsLeadingZeros()
+    {
+        Barcode barcode1 = new Barcode(new Numeral[] {Numeral.zero, Numeral.one});
+        Barcode barcode2 = new Barcode(new Numeral[] {Numeral.one});
+
+        Assert.assertNotEquals(BarcodeKey.pack(barcode1), BarcodeKey.pack(barcode2));
+        Assert.assertEquals(BarcodeKey.unpack(BarcodeKey.pack(barcode1)), barcode1);
+        Assert.assertEquals(BarcodeKey.unpack(BarcodeKey.pack(barcode2)), barcode2);
+    }
+
+    // Tests to see if an item with a barcode too long to pack into a lookup key can still be looked up
+    @Test
+    public void testLookingUpItemWithLongBarcode()
+    {
+        Numeral[] digits = new Numeral[48];
+        Arrays.fill(digits, Numeral.seven);
+        BarcodedItem testBarcodedItem = new BarcodedItem(new Barcode(digits), scaleSensitivity);
+        BarcodedProduct testBarcodedProduct = new BarcodedProduct(new Barcode(digits), "N/A", BigDecimal.valueOf(10.00));
+
+        itemLookup.addItem(testBarcodedItem);
+        itemLookup.addProduct(testBarcodedProduct);
+
+        Assert.assertEquals(BarcodeKey.pack(testBarcodedItem.getBarcode()), BarcodeKey.NOT_PACKABLE);
+        Assert.assertEquals(itemLookup.getExpectedWeight(new Barcode(digits)), testBarcodedItem.getWeight(), 0);
+        Assert.assertEquals(itemLookup.getPrice(new Barcode(digits)).toBigDecimal().compareTo(testBarcodedProduct.getPrice()), 0);
+    }
+
+    // Tests to see if a product is successfully added to the PLU collections class, keeping four and five digit codes apart
+    @Test
+    public void testAddingProductToPLUCollectionSuccessfully()
+    {
+        PLUCodedProduct testPLUCodedProduct1 = new PLUCodedProduct(new PriceLookupCode("4011"), "Bananas", BigDecimal.valueOf(1.50));
+        PLUCodedProduct testPLUCodedProduct2 = new PLUCodedProduct(new PriceLookupCode("04011"), "N/A", BigDecimal.valueOf(3.00));
+
+        pluLookup.addProduct(testPLUCodedProduct1);
+        pluLookup.addProduct(testPLUCodedProduct2);
+
+        Assert.assertEquals(pluLookup.getProduct(new PriceLookupCode("4011")), testPLUCodedProduct1);
+        Assert.assertEquals(pluLookup.getProduct(new PriceLookupCode("04011")), testPLUCodedProduct2);
+        Assert.assertNull(pluLookup.getProduct(new PriceLookupCode("4012")));
+        Assert.assertEquals(pluLookup.getPrice(new PriceLookupCode("4011"), 333), Money.ofMinor(50, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(pluLookup.size(), 2);
+
+        // $18.75/kg for 32.8 g is exactly 61.5 cents, which rounds up even though the double product falls just short
+        pluLookup.addProduct(new PLUCodedProduct(new PriceLookupCode("4012"), "Saffron", new BigDecimal("18.75")));
+        Assert.assertEquals(pluLookup.getPrice(new PriceLookupCode("4012"), 32.8), Money.ofMinor(62, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if an item entered by PLU code is priced by the weight measured on the scale
+    @Test
+    public void testWeighedItemAddedToTotal()
+    {
+        selfCheckoutStation.scale.attach(pluEntryUseCase);
+        pluLookup.addProduct(new PLUCodedProduct(new PriceLookupCode("4011"), "Bananas", BigDecimal.valueOf(4.00)));
+        checkoutUseCase = new Checkout(banknoteUseCase, coinUseCase, scanItemUseCase, itemLookup, baggingAreaUseCase, new ReceiptPrinter(), 1000, 1000, pluEntryUseCase, pluLookup);
+
+        pluEntryUseCase.enterPLUCode(new PriceLookupCode("4011"));
+        selfCheckoutStation.scale.add(new PLUCodedItem(new PriceLookupCode("4011"), 500));
+        checkoutUseCase.calcTotalToBePaid();
+
+        Assert.assertFalse(pluEntryUseCase.isAwaitingItem());
+        Assert.assertEquals(pluEntryUseCase.itemsWeighed.get(0).getWeight(), 500, 0);
+        Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.ofMinor(200, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if the basket keeps the total and expected weight up to date through scans, voids and quantity changes
+    @Test
+    public void testBasketTotalsFollowVoidsAndQuantityChanges()
+    {
+        Barcode barcode1 = new Barcode(new Numeral[] {Numeral.one});
+        Barcode barcode2 = new Barcode(new Numeral[] {Numeral.two});
+        itemLookup.addEntry(new CatalogEntry(new BarcodedProduct(barcode1, "N/A", BigDecimal.valueOf(10.00)), 100));
+        itemLookup.addEntry(new CatalogEntry(new BarcodedProduct(barcode2, "N/A", BigDecimal.valueOf(2.50)), 40));
+        Basket basket = checkoutUseCase.getBasket();
+
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, barcode1);
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, barcode2);
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, barcode2);
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(15, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getExpectedWeight(), 180, 0);
+
+        Assert.assertTrue(basket.voidItem(barcode1));
+        Assert.assertTrue(basket.setQuantity(barcode2, 4));
+        Assert.assertFalse(basket.voidItem(barcode1));
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(10, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getExpectedWeight(), 160, 0);
+        Assert.assertEquals(basket.getItemCount(), 4);
+
+        Assert.assertTrue(basket.setQuantity(barcode2, 0));
+        Assert.assertEquals(basket.getSubtotal(), Money.zero(Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getExpectedWeight(), 0, 0);
+    }
+
+    // Tests to see if calculating the total more than once does not count the items again
+    @Test
+    public void testCalculatingTotalTwice()
+    {
+        Barcode barcode = new Barcode(new Numeral[] {Numeral.one});
+        itemLookup.addEntry(new CatalogEntry(new BarcodedProduct(barcode, "N/A", BigDecimal.valueOf(10.00)), 100));
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, barcode);
+
+        checkoutUseCase.calcTotalToBePaid();
+        checkoutUseCase.calcTotalToBePaid();
+
+        Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.ofMajor(10, Money.DEFAULT_CURRENCY));
     }
 
     // Tests to see if a coin is successfully added and stored
@@ -118,7 +327,7 @@ public class SoftwareTest
         selfCheckoutStation.coinValidator.attach(coinUseCase);
         selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(2.00)));
 
-        Assert.assertEquals(coinUseCase.coinTotal, BigDecimal.valueOf(2.00));
+        Assert.assertEquals(coinUseCase.getCoinTotal(), Money.ofMajor(2, Money.DEFAULT_CURRENCY));
     }
 
     // Tests to see if a coin is unsuccessfully added (provided an invalid denomination)
@@ -128,7 +337,65 @@ public class SoftwareTest
         selfCheckoutStation.coinValidator.attach(coinUseCase);
         selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(10.00)));
 
-        Assert.assertEquals(coinUseCase.coinTotal, BigDecimal.valueOf(0));
+        Assert.assertEquals(coinUseCase.getCoinTotal(), Money.zero(Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if stations created from generators with the same seed fail in the same way, at the configured rate
+    @Test
+    public void testSeededStationsFailAlike()
+    {
+        ArrayList<Barcode> firstScanned = scanWithFailures(new SplittableRandom(7), 0.5);
+        ArrayList<Barcode> secondScanned = scanWithFailures(new SplittableRandom(7), 0.5);
+
+        Assert.assertEquals(firstScanned, secondScanned);
+        Assert.assertTrue(firstScanned.size() > 0 && firstScanned.size() < 100);
+        Assert.assertEquals(scanWithFailures(new SplittableRandom(7), 1).size(), 0);
+    }
+
+    // Scans 100 different items on a new station and returns the barcodes that were read
+    private ArrayList<Barcode> scanWithFailures(SplittableRandom random, double probabilityOfFailedScan)
+    {
+        SelfCheckoutStation station = new SelfCheckoutStation(Currency.getInstance("CAD"), banknoteDenominations, coinDenominations, scaleWeightLimit, scaleSensitivity, random);
+        station.scanner.setProbabilityOfFailedScan(probabilityOfFailedScan);
+        ScanItem scanned = new ScanItem();
+        station.scanner.attach(scanned);
+
+        for (int i = 0; i < 100; i++)
+            station.scanner.scan(new BarcodedItem(new Barcode(new Numeral[] {Numeral.valueOf((byte) (i / 10)), Numeral.valueOf((byte) (i % 10))}), 100));
+
+        return scanned.barcodesScanned;
+    }
+
+    // Tests to see if the device metrics count successful and failed scans and report them in the Prometheus format
+    @Test
+    public void testDeviceMetricsCountScans()
+    {
+        EventMetrics scannedMetrics = DeviceMetrics.event(BarcodeScanner.class, "barcodeScanned");
+        EventMetrics failedMetrics = DeviceMetrics.event(BarcodeScanner.class, "scanFailed");
+        long scannedBefore = scannedMetrics.getCount();
+        long failedBefore = failedMetrics.getCount();
+        BarcodedItem item = new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), 100);
+
+        selfCheckoutStation.scanner.scan(item);
+        selfCheckoutStation.scanner.scan(item);
+        selfCheckoutStation.scanner.setProbabilityOfFailedScan(1);
+        selfCheckoutStation.scanner.scan(item);
+
+        Assert.assertEquals(scannedMetrics.getCount() - scannedBefore, 2);
+        Assert.assertEquals(failedMetrics.getCount() - failedBefore, 1);
+        Assert.assertTrue(DeviceMetrics.toPrometheus().contains("scs_device_events_total{device=\"BarcodeScanner\",event=\"scanFailed\"} " + failedMetrics.getCount() + "\n"));
+    }
+
+    // Tests to see if coins are accepted whatever the scale of their value, but only for a denomination's exact value
+    @Test
+    public void testCoinAcceptedRegardlessOfValueScale() throws DisabledException
+    {
+        selfCheckoutStation.coinValidator.attach(coinUseCase);
+        selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), new BigDecimal("0.10")));
+        selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), new BigDecimal("2.000")));
+        selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), new BigDecimal("0.1000000000000000001")));
+
+        Assert.assertEquals(coinUseCase.getCoinTotal(), Money.of(new BigDecimal("2.10"), Money.DEFAULT_CURRENCY));
     }
 
     // Tests to see if a banknote is successfully added and stored
@@ -138,7 +405,7 @@ public class SoftwareTest
         selfCheckoutStation.banknoteValidator.attach(banknoteUseCase);
         selfCheckoutStation.banknoteInput.accept(new Banknote(Currency.getInstance("CAD"), 50));
 
-        Assert.assertEquals(banknoteUseCase.getTotalBanknotes(), 50);
+        Assert.assertEquals(banknoteUseCase.getTotalBanknotes(), Money.ofMajor(50, Money.DEFAULT_CURRENCY));
     }
 
     // Tests to see if a banknote is unsuccessfully added (provided an invalid denomination)
@@ -148,7 +415,1064 @@ public class SoftwareTest
         selfCheckoutStation.banknoteValidator.attach(banknoteUseCase);
         selfCheckoutStation.banknoteInput.accept(new Banknote(Currency.getInstance("CAD"), 100));
 
-        Assert.assertEquals(banknoteUseCase.getTotalBanknotes(), 0);
+        Assert.assertEquals(banknoteUseCase.getTotalBanknotes(), Money.zero(Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if coin values are converted to cents exactly, whatever their scale
+    @Test
+    public void testCoinValuesConvertedExactly()
+    {
+        Assert.assertEquals(Money.of(new BigDecimal("0.1"), Money.DEFAULT_CURRENCY), Money.of(new BigDecimal("0.10"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(Money.of(BigDecimal.valueOf(0.05), Money.DEFAULT_CURRENCY).getMinorUnits(), 5);
+
+        try
+        {
+            Money.of(new BigDecimal("0.005"), Money.DEFAULT_CURRENCY);
+            Assert.fail("A fraction of a cent should not be rounded");
+        }
+        catch (ArithmeticException e)
+        {
+        }
+    }
+
+    // Tests to see if the banknote total stays the same when it is asked for more than once
+    @Test
+    public void testBanknoteTotalReadTwice() throws DisabledException, OverloadException
+    {
+        selfCheckoutStation.banknoteValidator.attach(banknoteUseCase);
+        selfCheckoutStation.banknoteInput.accept(new Banknote(Currency.getInstance("CAD"), 20));
+
+        banknoteUseCase.getTotalBanknotes();
+
+        Assert.assertEquals(banknoteUseCase.getTotalBanknotes(), Money.ofMajor(20, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if observers can be attached and detached while the device is notifying them
+    @Test
+    public void testAttachingObserverDuringNotification() throws OverloadException
+    {
+        EnterPLUCode lateObserver = new EnterPLUCode();
+        lateObserver.enterPLUCode(new PriceLookupCode("4011"));
+
+        selfCheckoutStation.scale.attach(new EnterPLUCode()
+        {
+            @Override
+            public void weightChanged(ElectronicScale scale, double weightInGrams)
+            {
+                scale.detach(this);
+                scale.attach(lateObserver);
+            }
+        });
+        selfCheckoutStation.scale.attach(baggingAreaUseCase);
+
+        selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2));
+        Assert.assertEquals(lateObserver.itemsWeighed.size(), 0);
+        Assert.assertEquals(baggingAreaUseCase.getWeightInGrams(), scaleSensitivity * 2, 0);
+
+        selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.two}), scaleSensitivity * 2));
+        Assert.assertEquals(lateObserver.itemsWeighed.size(), 1);
+    }
+
+    // Tests to see if the scale's weight does not drift as many items are put on it and taken off again
+    @Test
+    public void testScaleWeightDoesNotDrift() throws OverloadException
+    {
+        ElectronicScale scale = new ElectronicScale(1_000_000, 1);
+        scale.endConfigurationPhase();
+
+        ArrayList<Item> items = new ArrayList<Item>();
+        for (int i = 0; i < 20_000; i++)
+        {
+            Item item = new PLUCodedItem(new PriceLookupCode("4011"), 0.1);
+            items.add(item);
+            scale.add(item);
+        }
+
+        for (int i = 0; i < items.size(); i += 2)
+            scale.remove(items.get(i));
+
+        Assert.assertEquals(scale.getCurrentWeight(), 1000.0, 1e-9);
+
+        for (int i = 1; i < items.size(); i += 2)
+            scale.remove(items.get(i));
+
+        Assert.assertEquals(scale.getCurrentWeight(), 0.0, 0.0);
+
+        try
+        {
+            scale.remove(items.get(0));
+            Assert.fail("An item that is not on the scale should not be removable");
+        }
+        catch (SimulationException e)
+        {
+        }
+    }
+
+    // Tests to see if a wrong item in the bagging area is noticed as soon as it is put there, and cleared once it is put right
+    @Test
+    public void testBaggingAreaMismatchFlaggedImmediately()
+    {
+        BarcodedItem scannedItem = new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), 150);
+        BarcodedItem otherItem = new BarcodedItem(new Barcode(new Numeral[] {Numeral.two}), 300);
+        itemLookup.addItem(scannedItem);
+        itemLookup.addProduct(new BarcodedProduct(scannedItem.getBarcode(), "N/A", BigDecimal.valueOf(10.00)));
+
+        BaggingAreaVerifier verifier = new BaggingAreaVerifier(itemLookup, selfCheckoutStation.scale);
+        ArrayList<BaggingAreaVerifier.State> states = new ArrayList<BaggingAreaVerifier.State>();
+        verifier.setListener((source, state) -> states.add(state));
+        selfCheckoutStation.scale.attach(verifier);
+        selfCheckoutStation.scale.endConfigurationPhase();
+
+        verifier.barcodeScanned(selfCheckoutStation.scanner, scannedItem.getBarcode());
+        selfCheckoutStation.scale.add(otherItem);
+
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MISMATCH);
+        Assert.assertEquals(verifier.getMismatchCount(), 1);
+
+        selfCheckoutStation.scale.remove(otherItem);
+        selfCheckoutStation.scale.add(scannedItem);
+
+        Assert.assertEquals(states, Arrays.asList(BaggingAreaVerifier.State.AWAITING_ITEM, BaggingAreaVerifier.State.MISMATCH, BaggingAreaVerifier.State.AWAITING_ITEM, BaggingAreaVerifier.State.MATCHED));
+        Assert.assertEquals(verifier.getAwaitedItemCount(), 0);
+    }
+
+    // Tests to see if the bagging area's weight is only judged once it has stopped changing for the settle time
+    @Test
+    public void testBaggingAreaWeightJudgedOnceSettled()
+    {
+        long[] now = {0};
+        BaggingAreaVerifier verifier = new BaggingAreaVerifier(itemLookup, scaleSensitivity, 100, null, () -> now[0]);
+        selfCheckoutStation.scale.attach(verifier);
+        selfCheckoutStation.scale.endConfigurationPhase();
+
+        verifier.itemExpected(150);
+        selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), 50));
+        now[0] += 50;
+        selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.two}), 100));
+        now[0] += 60;
+        verifier.update();
+
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.SETTLING);
+
+        now[0] += 40;
+        verifier.update();
+
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+        Assert.assertEquals(verifier.getMismatchCount(), 0);
+    }
+
+    // Tests to see if the basket keeps a checkout's verifier in step through scans, voids, items weighed by PLU code and items too light for the scale to notice, using the expected weights of the catalog version the basket is priced against
+    @Test
+    public void testCheckoutVerifierFollowsVoidsAndWeighedItems()
+    {
+        Barcode soup = barcodeOf(1);
+        Barcode gum = barcodeOf(2);
+        itemLookup.addEntries(Arrays.asList(
+            new CatalogEntry(new BarcodedProduct(soup, "Soup", BigDecimal.valueOf(2.00)), 300),
+            new CatalogEntry(new BarcodedProduct(gum, "Gum", BigDecimal.valueOf(1.00)), scaleSensitivity / 2)));
+        pluLookup.addProduct(new PLUCodedProduct(new PriceLookupCode("4011"), "Bananas", BigDecimal.valueOf(2.00)));
+        checkoutUseCase = new Checkout(banknoteUseCase, coinUseCase, scanItemUseCase, itemLookup, baggingAreaUseCase, new ReceiptPrinter(), 1000, 1000, pluEntryUseCase, pluLookup);
+
+        BaggingAreaVerifier verifier = new BaggingAreaVerifier(itemLookup, selfCheckoutStation.scale);
+        selfCheckoutStation.scale.attach(verifier);
+        selfCheckoutStation.scale.attach(pluEntryUseCase);
+        checkoutUseCase.setBaggingAreaVerifier(verifier);
+        Basket basket = checkoutUseCase.getBasket();
+
+        BarcodedItem soupItem = new BarcodedItem(soup, 300);
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, soup);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.AWAITING_ITEM);
+        selfCheckoutStation.scale.add(soupItem);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+
+        // A new catalog version does not change what the basket's items are expected to weigh
+        itemLookup.addEntry(new CatalogEntry(new BarcodedProduct(soup, "Soup", BigDecimal.valueOf(2.00)), 500));
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, soup);
+        Assert.assertEquals(verifier.getExpectedWeight(), 600, 0);
+
+        // Voiding the item not yet bagged stops expecting it; voiding a bagged one expects it to be taken out
+        basket.voidItem(soup);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+        basket.voidItem(soup);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MISMATCH);
+        selfCheckoutStation.scale.remove(soupItem);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+
+        PLUCodedItem bananas = new PLUCodedItem(new PriceLookupCode("4011"), 450);
+        pluEntryUseCase.enterPLUCode(new PriceLookupCode("4011"));
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.AWAITING_ITEM);
+        selfCheckoutStation.scale.add(bananas);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+        Assert.assertEquals(basket.getItemCount(), 1);
+
+        basket.voidWeighed(pluEntryUseCase.itemsWeighed.get(0));
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MISMATCH);
+        selfCheckoutStation.scale.remove(bananas);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+
+        // The scale never announces an item within its sensitivity, so it is taken as bagged when scanned
+        scanItemUseCase.barcodeScanned(selfCheckoutStation.scanner, gum);
+        Assert.assertEquals(verifier.getState(), BaggingAreaVerifier.State.MATCHED);
+    }
+
+    // Tests to see if events sent through the event bus reach their observers, in the order the device announced them
+    @Test
+    public void testEventBusDeliversInOrder() throws InterruptedException
+    {
+        ArrayList<Double> weights = new ArrayList<>();
+
+        try (DeviceEventBus bus = new DeviceEventBus(16, DeviceEventBus.Backpressure.BLOCK))
+        {
+            bus.attach(selfCheckoutStation.scale, ElectronicScaleObserver.class, new EnterPLUCode()
+            {
+                @Override
+                public void weightChanged(ElectronicScale scale, double weightInGrams)
+                {
+                    weights.add(weightInGrams);
+                }
+            });
+
+            for (int i = 1; i <= 50; i++)
+                selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2));
+
+            Assert.assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+            Assert.assertEquals(bus.getDeliveredCount(), 50);
+            Assert.assertEquals(bus.getDroppedCount(), 0);
+        }
+
+        Assert.assertEquals(weights.size(), 50);
+        for (int i = 0; i < 50; i++)
+            Assert.assertEquals(weights.get(i), scaleSensitivity * 2 * (i + 1), 0);
+    }
+
+    // Tests to see if the event bus drops and counts events when its queue is full
+    @Test
+    public void testEventBusDropsWhenFull() throws InterruptedException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (DeviceEventBus bus = new DeviceEventBus(1, DeviceEventBus.Backpressure.DROP))
+        {
+            bus.attach(selfCheckoutStation.scale, ElectronicScaleObserver.class, new EnterPLUCode()
+            {
+                @Override
+                public void weightChanged(ElectronicScale scale, double weightInGrams)
+                {
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                }
+            });
+
+            for (int i = 0; i < 3; i++)
+                selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2));
+            release.countDown();
+
+            Assert.assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+            Assert.assertTrue(bus.getDroppedCount() >= 1);
+            Assert.assertEquals(bus.getDeliveredCount() + bus.getDroppedCount(), 3);
+        }
+    }
+
+    // Tests to see if the event bus counts an event whose observer throws as failed rather than delivered, and drops events its executor refuses instead of throwing at the device
+    @Test
+    public void testEventBusCountsFailuresAndRefusedEvents() throws InterruptedException
+    {
+        try (DeviceEventBus bus = new DeviceEventBus(16, DeviceEventBus.Backpressure.BLOCK))
+        {
+            bus.attach(selfCheckoutStation.scale, ElectronicScaleObserver.class, new EnterPLUCode()
+            {
+                @Override
+                public void weightChanged(ElectronicScale scale, double weightInGrams)
+                {
+                    if (weightInGrams > scaleSensitivity * 3) throw new IllegalStateException("Observer failed");
+                }
+            });
+
+            selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2));
+            selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.two}), scaleSensitivity * 2));
+
+            Assert.assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+            Assert.assertEquals(bus.getDeliveredCount(), 1);
+            Assert.assertEquals(bus.getFailedCount(), 1);
+        }
+
+        ExecutorService shutDown = Executors.newSingleThreadExecutor();
+        shutDown.shutdown();
+
+        try (DeviceEventBus bus = new DeviceEventBus(16, DeviceEventBus.Backpressure.BLOCK, shutDown))
+        {
+            bus.attach(selfCheckoutStation.scale, ElectronicScaleObserver.class, new EnterPLUCode());
+            selfCheckoutStation.scale.add(new BarcodedItem(new Barcode(new Numeral[] {Numeral.three}), scaleSensitivity * 2));
+
+            Assert.assertTrue(bus.awaitIdle(10, TimeUnit.SECONDS));
+            Assert.assertEquals(bus.getDeliveredCount(), 0);
+            Assert.assertEquals(bus.getDroppedCount(), 1);
+        }
+    }
+
+    // Tests to see if change is made with the fewest coins the dispensers hold, where taking the largest coin first fails
+    @Test
+    public void testChangeMadeFromDispenserCounts() throws OverloadException
+    {
+        selfCheckoutStation.coinDispensers.get(BigDecimal.valueOf(0.25)).load(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(0.25)));
+        for (int i = 0; i < 5; i++)
+            selfCheckoutStation.coinDispensers.get(BigDecimal.valueOf(0.10)).load(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(0.10)));
+
+        ChangeMaker changeMaker = new ChangeMaker(selfCheckoutStation);
+        ChangeMaker.Payout payout = changeMaker.dispense(Money.ofMinor(30, Money.DEFAULT_CURRENCY));
+
+        Assert.assertTrue(payout.isExact());
+        Assert.assertEquals(payout.getPieceCount(), 3);
+        Assert.assertEquals(payout.getCoinCount(BigDecimal.valueOf(0.10)), 3);
+        Assert.assertEquals(selfCheckoutStation.coinDispensers.get(BigDecimal.valueOf(0.10)).size(), 2);
+        Assert.assertEquals(changeMaker.getPendingAmount(), Money.zero(Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if as much change as possible is paid, and the rest reported, when the exact amount cannot be made
+    @Test
+    public void testChangeFallsShortWhenExactAmountImpossible() throws OverloadException
+    {
+        selfCheckoutStation.coinDispensers.get(BigDecimal.valueOf(0.25)).load(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(0.25)));
+
+        ChangeMaker.Payout payout = new ChangeMaker(selfCheckoutStation).plan(Money.ofMinor(30, Money.DEFAULT_CURRENCY));
+
+        Assert.assertFalse(payout.isExact());
+        Assert.assertEquals(payout.getAmount(), Money.ofMinor(25, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(payout.getShortfall(), Money.ofMinor(5, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if banknotes of change are emitted one at a time as the customer takes them
+    @Test
+    public void testChangeBanknotesEmittedAsTaken() throws OverloadException
+    {
+        for (int i = 0; i < 3; i++)
+            selfCheckoutStation.banknoteDispensers.get(5).load(new Banknote(Currency.getInstance("CAD"), 5));
+
+        ChangeMaker changeMaker = new ChangeMaker(selfCheckoutStation);
+        changeMaker.dispense(Money.ofMajor(10, Money.DEFAULT_CURRENCY));
+
+        Assert.assertEquals(changeMaker.getPendingAmount(), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(selfCheckoutStation.banknoteOutput.removeDanglingBanknote().getValue(), 5);
+        Assert.assertEquals(changeMaker.getPendingAmount(), Money.zero(Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(selfCheckoutStation.banknoteOutput.removeDanglingBanknote().getValue(), 5);
+        Assert.assertEquals(selfCheckoutStation.banknoteDispensers.get(5).size(), 1);
+    }
+
+    // Tests to see if printing text in one call gives exactly the same receipt, failures and events as printing it a character at a time
+    @Test
+    public void testBulkPrintingMatchesPrintingPerCharacter()
+    {
+        Random random = new Random(300);
+        String alphabet = "ab \n\t";
+
+        for (int trial = 0; trial < 500; trial++)
+        {
+            int ink = random.nextInt(120);
+            int paper = random.nextInt(4);
+            ArrayList<String> perCharacterEvents = new ArrayList<>();
+            ArrayList<String> bulkEvents = new ArrayList<>();
+            ReceiptPrinter perCharacterPrinter = recordingPrinter(ink, paper, perCharacterEvents);
+            ReceiptPrinter bulkPrinter = recordingPrinter(ink, paper, bulkEvents);
+
+            // Printing carries on after a failure and a refill, so whatever state a failure leaves behind is compared as well
+            for (int chunk = 0; chunk < 3; chunk++)
+            {
+                StringBuilder text = new StringBuilder();
+                for (int i = random.nextInt(80); i > 0; i--)
+                    text.append(random.nextInt(10) == 0 ? alphabet.charAt(2 + random.nextInt(3)) : alphabet.charAt(random.nextInt(2)));
+
+                String perCharacterFailure = null;
+                try
+                {
+                    for (int i = 0; i < text.length(); i++)
+                        perCharacterPrinter.print(text.charAt(i));
+                }
+                catch (SimulationException e)
+                {
+                    perCharacterFailure = e.getMessage();
+                }
+
+                String bulkFailure = null;
+                try
+                {
+                    bulkPrinter.print(text);
+                }
+                catch (SimulationException e)
+                {
+                    bulkFailure = e.getMessage();
+                }
+
+                Assert.assertEquals(bulkFailure, perCharacterFailure);
+
+                int refill = random.nextInt(40);
+                perCharacterPrinter.addInk(refill);
+                bulkPrinter.addInk(refill);
+            }
+
+            perCharacterPrinter.cutPaper();
+            bulkPrinter.cutPaper();
+
+            Assert.assertEquals(bulkEvents, perCharacterEvents);
+            Assert.assertEquals(bulkPrinter.removeReceipt(), perCharacterPrinter.removeReceipt());
+        }
+    }
+
+    // Creates a printer with the indicated supplies that records the out of ink and out of paper events it announces
+    private ReceiptPrinter recordingPrinter(int ink, int paper, ArrayList<String> events)
+    {
+        ReceiptPrinter printer = new ReceiptPrinter();
+        printer.addInk(ink);
+        printer.addPaper(paper);
+        printer.endConfigurationPhase();
+        printer.attach(new ReceiptPrinterObserver()
+        {
+            @Override
+            public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+            {
+            }
+
+            @Override
+            public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+            {
+            }
+
+            @Override
+            public void outOfPaper(ReceiptPrinter printer)
+            {
+                events.add("outOfPaper");
+            }
+
+            @Override
+            public void outOfInk(ReceiptPrinter printer)
+            {
+                events.add("outOfInk");
+            }
+
+            @Override
+            public void paperAdded(ReceiptPrinter printer)
+            {
+            }
+
+            @Override
+            public void inkAdded(ReceiptPrinter printer)
+            {
+            }
+        });
+
+        return printer;
+    }
+
+    // Tests to see if a transaction interrupted part way through is rebuilt from the journal, and a finished one is not
+    @Test
+    public void testJournalRecoversTransactionInProgress() throws DisabledException, OverloadException, IOException
+    {
+        Path file = Files.createTempFile("journal", ".bin");
+        Barcode barcode = new Barcode(new Numeral[] {Numeral.four, Numeral.two});
+
+        try
+        {
+            TransactionJournal journal = new TransactionJournal(file);
+            journal.attach(selfCheckoutStation);
+            selfCheckoutStation.scanner.scan(new BarcodedItem(barcode, 100));
+            selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(0.25)));
+            selfCheckoutStation.banknoteInput.accept(new Banknote(Currency.getInstance("CAD"), 20));
+            journal.changeDispensed(Money.ofMinor(5, Money.DEFAULT_CURRENCY));
+            journal.close();
+
+            journal = new TransactionJournal(file);
+            ScanItem scanned = new ScanItem();
+            PayCoin coins = new PayCoin();
+            PayBanknote banknotes = new PayBanknote();
+            journal.getRecovery().replay(selfCheckoutStation, scanned, coins, banknotes);
+
+            Assert.assertEquals(scanned.barcodesScanned, Arrays.asList(barcode));
+            Assert.assertEquals(coins.getCoinTotal(), Money.ofMinor(25, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(banknotes.getTotalBanknotes(), Money.ofMajor(20, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(journal.getRecovery().getChangeDispensed(), Money.ofMinor(5, Money.DEFAULT_CURRENCY));
+
+            journal.transactionCompleted();
+            journal.close();
+            journal = new TransactionJournal(file);
+
+            Assert.assertTrue(journal.getRecovery().isEmpty());
+            journal.close();
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    // Tests to see if items voided and entered by PLU code before a crash are rebuilt into the basket from the journal
+    @Test
+    public void testJournalRecoversVoidsAndWeighedItems() throws DisabledException, OverloadException, IOException
+    {
+        Path file = Files.createTempFile("journal", ".bin");
+        Barcode soup = barcodeOf(42);
+        itemLookup.addEntries(Arrays.asList(new CatalogEntry(new BarcodedProduct(soup, "Soup", BigDecimal.valueOf(2.00)), 300)));
+        pluLookup.addProduct(new PLUCodedProduct(new PriceLookupCode("4011"), "Bananas", BigDecimal.valueOf(2.00)));
+
+        try
+        {
+            TransactionJournal journal = new TransactionJournal(file);
+            journal.attach(selfCheckoutStation);
+            selfCheckoutStation.scanner.attach(scanItemUseCase);
+            selfCheckoutStation.scale.attach(pluEntryUseCase);
+            checkoutUseCase = new Checkout(banknoteUseCase, coinUseCase, scanItemUseCase, itemLookup, baggingAreaUseCase, new ReceiptPrinter(), 1000, 1000, pluEntryUseCase, pluLookup);
+            checkoutUseCase.setJournal(journal);
+            Basket basket = checkoutUseCase.getBasket();
+
+            selfCheckoutStation.scanner.scan(new BarcodedItem(soup, 300));
+            selfCheckoutStation.scanner.scan(new BarcodedItem(soup, 300));
+            Assert.assertTrue(basket.voidItem(soup));
+
+            pluEntryUseCase.enterPLUCode(new PriceLookupCode("4011"));
+            selfCheckoutStation.scale.add(new PLUCodedItem(new PriceLookupCode("4011"), 500));
+            pluEntryUseCase.enterPLUCode(new PriceLookupCode("4011"));
+            selfCheckoutStation.scale.add(new PLUCodedItem(new PriceLookupCode("4011"), 250));
+            Assert.assertTrue(basket.voidWeighed(pluEntryUseCase.itemsWeighed.get(1)));
+            Assert.assertEquals(basket.getTotal(), Money.ofMajor(3, Money.DEFAULT_CURRENCY));
+            journal.close();
+
+            journal = new TransactionJournal(file);
+            ScanItem scanned = new ScanItem();
+            EnterPLUCode weighed = new EnterPLUCode();
+            Checkout recovered = new Checkout(new PayBanknote(), new PayCoin(), scanned, itemLookup, new BaggingArea(), new ReceiptPrinter(), 1000, 1000, weighed, pluLookup);
+            journal.getRecovery().replay(selfCheckoutStation, recovered.getBasket(), scanned, weighed);
+            recovered.setJournal(journal);
+
+            Assert.assertEquals(recovered.getBasket().getQuantity(soup), 1);
+            Assert.assertEquals(recovered.getBasket().getItemCount(), 2);
+            Assert.assertEquals(recovered.getBasket().getTotal(), Money.ofMajor(3, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(recovered.getBasket().getExpectedWeight(), 800, 0);
+            journal.close();
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    // Tests to see if the storage unit's and dispenser's banknote events are written to the event log, with a load logged as one event
+    @Test
+    public void testBanknoteEventsWrittenToEventLog() throws DisabledException, OverloadException, IOException
+    {
+        Path file = Files.createTempFile("events", ".log");
+
+        try
+        {
+            EventLog log = new EventLog(file);
+            banknoteUseCase.setEventLog(log);
+            selfCheckoutStation.banknoteStorage.attach(banknoteUseCase);
+            selfCheckoutStation.banknoteDispensers.get(5).attach(banknoteUseCase);
+
+            selfCheckoutStation.banknoteInput.accept(new Banknote(Currency.getInstance("CAD"), 20));
+            selfCheckoutStation.banknoteDispensers.get(5).load(new Banknote(Currency.getInstance("CAD"), 5), new Banknote(Currency.getInstance("CAD"), 5));
+            log.close();
+
+            List<String> lines = Files.readAllLines(file);
+
+            Assert.assertEquals(lines.size(), 2);
+            Assert.assertTrue(lines.get(0).endsWith(" banknoteStored banknotes=1 capacity=1000"));
+            Assert.assertTrue(lines.get(1).endsWith(" banknotesLoaded banknotes=2 currency=CAD value=10"));
+            Assert.assertEquals(log.getDroppedCount(), 0);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    // Tests to see if the event log rotates its file once it is full, keeping only the indicated number of old files
+    @Test
+    public void testEventLogRotatesFiles() throws IOException
+    {
+        Path directory = Files.createTempDirectory("events");
+        Path file = directory.resolve("events.log");
+        EventLog.Message message = new EventLog.Message("tick", "number");
+
+        try
+        {
+            EventLog log = new EventLog(file, 16, 100, 2);
+
+            for (int i = 0; i < 10; i++)
+            {
+                log.log(message, i);
+                log.flush();
+            }
+
+            log.close();
+
+            Assert.assertTrue(Files.readString(file).endsWith(" tick number=9\n"));
+            Assert.assertTrue(Files.exists(directory.resolve("events.log.1")));
+            Assert.assertTrue(Files.exists(directory.resolve("events.log.2")));
+            Assert.assertFalse(Files.exists(directory.resolve("events.log.3")));
+            Assert.assertEquals(log.getWrittenCount(), 10);
+        }
+        finally
+        {
+            try (Stream<Path> files = Files.list(directory))
+            {
+                for (Path p : (Iterable<Path>) files::iterator)
+                    Files.delete(p);
+            }
+
+            Files.delete(directory);
+        }
+    }
+
+    // Tests to see if a batch of coins is counted and routed as if the coins were inserted one at a time, with one event per value for observers that take batches
+    @Test
+    public void testBatchedCoinsMatchCoinsInsertedOneAtATime() throws DisabledException, OverloadException
+    {
+        Currency cad = Currency.getInstance("CAD");
+        BigDecimal quarter = BigDecimal.valueOf(0.25);
+        Coin[] coins = new Coin[] {new Coin(cad, quarter), new Coin(cad, BigDecimal.valueOf(1.00)), new Coin(cad, quarter), new Coin(Currency.getInstance("USD"), quarter), new Coin(cad, quarter), new Coin(cad, BigDecimal.valueOf(1.00))};
+
+        // Leaves room in the quarters' dispensers for only one more, so the other quarters overflow into the tray
+        SelfCheckoutStation oneAtATime = new SelfCheckoutStation(cad, banknoteDenominations, coinDenominations, scaleWeightLimit, scaleSensitivity, new SplittableRandom(0));
+        Coin[] preload = new Coin[SelfCheckoutStation.COIN_DISPENSER_CAPACITY - 1];
+        Arrays.fill(preload, new Coin(cad, quarter));
+        oneAtATime.coinDispensers.get(quarter).load(preload);
+        selfCheckoutStation.coinDispensers.get(quarter).load(preload);
+
+        PayCoin oneAtATimeUseCase = new PayCoin();
+        oneAtATime.coinValidator.setProbabilityOfFalseRejection(0);
+        oneAtATime.coinValidator.attach(oneAtATimeUseCase);
+        for (Coin coin : coins)
+            oneAtATime.coinSlot.accept(coin);
+
+        int[] validEvents = new int[1];
+        selfCheckoutStation.coinValidator.attach(coinUseCase);
+        selfCheckoutStation.coinValidator.attach(new CoinValidatorObserver()
+        {
+            public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device) {}
+            public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device) {}
+            public void validCoinDetected(CoinValidator validator, BigDecimal value) { validEvents[0]++; }
+            public void invalidCoinDetected(CoinValidator validator) {}
+        });
+        selfCheckoutStation.coinSlot.acceptAll(coins);
+
+        Assert.assertEquals(coinUseCase.getCoinTotal(), oneAtATimeUseCase.getCoinTotal());
+        Assert.assertEquals(coinUseCase.getCoinTotal(), Money.ofMinor(275, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(validEvents[0], 5);
+        Assert.assertEquals(selfCheckoutStation.coinDispensers.get(quarter).size(), oneAtATime.coinDispensers.get(quarter).size());
+        Assert.assertEquals(selfCheckoutStation.coinDispensers.get(BigDecimal.valueOf(1.00)).size(), 2);
+        Assert.assertEquals(selfCheckoutStation.coinTray.collectCoins().stream().filter(coin -> coin != null).count(), 3);
+        Assert.assertEquals(oneAtATime.coinTray.collectCoins().stream().filter(coin -> coin != null).count(), 3);
+    }
+
+    // Tests to see if a catalog written to a file and mapped back gives the same prices, weights and products, with entries added in memory taking precedence
+    @Test
+    public void testMappedCatalogLooksUpProductsFromFile() throws IOException
+    {
+        Path file = Files.createTempFile("catalog", ".bin");
+        Barcode milk = new Barcode(new Numeral[] {Numeral.zero, Numeral.one, Numeral.two});
+        Barcode bread = new Barcode(new Numeral[] {Numeral.one, Numeral.two});
+        Barcode weighedOnly = new Barcode(new Numeral[] {Numeral.nine});
+
+        try
+        {
+            MappedCatalog.write(file, Arrays.asList(
+                new CatalogEntry(new BarcodedProduct(milk, "Milk, 2% \u00e9cr\u00e9m\u00e9", BigDecimal.valueOf(4.99)), 1030),
+                new CatalogEntry(new BarcodedProduct(bread, "Bread", BigDecimal.valueOf(3.49)), 675),
+                new CatalogEntry(weighedOnly, null, 50)), 16);
+
+            BarcodedItemCollection catalog = new BarcodedItemCollection(MappedCatalog.open(file));
+
+            Assert.assertEquals(catalog.size(), 3);
+            Assert.assertEquals(catalog.getPrice(new Barcode(new Numeral[] {Numeral.zero, Numeral.one, Numeral.two})), Money.ofMinor(499, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(catalog.getEntry(milk).getProduct().getDescription(), "Milk, 2% \u00e9cr\u00e9m");
+            Assert.assertEquals(catalog.getExpectedWeight(bread), 675, 0.0);
+            Assert.assertNull(catalog.getEntry(weighedOnly).getProduct());
+            Assert.assertNull(catalog.getEntry(new Barcode(new Numeral[] {Numeral.two})));
+
+            catalog.addProduct(new BarcodedProduct(bread, "Bread", BigDecimal.valueOf(2.99)));
+
+            Assert.assertEquals(catalog.getPrice(bread), Money.ofMinor(299, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(catalog.getExpectedWeight(bread), 675, 0.0);
+            Assert.assertEquals(catalog.size(), 3);
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    // Tests to see if baskets being scanned on several threads while the catalog is reloaded over and over are each priced entirely at one version, and see each new version as soon as they start over
+    @Test
+    public void testCatalogReloadsDuringConcurrentScanning() throws InterruptedException
+    {
+        Barcode[] barcodes = new Barcode[50];
+        for (int i = 0; i < barcodes.length; i++)
+            barcodes[i] = new Barcode(new Numeral[] {Numeral.valueOf((byte) (i / 10)), Numeral.valueOf((byte) (i % 10))});
+
+        // Every product costs the catalog's version in dollars, so a basket's subtotal shows which versions priced it
+        itemLookup.reload(pricedAt(barcodes, 1));
+
+        AtomicLong latestSeen = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] lanes = new Thread[3];
+
+        for (int lane = 0; lane < lanes.length; lane++)
+        {
+            SplittableRandom random = new SplittableRandom(lane);
+
+            lanes[lane] = new Thread(() ->
+            {
+                Basket basket = new Basket(itemLookup, pluLookup);
+                long lastVersion = 0;
+
+                try
+                {
+                    while (!Thread.currentThread().isInterrupted())
+                    {
+                        int count = 1 + random.nextInt(10);
+                        Barcode[] scanned = new Barcode[count];
+
+                        for (int i = 0; i < count; i++)
+                        {
+                            scanned[i] = barcodes[random.nextInt(barcodes.length)];
+                            Assert.assertTrue(basket.add(scanned[i]));
+                        }
+
+                        long version = basket.getCatalog().getVersion();
+                        Assert.assertTrue(version >= lastVersion);
+                        Assert.assertEquals(basket.getSubtotal(), Money.ofMinor(count * version * 100, Money.DEFAULT_CURRENCY));
+
+                        for (Barcode barcode : scanned)
+                            Assert.assertTrue(basket.voidItem(barcode));
+
+                        Assert.assertNull(basket.getCatalog());
+                        Assert.assertTrue(basket.getSubtotal().isZero());
+
+                        lastVersion = version;
+                        latestSeen.accumulateAndGet(version, Math::max);
+                    }
+                }
+                catch (Throwable t)
+                {
+                    failure.set(t);
+                }
+            });
+            lanes[lane].start();
+        }
+
+        // Each reload waits until some lane has priced a basket at the previous version, so scanning and reloading overlap
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+
+        for (int version = 2; version <= 200 && failure.get() == null; version++)
+        {
+            Assert.assertEquals(itemLookup.reload(pricedAt(barcodes, version)).getVersion(), version);
+
+            while (latestSeen.get() < version - 1 && failure.get() == null)
+            {
+                Assert.assertTrue(System.nanoTime() < deadline);
+                Thread.yield();
+            }
+        }
+
+        for (Thread lane : lanes)
+        {
+            lane.interrupt();
+            lane.join();
+        }
+
+        Assert.assertNull(failure.get());
+
+        Basket basket = new Basket(itemLookup, pluLookup);
+        basket.add(barcodes[0]);
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(200, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(itemLookup.size(), barcodes.length);
+    }
+
+    // A catalog entry for each barcode, all priced at the indicated number of dollars
+    private List<CatalogEntry> pricedAt(Barcode[] barcodes, long dollars)
+    {
+        List<CatalogEntry> entries = new ArrayList<CatalogEntry>();
+
+        for (Barcode barcode : barcodes)
+            entries.add(new CatalogEntry(new BarcodedProduct(barcode, "N/A", BigDecimal.valueOf(dollars)), 100));
+
+        return entries;
+    }
+
+    // Tests to see if a product cache keeps the products asked for often while a stream of barcodes asked for once passes through it, remembers barcodes the store does not know, and counts its hits, misses and evictions
+    @Test
+    public void testProductCacheKeepsFrequentProductsThroughOneOffScans()
+    {
+        HashMap<Barcode, CatalogEntry> products = new HashMap<Barcode, CatalogEntry>();
+        for (int i = 0; i < 2000; i++)
+            products.put(barcodeOf(i), new CatalogEntry(new BarcodedProduct(barcodeOf(i), "N/A", BigDecimal.ONE), 100));
+
+        ProductCache cache = new ProductCache(products::get, 100);
+
+        for (int round = 0; round < 5; round++)
+            for (int i = 0; i < 50; i++)
+                Assert.assertNotNull(cache.getEntry(barcodeOf(i)));
+
+        for (int i = 50; i < 1050; i++)
+            cache.getEntry(barcodeOf(i));
+
+        Assert.assertNull(cache.getEntry(barcodeOf(5000)));
+        Assert.assertNull(cache.getEntry(barcodeOf(5000)));
+
+        Assert.assertEquals(cache.getHitCount(), 4 * 50 + 1);
+        Assert.assertEquals(cache.getMissCount(), 50 + 1000 + 1);
+        Assert.assertEquals(cache.getLoadCount(), 50 + 1000 + 1);
+        Assert.assertEquals(cache.getEvictionCount(), 50 + 1000 + 1 - 100);
+        Assert.assertEquals(cache.size(), 100);
+
+        // The products asked for repeatedly are protected from the one-off barcodes; at most the one still on probation is lost
+        long hits = cache.getHitCount();
+        for (int i = 0; i < 50; i++)
+            cache.getEntry(barcodeOf(i));
+        Assert.assertTrue(cache.getHitCount() - hits >= 49);
+
+        Basket basket = new Basket(new BarcodedItemCollection(cache), pluLookup);
+        Assert.assertTrue(basket.add(barcodeOf(1999)));
+        Assert.assertFalse(basket.add(barcodeOf(5000)));
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if lookups on several threads that miss the product cache for the same barcode at the same time share a single load from the store
+    @Test
+    public void testProductCacheSharesOneLoadBetweenConcurrentMisses() throws InterruptedException
+    {
+        CountDownLatch release = new CountDownLatch(1);
+        ProductCache cache = new ProductCache(barcode ->
+        {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                throw new IOException(e);
+            }
+
+            return new CatalogEntry(new BarcodedProduct(barcode, "N/A", BigDecimal.ONE), 100);
+        }, 10);
+
+        CatalogEntry[] found = new CatalogEntry[4];
+        Thread[] lanes = new Thread[found.length];
+
+        for (int lane = 0; lane < lanes.length; lane++)
+        {
+            int index = lane;
+            lanes[lane] = new Thread(() -> found[index] = cache.getEntry(barcodeOf(7)));
+            lanes[lane].start();
+        }
+
+        // The store answers only once every lane has missed, so they all wait on the same load
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (cache.getMissCount() < lanes.length)
+        {
+            Assert.assertTrue(System.nanoTime() < deadline);
+            Thread.yield();
+        }
+
+        release.countDown();
+        for (Thread lane : lanes)
+            lane.join();
+
+        Assert.assertEquals(cache.getLoadCount(), 1);
+        for (CatalogEntry entry : found)
+            Assert.assertSame(entry, found[0]);
+        Assert.assertSame(cache.getEntry(barcodeOf(7)), found[0]);
+        Assert.assertEquals(cache.getHitCount(), 1);
+    }
+
+    // A barcode holding the digits of the number
+    private Barcode barcodeOf(int number)
+    {
+        String digits = Integer.toString(number);
+        Numeral[] numerals = new Numeral[digits.length()];
+
+        for (int i = 0; i < numerals.length; i++)
+            numerals[i] = Numeral.valueOf((byte) (digits.charAt(i) - '0'));
+
+        return new Barcode(numerals);
+    }
+
+    // Tests to see if multi-buy, mix-and-match and threshold promotions are applied to the total as items are scanned and voided
+    @Test
+    public void testPromotionsDiscountTheTotalAsItemsAreScannedAndVoided()
+    {
+        Barcode cola = barcodeOf(1);
+        Barcode chips = barcodeOf(2);
+        Barcode salsa = barcodeOf(3);
+        itemLookup.addEntries(Arrays.asList(
+            new CatalogEntry(new BarcodedProduct(cola, "Cola", BigDecimal.valueOf(2.00)), 500),
+            new CatalogEntry(new BarcodedProduct(chips, "Chips", BigDecimal.valueOf(3.00)), 200),
+            new CatalogEntry(new BarcodedProduct(salsa, "Salsa", BigDecimal.valueOf(4.00)), 400)));
+
+        Promotion colaDeal = Promotion.buyGetFree("Cola, buy 2 get 1 free", Arrays.asList(cola), 2, 1);
+        Promotion snackDeal = Promotion.mixAndMatch("Chips and salsa, any 2 for $6", Arrays.asList(chips, salsa), 2, Money.ofMajor(6, Money.DEFAULT_CURRENCY));
+        Promotion bigShop = Promotion.threshold("$5 off $20", null, Money.ofMajor(20, Money.DEFAULT_CURRENCY), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        checkoutUseCase.setPromotions(new PromotionEngine(Arrays.asList(colaDeal, snackDeal, bigShop)));
+        Basket basket = checkoutUseCase.getBasket();
+
+        for (int i = 0; i < 3; i++)
+            basket.add(cola);
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(4, Money.DEFAULT_CURRENCY));
+
+        basket.add(chips);
+        basket.add(salsa);
+        Assert.assertEquals(basket.getDiscount(snackDeal), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+
+        // The $20 spent reaches the threshold, which is on every item and so overlaps both deals; its $5 beats their $4
+        basket.add(salsa);
+        basket.add(chips);
+        Assert.assertEquals(basket.getDiscount(snackDeal), Money.zero(Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getDiscount(bigShop), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getDiscount(), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        checkoutUseCase.calcTotalToBePaid();
+        Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.ofMajor(15, Money.DEFAULT_CURRENCY));
+
+        // Voiding a cola breaks its deal and drops the spend below the threshold, so the snack deal applies again: the
+        // dearest items go into deals first, $4 + $4 and $3 + $3 for $12
+        basket.voidItem(cola);
+        Assert.assertEquals(basket.getDiscount(colaDeal), Money.zero(Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getDiscount(bigShop), Money.zero(Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getDiscount(snackDeal), Money.ofMajor(2, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getSubtotal(), Money.ofMajor(16, Money.DEFAULT_CURRENCY));
+
+        basket.setQuantity(cola, 0);
+        basket.setQuantity(chips, 0);
+        basket.setQuantity(salsa, 0);
+        Assert.assertTrue(basket.getSubtotal().isZero());
+        Assert.assertTrue(basket.getDiscount().isZero());
+    }
+
+    // Tests to see if overlapping promotions do not stack, so an item is never discounted by more than was spent on it
+    @Test
+    public void testOverlappingPromotionsNeverDiscountMoreThanWasSpent()
+    {
+        Barcode cola = barcodeOf(1);
+        itemLookup.addEntries(Arrays.asList(new CatalogEntry(new BarcodedProduct(cola, "Cola", new BigDecimal("1.00")), 500)));
+
+        Promotion deal1 = Promotion.buyGetFree("Cola, buy 1 get 1 free", Arrays.asList(cola), 1, 1);
+        Promotion deal2 = Promotion.buyGetFree("Cola, buy 1 get 1 free again", Arrays.asList(cola), 1, 1);
+        Promotion deal3 = Promotion.buyGetFree("Cola, buy 1 get 1 free once more", Arrays.asList(cola), 1, 1);
+        checkoutUseCase.setPromotions(new PromotionEngine(Arrays.asList(deal1, deal2, deal3)));
+        Basket basket = checkoutUseCase.getBasket();
+
+        basket.add(cola);
+        basket.add(cola);
+        Assert.assertEquals(basket.getDiscount(), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getDiscount(deal1), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+        Assert.assertTrue(basket.getDiscount(deal2).isZero());
+        Assert.assertTrue(basket.getDiscount(deal3).isZero());
+        checkoutUseCase.calcTotalToBePaid();
+        Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+
+        // A better deal on the same item takes over from the others rather than adding to them
+        Barcode chips = barcodeOf(2);
+        itemLookup.addEntries(Arrays.asList(new CatalogEntry(new BarcodedProduct(chips, "Chips", new BigDecimal("3.00")), 200)));
+        Promotion bundle = Promotion.mixAndMatch("Cola and chips, any 3 for $2", Arrays.asList(cola, chips), 3, Money.ofMajor(2, Money.DEFAULT_CURRENCY));
+        basket = new Basket(itemLookup, pluLookup);
+        basket.setPromotions(new PromotionEngine(Arrays.asList(deal1, deal2, bundle)));
+
+        basket.add(cola);
+        basket.add(cola);
+        basket.add(chips);
+        Assert.assertEquals(basket.getDiscount(bundle), Money.ofMajor(3, Money.DEFAULT_CURRENCY));
+        Assert.assertTrue(basket.getDiscount(deal1).isZero());
+        Assert.assertEquals(basket.getDiscount(), Money.ofMajor(3, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTotal(), Money.ofMajor(2, Money.DEFAULT_CURRENCY));
+
+        basket.voidItem(chips);
+        Assert.assertEquals(basket.getDiscount(deal1), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTotal(), Money.ofMajor(1, Money.DEFAULT_CURRENCY));
+    }
+
+    // Tests to see if tax is kept per tax class as items are scanned and voided, is rounded once per class rather than per item, and comes off after promotions
+    @Test
+    public void testTaxIsRoundedOncePerClassAndAddedToTheTotal()
+    {
+        TaxClass gst = new TaxClass("GST", new BigDecimal("0.05"));
+        TaxClass hst = new TaxClass("HST", new BigDecimal("0.13"));
+        Barcode gum = barcodeOf(1);
+        Barcode cola = barcodeOf(2);
+        Barcode bread = barcodeOf(3);
+        itemLookup.addEntries(Arrays.asList(
+            new CatalogEntry(new BarcodedProduct(gum, "Gum", new BigDecimal("0.10")), 10),
+            new CatalogEntry(cola, new BarcodedProduct(cola, "Cola", new BigDecimal("2.99")), 500, hst),
+            new CatalogEntry(new BarcodedProduct(bread, "Bread", new BigDecimal("3.00")), 700)));
+        itemLookup.setTaxClass(gum, gst);
+        Assert.assertEquals(itemLookup.getTaxClass(gum), gst);
+        Assert.assertEquals(itemLookup.getTaxClass(bread), TaxClass.EXEMPT);
+
+        Promotion colaDeal = Promotion.buyGetFree("Cola, buy 1 get 1 free", Arrays.asList(cola), 1, 1);
+        checkoutUseCase.setPromotions(new PromotionEngine(Arrays.asList(colaDeal)));
+        Basket basket = checkoutUseCase.getBasket();
+
+        // Each gum's tax is half a cent, but the class's $0.30 is taxed once: $0.015 rounds to $0.02, not 3 x $0.01
+        for (int i = 0; i < 3; i++)
+            basket.add(gum);
+        basket.add(cola);
+        basket.add(bread);
+        Assert.assertEquals(basket.getTax(gst), Money.of(new BigDecimal("0.02"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTax(hst), Money.of(new BigDecimal("0.39"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTaxClasses(), Arrays.asList(gst, hst, TaxClass.EXEMPT));
+        checkoutUseCase.calcTotalToBePaid();
+        Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.of(new BigDecimal("6.70"), Money.DEFAULT_CURRENCY));
+
+        // The free cola is not taxed
+        basket.add(cola);
+        Assert.assertEquals(basket.getTax(hst), Money.of(new BigDecimal("0.39"), Money.DEFAULT_CURRENCY));
+
+        basket.setQuantity(cola, 0);
+        Assert.assertEquals(basket.getTaxClasses(), Arrays.asList(gst, TaxClass.EXEMPT));
+        Assert.assertEquals(basket.getTotal(), Money.of(new BigDecimal("3.32"), Money.DEFAULT_CURRENCY));
+
+        basket.setQuantity(gum, 0);
+        basket.voidItem(bread);
+        Assert.assertTrue(basket.getTax().isZero());
+        Assert.assertTrue(basket.getTotal().isZero());
+    }
+
+    // Tests to see if a promotion's discount is split between the tax classes of its items by what was spent in each, so no class is taxed below zero
+    @Test
+    public void testPromotionDiscountSplitBetweenTaxClasses()
+    {
+        TaxClass hst = new TaxClass("HST", new BigDecimal("0.13"));
+        Barcode gum = barcodeOf(1);
+        Barcode roast = barcodeOf(2);
+        itemLookup.addEntries(Arrays.asList(
+            new CatalogEntry(gum, new BarcodedProduct(gum, "Gum", new BigDecimal("1.00")), 10, hst),
+            new CatalogEntry(new BarcodedProduct(roast, "Roast", new BigDecimal("60.00")), 1000)));
+
+        Promotion bigShop = Promotion.threshold("$5 off $50", null, Money.ofMajor(50, Money.DEFAULT_CURRENCY), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        checkoutUseCase.setPromotions(new PromotionEngine(Arrays.asList(bigShop)));
+        Basket basket = checkoutUseCase.getBasket();
+
+        // Of the $5, $1/$61 comes off the HST class: $0.0820 rounds to $0.08, leaving $0.92 taxed at 13% for $0.12
+        basket.add(gum);
+        basket.add(roast);
+        Assert.assertEquals(basket.getDiscount(), Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTax(hst), Money.of(new BigDecimal("0.12"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTotal(), Money.of(new BigDecimal("56.12"), Money.DEFAULT_CURRENCY));
+
+        // More gum moves more of the discount onto HST: $5 x $3/$63 is $0.24, leaving $2.76 taxed for $0.36
+        basket.setQuantity(gum, 3);
+        Assert.assertEquals(basket.getTax(hst), Money.of(new BigDecimal("0.36"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTotal(), Money.of(new BigDecimal("58.36"), Money.DEFAULT_CURRENCY));
+
+        // Below the threshold nothing comes off, and every class is taxed on its full spend again
+        basket.voidItem(roast);
+        Assert.assertTrue(basket.getDiscount().isZero());
+        Assert.assertEquals(basket.getTax(hst), Money.of(new BigDecimal("0.39"), Money.DEFAULT_CURRENCY));
+        Assert.assertEquals(basket.getTaxClasses(), Arrays.asList(hst));
+
+        basket.setQuantity(gum, 0);
+        Assert.assertTrue(basket.getTotal().isZero());
     }
 
     // Tests to see if the checkout process is successful
@@ -189,6 +1513,139 @@ public class SoftwareTest
         Assert.assertEquals(checkoutUseCase.checkoutMain(), 0);
     }
 
+    // Tests to see if paying by card sends the amount owed to the host without waiting for it, and completes once the host approves
+    @Test
+    public void testCheckoutPaidByCard() throws Exception
+    {
+        selfCheckoutStation.scanner.attach(scanItemUseCase);
+        selfCheckoutStation.scale.attach(baggingAreaUseCase);
+        selfCheckoutStation.cardReader.setProbabilityOfSwipeFailure(0);
+
+        BarcodedItem testBarcodedItem = new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2);
+        itemLookup.addItem(testBarcodedItem);
+        itemLookup.addProduct(new BarcodedProduct(new Barcode(new Numeral[] {Numeral.one}), "N/A", BigDecimal.valueOf(12.50)));
+        selfCheckoutStation.scanner.scan(testBarcodedItem);
+        selfCheckoutStation.scale.add(testBarcodedItem);
+
+        try (SimulatedAuthorizationHost host = new SimulatedAuthorizationHost())
+        {
+            host.setRandomGenerator(new SplittableRandom(0));
+            host.setLatency(20, 40, TimeUnit.MILLISECONDS);
+            host.setProbabilityOfDecline(0);
+
+            PayCard cardUseCase = new PayCard(host);
+            selfCheckoutStation.cardReader.attach(cardUseCase);
+            checkoutUseCase.setCardPayment(cardUseCase);
+            checkoutUseCase.setPaymentType(2);
+
+            Card card = new Card("VISA", "4111111111111111", "A Customer", null, null, false, false);
+            card.setFailureProbabilities(0, 0, 0);
+            card.setCorruptionProbabilities(0, 0);
+            selfCheckoutStation.cardReader.swipe(card);
+
+            Assert.assertEquals(cardUseCase.getPendingCount(), 1);
+            Assert.assertEquals(checkoutUseCase.checkoutMain(), 1);
+
+            cardUseCase.settled().get(1, TimeUnit.SECONDS);
+
+            Assert.assertEquals(cardUseCase.getAuthorizations().get(0).getStatus(), PayCard.Status.APPROVED);
+            Assert.assertEquals(cardUseCase.getAuthorizations().get(0).getCardNumber(), "************1111");
+            Assert.assertEquals(cardUseCase.getTotalAuthorized(), Money.ofMinor(1250, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(checkoutUseCase.checkoutMain(), 0);
+        }
+    }
+
+    // Tests to see if the card is charged for what is owed when it is read, not when the card payment was chosen
+    @Test
+    public void testCardChargesAmountOwedWhenRead() throws Exception
+    {
+        selfCheckoutStation.scanner.attach(scanItemUseCase);
+        selfCheckoutStation.scale.attach(baggingAreaUseCase);
+        selfCheckoutStation.coinValidator.attach(coinUseCase);
+        selfCheckoutStation.cardReader.setProbabilityOfSwipeFailure(0);
+
+        try (SimulatedAuthorizationHost host = new SimulatedAuthorizationHost())
+        {
+            host.setLatency(1, 1, TimeUnit.MILLISECONDS);
+            host.setProbabilityOfDecline(0);
+
+            PayCard cardUseCase = new PayCard(host);
+            selfCheckoutStation.cardReader.attach(cardUseCase);
+            checkoutUseCase.setCardPayment(cardUseCase);
+            checkoutUseCase.setPaymentType(2);
+
+            BarcodedItem testBarcodedItem = new BarcodedItem(new Barcode(new Numeral[] {Numeral.one}), scaleSensitivity * 2);
+            itemLookup.addItem(testBarcodedItem);
+            itemLookup.addProduct(new BarcodedProduct(new Barcode(new Numeral[] {Numeral.one}), "N/A", BigDecimal.valueOf(12.50)));
+            selfCheckoutStation.scanner.scan(testBarcodedItem);
+            selfCheckoutStation.scale.add(testBarcodedItem);
+            selfCheckoutStation.coinSlot.accept(new Coin(Currency.getInstance("CAD"), BigDecimal.valueOf(2.00)));
+
+            Card card = new Card("VISA", "4111111111111111", "A Customer", null, null, false, false);
+            card.setFailureProbabilities(0, 0, 0);
+            card.setCorruptionProbabilities(0, 0);
+            selfCheckoutStation.cardReader.swipe(card);
+            cardUseCase.settled().get(1, TimeUnit.SECONDS);
+
+            Assert.assertEquals(cardUseCase.getAuthorizations().get(0).getAmount(), Money.ofMinor(1050, Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(checkoutUseCase.checkoutMain(), 0);
+            Assert.assertEquals(checkoutUseCase.getTotalToBePaid(), Money.ofMinor(1250, Money.DEFAULT_CURRENCY));
+        }
+    }
+
+    // Tests to see if a charge the host does not answer in time is treated as declined, leaving the transaction unpaid
+    @Test
+    public void testCardAuthorizationTimesOut() throws Exception
+    {
+        try (SimulatedAuthorizationHost host = new SimulatedAuthorizationHost())
+        {
+            host.setLatency(10, 10, TimeUnit.SECONDS);
+
+            PayCard cardUseCase = new PayCard(host, 20, TimeUnit.MILLISECONDS);
+            selfCheckoutStation.cardReader.attach(cardUseCase);
+            selfCheckoutStation.cardReader.setProbabilityOfSwipeFailure(0);
+            cardUseCase.setAmountDue(Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+
+            Card card = new Card("VISA", "4111111111111111", "A Customer", null, null, false, false);
+            card.setFailureProbabilities(0, 0, 0);
+            card.setCorruptionProbabilities(0, 0);
+            selfCheckoutStation.cardReader.swipe(card);
+            cardUseCase.settled().get(1, TimeUnit.SECONDS);
+
+            Assert.assertEquals(cardUseCase.getAuthorizations().get(0).getStatus(), PayCard.Status.TIMED_OUT);
+            Assert.assertEquals(cardUseCase.getTotalAuthorized(), Money.zero(Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(cardUseCase.getPendingCount(), 0);
+        }
+    }
+
+    // Tests to see if a charge the host approves after it has timed out is reversed, so the card is not charged
+    @Test
+    public void testLateApprovalIsReversed() throws Exception
+    {
+        try (SimulatedAuthorizationHost host = new SimulatedAuthorizationHost())
+        {
+            host.setLatency(200, 200, TimeUnit.MILLISECONDS);
+            host.setProbabilityOfDecline(0);
+
+            PayCard cardUseCase = new PayCard(host, 20, TimeUnit.MILLISECONDS);
+            selfCheckoutStation.cardReader.attach(cardUseCase);
+            selfCheckoutStation.cardReader.setProbabilityOfSwipeFailure(0);
+            cardUseCase.setAmountDue(Money.ofMajor(5, Money.DEFAULT_CURRENCY));
+
+            Card card = new Card("VISA", "4111111111111111", "A Customer", null, null, false, false);
+            card.setFailureProbabilities(0, 0, 0);
+            card.setCorruptionProbabilities(0, 0);
+            selfCheckoutStation.cardReader.swipe(card);
+            cardUseCase.settled().get(1, TimeUnit.SECONDS);
+            Thread.sleep(300);
+
+            Assert.assertEquals(cardUseCase.getAuthorizations().get(0).getStatus(), PayCard.Status.TIMED_OUT);
+            Assert.assertEquals(cardUseCase.getTotalAuthorized(), Money.zero(Money.DEFAULT_CURRENCY));
+            Assert.assertEquals(host.getReversedCount(), 1L);
+            Assert.assertEquals(host.getApprovedCount(), 0L);
+        }
+    }
+
     // Tests to see if the checkout process is unsuccessful due to insufficient funds
     @Test
     public void testUnsuccessfulCheckout() throws DisabledException, OverloadException
@@ -0,0 +1,36 @@
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The card network's authorization host, which approves or declines charges to cards. A station talks to the host
+ * through this interface, so the host can be a real network connection or a stand-in such as
+ * {@link SimulatedAuthorizationHost}.
+ * <p>
+ * Requests are answered asynchronously: {@link #authorize(String, String, Money)} sends the request and returns at once,
+ * so the lane is never held up by a slow host and several requests can be outstanding together. A charge whose answer
+ * is given up on is reversed with {@link #reverse(String, String, Money)}, so a late approval does not leave the card
+ * charged for a sale that did not use it.
+ */
+public interface AuthorizationHost
+{
+    /**
+     * Asks the host to authorize a charge to a card. This must not wait for the host's answer.
+     *
+     * @param cardType   The type of the card, as read from it.
+     * @param cardNumber The number of the card, as read from it.
+     * @param amount     The amount to charge.
+     * @return A future completed with true if the charge is approved and false if it is declined, or completed
+     *         exceptionally if the host cannot be reached. The caller may complete it first, for example on a timeout,
+     *         in which case the host's answer is ignored and the caller reverses the charge.
+     */
+    CompletableFuture<Boolean> authorize(String cardType, String cardNumber, Money amount);
+
+    /**
+     * Asks the host to reverse a charge it was asked to authorize, releasing the amount if the charge was approved.
+     * Reversing a charge that was declined or never reached the host does nothing. This must not wait for the host.
+     *
+     * @param cardType   The type of the card, as sent with the charge.
+     * @param cardNumber The number of the card, as sent with the charge.
+     * @param amount     The amount of the charge.
+     */
+    void reverse(String cardType, String cardNumber, Money amount);
+}
@@ -0,0 +1,415 @@
+import java.util.Arrays;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BarcodeScanner;
+import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.BarcodeScannerObserver;
+import org.lsmr.selfcheckout.devices.observers.ElectronicScaleObserver;
+
+/**
+ * Checks every change in the bagging area's weight against the items the customer has scanned, as it happens, so that
+ * a wrong or missing item is noticed straight away rather than at payment time.
+ * <p>
+ * Each item scanned is expected to arrive in the bagging area next. When the weight settles, it is compared with the
+ * weight of the items already bagged plus the items waiting to be bagged, oldest first; a reading within the scale's
+ * sensitivity of one of these totals bags those items. Since the weight of bagged items is taken from the scale rather
+ * than the catalog, the tolerance applies to each item and differences between the catalog and the real items do not
+ * build up. Any other reading is a mismatch, which lasts until the weight is put right.
+ * <p>
+ * A reading is only judged once the weight has stayed put for the settle time, so the bouncing of an item being put
+ * down is ignored. With a settle time of zero, each reading is judged as soon as it arrives. Otherwise the reading is
+ * judged by the scheduler, if there is one, or by the next call to {@link #update()}.
+ * <p>
+ * An item whose expected weight is within the scale's sensitivity is taken as bagged as soon as it is expected, since
+ * the scale does not announce a change that small.
+ * <p>
+ * The verifier must be attached to the bagging area's scale. Scanned items are expected automatically either by
+ * attaching it to the scanner too, or by handing it to {@link Checkout#setBaggingAreaVerifier(BaggingAreaVerifier)},
+ * so the basket tells it about each item scanned, voided or weighed, with the expected weight of the catalog version
+ * the basket is priced against. Not both, or each scan is expected twice. Its methods may be called from different
+ * threads; listeners are called on the thread that changed the state.
+ */
+public class BaggingAreaVerifier implements ElectronicScaleObserver, BarcodeScannerObserver
+{
+    /**
+     * The state of the bagging area.
+     */
+    public enum State
+    {
+        /**
+         * Every item scanned has been bagged and nothing else has.
+         */
+        MATCHED,
+        /**
+         * Items have been scanned but not yet bagged; nothing else has changed.
+         */
+        AWAITING_ITEM,
+        /**
+         * The weight has changed and has not stayed put long enough to be judged.
+         */
+        SETTLING,
+        /**
+         * The weight does not agree with the items scanned.
+         */
+        MISMATCH,
+        /**
+         * The scale is overloaded, so the weight is unknown.
+         */
+        OVERLOAD
+    }
+
+    /**
+     * Told about every change of state.
+     */
+    public interface Listener
+    {
+        /**
+         * @param verifier The verifier whose state changed.
+         * @param state    The new state.
+         */
+        void stateChanged(BaggingAreaVerifier verifier, State state);
+    }
+
+    // Marks an item whose weight is not known until it is weighed, so any increase is accepted for it
+    private static final double ANY_WEIGHT = Double.NaN;
+
+    private final BarcodedItemCollection collection;
+    private final double toleranceInGrams;
+    private final long settleNanos;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier clock;
+    private Listener listener = null;
+
+    private State state = State.MATCHED;
+    private double baggedWeightInGrams = 0.0;
+    private double measuredWeightInGrams = 0.0;
+    private double readingInGrams = 0.0;
+    private long readingTime = 0;
+    private boolean updateScheduled = false;
+    private boolean mismatched = false;
+    private long mismatchCount = 0;
+
+    // The expected weights of the items scanned but not yet bagged, oldest first
+    private double[] awaited = new double[4];
+    private int awaitedCount = 0;
+
+    /**
+     * Creates a verifier that judges each reading as soon as it arrives.
+     *
+     * @param collection The catalog giving the expected weight of scanned items.
+     * @param scale      The bagging area's scale, whose sensitivity is the tolerance.
+     */
+    public BaggingAreaVerifier(BarcodedItemCollection collection, ElectronicScale scale)
+    {
+        this(collection, scale, 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * Creates a verifier that waits for the weight to settle before judging it.
+     *
+     * @param collection The catalog giving the expected weight of scanned items.
+     * @param scale      The bagging area's scale, whose sensitivity is the tolerance.
+     * @param settleTime How long the weight must stay put before it is judged.
+     * @param unit       The unit of the settle time.
+     * @param scheduler  Judges the weight once it has settled, or null to leave that to {@link #update()}.
+     */
+    public BaggingAreaVerifier(BarcodedItemCollection collection, ElectronicScale scale, long settleTime, TimeUnit unit, ScheduledExecutorService scheduler)
+    {
+        this(collection, scale.getSensitivity(), unit.toNanos(settleTime), scheduler, System::nanoTime);
+    }
+
+    // Lets tests control the passing of time
+    BaggingAreaVerifier(BarcodedItemCollection collection, double toleranceInGrams, long settleNanos, ScheduledExecutorService scheduler, LongSupplier clock)
+    {
+        if (collection == null) throw new NullPointerException("collection is null");
+        if (settleNanos < 0) throw new IllegalArgumentException("The settle time cannot be negative: " + settleNanos);
+
+        this.collection = collection;
+        this.toleranceInGrams = toleranceInGrams;
+        this.settleNanos = settleNanos;
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    /**
+     * Sets who is told about changes of state.
+     *
+     * @param listener The listener, or null for none.
+     */
+    public synchronized void setListener(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    @Override
+    public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    @Override
+    public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    /**
+     * Expects the scanned item in the bagging area next. Barcodes that are not in the catalog are ignored.
+     *
+     * @param barcodeScanner The scanner.
+     * @param barcode        The barcode scanned.
+     */
+    @Override
+    public void barcodeScanned(BarcodeScanner barcodeScanner, Barcode barcode)
+    {
+        CatalogEntry entry = collection.getEntry(barcode);
+
+        if (entry != null) itemExpected(entry.getExpectedWeight());
+    }
+
+    /**
+     * Expects an item of the indicated weight in the bagging area next. An item within the scale's sensitivity is taken
+     * as bagged straight away.
+     *
+     * @param weightInGrams The expected weight of the item.
+     */
+    public synchronized void itemExpected(double weightInGrams)
+    {
+        // The scale never announces a change this small, so waiting for the item would wait forever
+        if (weightInGrams <= toleranceInGrams) baggedWeightInGrams += weightInGrams;
+        else await(weightInGrams);
+
+        reconsider();
+    }
+
+    /**
+     * Expects an item whose weight is not known until it is weighed, such as one entered by PLU code, in the bagging area
+     * next. Any increase in weight is accepted for it.
+     */
+    public synchronized void itemToBeWeighed()
+    {
+        await(ANY_WEIGHT);
+        reconsider();
+    }
+
+    /**
+     * Stops expecting an item with the indicated barcode. If it has already been bagged, it is expected to be taken out
+     * again.
+     *
+     * @param barcode The barcode of the item voided.
+     */
+    public void itemVoided(Barcode barcode)
+    {
+        CatalogEntry entry = collection.getEntry(barcode);
+
+        if (entry != null) itemVoided(entry.getExpectedWeight());
+    }
+
+    /**
+     * Stops expecting an item of the indicated weight. If it has already been bagged, it is expected to be taken out
+     * again.
+     *
+     * @param weightInGrams The expected weight of the item voided.
+     */
+    public synchronized void itemVoided(double weightInGrams)
+    {
+        // The most recently scanned item is the one most likely to be voided
+        for (int i = awaitedCount - 1; i >= 0; i--)
+        {
+            if (awaited[i] == weightInGrams)
+            {
+                System.arraycopy(awaited, i + 1, awaited, i, awaitedCount - i - 1);
+                awaitedCount--;
+                reconsider();
+                return;
+            }
+        }
+
+        baggedWeightInGrams -= weightInGrams;
+        reconsider();
+    }
+
+    @Override
+    public synchronized void weightChanged(ElectronicScale scale, double weightInGrams)
+    {
+        read(weightInGrams);
+    }
+
+    @Override
+    public synchronized void overload(ElectronicScale scale)
+    {
+        setState(State.OVERLOAD);
+    }
+
+    @Override
+    public synchronized void outOfOverload(ElectronicScale scale)
+    {
+        try
+        {
+            read(scale.getCurrentWeight());
+        }
+        catch (OverloadException e)
+        {
+            // Overloaded again already; the scale will say so
+        }
+    }
+
+    /**
+     * Judges the latest reading if it has settled. Only needed when the verifier has a settle time and no scheduler.
+     */
+    public synchronized void update()
+    {
+        updateScheduled = false;
+
+        if (state != State.SETTLING) return;
+
+        long remaining = settleNanos - (clock.getAsLong() - readingTime);
+
+        if (remaining <= 0) judge(readingInGrams);
+        else schedule(remaining);
+    }
+
+    /**
+     * @return The state of the bagging area.
+     */
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return The weight the bagging area should have once every item scanned is bagged.
+     */
+    public synchronized double getExpectedWeight()
+    {
+        double expected = baggedWeightInGrams;
+
+        for (int i = 0; i < awaitedCount; i++)
+            if (!Double.isNaN(awaited[i])) expected += awaited[i];
+
+        return expected;
+    }
+
+    /**
+     * @return The last settled weight of the bagging area.
+     */
+    public synchronized double getMeasuredWeight()
+    {
+        return measuredWeightInGrams;
+    }
+
+    /**
+     * @return The number of items scanned but not yet bagged.
+     */
+    public synchronized int getAwaitedItemCount()
+    {
+        return awaitedCount;
+    }
+
+    /**
+     * @return The number of times the bagging area has gone into a mismatch.
+     */
+    public synchronized long getMismatchCount()
+    {
+        return mismatchCount;
+    }
+
+    private void await(double weightInGrams)
+    {
+        if (awaitedCount == awaited.length) awaited = Arrays.copyOf(awaited, awaitedCount * 2);
+
+        awaited[awaitedCount++] = weightInGrams;
+    }
+
+    private void read(double weightInGrams)
+    {
+        readingInGrams = weightInGrams;
+        readingTime = clock.getAsLong();
+
+        if (settleNanos == 0)
+        {
+            judge(weightInGrams);
+            return;
+        }
+
+        setState(State.SETTLING);
+        schedule(settleNanos);
+    }
+
+    private void schedule(long delayNanos)
+    {
+        if (scheduler != null && !updateScheduled)
+        {
+            updateScheduled = true;
+            scheduler.schedule(this::update, delayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Judges the settled weight again after the expected items change, unless a reading is still settling
+    private void reconsider()
+    {
+        if (state != State.SETTLING && state != State.OVERLOAD) judge(measuredWeightInGrams);
+    }
+
+    private void judge(double weightInGrams)
+    {
+        measuredWeightInGrams = weightInGrams;
+
+        if (Math.abs(weightInGrams - baggedWeightInGrams) <= toleranceInGrams)
+        {
+            matched();
+            return;
+        }
+
+        double expected = baggedWeightInGrams;
+
+        for (int i = 0; i < awaitedCount; i++)
+        {
+            boolean bagged;
+
+            if (Double.isNaN(awaited[i])) bagged = weightInGrams - expected > toleranceInGrams;
+            else
+            {
+                expected += awaited[i];
+                bagged = Math.abs(weightInGrams - expected) <= toleranceInGrams;
+            }
+
+            if (bagged)
+            {
+                // The scale's reading, not the catalog's, is what the bagged items weigh from now on
+                baggedWeightInGrams = weightInGrams;
+                awaitedCount -= i + 1;
+                System.arraycopy(awaited, i + 1, awaited, 0, awaitedCount);
+                matched();
+                return;
+            }
+        }
+
+        // A reading that is still wrong after another wrong one is the same mismatch
+        if (!mismatched) mismatchCount++;
+
+        mismatched = true;
+        setState(State.MISMATCH);
+    }
+
+    private void matched()
+    {
+        mismatched = false;
+        setState(awaitedCount == 0 ? State.MATCHED : State.AWAITING_ITEM);
+    }
+
+    private void setState(State newState)
+    {
+        if (state == newState) return;
+
+        state = newState;
+
+        if (listener != null) listener.stateChanged(this, newState);
+    }
+}
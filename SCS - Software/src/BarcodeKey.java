@@ -0,0 +1,83 @@
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Numeral;
+
+/**
+ * Packs barcodes of up to {@link #MAX_PACKED_DIGITS} digits into a single long so they can be used as primitive keys.
+ * The digits are read as a decimal number behind a leading 1, which keeps leading zeros significant (0012 and 12 pack
+ * to 10012 and 112) and means no barcode ever packs to {@link #NOT_PACKABLE}.
+ * <p>
+ * Barcodes may hold up to 48 digits, so longer barcodes cannot be packed and must be keyed on the {@link Barcode}
+ * itself.
+ */
+public final class BarcodeKey
+{
+    /**
+     * The most digits a packed barcode can hold: the sentinel 1 followed by 18 digits still fits in a long.
+     */
+    public static final int MAX_PACKED_DIGITS = 18;
+
+    /**
+     * Returned by {@link #pack(Barcode)} for barcodes that are too long to pack.
+     */
+    public static final long NOT_PACKABLE = 0;
+
+    private BarcodeKey()
+    {
+
+    }
+
+    /**
+     * Packs a barcode without allocating.
+     *
+     * @param barcode The barcode to pack.
+     * @return The packed key, or {@link #NOT_PACKABLE} if the barcode has more than {@link #MAX_PACKED_DIGITS} digits.
+     */
+    public static long pack(Barcode barcode)
+    {
+        int digitCount = barcode.digitCount();
+
+        if (digitCount > MAX_PACKED_DIGITS) return NOT_PACKABLE;
+
+        long key = 1;
+        for (int i = 0; i < digitCount; i++)
+            key = key * 10 + barcode.getDigitAt(i).getValue();
+
+        return key;
+    }
+
+    /**
+     * Rebuilds the barcode a key was packed from.
+     *
+     * @param key A key returned by {@link #pack(Barcode)}.
+     * @return The barcode.
+     * @throws IllegalArgumentException If the key was not produced by {@link #pack(Barcode)}.
+     */
+    public static Barcode unpack(long key)
+    {
+        if (key < 10) throw new IllegalArgumentException("Not a packed barcode: " + key);
+
+        int digitCount = 0;
+        for (long rest = key; rest >= 10; rest /= 10)
+            digitCount++;
+
+        if (digitCount > MAX_PACKED_DIGITS || key / pow10(digitCount) != 1)
+            throw new IllegalArgumentException("Not a packed barcode: " + key);
+
+        Numeral[] digits = new Numeral[digitCount];
+        for (int i = digitCount - 1; i >= 0; i--)
+        {
+            digits[i] = Numeral.valueOf((byte) (key % 10));
+            key /= 10;
+        }
+
+        return new Barcode(digits);
+    }
+
+    private static long pow10(int exponent)
+    {
+        long result = 1;
+        for (int i = 0; i < exponent; i++)
+            result *= 10;
+        return result;
+    }
+}
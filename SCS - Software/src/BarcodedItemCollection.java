@@ -1,53 +1,304 @@
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.function.BiFunction;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.lsmr.selfcheckout.Barcode;
 import org.lsmr.selfcheckout.BarcodedItem;
 import org.lsmr.selfcheckout.products.BarcodedProduct;
 
-public class BarcodedItemCollection  
+/**
+ * The store's catalog of barcoded products. Each barcode maps to a single {@link CatalogEntry} holding both the
+ * product (and so its price) and the expected weight of an item, so a lookup is one hash probe regardless of how many
+ * products are loaded.
+ * <p>
+ * Barcodes of up to {@link BarcodeKey#MAX_PACKED_DIGITS} digits (every retail symbology in use) are packed into a long
+ * and looked up in a primitive-keyed table, so scanning does not allocate or hash the barcode's numerals. Longer
+ * barcodes fall back to a map keyed on {@link Barcode#equals(Object)} and {@link Barcode#hashCode()}.
+ * <p>
+ * A collection can also be backed by a {@link MappedCatalog}, so a lane starts with the store's whole catalog without
+ * loading it. Barcodes not added to the collection itself are then looked up in the mapped file, and entries added to
+ * the collection take precedence over the file's. A lane that cannot hold the store's catalog at all can instead be
+ * backed by a {@link ProductCache}, which loads barcodes from the store's {@link ProductStore} as they are scanned.
+ * <p>
+ * The catalog's contents are held in an immutable {@link CatalogSnapshot} published through an atomic reference, so
+ * lookups never lock and never see a change half made. Each change publishes a new version: a price change lands
+ * with {@link #reload(MappedCatalog, Collection)} while lanes keep scanning, and a {@link Basket} keeps pricing against
+ * the version it started with until it is empty. Each change copies the current snapshot, so a catalog loaded item by
+ * item should be loaded in one {@link #update(Consumer)}, or with {@link #addEntries(Collection)} or
+ * {@link #reload(Collection)}, rather than one change at a time.
+ */
+public class BarcodedItemCollection
 {
-    ArrayList<BarcodedProduct> products = new ArrayList<BarcodedProduct>();
-    ArrayList<BarcodedItem> items = new ArrayList<BarcodedItem>();
+    /**
+     * Changes gathered to be published together as one new version of the catalog. A batch is only usable inside the
+     * {@link BarcodedItemCollection#update(Consumer)} it was passed to.
+     */
+    public static final class Batch
+    {
+        private final CatalogSnapshot snapshot;
+        // The entries changed so far, which later changes to the same barcode build on
+        private final HashMap<Barcode, CatalogEntry> changed = new HashMap<Barcode, CatalogEntry>();
+
+        private Batch(CatalogSnapshot snapshot)
+        {
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Records the weight of an item so it can be used as the expected weight of its barcode.
+         *
+         * @param item The item whose barcode and weight are recorded.
+         */
+        public void addItem(BarcodedItem item)
+        {
+            Barcode barcode = item.getBarcode();
+            CatalogEntry entry = getEntry(barcode);
+
+            if (entry == null) addEntry(new CatalogEntry(barcode, null, item.getWeight()));
+            else addEntry(entry.withExpectedWeight(item.getWeight()));
+        }
+
+        /**
+         * Records a product so it can be used to price its barcode.
+         *
+         * @param product The product to record.
+         */
+        public void addProduct(BarcodedProduct product)
+        {
+            CatalogEntry entry = getEntry(product.getBarcode());
+
+            if (entry == null) addEntry(new CatalogEntry(product, 0.0));
+            else addEntry(entry.withProduct(product));
+        }
+
+        /**
+         * Puts a barcode's product in a tax class. A barcode not in the catalog yet is added with only its tax class
+         * known, like a barcode whose item has been weighed but whose product is not registered.
+         *
+         * @param barcode  The barcode of the product.
+         * @param taxClass The class the product is taxed in.
+         */
+        public void setTaxClass(Barcode barcode, TaxClass taxClass)
+        {
+            if (taxClass == null) throw new NullPointerException("taxClass is null");
+
+            CatalogEntry entry = getEntry(barcode);
+
+            if (entry == null) addEntry(new CatalogEntry(barcode, null, 0.0, taxClass));
+            else addEntry(entry.withTaxClass(taxClass));
+        }
+
+        /**
+         * Adds (or replaces) a complete entry in the catalog.
+         *
+         * @param entry The entry to add.
+         */
+        public void addEntry(CatalogEntry entry)
+        {
+            changed.put(entry.getBarcode(), entry);
+        }
+
+        // Looks up a barcode as the batch has left it so far
+        private CatalogEntry getEntry(Barcode barcode)
+        {
+            CatalogEntry entry = changed.get(barcode);
+            return entry == null ? snapshot.getEntry(barcode) : entry;
+        }
+
+        // Builds the version of the catalog with the batch's changes, copying the snapshot once
+        private CatalogSnapshot publish()
+        {
+            return changed.isEmpty() ? snapshot : snapshot.with(changed.values());
+        }
+    }
+
+    private final AtomicReference<CatalogSnapshot> current;
+
+    /**
+     * Creates an empty collection.
+     */
+    public BarcodedItemCollection()
+    {
+        this((MappedCatalog) null);
+    }
+
+    /**
+     * Creates a collection backed by a mapped catalog.
+     *
+     * @param mapped The catalog that barcodes not added to the collection are looked up in, or null for none.
+     */
+    public BarcodedItemCollection(MappedCatalog mapped)
+    {
+        current = new AtomicReference<CatalogSnapshot>(CatalogSnapshot.of(mapped, null, Collections.<CatalogEntry>emptyList()));
+    }
+
+    /**
+     * Creates a collection backed by a product cache.
+     *
+     * @param cache The cache that barcodes not added to the collection are looked up in.
+     */
+    public BarcodedItemCollection(ProductCache cache)
+    {
+        current = new AtomicReference<CatalogSnapshot>(CatalogSnapshot.of(null, cache, Collections.<CatalogEntry>emptyList()));
+    }
 
+    /**
+     * Records the weight of an item so it can be used as the expected weight of its barcode.
+     *
+     * @param item The item whose barcode and weight are recorded.
+     */
     public void addItem(BarcodedItem item)
     {
-        items.add(item);
+        update(batch -> batch.addItem(item));
     }
 
+    /**
+     * Records a product so it can be used to price its barcode.
+     *
+     * @param product The product to record.
+     */
     public void addProduct(BarcodedProduct product)
     {
-        products.add(product);
-        
+        update(batch -> batch.addProduct(product));
+    }
+
+    /**
+     * Puts a barcode's product in a tax class. A barcode not in the catalog yet is added with only its tax class known,
+     * like a barcode whose item has been weighed but whose product is not registered.
+     *
+     * @param barcode  The barcode of the product.
+     * @param taxClass The class the product is taxed in.
+     */
+    public void setTaxClass(Barcode barcode, TaxClass taxClass)
+    {
+        if (taxClass == null) throw new NullPointerException("taxClass is null");
+
+        update(batch -> batch.setTaxClass(barcode, taxClass));
+    }
+
+    /**
+     * Adds (or replaces) a complete entry in the catalog.
+     *
+     * @param entry The entry to add.
+     */
+    public void addEntry(CatalogEntry entry)
+    {
+        update(batch -> batch.addEntry(entry));
     }
 
-    public BigDecimal getPrice(Barcode barcode)
+    /**
+     * Makes many changes at once, publishing them together as one new version, so that the catalog is copied once
+     * rather than once per change. Lookups never see part of the batch.
+     * <p>
+     * The changes are made against the latest version. If another change is published meanwhile, they are made again
+     * against that one, so the batch should do nothing but change the catalog.
+     *
+     * @param changes Makes the changes to the batch it is given.
+     * @return The snapshot published.
+     */
+    public CatalogSnapshot update(Consumer<Batch> changes)
     {
-        BigDecimal price = null;
-        for(int i = 0; i < items.size(); i++)
+        return current.updateAndGet(snapshot ->
         {
-           if(items.get(i).getBarcode() == barcode)
-           {
-                price = products.get(i).getPrice();
-                break;
-           }
-        }
+            Batch batch = new Batch(snapshot);
+            changes.accept(batch);
+            return batch.publish();
+        });
+    }
+
+    /**
+     * Adds (or replaces) many entries at once, publishing them together as one new version. The index is resized a
+     * single time up front rather than growing repeatedly while the entries are inserted.
+     *
+     * @param newEntries The entries to add.
+     */
+    public void addEntries(Collection<CatalogEntry> newEntries)
+    {
+        current.updateAndGet(snapshot -> snapshot.with(newEntries));
+    }
 
-        return price;
+    /**
+     * Replaces the whole catalog with the indicated entries, keeping the mapped catalog or product cache (if any) it is
+     * backed by.
+     *
+     * @param entries The entries of the new catalog.
+     * @return The snapshot published.
+     * @see #reload(MappedCatalog, Collection)
+     */
+    public CatalogSnapshot reload(Collection<CatalogEntry> entries)
+    {
+        // Built from the version being replaced, so a mapped catalog or cache reloaded meanwhile is kept
+        return current.updateAndGet(previous -> CatalogSnapshot.of(previous.getMapped(), previous.getCache(), entries).after(previous));
+    }
+
+    /**
+     * Replaces the whole catalog. The new version is built off to the side and then published in one step, so
+     * lookups carry on meanwhile, every lookup made after this returns sees only the new version, and baskets already
+     * under way keep their prices.
+     *
+     * @param mapped  The catalog that barcodes not among the entries are looked up in, or null for none. It replaces
+     *                any mapped catalog or product cache the collection was backed by.
+     * @param entries The entries of the new catalog, which take precedence over the mapped catalog's.
+     * @return The snapshot published.
+     */
+    public CatalogSnapshot reload(MappedCatalog mapped, Collection<CatalogEntry> entries)
+    {
+        CatalogSnapshot replacement = CatalogSnapshot.of(mapped, null, entries);
+        return current.updateAndGet(replacement::after);
     }
 
+    /**
+     * @return The current version of the catalog, which stays as it is however the collection changes afterwards.
+     */
+    public CatalogSnapshot snapshot()
+    {
+        return current.get();
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The entry for the barcode, or null if it is not in the catalog.
+     */
+    public CatalogEntry getEntry(Barcode barcode)
+    {
+        return current.get().getEntry(barcode);
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The price of the product with the barcode, or null if it is not in the catalog.
+     */
+    public Money getPrice(Barcode barcode)
+    {
+        return current.get().getPrice(barcode);
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The expected weight of an item with the barcode, or 0 if it is not in the catalog.
+     */
     public double getExpectedWeight(Barcode barcode)
     {
-        double weight = 0.0;
-        for(int i = 0; i < items.size(); i++)
-        {
-           if(items.get(i).getBarcode() == barcode)
-           {
-                weight = items.get(i).getWeight();
-                break;
-           }
-        }
-        return weight;
+        return current.get().getExpectedWeight(barcode);
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The class the product with the barcode is taxed in, or null if it is not in the catalog.
+     */
+    public TaxClass getTaxClass(Barcode barcode)
+    {
+        CatalogEntry entry = current.get().getEntry(barcode);
+        return entry == null ? null : entry.getTaxClass();
+    }
+
+    /**
+     * @return The number of barcodes in the catalog.
+     */
+    public int size()
+    {
+        return current.get().size();
     }
-}
\ No newline at end of file
+}
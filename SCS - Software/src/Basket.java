@@ -0,0 +1,392 @@
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.PLUCodedItem;
+import org.lsmr.selfcheckout.PriceLookupCode;
+
+/**
+ * The items the customer is buying, with a running subtotal and expected bagging-area weight. Each scan, void or
+ * quantity change adjusts the totals by the difference it makes, so reading them never walks the basket.
+ * <p>
+ * The basket is changed from the station's thread, as device events arrive. The totals are published through volatile
+ * fields so another thread (such as the user interface) can read a live total at any time.
+ * <p>
+ * Barcodes are priced against the version of the catalog current when the first item was scanned, so reloading the
+ * catalog part way through a transaction never mixes old and new prices in one basket. Once the basket is empty again,
+ * the next scan picks up the latest version.
+ * <p>
+ * If the store's promotions are set, the subtotal is net of their discounts. Each line remembers the promotions its
+ * product is in, so a scan or void re-evaluates only those promotions, against only the items in them.
+ * <p>
+ * Barcoded items are taxed by the {@link TaxClass} of their catalog entry. The basket keeps a taxable subtotal per class
+ * in a {@link TaxEngine}, adjusted with the subtotal, and rounds each class's tax once when the tax is read at tender.
+ * Items sold by weight are not taxed. The tax is read from the station's thread, unlike the subtotal.
+ * <p>
+ * If a {@link BaggingAreaVerifier} is set, the basket tells it about each barcoded item added or removed and each
+ * weighed item voided, with the expected weight of the catalog version the basket is priced against.
+ */
+public class Basket
+{
+    // One product in the basket and how many of it are being bought
+    private static final class Line
+    {
+        private final CatalogEntry entry;
+        // The basket's progress towards each promotion the product is in
+        private final Promotion.Progress[] promotions;
+        // The slot of the product's tax class in the basket's tax engine
+        private final int taxSlot;
+        private int quantity;
+
+        private Line(CatalogEntry entry, Promotion.Progress[] promotions, int taxSlot)
+        {
+            this.entry = entry;
+            this.promotions = promotions;
+            this.taxSlot = taxSlot;
+        }
+    }
+
+    private static final Promotion.Progress[] NO_PROMOTIONS = new Promotion.Progress[0];
+
+    private final BarcodedItemCollection collection;
+    private final PLUCodedItemCollection pluCollection;
+    private PromotionEngine promotions = null;
+    // What the items scanned have earned towards each promotion, or null if there are no promotions
+    private PromotionEngine.Tally tally = null;
+    private TaxEngine taxes = new TaxEngine();
+    private BaggingAreaVerifier verifier = null;
+    private TransactionJournal journal = null;
+
+    // The catalog version scanned items are priced against, or null while the basket is empty
+    private CatalogSnapshot catalog = null;
+
+    // Lines are keyed by the packed barcode rather than the entry, since a mapped catalog builds a new entry per lookup
+    private LongOpenHashMap<Line> packedLines = new LongOpenHashMap<Line>();
+    private final HashMap<Barcode, Line> unpackableLines = new HashMap<Barcode, Line>();
+    private final IdentityHashMap<PLUCodedItem, Money> weighedItems = new IdentityHashMap<PLUCodedItem, Money>();
+
+    // The subtotal and discount are kept in cents so that updating them does not allocate
+    private volatile long subtotal = 0;
+    private volatile long discount = 0;
+    private volatile double expectedWeightInGrams = 0.0;
+    private volatile int itemCount = 0;
+
+    /**
+     * Creates an empty basket.
+     *
+     * @param collection    The catalog used to price scanned barcodes.
+     * @param pluCollection The catalog used to price items entered by PLU code.
+     */
+    public Basket(BarcodedItemCollection collection, PLUCodedItemCollection pluCollection)
+    {
+        this.collection = collection;
+        this.pluCollection = pluCollection;
+    }
+
+    /**
+     * Sets the promotions that discount the items scanned.
+     *
+     * @param promotions The store's promotions, or null for none.
+     * @throws IllegalStateException If the basket is not empty.
+     */
+    public void setPromotions(PromotionEngine promotions)
+    {
+        if (itemCount != 0) throw new IllegalStateException("Promotions can only be changed while the basket is empty");
+
+        this.promotions = promotions;
+        tally = promotions == null ? null : promotions.newTally();
+    }
+
+    /**
+     * Sets the verifier told about the items added to and removed from the basket.
+     *
+     * @param verifier The verifier of the station's bagging area, or null for none.
+     */
+    public void setBaggingAreaVerifier(BaggingAreaVerifier verifier)
+    {
+        this.verifier = verifier;
+    }
+
+    /**
+     * Sets the journal that records the items voided and the quantities changed, which are not device events.
+     *
+     * @param journal The journal of the station, or null for none.
+     */
+    public void setJournal(TransactionJournal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Adds one item with the indicated barcode.
+     *
+     * @param barcode The barcode scanned.
+     * @return false if the barcode has no price in the catalog, in which case nothing is added.
+     */
+    public boolean add(Barcode barcode)
+    {
+        CatalogSnapshot priced = catalog == null ? collection.snapshot() : catalog;
+        CatalogEntry entry = priced.getEntry(barcode);
+
+        if (entry == null || entry.getProduct() == null) return false;
+
+        catalog = priced;
+        Line line = findLine(barcode);
+        if (line == null)
+        {
+            Promotion.Progress[] lineProgress = tally == null ? NO_PROMOTIONS : tally.progressFor(promotions.promotionsFor(barcode));
+            line = new Line(entry, lineProgress, taxes.slotFor(entry.getTaxClass()));
+
+            long key = BarcodeKey.pack(barcode);
+            if (key == BarcodeKey.NOT_PACKABLE) unpackableLines.put(barcode, line);
+            else packedLines.put(key, line);
+        }
+
+        adjust(line, 1);
+        return true;
+    }
+
+    /**
+     * Removes one item with the indicated barcode.
+     *
+     * @param barcode The barcode of the item being voided.
+     * @return false if there is no such item in the basket.
+     */
+    public boolean voidItem(Barcode barcode)
+    {
+        Line line = findLine(barcode);
+
+        if (line == null || line.quantity == 0) return false;
+
+        adjust(line, -1);
+
+        if (journal != null) journal.quantityChanged(barcode, line.quantity);
+
+        return true;
+    }
+
+    /**
+     * Sets how many items with the indicated barcode are being bought.
+     *
+     * @param barcode  The barcode of the item.
+     * @param quantity The new quantity. Cannot be negative.
+     * @return false if there is no such item in the basket.
+     * @throws IllegalArgumentException If the quantity is negative.
+     */
+    public boolean setQuantity(Barcode barcode, int quantity)
+    {
+        if (quantity < 0) throw new IllegalArgumentException("The quantity cannot be negative: " + quantity);
+
+        Line line = findLine(barcode);
+
+        if (line == null) return false;
+
+        adjust(line, quantity - line.quantity);
+
+        if (journal != null) journal.quantityChanged(barcode, quantity);
+
+        return true;
+    }
+
+    /**
+     * Adds an item sold by weight.
+     *
+     * @param item The item, with the weight measured for it.
+     * @return false if its PLU code has no price in the catalog or it is already in the basket, in which case nothing is
+     *         added.
+     */
+    public boolean addWeighed(PLUCodedItem item)
+    {
+        Money price = pluCollection.getPrice(item.getPLUCode(), item.getWeight());
+
+        if (price == null || weighedItems.containsKey(item)) return false;
+
+        weighedItems.put(item, price);
+        update(price.getMinorUnits(), item.getWeight(), 1);
+        return true;
+    }
+
+    /**
+     * Removes an item sold by weight.
+     *
+     * @param item The item being voided.
+     * @return false if the item is not in the basket.
+     */
+    public boolean voidWeighed(PLUCodedItem item)
+    {
+        Money price = weighedItems.remove(item);
+
+        if (price == null) return false;
+
+        update(-price.getMinorUnits(), -item.getWeight(), -1);
+
+        if (verifier != null) verifier.itemVoided(item.getWeight());
+        if (journal != null) journal.weighedItemVoided(item);
+
+        return true;
+    }
+
+    /**
+     * Removes an item sold by weight, found by its PLU code and weight, as when a void is read back from the journal.
+     *
+     * @param code          The PLU code of the item.
+     * @param weightInGrams The weight measured for it.
+     * @return false if no such item is in the basket.
+     */
+    boolean voidWeighed(PriceLookupCode code, double weightInGrams)
+    {
+        for (PLUCodedItem item : weighedItems.keySet())
+            if (item.getPLUCode().equals(code) && item.getWeight() == weightInGrams) return voidWeighed(item);
+
+        return false;
+    }
+
+    /**
+     * @param barcode The barcode of the item.
+     * @return How many items with the barcode are in the basket.
+     */
+    public int getQuantity(Barcode barcode)
+    {
+        Line line = findLine(barcode);
+        return line == null ? 0 : line.quantity;
+    }
+
+    /**
+     * @return The total price of everything in the basket, less the discounts from promotions.
+     */
+    public Money getSubtotal()
+    {
+        return Money.ofMinor(subtotal, Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @return The total of the discounts earned from promotions.
+     */
+    public Money getDiscount()
+    {
+        return Money.ofMinor(discount, Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @param promotion One of the store's promotions.
+     * @return The discount earned from the promotion.
+     */
+    public Money getDiscount(Promotion promotion)
+    {
+        return Money.ofMinor(tally == null ? 0 : tally.getDiscount(promotion), Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @return The tax on everything in the basket: each tax class's taxable subtotal, net of discounts, taxed at its
+     *         rate and rounded once to the cent.
+     */
+    public Money getTax()
+    {
+        return Money.ofMinor(taxes.getTotalTax(), Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @param taxClass A tax class.
+     * @return The tax on the items in the basket in the class, rounded once to the cent.
+     */
+    public Money getTax(TaxClass taxClass)
+    {
+        return Money.ofMinor(taxes.getTax(taxClass), Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @return The tax classes with an amount taxable in the basket, in the order they were first scanned.
+     */
+    public List<TaxClass> getTaxClasses()
+    {
+        return taxes.getTaxClasses();
+    }
+
+    /**
+     * @return The amount owed: the subtotal plus tax.
+     */
+    public Money getTotal()
+    {
+        return Money.ofMinor(subtotal + taxes.getTotalTax(), Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @return The version of the catalog the basket is priced against, or null if no item has been scanned since it was
+     *         last empty.
+     */
+    public CatalogSnapshot getCatalog()
+    {
+        return catalog;
+    }
+
+    /**
+     * @return The weight everything in the basket is expected to have in the bagging area.
+     */
+    public double getExpectedWeight()
+    {
+        return expectedWeightInGrams;
+    }
+
+    /**
+     * @return The number of items in the basket.
+     */
+    public int getItemCount()
+    {
+        return itemCount;
+    }
+
+    private Line findLine(Barcode barcode)
+    {
+        long key = BarcodeKey.pack(barcode);
+
+        if (key == BarcodeKey.NOT_PACKABLE) return unpackableLines.get(barcode);
+        return packedLines.get(key);
+    }
+
+    private void adjust(Line line, int delta)
+    {
+        if (delta == 0) return;
+
+        line.quantity += delta;
+        CatalogEntry entry = line.entry;
+        long unitPrice = entry.getPrice().getMinorUnits();
+        long discountDelta = line.promotions.length == 0 ? 0 : tally.update(line.promotions, unitPrice, delta, taxes, line.taxSlot);
+
+        taxes.add(line.taxSlot, unitPrice * delta);
+        discount = discount + discountDelta;
+        update(unitPrice * delta - discountDelta, entry.getExpectedWeight() * delta, delta);
+
+        if (verifier != null) tellVerifier(entry.getExpectedWeight(), delta);
+    }
+
+    // Tells the verifier about each item added or removed, one at a time as it keeps each item's weight
+    private void tellVerifier(double expectedWeightInGrams, int delta)
+    {
+        for (int i = 0; i < delta; i++)
+            verifier.itemExpected(expectedWeightInGrams);
+
+        for (int i = 0; i > delta; i--)
+            verifier.itemVoided(expectedWeightInGrams);
+    }
+
+    private void update(long priceDelta, double weightDelta, int countDelta)
+    {
+        int newItemCount = itemCount + countDelta;
+
+        subtotal = subtotal + priceDelta;
+        // An empty basket weighs exactly nothing, whatever round-off the additions and removals left behind
+        expectedWeightInGrams = newItemCount == 0 ? 0.0 : expectedWeightInGrams + weightDelta;
+        itemCount = newItemCount;
+
+        // An empty basket lets go of its catalog version, so the next transaction is priced at the latest
+        if (newItemCount == 0 && catalog != null)
+        {
+            catalog = null;
+            packedLines = new LongOpenHashMap<Line>();
+            unpackableLines.clear();
+            tally = promotions == null ? null : promotions.newTally();
+            taxes = new TaxEngine();
+        }
+    }
+}
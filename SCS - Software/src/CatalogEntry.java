@@ -0,0 +1,116 @@
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * A single record of the store's catalog: the product sold under a barcode together with the weight an item of that
+ * product is expected to have in the bagging area and the {@link TaxClass} it is taxed in. Entries are immutable, so a
+ * lookup always sees a price, an expected weight and a tax class that belong together.
+ * <p>
+ * The product's price is converted to {@link Money} in the store's currency once, when the entry is created.
+ */
+public final class CatalogEntry
+{
+    private final Barcode barcode;
+    private final BarcodedProduct product;
+    private final Money price;
+    private final double expectedWeightInGrams;
+    private final TaxClass taxClass;
+
+    /**
+     * Creates a catalog entry for an exempt product.
+     *
+     * @param barcode               The barcode the entry is filed under. Cannot be null.
+     * @param product               The product sold under the barcode, or null if only the item's weight is known so far.
+     * @param expectedWeightInGrams The expected weight of one item of the product.
+     * @throws ArithmeticException If the product's price is not a whole number of cents.
+     */
+    public CatalogEntry(Barcode barcode, BarcodedProduct product, double expectedWeightInGrams)
+    {
+        this(barcode, product, expectedWeightInGrams, TaxClass.EXEMPT);
+    }
+
+    /**
+     * Creates a catalog entry.
+     *
+     * @param barcode               The barcode the entry is filed under. Cannot be null.
+     * @param product               The product sold under the barcode, or null if only the item's weight is known so far.
+     * @param expectedWeightInGrams The expected weight of one item of the product.
+     * @param taxClass              The class the product is taxed in. Cannot be null.
+     * @throws ArithmeticException If the product's price is not a whole number of cents.
+     */
+    public CatalogEntry(Barcode barcode, BarcodedProduct product, double expectedWeightInGrams, TaxClass taxClass)
+    {
+        if (barcode == null) throw new NullPointerException("barcode is null");
+        if (taxClass == null) throw new NullPointerException("taxClass is null");
+
+        this.barcode = barcode;
+        this.product = product;
+        this.price = product == null ? null : Money.of(product.getPrice(), Money.DEFAULT_CURRENCY);
+        this.expectedWeightInGrams = expectedWeightInGrams;
+        this.taxClass = taxClass;
+    }
+
+    /**
+     * Creates a catalog entry for an exempt product.
+     *
+     * @param product               The product sold. Cannot be null.
+     * @param expectedWeightInGrams The expected weight of one item of the product.
+     * @throws ArithmeticException If the product's price is not a whole number of cents.
+     */
+    public CatalogEntry(BarcodedProduct product, double expectedWeightInGrams)
+    {
+        this(product.getBarcode(), product, expectedWeightInGrams);
+    }
+
+    public Barcode getBarcode()
+    {
+        return barcode;
+    }
+
+    /**
+     * @return The product, or null if no product has been registered for the barcode yet.
+     */
+    public BarcodedProduct getProduct()
+    {
+        return product;
+    }
+
+    /**
+     * @return The price of the product, or null if no product has been registered for the barcode yet.
+     */
+    public Money getPrice()
+    {
+        return price;
+    }
+
+    public double getExpectedWeight()
+    {
+        return expectedWeightInGrams;
+    }
+
+    /**
+     * @return The class the product is taxed in.
+     */
+    public TaxClass getTaxClass()
+    {
+        return taxClass;
+    }
+
+    // Returns a copy of this entry with the product replaced
+    CatalogEntry withProduct(BarcodedProduct newProduct)
+    {
+        return new CatalogEntry(barcode, newProduct, expectedWeightInGrams, taxClass);
+    }
+
+    // Returns a copy of this entry with the expected weight replaced
+    CatalogEntry withExpectedWeight(double newExpectedWeightInGrams)
+    {
+        return new CatalogEntry(barcode, product, newExpectedWeightInGrams, taxClass);
+    }
+
+    // Returns a copy of this entry with the tax class replaced
+    CatalogEntry withTaxClass(TaxClass newTaxClass)
+    {
+        return new CatalogEntry(barcode, product, expectedWeightInGrams, newTaxClass);
+    }
+}
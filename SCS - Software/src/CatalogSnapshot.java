@@ -0,0 +1,168 @@
+import java.util.Collection;
+import java.util.HashMap;
+
+import org.lsmr.selfcheckout.Barcode;
+
+/**
+ * One version of the store's catalog. A snapshot never changes once it is published: adding entries to a
+ * {@link BarcodedItemCollection} or reloading it publishes a new snapshot with the next version number, and readers
+ * still holding the old one go on seeing the old prices, whole and consistent.
+ * <p>
+ * Barcodes not among the snapshot's own entries are looked up in the mapped catalog or the product cache the
+ * collection is backed by, if any. A product cache is shared by every version rather than copied, so it always gives the
+ * store's latest entries.
+ * <p>
+ * Snapshots may be read by any number of threads at once without locking.
+ */
+public final class CatalogSnapshot
+{
+    private final long version;
+    private final LongOpenHashMap<CatalogEntry> packedEntries;
+    private final HashMap<Barcode, CatalogEntry> unpackableEntries;
+    private final MappedCatalog mapped;
+    private final ProductCache cache;
+    // The number of barcodes in the snapshot that are also in the mapped catalog, so they are counted once
+    private final int overridden;
+
+    private CatalogSnapshot(long version, LongOpenHashMap<CatalogEntry> packedEntries, HashMap<Barcode, CatalogEntry> unpackableEntries, MappedCatalog mapped, ProductCache cache, int overridden)
+    {
+        this.version = version;
+        this.packedEntries = packedEntries;
+        this.unpackableEntries = unpackableEntries;
+        this.mapped = mapped;
+        this.cache = cache;
+        this.overridden = overridden;
+    }
+
+    /**
+     * Builds a first version of the catalog.
+     *
+     * @param mapped  The catalog that barcodes not among the entries are looked up in, or null for none.
+     * @param cache   The cache that barcodes not among the entries are looked up in, or null for none.
+     * @param entries The entries, which take precedence over the mapped catalog's or the cache's.
+     * @return The snapshot, with version 0.
+     * @throws IllegalArgumentException If both a mapped catalog and a cache are given.
+     */
+    static CatalogSnapshot of(MappedCatalog mapped, ProductCache cache, Collection<CatalogEntry> entries)
+    {
+        if (mapped != null && cache != null) throw new IllegalArgumentException("A catalog is backed by a mapped catalog or a product cache, not both");
+
+        return new CatalogSnapshot(-1, new LongOpenHashMap<CatalogEntry>(), new HashMap<Barcode, CatalogEntry>(), mapped, cache, 0).with(entries);
+    }
+
+    /**
+     * Builds the next version of the catalog, copying this one's entries and adding (or replacing) the indicated ones.
+     * This snapshot is left as it was.
+     *
+     * @param entries The entries to add.
+     * @return The new snapshot.
+     */
+    CatalogSnapshot with(Collection<CatalogEntry> entries)
+    {
+        LongOpenHashMap<CatalogEntry> packed = new LongOpenHashMap<CatalogEntry>(packedEntries, packedEntries.size() + entries.size());
+        HashMap<Barcode, CatalogEntry> unpackable = new HashMap<Barcode, CatalogEntry>(unpackableEntries);
+        int newOverridden = overridden;
+
+        for (CatalogEntry entry : entries)
+        {
+            long key = BarcodeKey.pack(entry.getBarcode());
+
+            if (key == BarcodeKey.NOT_PACKABLE) unpackable.put(entry.getBarcode(), entry);
+            else if (packed.put(key, entry) == null && mapped != null && mapped.indexOf(key) >= 0) newOverridden++;
+        }
+
+        return new CatalogSnapshot(version + 1, packed, unpackable, mapped, cache, newOverridden);
+    }
+
+    /**
+     * Renumbers a snapshot that was built on its own, so that it follows another.
+     *
+     * @param previous The snapshot this one replaces.
+     * @return A snapshot with the same entries and the version after the previous one's.
+     */
+    CatalogSnapshot after(CatalogSnapshot previous)
+    {
+        return new CatalogSnapshot(previous.version + 1, packedEntries, unpackableEntries, mapped, cache, overridden);
+    }
+
+    /**
+     * @return The version of the catalog, which goes up by one with each change published.
+     */
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @return The mapped catalog that barcodes not added in memory are looked up in, or null if there is none.
+     */
+    MappedCatalog getMapped()
+    {
+        return mapped;
+    }
+
+    /**
+     * @return The cache that barcodes not added in memory are looked up in, or null if there is none.
+     */
+    ProductCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The entry for the barcode, or null if it is not in the catalog.
+     */
+    public CatalogEntry getEntry(Barcode barcode)
+    {
+        CatalogEntry entry = getLocalEntry(barcode);
+
+        if (entry == null && mapped != null) return mapped.getEntry(barcode);
+        if (entry == null && cache != null) return cache.getEntry(barcode);
+        return entry;
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The price of the product with the barcode, or null if it is not in the catalog.
+     */
+    public Money getPrice(Barcode barcode)
+    {
+        CatalogEntry entry = getLocalEntry(barcode);
+
+        if (entry == null && mapped != null) return mapped.getPrice(barcode);
+        if (entry == null && cache != null) entry = cache.getEntry(barcode);
+        return entry == null ? null : entry.getPrice();
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The expected weight of an item with the barcode, or 0 if it is not in the catalog.
+     */
+    public double getExpectedWeight(Barcode barcode)
+    {
+        CatalogEntry entry = getLocalEntry(barcode);
+
+        if (entry == null && mapped != null) return mapped.getExpectedWeight(barcode);
+        if (entry == null && cache != null) entry = cache.getEntry(barcode);
+        return entry == null ? 0.0 : entry.getExpectedWeight();
+    }
+
+    // Looks up a barcode among the entries added in memory, without falling back to the mapped catalog
+    private CatalogEntry getLocalEntry(Barcode barcode)
+    {
+        long key = BarcodeKey.pack(barcode);
+
+        if (key == BarcodeKey.NOT_PACKABLE) return unpackableEntries.get(barcode);
+        return packedEntries.get(key);
+    }
+
+    /**
+     * @return The number of barcodes in the catalog. Barcodes known only to the store behind a product cache are not
+     *         counted.
+     */
+    public int size()
+    {
+        return packedEntries.size() + unpackableEntries.size() + (mapped == null ? 0 : mapped.size() - overridden);
+    }
+}
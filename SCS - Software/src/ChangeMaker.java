@@ -0,0 +1,509 @@
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BanknoteDispenser;
+import org.lsmr.selfcheckout.devices.BanknoteSlot;
+import org.lsmr.selfcheckout.devices.CoinDispenser;
+import org.lsmr.selfcheckout.devices.DisabledException;
+import org.lsmr.selfcheckout.devices.EmptyException;
+import org.lsmr.selfcheckout.devices.OverloadException;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.BanknoteSlotObserver;
+
+/**
+ * Works out and pays out a customer's change from the coins and banknotes actually in the station's dispensers.
+ * <p>
+ * The payout uses as few pieces as possible for any set of denominations, not just those where always taking the
+ * largest piece works. It is found by dynamic programming over the amounts up to the change due, in steps of the
+ * greatest common divisor of the denominations, where each denomination can be used at most as many times as its
+ * dispenser has pieces. If the exact amount cannot be made, the largest amount below it that can be made is paid and the
+ * difference is reported as a shortfall.
+ * <p>
+ * The coins of a payout are emitted into the coin tray in one go. Only one banknote can hang from the output slot at a
+ * time, so the banknotes are emitted one after another as the customer takes each from the slot. Coins that do not fit
+ * in the coin tray wait until {@link #dispensePending()} is called after the customer has emptied it.
+ * <p>
+ * A change maker belongs to one station and is not safe for use by several threads at once.
+ */
+public class ChangeMaker implements BanknoteSlotObserver
+{
+    // Above this many steps of the smallest unit, the largest pieces are set aside before the table is built
+    private static final int MAX_TABLE_SIZE = 1 << 16;
+    private static final int UNREACHABLE = Integer.MAX_VALUE / 2;
+
+    /**
+     * The pieces chosen to pay out an amount of change.
+     */
+    public static final class Payout
+    {
+        private final ChangeMaker maker;
+        private final int[] counts;
+        private final Money amount;
+        private final Money shortfall;
+
+        private Payout(ChangeMaker maker, int[] counts, Money amount, Money shortfall)
+        {
+            this.maker = maker;
+            this.counts = counts;
+            this.amount = amount;
+            this.shortfall = shortfall;
+        }
+
+        /**
+         * @return The amount paid out.
+         */
+        public Money getAmount()
+        {
+            return amount;
+        }
+
+        /**
+         * @return How much less than the change due is paid out, because the dispensers cannot make the exact amount.
+         */
+        public Money getShortfall()
+        {
+            return shortfall;
+        }
+
+        /**
+         * @return true if the change due is paid out in full.
+         */
+        public boolean isExact()
+        {
+            return shortfall.isZero();
+        }
+
+        /**
+         * @return The number of coins and banknotes paid out.
+         */
+        public int getPieceCount()
+        {
+            int pieces = 0;
+
+            for (int count : counts)
+                pieces += count;
+
+            return pieces;
+        }
+
+        /**
+         * @param denomination A coin denomination of the station.
+         * @return The number of coins of the denomination paid out.
+         */
+        public int getCoinCount(BigDecimal denomination)
+        {
+            for (int i = 0; i < maker.coinCount; i++)
+                if (maker.coinDenominations[i].compareTo(denomination) == 0) return counts[i];
+
+            return 0;
+        }
+
+        /**
+         * @param denomination A banknote denomination of the station.
+         * @return The number of banknotes of the denomination paid out.
+         */
+        public int getBanknoteCount(int denomination)
+        {
+            for (int i = maker.coinCount; i < counts.length; i++)
+                if (maker.banknoteDenominations[i - maker.coinCount] == denomination) return counts[i];
+
+            return 0;
+        }
+    }
+
+    private final SelfCheckoutStation station;
+    private final Currency currency;
+
+    // Coins first, then banknotes, each sorted from the largest value down
+    private final int coinCount;
+    private final BigDecimal[] coinDenominations;
+    private final int[] banknoteDenominations;
+    private final AbstractDevice<?>[] dispensers;
+    private final long[] values;
+    private final int[] largestFirst;
+    private final long unit;
+
+    // Pieces chosen but not yet emitted
+    private final int[] pending;
+
+    // Scratch space for the solver, kept between calls so that planning does not allocate tables
+    private final int[] available;
+    private int[] best = new int[0];
+    private int[] next = new int[0];
+    private int[] window = new int[0];
+    private int[] choices = new int[0];
+
+    /**
+     * Creates a change maker for a station and attaches it to the station's banknote output slot, so that it can emit
+     * the next banknote when the customer takes one.
+     *
+     * @param station The station whose dispensers pay out the change.
+     * @throws ArithmeticException If a coin denomination is not a whole number of the currency's minor units.
+     */
+    public ChangeMaker(SelfCheckoutStation station)
+    {
+        this.station = station;
+        this.currency = station.coinValidator.currency;
+
+        coinCount = station.coinDispensers.size();
+        int denominationCount = coinCount + station.banknoteDispensers.size();
+
+        coinDenominations = new BigDecimal[coinCount];
+        banknoteDenominations = new int[denominationCount - coinCount];
+        dispensers = new AbstractDevice<?>[denominationCount];
+        values = new long[denominationCount];
+
+        int i = 0;
+        for (BigDecimal denomination : station.coinDispensers.keySet())
+            coinDenominations[i++] = denomination;
+        Arrays.sort(coinDenominations, (a, b) -> b.compareTo(a));
+
+        i = 0;
+        for (int denomination : station.banknoteDispensers.keySet())
+            banknoteDenominations[i++] = denomination;
+        Arrays.sort(banknoteDenominations);
+        for (int left = 0, right = banknoteDenominations.length - 1; left < right; left++, right--)
+        {
+            int swap = banknoteDenominations[left];
+            banknoteDenominations[left] = banknoteDenominations[right];
+            banknoteDenominations[right] = swap;
+        }
+
+        long gcd = 0;
+        for (i = 0; i < denominationCount; i++)
+        {
+            if (i < coinCount)
+            {
+                dispensers[i] = station.coinDispensers.get(coinDenominations[i]);
+                values[i] = Money.toMinorUnits(coinDenominations[i], currency);
+            }
+            else
+            {
+                dispensers[i] = station.banknoteDispensers.get(banknoteDenominations[i - coinCount]);
+                values[i] = Money.ofMajor(banknoteDenominations[i - coinCount], currency).getMinorUnits();
+            }
+
+            gcd = gcd(gcd, values[i]);
+        }
+
+        unit = gcd == 0 ? 1 : gcd;
+
+        largestFirst = new int[denominationCount];
+        for (i = 0; i < denominationCount; i++)
+        {
+            int j = i;
+            for (; j > 0 && values[largestFirst[j - 1]] < values[i]; j--)
+                largestFirst[j] = largestFirst[j - 1];
+            largestFirst[j] = i;
+        }
+        pending = new int[denominationCount];
+        available = new int[denominationCount];
+
+        station.banknoteOutput.attach(this);
+    }
+
+    /**
+     * Works out which pieces would pay out an amount of change, without paying anything out.
+     *
+     * @param change The change due. Cannot be negative.
+     * @return The pieces to pay out.
+     * @throws IllegalArgumentException If the change is negative or in a different currency from the station.
+     */
+    public Payout plan(Money change)
+    {
+        if (!currency.equals(change.getCurrency()))
+            throw new IllegalArgumentException("Change is due in " + change.getCurrency() + " but the station pays out " + currency);
+        if (change.signum() < 0) throw new IllegalArgumentException("The change cannot be negative: " + change);
+
+        int n = values.length;
+        long target = change.getMinorUnits() / unit;
+        long total = 0;
+
+        for (int i = 0; i < n; i++)
+        {
+            available[i] = availablePieces(i);
+            total += available[i] * (values[i] / unit);
+        }
+
+        int[] counts = new int[n];
+
+        // Everything in the dispensers is the most that can be paid without going over
+        if (total <= target)
+        {
+            System.arraycopy(available, 0, counts, 0, n);
+            return payout(counts, change);
+        }
+
+        // Set the largest pieces aside until the rest fits in the table
+        for (int k = 0; k < n && target > MAX_TABLE_SIZE; k++)
+        {
+            int i = largestFirst[k];
+            long step = values[i] / unit;
+            long taken = Math.min(available[i], Math.min(target / step, (target - MAX_TABLE_SIZE + step - 1) / step));
+
+            counts[i] += (int) taken;
+            available[i] -= (int) taken;
+            target -= taken * step;
+        }
+
+        solve((int) Math.min(target, MAX_TABLE_SIZE), counts);
+        return payout(counts, change);
+    }
+
+    /**
+     * Works out and pays out an amount of change. The coins are emitted at once, as far as the coin tray has room, and
+     * the first banknote is emitted if the output slot is free.
+     *
+     * @param change The change due. Cannot be negative.
+     * @return The pieces paid out, some of which may still be pending.
+     * @throws IllegalArgumentException If the change is negative or in a different currency from the station.
+     */
+    public Payout dispense(Money change)
+    {
+        Payout payout = plan(change);
+
+        for (int i = 0; i < pending.length; i++)
+            pending[i] += payout.counts[i];
+
+        dispensePending();
+        return payout;
+    }
+
+    /**
+     * Emits as many of the pending pieces as the coin tray and the banknote output slot have room for. Call this once
+     * the customer has taken the coins from a full tray.
+     */
+    public void dispensePending()
+    {
+        for (int i = 0; i < coinCount; i++)
+        {
+            CoinDispenser dispenser = (CoinDispenser) dispensers[i];
+
+            while (pending[i] > 0 && station.coinTray.hasSpace())
+            {
+                try
+                {
+                    dispenser.emit();
+                }
+                catch (OverloadException | EmptyException | DisabledException e)
+                {
+                    break;
+                }
+
+                pending[i]--;
+            }
+        }
+
+        emitNextBanknote();
+    }
+
+    /**
+     * @return The value of the pieces chosen for payouts that have not been emitted yet.
+     */
+    public Money getPendingAmount()
+    {
+        long amount = 0;
+
+        for (int i = 0; i < pending.length; i++)
+            amount += pending[i] * values[i];
+
+        return Money.ofMinor(amount, currency);
+    }
+
+    @Override
+    public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    @Override
+    public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    @Override
+    public void banknoteInserted(BanknoteSlot slot)
+    {
+
+    }
+
+    @Override
+    public void banknoteEjected(BanknoteSlot slot)
+    {
+
+    }
+
+    /**
+     * Emits the next pending banknote once the customer has taken the last one from the output slot.
+     */
+    @Override
+    public void banknoteRemoved(BanknoteSlot slot)
+    {
+        if (slot == station.banknoteOutput) emitNextBanknote();
+    }
+
+    private void emitNextBanknote()
+    {
+        for (int i = coinCount; i < pending.length; i++)
+        {
+            if (pending[i] == 0) continue;
+
+            // The dispenser drops a banknote that the slot has no room for, so never emit into an occupied slot
+            if (!station.banknoteOutput.hasSpace()) return;
+
+            try
+            {
+                ((BanknoteDispenser) dispensers[i]).emit();
+            }
+            catch (OverloadException | EmptyException | DisabledException e)
+            {
+                continue;
+            }
+
+            pending[i]--;
+            return;
+        }
+    }
+
+    private int availablePieces(int i)
+    {
+        AbstractDevice<?> dispenser = dispensers[i];
+
+        if (dispenser.isDisabled()) return 0;
+
+        int size = i < coinCount ? ((CoinDispenser) dispenser).size() : ((BanknoteDispenser) dispenser).size();
+        return Math.max(0, size - pending[i]);
+    }
+
+    // Finds the fewest pieces making the largest amount up to target units, adding them to counts. Each denomination is
+    // added in turn: the fewest pieces for amount j using it k times is the best for j - k * step plus k, and for each
+    // remainder modulo step the minimum over the allowed k is kept in a sliding window, so each pass is linear.
+    private void solve(int target, int[] counts)
+    {
+        int n = values.length;
+        int size = target + 1;
+
+        if (best.length < size)
+        {
+            best = new int[size];
+            next = new int[size];
+            window = new int[size];
+        }
+        if (choices.length < n * size) choices = new int[n * size];
+
+        Arrays.fill(best, 0, size, UNREACHABLE);
+        best[0] = 0;
+
+        for (int i = 0; i < n; i++)
+        {
+            int step = (int) (values[i] / unit);
+            int limit = available[i];
+            int base = i * size;
+
+            if (limit == 0 || step > target)
+            {
+                Arrays.fill(choices, base, base + size, 0);
+                continue;
+            }
+
+            // With enough pieces to cover the whole table the count never binds, and no window is needed
+            if ((long) limit * step >= target)
+            {
+                for (int j = 0; j < size; j++)
+                {
+                    int without = best[j];
+                    int with = j >= step ? next[j - step] + 1 : UNREACHABLE;
+
+                    if (with < without)
+                    {
+                        next[j] = with;
+                        choices[base + j] = choices[base + j - step] + 1;
+                    }
+                    else
+                    {
+                        next[j] = without;
+                        choices[base + j] = 0;
+                    }
+                }
+
+                int[] swap = best;
+                best = next;
+                next = swap;
+                continue;
+            }
+
+            for (int remainder = 0; remainder < step && remainder <= target; remainder++)
+            {
+                int head = 0, tail = 0;
+
+                for (int q = 0, j = remainder; j <= target; q++, j += step)
+                {
+                    if (best[j] < UNREACHABLE)
+                    {
+                        int key = best[j] - q;
+                        while (tail > head && best[remainder + window[tail - 1] * step] - window[tail - 1] >= key)
+                            tail--;
+                        window[tail++] = q;
+                    }
+
+                    while (head < tail && window[head] < q - limit)
+                        head++;
+
+                    if (head < tail)
+                    {
+                        int p = window[head];
+                        next[j] = best[remainder + p * step] - p + q;
+                        choices[base + j] = q - p;
+                    }
+                    else
+                    {
+                        next[j] = UNREACHABLE;
+                        choices[base + j] = 0;
+                    }
+                }
+            }
+
+            int[] swap = best;
+            best = next;
+            next = swap;
+        }
+
+        int amount = target;
+        while (best[amount] >= UNREACHABLE)
+            amount--;
+
+        for (int i = n - 1; i >= 0; i--)
+        {
+            int taken = choices[i * size + amount];
+            counts[i] += taken;
+            amount -= taken * (int) (values[i] / unit);
+        }
+    }
+
+    private Payout payout(int[] counts, Money change)
+    {
+        long amount = 0;
+
+        for (int i = 0; i < counts.length; i++)
+            amount += counts[i] * values[i];
+
+        Money paid = Money.ofMinor(amount, currency);
+        return new Payout(this, counts, paid, change.subtract(paid));
+    }
+
+    private static long gcd(long a, long b)
+    {
+        while (b != 0)
+        {
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+
+        return a;
+    }
+}
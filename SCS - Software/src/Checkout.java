@@ -1,4 +1,3 @@
-import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.lang.Math;
 
@@ -7,19 +6,31 @@ import org.lsmr.selfcheckout.devices.ReceiptPrinter;
 public class Checkout 
 
 {
-    private int paymentType = 2;
-    private BigDecimal totalToBePaid = BigDecimal.valueOf(0);
-    private BigDecimal paid = BigDecimal.valueOf(0);
+    // Read by the card payment on the card reader's thread
+    private volatile int paymentType = 1;
+    private Money totalToBePaid = Money.zero(Money.DEFAULT_CURRENCY);
+    private Money paid = Money.zero(Money.DEFAULT_CURRENCY);
     private int sucessfulTransaction = 1;
     private int inkQuantity = 0; 
     private int paperUnits = 0;
-    private PayBanknote payB = new PayBanknote();
-    private PayCoin payC = new PayCoin();
-    private ScanItem scanned = new ScanItem();
-    private BarcodedItemCollection collection = new BarcodedItemCollection();
+    // The PLU catalog of stations that sell nothing by PLU code; it is over a megabyte and never changed, so all of them share it
+    private static final PLUCodedItemCollection NO_PLU_PRODUCTS = new PLUCodedItemCollection();
+    // Set by the constructors
+    private PayBanknote payB;
+    private PayCoin payC;
+    private ScanItem scanned;
+    private BarcodedItemCollection collection;
+    private EnterPLUCode weighed;
+    private PLUCodedItemCollection pluCollection;
+    private Basket basket;
     private double expectedWeightInGrams = 0.0;
-    private ReceiptPrinter printer = new ReceiptPrinter();
-    private BaggingArea bagging = new BaggingArea();
+    private ReceiptPrinter printer;
+    private BaggingArea bagging;
+    private ChangeMaker changeMaker = null;
+    private ChangeMaker.Payout change = null;
+    private BaggingAreaVerifier verifier = null;
+    private TransactionJournal journal = null;
+    private PayCard payCard = null;
 
 
     /** 
@@ -43,6 +54,35 @@ public class Checkout
      *              Amount of paper for the printer
 	 */
     public Checkout(PayBanknote a, PayCoin b, ScanItem c, BarcodedItemCollection d, BaggingArea e, ReceiptPrinter f, int g, int h)
+    {
+        this(a, b, c, d, e, f, g, h, new EnterPLUCode(), NO_PLU_PRODUCTS);
+    }
+
+    /** 
+	 * Constructor for checkout class, for stations that also sell items by PLU code
+	 * 
+	 * @param a 
+	 *              Object dealing with banknote payments
+	 * @param b
+	 *              Object dealing with coin payments
+	 * @param c
+	 *              Object dealing with scannning items
+     * @param d
+     *              Collection of stores inventory
+     * @param e 
+     *              Object to make sure the correct items are placed in the bagging area
+     * @param f
+     *              Receipt printer 
+     * @param g
+     *              Amount of ink for the printer
+     * @param h
+     *              Amount of paper for the printer
+     * @param i
+     *              Object dealing with items entered by PLU code and weighed
+     * @param j
+     *              Collection of stores inventory sold by PLU code
+	 */
+    public Checkout(PayBanknote a, PayCoin b, ScanItem c, BarcodedItemCollection d, BaggingArea e, ReceiptPrinter f, int g, int h, EnterPLUCode i, PLUCodedItemCollection j)
     {
         payB = a;
         payC = b;
@@ -50,6 +90,11 @@ public class Checkout
         collection = d;
         bagging = e;
         printer = f;
+        weighed = i;
+        pluCollection = j;
+        basket = new Basket(collection, pluCollection);
+        scanned.setBasket(basket);
+        weighed.setBasket(basket);
         printer.addInk(g);
         printer.addPaper(h);
         printer.endConfigurationPhase();
@@ -59,7 +104,8 @@ public class Checkout
 	 * Sets the payment type the customer choses
 	 * 
 	 * @param a 
-	 *             Payment type where 1 is cash/coins and 2 is card(for later use)
+	 *             Payment type where 1 is cash/coins and 2 is card, which charges each card read for whatever the cash
+     *             paid by then does not cover
      * 
 	 */
     public void setPaymentType(int a)
@@ -67,6 +113,23 @@ public class Checkout
         paymentType = a;
     }
 
+    /** 
+	 * Sets what pays by card when the payment type is 2
+	 * 
+	 * @param a 
+	 *             Object dealing with card payments, or null to take no cards; it is asked to charge what the basket
+     *             costs less the cash paid, as they stand when the card is read, and nothing unless the payment type is 2
+     * 
+	 */
+    public void setCardPayment(PayCard a)
+    {
+        payCard = a;
+        if(payCard != null)
+        {
+            payCard.setAmountDue(() -> paymentType == 2 ? basket.getTotal().subtract(payB.getTotalBanknotes().add(payC.getCoinTotal())) : Money.zero(Money.DEFAULT_CURRENCY));
+        }
+    }
+
     /** 
 	 * Sets the varible for the total to be paid by the customer
 	 * 
@@ -74,15 +137,89 @@ public class Checkout
 	 *             If the device is disabled.
      * 
 	 */
-    public void setTotalToBePaid(BigDecimal a)
+    public void setTotalToBePaid(Money a)
     {
         totalToBePaid = a;
     }    
 
+    /** 
+	 * Gets the total to be paid by the customer, as last calculated
+	 * 
+	 * @return the total to be paid
+     * 
+	 */
+    public Money getTotalToBePaid()
+    {
+        return totalToBePaid;
+    }
+
+    /** 
+	 * Sets what pays out change when the customer pays more than the total
+	 * 
+	 * @param a 
+	 *             The change maker of the station, or null to give no change
+     * 
+	 */
+    public void setChangeMaker(ChangeMaker a)
+    {
+        changeMaker = a;
+    }
+
+    /** 
+	 * Sets what checks each change in the bagging area against the items scanned
+	 * 
+	 * @param a 
+	 *             The verifier of the station's bagging area, or null to only check the weight at checkout; it is told about each item scanned, voided and weighed, so it should be attached to the scale but not the scanner
+     * 
+	 */
+    public void setBaggingAreaVerifier(BaggingAreaVerifier a)
+    {
+        verifier = a;
+        basket.setBaggingAreaVerifier(a);
+        weighed.setBaggingAreaVerifier(a);
+    }
+
+    /** 
+	 * Sets the promotions that discount the items scanned, which can only be changed between transactions
+	 * 
+	 * @param a 
+	 *             The store's promotions, or null for none
+     * 
+	 */
+    public void setPromotions(PromotionEngine a)
+    {
+        basket.setPromotions(a);
+    }
+
+    /** 
+	 * Sets the journal that records the PLU codes entered, the items voided, the change paid out and the end of the transaction
+	 * 
+	 * @param a 
+	 *             The journal of the station, or null to keep no journal
+     * 
+	 */
+    public void setJournal(TransactionJournal a)
+    {
+        journal = a;
+        basket.setJournal(a);
+        weighed.setJournal(a);
+    }
+
+    /** 
+	 * Gets the change paid out by the last checkout
+	 * 
+	 * @return the change paid out, or null if none was due or there is no change maker
+     * 
+	 */
+    public ChangeMaker.Payout getChange()
+    {
+        return change;
+    }
+
     /** 
 	 * method to get the current value of sucessfullTransaction
 	 * 
-	 * @return what is the current value of sucessfulTransaction were 0 is true, and 2 is error
+	 * @return what is the current value of sucessfulTransaction were 0 is true, 1 is not finished yet, and 2 is error
      * 
 	 */
     public int getSuccessfulTransaction()
@@ -91,48 +228,48 @@ public class Checkout
     }
 
     /** 
-	 * Calculate the amount paid in banknotes and coins and converted to a BigDecimal
+	 * Calculate the amount paid in banknotes and coins, exactly in cents
 	 * 
      * @return the amount paid in banknotes and coins
      * 
 	 */
-    public BigDecimal calcPaidBC()
+    public Money calcPaidBC()
     {
-        paid = BigDecimal.valueOf(payB.getTotalBanknotes()).add(payC.coinTotal);
+        paid = payB.getTotalBanknotes().add(payC.getCoinTotal());
         return paid;
     }
 
     /** 
-	 * Going through the items scanned and calculating the price of each and adding to the total owed and storing the amount
+	 * Stores the total owed including tax, kept up to date by the basket as items are scanned, weighed and voided
 	 * 
 	 */
     public void calcTotalToBePaid()
     {        
-        int i;
-        int j = scanned.barcodesScanned.size();
-        for(i = 0; i < j; i++)
-        {
-            BigDecimal temp = collection.getPrice(scanned.barcodesScanned.get(i));
-            totalToBePaid = totalToBePaid.add(temp);
-        }
+        totalToBePaid = basket.getTotal();
     }
 
     /** 
-	 * Calculating the expected weight based on the weight according to records associated with the barcode
+	 * Stores the expected weight of the bagging area, kept up to date by the basket as items are scanned, weighed and voided
      * 
 	 */
     public void expectedWeight()
     {
-        int j = scanned.barcodesScanned.size();
-        int i;
-        for(i = 0; i < j; i++)
-        {
-            expectedWeightInGrams += collection.getExpectedWeight(scanned.barcodesScanned.get(i));
-        }
+        expectedWeightInGrams = basket.getExpectedWeight();
     }
 
     /** 
-	 * Prints the amount owed and paid then cuts the receipt and removes it
+	 * Gets the basket of items being bought, whose totals are always current
+	 * 
+	 * @return the basket
+     * 
+	 */
+    public Basket getBasket()
+    {
+        return basket;
+    }
+
+    /** 
+	 * Prints the savings from promotions and the subtotal and tax in each tax class, if any, and the amount owed and paid then cuts the receipt and removes it, which ends the transaction in the journal
 	 * 
 	 * @param paid 
 	 *              The amount paid
@@ -140,19 +277,53 @@ public class Checkout
      *              The amount that was needing to be paid
      * 
 	 */
-    public void receipt(BigDecimal paid, BigDecimal totalToBePaid)
+    public void receipt(Money paid, Money totalToBePaid)
     {
         printer.addInk(inkQuantity);
         printer.addPaper(paperUnits);
-        String tempPaid = NumberFormat.getCurrencyInstance().format(paid);
-        String tempTotal = NumberFormat.getCurrencyInstance().format(totalToBePaid);
+        String tempPaid = NumberFormat.getCurrencyInstance().format(paid.toBigDecimal());
+        String tempTotal = NumberFormat.getCurrencyInstance().format(totalToBePaid.toBigDecimal());
         String toPrint = "Total: " + tempTotal + "\n" + "Paid: " + tempPaid + "\n" + "Thank you for your purchase.";
-        for(int i = 0; i < toPrint.length(); i++)
+        if(!basket.getTax().isZero())
+        {
+            String taxLines = "Subtotal: " + NumberFormat.getCurrencyInstance().format(basket.getSubtotal().toBigDecimal()) + "\n";
+            for(TaxClass taxClass : basket.getTaxClasses())
+            {
+                Money tax = basket.getTax(taxClass);
+                if(!tax.isZero())
+                {
+                    taxLines += taxClass.getName() + ": " + NumberFormat.getCurrencyInstance().format(tax.toBigDecimal()) + "\n";
+                }
+            }
+            toPrint = taxLines + toPrint;
+        }
+        if(!basket.getDiscount().isZero())
         {
-            printer.print(toPrint.charAt(i));
+            toPrint = "Savings: " + NumberFormat.getCurrencyInstance().format(basket.getDiscount().toBigDecimal()) + "\n" + toPrint;
         }
+        printer.print(toPrint);
         printer.cutPaper();
         printer.removeReceipt();
+        if(journal != null)
+        {
+            journal.transactionCompleted();
+        }
+    }
+
+    /** 
+	 * Pays out the difference between the amount paid and the total from the station's dispensers
+     * 
+	 */
+    public void returnChange()
+    {
+        if(changeMaker != null)
+        {
+            change = changeMaker.dispense(paid.subtract(totalToBePaid));
+            if(journal != null)
+            {
+                journal.changeDispensed(change.getAmount());
+            }
+        }
     }
 
     /** 
@@ -167,7 +338,7 @@ public class Checkout
     /** 
 	 * Main driving code of the controll software
 	 * 
-	 * @return an int indicating how the transaction ended
+	 * @return an int indicating how the transaction ended, or 1 if a card payment is still waiting for authorization
 	 *        
 	 */
     public int checkoutMain()
@@ -179,15 +350,30 @@ public class Checkout
             cancelTransaction();
             return sucessfulTransaction;
         }
+        if(verifier != null && verifier.getState() != BaggingAreaVerifier.State.MATCHED)
+        {
+            cancelTransaction();
+            return sucessfulTransaction;
+        }
         
         calcPaidBC();
+        if(paymentType == 2 && payCard != null)
+        {
+            // The host answers on its own thread, so the lane is told to try again rather than wait for it
+            if(payCard.getPendingCount() > 0)
+            {
+                sucessfulTransaction = 1;
+                return sucessfulTransaction;
+            }
+            paid = paid.add(payCard.getTotalAuthorized());
+        }
         if(paid.compareTo(totalToBePaid) >= 0)
         {
             sucessfulTransaction = 0;
-            /*if(paid > totalToBePaid)
+            if(paid.compareTo(totalToBePaid) > 0)
             {
                 returnChange();
-            }*/
+            }
         }
         else
         {
@@ -0,0 +1,402 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+
+/**
+ * An optional way of attaching observers to a station's devices so that the devices do not wait for them. Instead of
+ * calling the observer, a device's notification is put on a bounded queue and returns straight away; the events are
+ * then delivered to the observers one at a time, on a thread of the bus's own executor.
+ * <p>
+ * Use one bus per station. Events are delivered in the order they were published, so every observer sees the events
+ * of each device in the order that device announced them. Since an event is delivered later, an observer that asks the
+ * device for its state may see the state as it is when the event is delivered rather than when it happened.
+ * <p>
+ * When the queue is full, the bus either makes the device wait for room ({@link Backpressure#BLOCK}) or drops the
+ * event ({@link Backpressure#DROP}). Both are counted. An exception thrown by an observer cannot reach the device that
+ * announced the event, so it is counted as well and the bus moves on to the next event. Events the executor refuses,
+ * as when it is shut down while a device is publishing, are counted as dropped rather than thrown at the device.
+ */
+public class DeviceEventBus implements AutoCloseable
+{
+    /**
+     * What happens to an event that is published while the queue is full.
+     */
+    public enum Backpressure
+    {
+        /**
+         * The device waits until there is room for the event.
+         */
+        BLOCK,
+        /**
+         * The event is dropped.
+         */
+        DROP
+    }
+
+    // One notification waiting to be delivered
+    private static final class Event
+    {
+        private final Object observer;
+        private final Method method;
+        private final Object[] arguments;
+
+        private Event(Object observer, Method method, Object[] arguments)
+        {
+            this.observer = observer;
+            this.method = method;
+            this.arguments = arguments;
+        }
+    }
+
+    private final ArrayBlockingQueue<Event> queue;
+    private final Backpressure backpressure;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    // Set while a delivery task is submitted or running, so that at most one thread delivers at a time
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Object idleLock = new Object();
+    private volatile Thread deliveryThread = null;
+    private volatile boolean closed = false;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile Throwable lastFailure = null;
+
+    /**
+     * Creates a bus that delivers events on its own executor, using virtual threads where the Java runtime has them.
+     *
+     * @param capacity     The most events that can wait to be delivered.
+     * @param backpressure What happens to an event published while the queue is full.
+     */
+    public DeviceEventBus(int capacity, Backpressure backpressure)
+    {
+        this(capacity, backpressure, newDefaultExecutor(), true);
+    }
+
+    /**
+     * Creates a bus that delivers events on the indicated executor. The executor is not shut down when the bus is
+     * closed.
+     *
+     * @param capacity     The most events that can wait to be delivered.
+     * @param backpressure What happens to an event published while the queue is full.
+     * @param executor     The executor to deliver events on.
+     */
+    public DeviceEventBus(int capacity, Backpressure backpressure, ExecutorService executor)
+    {
+        this(capacity, backpressure, executor, false);
+    }
+
+    private DeviceEventBus(int capacity, Backpressure backpressure, ExecutorService executor, boolean ownsExecutor)
+    {
+        if (backpressure == null) throw new NullPointerException("backpressure is null");
+        if (executor == null) throw new NullPointerException("executor is null");
+
+        this.queue = new ArrayBlockingQueue<Event>(capacity);
+        this.backpressure = backpressure;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Attaches an observer to a device through the bus.
+     *
+     * @param device   The device whose events are wanted.
+     * @param type     The observer interface of the device.
+     * @param observer The observer.
+     * @return The stand-in actually attached to the device, which is what must be passed to detach it again.
+     */
+    public <T extends AbstractDeviceObserver> T attach(AbstractDevice<T> device, Class<T> type, T observer)
+    {
+        T standIn = wrap(type, observer);
+        device.attach(standIn);
+        return standIn;
+    }
+
+    /**
+     * Creates a stand-in for an observer. Calls to the stand-in's observer methods are published to the bus and later
+     * delivered to the observer.
+     *
+     * @param type     The observer interface.
+     * @param observer The observer.
+     * @return The stand-in.
+     */
+    public <T extends AbstractDeviceObserver> T wrap(Class<T> type, T observer)
+    {
+        if (observer == null) throw new NullPointerException("observer is null");
+
+        InvocationHandler handler = new InvocationHandler()
+        {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] arguments)
+            {
+                if (method.getDeclaringClass() == Object.class)
+                {
+                    switch (method.getName())
+                    {
+                        case "equals":
+                            return proxy == arguments[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            return "Queued " + observer;
+                    }
+                }
+
+                publish(new Event(observer, method, arguments));
+                return null;
+            }
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    /**
+     * Waits until every event published so far has been delivered or dropped.
+     *
+     * @param timeout How long to wait at most.
+     * @param unit    The unit of the timeout.
+     * @return false if the bus was still busy when the timeout ran out.
+     * @throws InterruptedException If the waiting thread is interrupted.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        synchronized (idleLock)
+        {
+            while (!queue.isEmpty() || scheduled.get())
+            {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(idleLock, remaining);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Stops the bus. Events already published are still delivered, but events published from now on are dropped. If
+     * the bus created its own executor, the executor is shut down.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+
+        if (ownsExecutor) executor.shutdown();
+    }
+
+    /**
+     * @return The number of events published to the bus, including those dropped.
+     */
+    public long getPublishedCount()
+    {
+        return published.sum();
+    }
+
+    /**
+     * @return The number of events their observers handled without throwing an exception.
+     */
+    public long getDeliveredCount()
+    {
+        return delivered.sum();
+    }
+
+    /**
+     * @return The number of events dropped because the queue was full, the bus was closed or the executor refused them.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of times a device had to wait for room in the queue.
+     */
+    public long getBlockedCount()
+    {
+        return blocked.sum();
+    }
+
+    /**
+     * @return The number of events whose observer threw an exception.
+     */
+    public long getFailedCount()
+    {
+        return failed.sum();
+    }
+
+    /**
+     * @return The most recent exception thrown by an observer, or null if there has been none.
+     */
+    public Throwable getLastFailure()
+    {
+        return lastFailure;
+    }
+
+    /**
+     * @return The number of events waiting to be delivered.
+     */
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return The most events that can wait to be delivered.
+     */
+    public int getCapacity()
+    {
+        return queue.size() + queue.remainingCapacity();
+    }
+
+    private void publish(Event event)
+    {
+        published.increment();
+
+        if (closed)
+        {
+            dropped.increment();
+            return;
+        }
+
+        if (!queue.offer(event))
+        {
+            // The delivery thread cannot wait for itself to make room
+            if (backpressure == Backpressure.DROP || Thread.currentThread() == deliveryThread)
+            {
+                dropped.increment();
+                return;
+            }
+
+            blocked.increment();
+            putUninterruptibly(event);
+        }
+
+        schedule();
+    }
+
+    private void putUninterruptibly(Event event)
+    {
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                queue.put(event);
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void schedule()
+    {
+        if (!scheduled.compareAndSet(false, true)) return;
+
+        try
+        {
+            executor.execute(this::deliverAll);
+        }
+        catch (RejectedExecutionException e)
+        {
+            // The executor was shut down, most likely by close() while this event was being published, so nothing
+            // waiting can be delivered; the flag is cleared first so an event queued meanwhile is not stranded
+            scheduled.set(false);
+
+            while (queue.poll() != null)
+                dropped.increment();
+
+            synchronized (idleLock)
+            {
+                idleLock.notifyAll();
+            }
+        }
+    }
+
+    private void deliverAll()
+    {
+        deliveryThread = Thread.currentThread();
+
+        try
+        {
+            Event event;
+            while ((event = queue.poll()) != null)
+                deliver(event);
+        }
+        finally
+        {
+            deliveryThread = null;
+            scheduled.set(false);
+
+            // An event published after the last poll but before the flag was cleared would otherwise wait forever
+            if (!queue.isEmpty()) schedule();
+            else
+            {
+                synchronized (idleLock)
+                {
+                    idleLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private void deliver(Event event)
+    {
+        try
+        {
+            event.method.invoke(event.observer, event.arguments);
+            delivered.increment();
+        }
+        catch (InvocationTargetException e)
+        {
+            lastFailure = e.getCause();
+            failed.increment();
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            lastFailure = e;
+            failed.increment();
+        }
+    }
+
+    // Virtual threads where the runtime has them (Java 21 and later), otherwise a pool of daemon threads
+    private static ExecutorService newDefaultExecutor()
+    {
+        try
+        {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            return Executors.newCachedThreadPool(runnable ->
+            {
+                Thread thread = new Thread(runnable, "device-event-bus");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import org.lsmr.selfcheckout.PLUCodedItem;
+import org.lsmr.selfcheckout.PriceLookupCode;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.ElectronicScaleObserver;
+
+import java.util.ArrayList;
+
+/**
+ * Use case for items sold by weight, such as produce. The customer enters the item's PLU code and then places the item
+ * on the scale; the increase in weight reported by the scale is taken as the item's weight.
+ */
+public class EnterPLUCode implements ElectronicScaleObserver
+{
+    public ArrayList <PLUCodedItem> itemsWeighed = new ArrayList <>();
+
+    private PriceLookupCode pendingCode = null;
+    private double lastWeightInGrams = 0.0;
+    private Basket basket = null;
+    private BaggingAreaVerifier verifier = null;
+    private TransactionJournal journal = null;
+
+    /**
+     * Connects the basket that weighed items are added to. Items already weighed are added to it straight away.
+     *
+     * @param basket The basket.
+     */
+    public void setBasket(Basket basket)
+    {
+        this.basket = basket;
+
+        for (PLUCodedItem item : itemsWeighed)
+            basket.addWeighed(item);
+    }
+
+    /**
+     * Connects the verifier of the bagging area, which is told to expect an item of any weight whenever a PLU code is
+     * entered.
+     *
+     * @param verifier The verifier, or null for none.
+     */
+    public void setBaggingAreaVerifier(BaggingAreaVerifier verifier)
+    {
+        this.verifier = verifier;
+    }
+
+    /**
+     * Connects the journal that records each PLU code entered, which is not a device event.
+     *
+     * @param journal The journal of the station, or null for none.
+     */
+    public void setJournal(TransactionJournal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+     * Announces that the indicated device has been enabled.
+     *
+     * @param device The device that has been enabled.
+     */
+    @Override
+    public void enabled(AbstractDevice <? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    /**
+     * Announces that the indicated device has been disabled.
+     *
+     * @param device The device that has been enabled.
+     */
+    @Override
+    public void disabled(AbstractDevice <? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    /**
+     * Called when the customer enters a PLU code. The next item placed on the scale is recorded under this code, so a
+     * code entered again before the item is weighed replaces the first.
+     *
+     * @param code The PLU code entered.
+     */
+    public void enterPLUCode(PriceLookupCode code)
+    {
+        if (pendingCode == null && verifier != null) verifier.itemToBeWeighed();
+        if (journal != null) journal.pluCodeEntered(code);
+
+        pendingCode = code;
+    }
+
+    /**
+     * @return true if a PLU code has been entered but its item has not been weighed yet.
+     */
+    public boolean isAwaitingItem()
+    {
+        return pendingCode != null;
+    }
+
+    /**
+     * An event announcing that the weight on the scale has changed. If a PLU code is waiting for its item and the weight
+     * went up, the increase is recorded as the weight of that item.
+     *
+     * @param scale         The scale on which the event occurred.
+     * @param weightInGrams The new weight on the scale.
+     */
+    @Override
+    public void weightChanged(ElectronicScale scale, double weightInGrams)
+    {
+        if (pendingCode != null && weightInGrams > lastWeightInGrams)
+        {
+            PLUCodedItem item = new PLUCodedItem(pendingCode, weightInGrams - lastWeightInGrams);
+            itemsWeighed.add(item);
+            pendingCode = null;
+
+            if (basket != null) basket.addWeighed(item);
+        }
+
+        lastWeightInGrams = weightInGrams;
+    }
+
+    @Override
+    public void overload(ElectronicScale scale)
+    {
+
+    }
+
+    @Override
+    public void outOfOverload(ElectronicScale scale)
+    {
+
+    }
+}
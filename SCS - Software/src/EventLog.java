@@ -0,0 +1,427 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A log of events that is written to a file in the background, so that logging from a device's observer never waits
+ * on I/O and never allocates.
+ * <p>
+ * Each event is a fixed-size binary record in a ring buffer: the time, the {@link Message} and up to three numbers.
+ * Logging claims a slot, fills it in and publishes it. A writer thread turns the records into lines of text such as
+ * {@code 2022-03-01T12:00:00Z banknoteStored banknotes=3 capacity=1000} and appends them to the file, which is rotated
+ * once it reaches its maximum size: {@code file} becomes {@code file.1}, {@code file.1} becomes {@code file.2} and so on,
+ * and the oldest is deleted. If the writer falls so far behind that the ring is full, events are dropped and counted
+ * rather than holding up the caller.
+ * <p>
+ * Events may be logged from any number of threads.
+ */
+public final class EventLog implements AutoCloseable
+{
+    /**
+     * The number of events the ring holds, unless indicated otherwise.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /**
+     * The size at which the file is rotated, unless indicated otherwise.
+     */
+    public static final long DEFAULT_MAXIMUM_FILE_SIZE = 10L << 20;
+
+    /**
+     * The number of rotated files kept, unless indicated otherwise.
+     */
+    public static final int DEFAULT_MAXIMUM_BACKUPS = 5;
+
+    /**
+     * The kind of an event, with the names of its numbers. Messages are created once and reused for every event.
+     */
+    public static final class Message
+    {
+        private final String name;
+        private final String[] argumentNames;
+
+        /**
+         * @param name          The name of the event.
+         * @param argumentNames The names of the numbers logged with it, at most three. A number named "currency" is a
+         *                      currency packed by {@link EventLog#currency(Currency)} and is written as its code.
+         */
+        public Message(String name, String... argumentNames)
+        {
+            if (argumentNames.length > ARGUMENTS) throw new IllegalArgumentException("At most " + ARGUMENTS + " numbers can be logged with an event");
+
+            this.name = name;
+            this.argumentNames = argumentNames.clone();
+        }
+
+        /**
+         * @return The name of the event.
+         */
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    private static final int ARGUMENTS = 3;
+    private static final int BATCH_SIZE = 1 << 16;
+    private static final long IDLE_NANOS = 1_000_000;
+    private static final VarHandle SEQUENCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Path file;
+    private final long maximumFileSize;
+    private final int maximumBackups;
+    private final int mask;
+
+    // Slot i holds the event numbered sequences[i] - 1 once that event is published
+    private final long[] sequences;
+    private final long[] times;
+    private final Message[] messages;
+    private final long[] arguments;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile long consumed = 0;
+    private volatile long written = 0;
+    private volatile boolean closed = false;
+    private volatile IOException failure = null;
+
+    // Used by the writer thread only
+    private final StringBuilder line = new StringBuilder(128);
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+    private FileChannel channel;
+    private long fileSize;
+
+    /**
+     * Opens a log with the default capacity and rotation, appending to the file if it exists.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file cannot be opened.
+     */
+    public EventLog(Path file) throws IOException
+    {
+        this(file, DEFAULT_CAPACITY, DEFAULT_MAXIMUM_FILE_SIZE, DEFAULT_MAXIMUM_BACKUPS);
+    }
+
+    /**
+     * Opens a log, appending to the file if it exists.
+     *
+     * @param file            The file to write to.
+     * @param capacity        The number of events the ring holds, which must be a power of two.
+     * @param maximumFileSize The size in bytes at which the file is rotated.
+     * @param maximumBackups  The number of rotated files kept.
+     * @throws IOException If the file cannot be opened.
+     */
+    public EventLog(Path file, int capacity, long maximumFileSize, int maximumBackups) throws IOException
+    {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        if (maximumFileSize <= 0) throw new IllegalArgumentException("The maximum file size must be positive: " + maximumFileSize);
+        if (maximumBackups < 0) throw new IllegalArgumentException("The number of backups cannot be negative: " + maximumBackups);
+
+        this.file = file;
+        this.maximumFileSize = maximumFileSize;
+        this.maximumBackups = maximumBackups;
+        mask = capacity - 1;
+        sequences = new long[capacity];
+        times = new long[capacity];
+        messages = new Message[capacity];
+        arguments = new long[capacity * ARGUMENTS];
+
+        open();
+        writer = new Thread(this::writeLoop, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Packs a currency into a number that can be logged.
+     *
+     * @param currency The currency.
+     * @return The currency's code, packed into a number.
+     */
+    public static long currency(Currency currency)
+    {
+        String code = currency.getCurrencyCode();
+        long packed = 0;
+
+        for (int i = 0; i < code.length(); i++)
+            packed = packed << 8 | code.charAt(i);
+
+        return packed;
+    }
+
+    /**
+     * Logs an event with no numbers.
+     *
+     * @param message The kind of event.
+     * @return false if the event was dropped because the ring is full.
+     */
+    public boolean log(Message message)
+    {
+        return log(message, 0, 0, 0);
+    }
+
+    /**
+     * Logs an event with one number.
+     *
+     * @param message The kind of event.
+     * @param a       The first number.
+     * @return false if the event was dropped because the ring is full.
+     */
+    public boolean log(Message message, long a)
+    {
+        return log(message, a, 0, 0);
+    }
+
+    /**
+     * Logs an event with two numbers.
+     *
+     * @param message The kind of event.
+     * @param a       The first number.
+     * @param b       The second number.
+     * @return false if the event was dropped because the ring is full.
+     */
+    public boolean log(Message message, long a, long b)
+    {
+        return log(message, a, b, 0);
+    }
+
+    /**
+     * Logs an event with three numbers.
+     *
+     * @param message The kind of event.
+     * @param a       The first number.
+     * @param b       The second number.
+     * @param c       The third number.
+     * @return false if the event was dropped because the ring is full or the log is closed.
+     */
+    public boolean log(Message message, long a, long b, long c)
+    {
+        long sequence;
+
+        do
+        {
+            sequence = claimed.get();
+
+            if (closed || sequence - consumed > mask)
+            {
+                dropped.increment();
+                return false;
+            }
+        }
+        while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+
+        times[slot] = System.currentTimeMillis();
+        messages[slot] = message;
+        arguments[slot * ARGUMENTS] = a;
+        arguments[slot * ARGUMENTS + 1] = b;
+        arguments[slot * ARGUMENTS + 2] = c;
+        SEQUENCES.setRelease(sequences, slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Waits until every event logged so far has been written to the file.
+     *
+     * @throws IOException If writing has failed.
+     */
+    public void flush() throws IOException
+    {
+        long target = claimed.get();
+
+        while (written < target && writer.isAlive())
+        {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_NANOS / 10);
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * @return The number of events dropped because the ring was full.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.sum();
+    }
+
+    /**
+     * @return The number of events written to the file.
+     */
+    public long getWrittenCount()
+    {
+        return written;
+    }
+
+    /**
+     * Writes every event logged so far and closes the file. Events logged afterwards are dropped.
+     *
+     * @throws IOException If writing or closing the file fails.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        closed = true;
+        LockSupport.unpark(writer);
+
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null) throw failure;
+    }
+
+    private void open() throws IOException
+    {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileSize = channel.size();
+    }
+
+    private void writeLoop()
+    {
+        try
+        {
+            while (true)
+            {
+                // Seen before draining, so that everything logged before closing is written
+                boolean closing = closed;
+                long next = consumed;
+
+                while (isPublished(next))
+                {
+                    format((int) next & mask);
+                    next++;
+                    // The slot may be reused as soon as it is consumed
+                    consumed = next;
+
+                    if (batch.remaining() < line.length() * 4L) writeBatch();
+
+                    append();
+                }
+
+                writeBatch();
+                written = next;
+
+                if (closing && !isPublished(next)) break;
+
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+        catch (IOException e)
+        {
+            failure = e;
+        }
+        finally
+        {
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    private boolean isPublished(long sequence)
+    {
+        return (long) SEQUENCES.getAcquire(sequences, (int) sequence & mask) == sequence + 1;
+    }
+
+    private void format(int slot)
+    {
+        Message message = messages[slot];
+
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(times[slot])).append(' ').append(message.name);
+
+        for (int i = 0; i < message.argumentNames.length; i++)
+        {
+            String name = message.argumentNames[i];
+            long value = arguments[slot * ARGUMENTS + i];
+
+            line.append(' ').append(name).append('=');
+
+            if (name.equals("currency")) appendCurrency(value);
+            else line.append(value);
+        }
+
+        line.append('\n');
+    }
+
+    private void appendCurrency(long packed)
+    {
+        int start = line.length();
+
+        for (; packed != 0; packed >>>= 8)
+            line.insert(start, (char) (packed & 0xFF));
+    }
+
+    // Encodes the formatted line into the batch; lines are ASCII apart from message names, which are encoded as UTF-8
+    private void append()
+    {
+        for (int i = 0; i < line.length(); i++)
+        {
+            char c = line.charAt(i);
+
+            if (c < 0x80) batch.put((byte) c);
+            else batch.put(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeBatch() throws IOException
+    {
+        batch.flip();
+
+        if (batch.hasRemaining() && fileSize > 0 && fileSize + batch.remaining() > maximumFileSize) rotate();
+
+        while (batch.hasRemaining())
+            fileSize += channel.write(batch);
+
+        batch.clear();
+    }
+
+    private void rotate() throws IOException
+    {
+        channel.close();
+
+        if (maximumBackups == 0) Files.delete(file);
+        else
+        {
+            Files.deleteIfExists(backup(maximumBackups));
+
+            for (int i = maximumBackups - 1; i >= 1; i--)
+                if (Files.exists(backup(i))) Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+
+            Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        open();
+    }
+
+    private Path backup(int index)
+    {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
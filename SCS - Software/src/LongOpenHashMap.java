@@ -0,0 +1,168 @@
+/**
+ * A hash map from primitive long keys to objects, using open addressing with linear probing. Keys and values are kept
+ * in two flat arrays, so lookups neither box the key nor allocate, and a probe usually touches a single cache line of
+ * keys.
+ * <p>
+ * The key 0 is reserved to mark empty slots and cannot be stored. Entries cannot be removed; the catalogs this map is
+ * used for only ever grow or get replaced as a whole.
+ *
+ * @param <V> The type of the values.
+ */
+public final class LongOpenHashMap<V>
+{
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int shift;
+
+    /**
+     * Creates an empty map.
+     */
+    public LongOpenHashMap()
+    {
+        this(MINIMUM_CAPACITY / 2);
+    }
+
+    /**
+     * Creates an empty map that can hold the indicated number of entries without resizing.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    public LongOpenHashMap(int expectedSize)
+    {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Creates a copy of a map that can hold the indicated number of entries without resizing. The tables are copied
+     * as they are, so no key is hashed again unless the copy has to be larger.
+     *
+     * @param other        The map to copy.
+     * @param expectedSize The number of entries expected in the copy.
+     */
+    public LongOpenHashMap(LongOpenHashMap<V> other, int expectedSize)
+    {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        size = other.size;
+        shift = other.shift;
+        ensureCapacity(expectedSize);
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return The value stored under the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask)
+        {
+            long found = keys[slot];
+
+            if (found == key) return (V) values[slot];
+            if (found == 0) return null;
+        }
+    }
+
+    /**
+     * Stores a value under a key, replacing any value already stored there.
+     *
+     * @param key   The key. Cannot be 0.
+     * @param value The value.
+     * @return The value previously stored under the key, or null if there was none.
+     * @throws IllegalArgumentException If the key is 0.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (key == 0) throw new IllegalArgumentException("The key 0 is reserved");
+
+        int mask = keys.length - 1;
+        int slot = slot(key);
+
+        for (; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > keys.length / 2) rehash(keys.length * 2);
+
+        return null;
+    }
+
+    /**
+     * Grows the map, if needed, so that it can hold the indicated number of entries without further resizing.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    public void ensureCapacity(int expectedSize)
+    {
+        int capacity = capacityFor(expectedSize);
+
+        if (capacity > keys.length) rehash(capacity);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    // Fibonacci hashing: spreads consecutive barcodes over the table and keeps the high, well-mixed bits
+    private int slot(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    // The table is kept at most half full so that probe sequences stay short
+    private static int capacityFor(int expectedSize)
+    {
+        int capacity = MINIMUM_CAPACITY;
+
+        while (capacity / 2 < expectedSize)
+            capacity *= 2;
+
+        return capacity;
+    }
+
+    private void allocate(int capacity)
+    {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void rehash(int capacity)
+    {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        allocate(capacity);
+        int mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] == 0) continue;
+
+            int slot = slot(oldKeys[i]);
+            while (keys[slot] != 0)
+                slot = (slot + 1) & mask;
+
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.products.BarcodedProduct;
+
+/**
+ * A catalog of barcoded products kept in a binary file that is memory-mapped rather than read, so opening it takes the
+ * same time whatever its size and the operating system pages in only the records that are looked up.
+ * <p>
+ * The file is a 32-byte header followed by fixed-size records sorted by packed barcode (see {@link BarcodeKey}), so a
+ * lookup is a binary search straight over the mapped bytes. Each record holds the barcode, the price in minor units, the
+ * expected weight and the description in a fixed-width UTF-8 field:
+ *
+ * <pre>
+ * header: int magic, int version, long record count, int description width, 3 bytes currency code, 9 bytes reserved
+ * record: long packed barcode, long price (or NO_PRICE), double expected weight, short description length, description
+ * </pre>
+ *
+ * Nothing is created for a record until it is looked up; {@link #getEntry(Barcode)} then builds its
+ * {@link CatalogEntry}, while {@link #getPrice(Barcode)} and {@link #getExpectedWeight(Barcode)} read the fields
+ * directly. Only barcodes of up to {@link BarcodeKey#MAX_PACKED_DIGITS} digits can be stored, and a file is limited to
+ * 2 GB, which is over twenty million records at the default description width.
+ * <p>
+ * A mapped catalog is immutable and may be used by several threads at once. It can also stand in for the store's
+ * product service as the {@link ProductStore} behind a {@link ProductCache}.
+ */
+public final class MappedCatalog implements ProductStore
+{
+    /**
+     * The number of bytes kept of each product's description, unless indicated otherwise.
+     */
+    public static final int DEFAULT_DESCRIPTION_BYTES = 64;
+
+    private static final int MAGIC = 0x53435343;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int FIXED_RECORD_SIZE = 26;
+    // Marks a record that holds only an expected weight, with no product yet
+    private static final long NO_PRICE = Long.MIN_VALUE;
+
+    private final MappedByteBuffer records;
+    private final int count;
+    private final int recordSize;
+    private final Currency currency;
+    private final int fractionDigits;
+
+    private MappedCatalog(MappedByteBuffer records, int count, int descriptionBytes, Currency currency)
+    {
+        this.records = records;
+        this.count = count;
+        this.recordSize = FIXED_RECORD_SIZE + descriptionBytes;
+        this.currency = currency;
+        this.fractionDigits = Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    /**
+     * Maps a catalog file. Only the header is read.
+     *
+     * @param file The file, written by {@link #write(Path, Collection)}.
+     * @return The catalog.
+     * @throws IOException If the file cannot be read, is not a catalog, is truncated or is priced in a currency other
+     *                     than {@link Money#DEFAULT_CURRENCY}.
+     */
+    public static MappedCatalog open(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+
+            if (size < HEADER_SIZE) throw new IOException(file + " is not a catalog");
+            if (size > Integer.MAX_VALUE) throw new IOException(file + " is larger than 2 GB");
+
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC) throw new IOException(file + " is not a catalog");
+            if (buffer.getInt(4) != VERSION) throw new IOException(file + " has unsupported version " + buffer.getInt(4));
+
+            long count = buffer.getLong(8);
+            int descriptionBytes = buffer.getInt(16);
+            byte[] code = new byte[3];
+            buffer.get(20, code);
+            Currency currency = Currency.getInstance(new String(code, StandardCharsets.US_ASCII));
+
+            if (!currency.equals(Money.DEFAULT_CURRENCY)) throw new IOException(file + " is priced in " + currency + ", not " + Money.DEFAULT_CURRENCY);
+            if (descriptionBytes < 0 || count < 0 || HEADER_SIZE + count * (FIXED_RECORD_SIZE + descriptionBytes) != size)
+                throw new IOException(file + " is truncated or corrupt");
+
+            return new MappedCatalog(buffer, (int) count, descriptionBytes, currency);
+        }
+    }
+
+    /**
+     * Writes entries to a catalog file, keeping up to {@value #DEFAULT_DESCRIPTION_BYTES} bytes of each description.
+     *
+     * @param file    The file to write. It is replaced as a whole, so catalogs already mapped from it are unaffected.
+     * @param entries The entries to write.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If a barcode is too long to pack or appears twice.
+     */
+    public static void write(Path file, Collection<CatalogEntry> entries) throws IOException
+    {
+        write(file, entries, DEFAULT_DESCRIPTION_BYTES);
+    }
+
+    /**
+     * Writes entries to a catalog file.
+     *
+     * @param file             The file to write. It is replaced as a whole, so catalogs already mapped from it are
+     *                         unaffected.
+     * @param entries          The entries to write.
+     * @param descriptionBytes The number of bytes kept of each description; longer descriptions are cut short.
+     * @throws IOException              If the file cannot be written.
+     * @throws IllegalArgumentException If a barcode is too long to pack or appears twice.
+     */
+    public static void write(Path file, Collection<CatalogEntry> entries, int descriptionBytes) throws IOException
+    {
+        if (descriptionBytes < 0 || descriptionBytes > 0xFFFF) throw new IllegalArgumentException("The description width must be between 0 and 65535: " + descriptionBytes);
+
+        ArrayList<CatalogEntry> sorted = new ArrayList<CatalogEntry>(entries);
+        long[] keys = new long[sorted.size()];
+
+        sorted.sort((a, b) -> Long.compare(BarcodeKey.pack(a.getBarcode()), BarcodeKey.pack(b.getBarcode())));
+
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = BarcodeKey.pack(sorted.get(i).getBarcode());
+
+            if (keys[i] == BarcodeKey.NOT_PACKABLE) throw new IllegalArgumentException("The barcode " + sorted.get(i).getBarcode() + " is too long for a mapped catalog");
+            if (i > 0 && keys[i] == keys[i - 1]) throw new IllegalArgumentException("The barcode " + sorted.get(i).getBarcode() + " appears twice");
+        }
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16)))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sorted.size());
+            out.writeInt(descriptionBytes);
+            out.write(Money.DEFAULT_CURRENCY.getCurrencyCode().getBytes(StandardCharsets.US_ASCII));
+            out.write(new byte[HEADER_SIZE - 23]);
+
+            byte[] padding = new byte[descriptionBytes];
+
+            for (int i = 0; i < keys.length; i++)
+            {
+                CatalogEntry entry = sorted.get(i);
+                Money price = entry.getPrice();
+                byte[] description = entry.getProduct() == null ? padding : entry.getProduct().getDescription().getBytes(StandardCharsets.UTF_8);
+                int length = entry.getProduct() == null ? 0 : truncatedLength(description, descriptionBytes);
+
+                out.writeLong(keys[i]);
+                out.writeLong(price == null ? NO_PRICE : price.getMinorUnits());
+                out.writeDouble(entry.getExpectedWeight());
+                out.writeShort(length);
+                out.write(description, 0, length);
+                out.write(padding, 0, descriptionBytes - length);
+            }
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Cuts UTF-8 bytes to at most the width without splitting a character
+    private static int truncatedLength(byte[] utf8, int width)
+    {
+        if (utf8.length <= width) return utf8.length;
+
+        int length = width;
+        while (length > 0 && (utf8[length] & 0xC0) == 0x80)
+            length--;
+
+        return length;
+    }
+
+    /**
+     * @return The number of records in the catalog.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return true if the catalog has a record for the barcode.
+     */
+    public boolean contains(Barcode barcode)
+    {
+        return indexOf(BarcodeKey.pack(barcode)) >= 0;
+    }
+
+    /**
+     * Looks up a barcode and builds its entry from the record.
+     *
+     * @param barcode The barcode to look up.
+     * @return The entry for the barcode, or null if it is not in the catalog.
+     */
+    public CatalogEntry getEntry(Barcode barcode)
+    {
+        int index = indexOf(BarcodeKey.pack(barcode));
+
+        if (index < 0) return null;
+
+        int at = offset(index);
+        long price = records.getLong(at + 8);
+        double weight = records.getDouble(at + 16);
+
+        if (price == NO_PRICE) return new CatalogEntry(barcode, null, weight);
+
+        byte[] description = new byte[records.getShort(at + 24) & 0xFFFF];
+        records.get(at + FIXED_RECORD_SIZE, description);
+
+        BarcodedProduct product = new BarcodedProduct(barcode, new String(description, StandardCharsets.UTF_8), BigDecimal.valueOf(price, fractionDigits));
+        return new CatalogEntry(barcode, product, weight);
+    }
+
+    /**
+     * Looks up a barcode, as {@link #getEntry(Barcode)} does. Reading the mapped file does not fail once it is open.
+     */
+    @Override
+    public CatalogEntry load(Barcode barcode)
+    {
+        return getEntry(barcode);
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The price of the product with the barcode, or null if it is not in the catalog or has no product.
+     */
+    public Money getPrice(Barcode barcode)
+    {
+        int index = indexOf(BarcodeKey.pack(barcode));
+
+        if (index < 0) return null;
+
+        long price = records.getLong(offset(index) + 8);
+        return price == NO_PRICE ? null : Money.ofMinor(price, currency);
+    }
+
+    /**
+     * @param barcode The barcode to look up.
+     * @return The expected weight of an item with the barcode, or 0 if it is not in the catalog.
+     */
+    public double getExpectedWeight(Barcode barcode)
+    {
+        int index = indexOf(BarcodeKey.pack(barcode));
+        return index < 0 ? 0.0 : records.getDouble(offset(index) + 16);
+    }
+
+    // Binary search over the packed barcodes at the start of each record; -1 if the key is not there
+    int indexOf(long key)
+    {
+        if (key == BarcodeKey.NOT_PACKABLE) return -1;
+
+        int low = 0;
+        int high = count - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long found = records.getLong(offset(middle));
+
+            if (found < key) low = middle + 1;
+            else if (found > key) high = middle - 1;
+            else return middle;
+        }
+
+        return -1;
+    }
+
+    private int offset(int index)
+    {
+        return HEADER_SIZE + index * recordSize;
+    }
+}
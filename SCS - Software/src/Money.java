@@ -0,0 +1,181 @@
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * An amount of money, held as a whole number of the currency's minor units (e.g. cents) in a long. Arithmetic is exact
+ * integer arithmetic, and amounts are immutable.
+ * <p>
+ * The hardware reports coin values as {@link BigDecimal}s and banknote values as whole units; {@link #of(BigDecimal,
+ * Currency)} and {@link #ofMajor(long, Currency)} convert those exactly, failing rather than rounding if a value cannot
+ * be represented in minor units.
+ */
+public final class Money implements Comparable<Money>
+{
+    /**
+     * The currency the store's prices are in, used wherever no other currency is given.
+     */
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("CAD");
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency)
+    {
+        if (currency == null) throw new NullPointerException("currency is null");
+
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    /**
+     * @param minorUnits The amount, in minor units of the currency (e.g. cents).
+     * @param currency   The currency.
+     * @return The amount of money.
+     */
+    public static Money ofMinor(long minorUnits, Currency currency)
+    {
+        return new Money(minorUnits, currency);
+    }
+
+    /**
+     * @param majorUnits The amount, in whole units of the currency (e.g. dollars), as for a banknote.
+     * @param currency   The currency.
+     * @return The amount of money.
+     * @throws ArithmeticException If the amount does not fit in a long once converted to minor units.
+     */
+    public static Money ofMajor(long majorUnits, Currency currency)
+    {
+        return new Money(Math.multiplyExact(majorUnits, POWERS_OF_TEN[fractionDigits(currency)]), currency);
+    }
+
+    /**
+     * @param amount   The amount, in units of the currency (e.g. 0.25 for a quarter).
+     * @param currency The currency.
+     * @return The amount of money.
+     * @throws ArithmeticException If the amount has a fraction smaller than the currency's minor unit, or is too large.
+     */
+    public static Money of(BigDecimal amount, Currency currency)
+    {
+        return new Money(toMinorUnits(amount, currency), currency);
+    }
+
+    /**
+     * @param currency The currency.
+     * @return No money at all.
+     */
+    public static Money zero(Currency currency)
+    {
+        return new Money(0, currency);
+    }
+
+    /**
+     * Converts an amount to minor units exactly, without creating a Money.
+     *
+     * @param amount   The amount, in units of the currency.
+     * @param currency The currency.
+     * @return The amount in minor units.
+     * @throws ArithmeticException If the amount has a fraction smaller than the currency's minor unit, or is too large.
+     */
+    public static long toMinorUnits(BigDecimal amount, Currency currency)
+    {
+        return amount.movePointRight(fractionDigits(currency)).longValueExact();
+    }
+
+    // The number of minor-unit digits of a currency; pseudo-currencies without minor units report -1
+    private static int fractionDigits(Currency currency)
+    {
+        return Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    public long getMinorUnits()
+    {
+        return minorUnits;
+    }
+
+    public Currency getCurrency()
+    {
+        return currency;
+    }
+
+    public Money add(Money other)
+    {
+        checkCurrency(other);
+        return new Money(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money subtract(Money other)
+    {
+        checkCurrency(other);
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money multiply(long factor)
+    {
+        return new Money(Math.multiplyExact(minorUnits, factor), currency);
+    }
+
+    public Money negate()
+    {
+        return new Money(Math.negateExact(minorUnits), currency);
+    }
+
+    public boolean isZero()
+    {
+        return minorUnits == 0;
+    }
+
+    public int signum()
+    {
+        return Long.signum(minorUnits);
+    }
+
+    /**
+     * @return The amount, in units of the currency.
+     */
+    public BigDecimal toBigDecimal()
+    {
+        return BigDecimal.valueOf(minorUnits, fractionDigits(currency));
+    }
+
+    /**
+     * @throws IllegalArgumentException If the other amount is in a different currency.
+     */
+    @Override
+    public int compareTo(Money other)
+    {
+        checkCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object object)
+    {
+        if (object instanceof Money)
+        {
+            Money other = (Money) object;
+            return minorUnits == other.minorUnits && currency.equals(other.currency);
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Long.hashCode(minorUnits) + currency.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+
+    private void checkCurrency(Money other)
+    {
+        if (!currency.equals(other.currency))
+            throw new IllegalArgumentException("Cannot combine amounts in " + currency + " and " + other.currency);
+    }
+}
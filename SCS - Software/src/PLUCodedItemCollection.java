@@ -0,0 +1,100 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import org.lsmr.selfcheckout.PriceLookupCode;
+import org.lsmr.selfcheckout.products.PLUCodedProduct;
+
+/**
+ * The store's catalog of products sold by PLU code, such as produce. PLU codes are four or five digits long, so every
+ * possible code has its own slot in a flat array and a lookup is a single array access.
+ * <p>
+ * Four-digit codes occupy slots 0 to 9999 and five-digit codes slots 10000 to 109999, since a code with a leading zero
+ * (e.g. 04011) is a different code from its four-digit counterpart (4011).
+ * <p>
+ * Prices per kilogram are kept in cents alongside the products. A weighed item is priced by multiplying exactly in
+ * decimal and rounding once to the cent, so a price that comes to exactly half a cent always rounds up, which a double
+ * multiply and divide does not guarantee.
+ */
+public class PLUCodedItemCollection
+{
+    // Slots needed for every four-digit code plus every five-digit code
+    private static final int SLOTS = 10_000 + 100_000;
+
+    private final PLUCodedProduct[] products = new PLUCodedProduct[SLOTS];
+    private final long[] pricesPerKilogram = new long[SLOTS];
+    private int size = 0;
+
+    /**
+     * Records a product so it can be used to price its PLU code. Replaces any product already recorded for the code.
+     *
+     * @param product The product to record.
+     * @throws ArithmeticException If the product's price is not a whole number of cents.
+     */
+    public void addProduct(PLUCodedProduct product)
+    {
+        int slot = slot(product.getPLUCode());
+        long pricePerKilogram = Money.toMinorUnits(product.getPrice(), Money.DEFAULT_CURRENCY);
+
+        if (products[slot] == null) size++;
+        products[slot] = product;
+        pricesPerKilogram[slot] = pricePerKilogram;
+    }
+
+    /**
+     * @param code The PLU code to look up.
+     * @return The product with the code, or null if it is not in the catalog.
+     */
+    public PLUCodedProduct getProduct(PriceLookupCode code)
+    {
+        return products[slot(code)];
+    }
+
+    /**
+     * @param code The PLU code to look up.
+     * @return The price per kilogram of the product with the code, or null if it is not in the catalog.
+     */
+    public Money getPricePerKilogram(PriceLookupCode code)
+    {
+        int slot = slot(code);
+        return products[slot] == null ? null : Money.ofMinor(pricesPerKilogram[slot], Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Prices a weighed quantity of a product, rounded to the nearest cent (half a cent rounds up).
+     *
+     * @param code          The PLU code of the product.
+     * @param weightInGrams The weight of the product being bought, taken at the decimal value the scale reports.
+     * @throws ArithmeticException If the price does not fit in a long number of cents.
+     * @return The price of that weight of the product, or null if the code is not in the catalog.
+     */
+    public Money getPrice(PriceLookupCode code, double weightInGrams)
+    {
+        int slot = slot(code);
+
+        if (products[slot] == null) return null;
+
+        // BigDecimal.valueOf takes the weight's shortest decimal form, e.g. 32.8 rather than its binary expansion
+        BigDecimal cents = BigDecimal.valueOf(pricesPerKilogram[slot]).multiply(BigDecimal.valueOf(weightInGrams)).movePointLeft(3);
+        return Money.ofMinor(cents.setScale(0, RoundingMode.HALF_UP).longValueExact(), Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * @return The number of PLU codes in the catalog.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    // Maps a code to its slot: its numeric value, offset past the four-digit codes if it has five digits
+    private static int slot(PriceLookupCode code)
+    {
+        int numeralCount = code.numeralCount();
+        int value = 0;
+
+        for (int i = 0; i < numeralCount; i++)
+            value = value * 10 + code.getNumeralAt(i).getValue();
+
+        return numeralCount == 5 ? 10_000 + value : value;
+    }
+}
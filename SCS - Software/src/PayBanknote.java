@@ -53,21 +53,44 @@ public class PayBanknote implements BanknoteSlotObserver, BanknoteValidatorObser
 	private boolean banknotesLoadedDispenser;
 	private boolean billAdded;
 	private boolean billRemoved;
-	private double totalCost;
-	private int banknoteSum;
+	// Amounts are kept in cents of the currency so that inserting a banknote is exact integer arithmetic
+	private final Currency currency;
+	private long totalCost;
+	private long banknoteSum;
+	// Written to in the background, so no notification waits on the disk; nothing is logged until a log is set
+	private EventLog eventLog;
+	private static final EventLog.Message STORAGE_FULL = new EventLog.Message("banknoteStorageFull", "banknotes");
+	private static final EventLog.Message BANKNOTE_STORED = new EventLog.Message("banknoteStored", "banknotes", "capacity");
+	private static final EventLog.Message DISPENSER_FULL = new EventLog.Message("banknoteDispenserFull", "capacity");
+	private static final EventLog.Message DISPENSER_EMPTY = new EventLog.Message("banknoteDispenserEmpty", "capacity");
+	private static final EventLog.Message BILL_ADDED = new EventLog.Message("billAdded", "currency", "value");
+	private static final EventLog.Message BILL_REMOVED = new EventLog.Message("billRemoved", "currency", "value");
+	private static final EventLog.Message DISPENSER_LOADED = new EventLog.Message("banknotesLoaded", "banknotes", "currency", "value");
+	private static final EventLog.Message DISPENSER_UNLOADED = new EventLog.Message("banknotesUnloaded", "banknotes", "currency", "value");
 	/**
 	 * PayBanknote is a class that takes a cost as a formal parameter and compares this total cost owed to the total cost paid. Only valid
 	 * banknotes can contribute to the total cost paid, thus the deduction of totalCost happens inside validBanknoteDetected.
 	 * @param cost
 	 */
-	public PayBanknote(double cost)
+	public PayBanknote(Money cost)
 	{
-		totalCost = cost;
+		currency = cost.getCurrency();
+		totalCost = cost.getMinorUnits();
 	}
 
 	public PayBanknote()
 	{
+		this(Money.zero(Money.DEFAULT_CURRENCY));
+	}
 
+	/**
+	 * Sets the log that the storage unit's and the dispenser's events are written to. Logging never waits on the log's
+	 * file, so the banknote path is not slowed down by it.
+	 * @param log the log, or null to log nothing
+	 */
+	public void setEventLog(EventLog log)
+	{
+		eventLog = log;
 	}
 	
 	/**
@@ -108,13 +131,20 @@ public class PayBanknote implements BanknoteSlotObserver, BanknoteValidatorObser
 	 * all valid banknotes.
 	 * Deducts the value of the most recently validated banknote from the totalCost. totalCost is the total price of checkout that is passed to
 	 * the constructor of PayBanknote as a formal parameter.
+	 * The value is also added to the running sum of valid banknotes.
+	 * @throws IllegalArgumentException if the banknote is in a different currency from the cost.
 	 */
 	@Override
 	public void validBanknoteDetected(BanknoteValidator validator, Currency currency, int value) {
+		if(!this.currency.equals(currency))
+			throw new IllegalArgumentException("Expected banknotes in " + this.currency + " but got " + currency);
+
 		banknoteValidity = true;
 		Banknote b = new Banknote(currency, value);
 		validBanknotes.add(b);
-		totalCost -= validBanknotes.get(validBanknotes.size()-1).getValue();
+		long valueInCents = Money.ofMajor(value, currency).getMinorUnits();
+		totalCost = Math.subtractExact(totalCost, valueInCents);
+		banknoteSum = Math.addExact(banknoteSum, valueInCents);
 		}
 	/**
 	 * Sets the boolean representing the banknote's validity to false; indicative of the validator's state when an invalid banknote is passed.
@@ -127,26 +157,27 @@ public class PayBanknote implements BanknoteSlotObserver, BanknoteValidatorObser
 	/**
 	 * Announces that the indicated banknote storage unit is full of banknotes. How?
 	 * Sets the flag storageFull to true which is indicative of the current unit's state.
-	 * Also provides print statement containing the capacity of the storage unit passed in as a formal parameter.
+	 * Also logs the capacity of the storage unit passed in as a formal parameter.
 	 */
 	@Override
 	public void banknotesFull(BanknoteStorageUnit unit) {
 		storageFull = true;
 		storageCapacityMax = unit.getBanknoteCount();
-		System.out.println("The banknote storage unit is currently full and holds " + storageCapacityMax + " banknotes");
+		if(eventLog != null)
+			eventLog.log(STORAGE_FULL, storageCapacityMax);
 	}
 	/**
 	 * Announces that a banknote has been added to the indicated storage unit. How?
 	 * Sets the banknoteAdded flag to true.
-	 * Provides print statement notifying that a banknote has been added as well as the current number of banknotes/maximum capacity of the unit
+	 * Logs that a banknote has been added as well as the current number of banknotes/maximum capacity of the unit
 	 * passed in as a formal parameter.
 	 */
 	@Override
 	public void banknoteAdded(BanknoteStorageUnit unit) {
 		banknoteCount = unit.getBanknoteCount();
 		banknoteAdded = true;
-		System.out.println("A banknote has been added and the storage currently has " + banknoteCount +
-		" banknotes. The storage unit can carry up to" + unit.getCapacity() + " banknotes.");
+		if(eventLog != null)
+			eventLog.log(BANKNOTE_STORED, banknoteCount, unit.getCapacity());
 	}
 	/**
 	 * Announces that the indicated storage unit has been loaded with banknotes. Used to simulate direct, physical loading of the unit.
@@ -171,94 +202,106 @@ public class PayBanknote implements BanknoteSlotObserver, BanknoteValidatorObser
 	/**
 	 * Announces that the indicated banknote dispenser is full of banknotes.
 	 * Does this by setting the dispenserFull flag to true and the dispenserEmpty flag to false.
-	 * Provides print statement stating that the dispenser is full as well as the capacity of the dispenser.
+	 * Logs that the dispenser is full as well as the capacity of the dispenser.
 	 */
 	@Override
 	public void moneyFull(BanknoteDispenser dispenser) {
 		dispenserFull = true;
 		dispenserEmpty = false;
-		System.out.println("Dispenser is currently full. Capacity: " + dispenser.getCapacity());
+		if(eventLog != null)
+			eventLog.log(DISPENSER_FULL, dispenser.getCapacity());
 	}
 	/**
 	 * Announces that the indicated banknote dispenser is empty of banknotes.
 	 * Does this by setting the dispenserFull flag to false and the dispenserEmpty flag to true.
-	 * Provides print statement stating that the dispenser is empty as well as the capacity of the dispenser.
+	 * Logs that the dispenser is empty as well as the capacity of the dispenser.
 	 */
 	@Override
 	public void banknotesEmpty(BanknoteDispenser dispenser) {
 		dispenserFull = false;
 		dispenserEmpty = true;
-		System.out.println("Dispenser is currently empty. Capacity: " + dispenser.getCapacity());
+		if(eventLog != null)
+			eventLog.log(DISPENSER_EMPTY, dispenser.getCapacity());
 	}
 	/**
 	 * Announces that the indicated banknote has been added to the indicated banknote dispenser by setting the billAdded flag to true and 
 	 * the billRemoved flag to false (these cannot be true at the same time).
-	 * Method also provides print statement to announce the addition of the banknote as well as the banknote's currency and value.
+	 * Method also logs the addition of the banknote as well as the banknote's currency and value.
 	 */
 	@Override
 	public void billAdded(BanknoteDispenser dispenser, Banknote banknote) {
 		billAdded = true;
 		billRemoved = false;
-		System.out.println("Bill has been added to the dispenser.\n Currency: " + banknote.getCurrency() + "\nValue: " + banknote.getValue());
+		if(eventLog != null)
+			eventLog.log(BILL_ADDED, EventLog.currency(banknote.getCurrency()), banknote.getValue());
 	}
 	/**
 	 * Announces that the indicated banknote has been removed  from the indicated banknote dispenser by setting the billAdded flag to false and 
 	 * the billRemoved flag to true (these cannot be true at the same time).
-	 * Method also provides print statement to announce the removal of the banknote as well as the banknote's currency and value.
+	 * Method also logs the removal of the banknote as well as the banknote's currency and value.
 	 */
 	@Override
 	public void banknoteRemoved(BanknoteDispenser dispenser, Banknote banknote) {
 		billAdded = false;
 		billRemoved = true;
-		System.out.println("Bill has been removed from the dispenser.\n Currency: " + banknote.getCurrency() + "\nValue: " + banknote.getValue());
+		if(eventLog != null)
+			eventLog.log(BILL_REMOVED, EventLog.currency(banknote.getCurrency()), banknote.getValue());
 	}
 	/**
 	 * Announces that the indicated sequence of banknotes has been added to the indicated banknote dispenser. 
 	 * Used to simulate direct, physical loading of the dispenser.
 	 * Sets the flags banknotesLoadedDispenser to true and banknotesUnloadedDispenser to false. The state of these flags indicate the state of
 	 * the dispenser and cannot be true at the same time (i.e., a single dispenser cannot be loading and unloading at the same time)
-	 * Also prints out the sequence of the loaded banknotes as well as their corresponding Value and Currency.
+	 * Also logs one event for the whole load: the number of banknotes, their currency and their total value.
 	 */
 	@Override
 	public void banknotesLoaded(BanknoteDispenser dispenser, Banknote... banknotes) {
 		banknotesLoadedDispenser = true;
 		banknotesUnloadedDispenser = false;
-		System.out.println("Banknotes Loaded:");
-		for (int i = 0; i < banknotes.length; i++) {
-			int value = banknotes[i].getValue();
-			Currency c = banknotes[i].getCurrency();
-			System.out.println("Banknote " + (i+1) + ":\tValue: " + value + "\tCurrency: " + c);
-		}
+		log(DISPENSER_LOADED, banknotes);
 	}
 	/**
 	 *Announces that the indicated sequence of banknotes has been removed to the indicated banknote dispenser. 
 	 * Used to simulate direct, physical unloading of the dispenser. 
 	 * Sets the flags banknotesLoadedDispenser to false and banknotesUnloadedDispenser to true. The state of these flags indicate the state of
 	 * the dispenser and cannot be true at the same time (i.e., a single dispenser cannot be loading and unloading at the same time)
-	 * Also prints out the sequence of the unloaded banknotes as well as their corresponding Value and Currency.
+	 * Also logs one event for the whole unload: the number of banknotes, their currency and their total value.
 	 */
 	@Override
 	public void banknotesUnloaded(BanknoteDispenser dispenser, Banknote... banknotes) {
 		banknotesLoadedDispenser = true;
 		banknotesUnloadedDispenser = false;		
-		System.out.println("Banknotes Unloaded:");
-		for (int i = 0; i < banknotes.length; i++) {
-			int value = banknotes[i].getValue();
-			Currency c = banknotes[i].getCurrency();
-			System.out.println("Banknote " + (i+1) + ":\tValue: " + value + "\tCurrency: " + c);
-		}
+		log(DISPENSER_UNLOADED, banknotes);
+	}
+
+	// Logs a load or unload as one event; a dispenser holds a single currency, so the first banknote's is used
+	private void log(EventLog.Message message, Banknote[] banknotes) {
+		if(eventLog == null)
+			return;
+
+		long total = 0;
+		for(Banknote banknote : banknotes)
+			total += banknote.getValue();
+
+		eventLog.log(message, banknotes.length, banknotes.length == 0 ? 0 : EventLog.currency(banknotes[0].getCurrency()), total);
 	}
 	/**
 	 * Returns the sum of all the valid banknotes inserted.
-	 * iterates through ArrayList of valid banknotes and sums up all the values of the banknotes.
+	 * The sum is kept up to date as banknotes are validated, so asking for it more than once gives the same answer.
 	 * @return banknoteSum
 	 */
-	public int getTotalBanknotes()
+	public Money getTotalBanknotes()
 	{
-		for(int i = 0; i < validBanknotes.size(); i++) {
-			banknoteSum += validBanknotes.get(i).getValue();
-		}
-		return banknoteSum;
+		return Money.ofMinor(banknoteSum, currency);
+	}
+
+	/**
+	 * Returns how much of the cost is still owed after the valid banknotes inserted. Negative if more than the cost was paid.
+	 * @return totalCost
+	 */
+	public Money getRemainingCost()
+	{
+		return Money.ofMinor(totalCost, currency);
 	}
 
 }
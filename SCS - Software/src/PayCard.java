@@ -0,0 +1,302 @@
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.lsmr.selfcheckout.Card.CardData;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.CardReader;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.CardReaderObserver;
+
+/**
+ * Pays for a transaction by card. Whenever the card reader reads a card, a charge for the amount still owed at that
+ * moment is sent to the authorization host, and the card reader's thread carries on without waiting for the answer. Any number of
+ * charges can be outstanding at once; an amount that is waiting for an answer is not charged again, so reading a second
+ * card while the first is being authorized only charges what the first does not cover. A charge the host does not
+ * answer within the timeout is treated as declined and reversed, in case the host approves it after all.
+ * <p>
+ * The answers arrive on the host's threads, so a card payment may be used from several threads at once.
+ */
+public class PayCard implements CardReaderObserver
+{
+    /**
+     * How long a charge waits for the host's answer, unless indicated otherwise.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Where a charge to a card stands.
+     */
+    public enum Status
+    {
+        PENDING, APPROVED, DECLINED, TIMED_OUT, FAILED
+    }
+
+    /**
+     * A charge sent to the authorization host.
+     */
+    public static final class Authorization
+    {
+        private final String cardNumber;
+        private final Money amount;
+        private final CompletableFuture<Status> result = new CompletableFuture<>();
+
+        private Authorization(String cardNumber, Money amount)
+        {
+            // Only the last four digits are kept, as on a receipt
+            this.cardNumber = cardNumber.length() <= 4 ? cardNumber : "*".repeat(cardNumber.length() - 4) + cardNumber.substring(cardNumber.length() - 4);
+            this.amount = amount;
+        }
+
+        /**
+         * @return The number of the card charged, masked but for the last four digits.
+         */
+        public String getCardNumber()
+        {
+            return cardNumber;
+        }
+
+        /**
+         * @return The amount charged.
+         */
+        public Money getAmount()
+        {
+            return amount;
+        }
+
+        /**
+         * @return Where the charge stands now.
+         */
+        public Status getStatus()
+        {
+            return result.getNow(Status.PENDING);
+        }
+
+        /**
+         * @return A future completed with the final status once the host has answered or the charge has timed out.
+         */
+        public CompletableFuture<Status> getResult()
+        {
+            return result;
+        }
+    }
+
+    private final AuthorizationHost host;
+    private final long timeoutNanos;
+    private Supplier<Money> amountDue = () -> Money.zero(Money.DEFAULT_CURRENCY);
+    private Currency currency = Money.DEFAULT_CURRENCY;
+    private long authorized = 0;
+    private long pending = 0;
+    private final List<Authorization> authorizations = new ArrayList<>();
+
+    /**
+     * Creates a card payment that waits {@value #DEFAULT_TIMEOUT_MILLIS} milliseconds for each answer.
+     *
+     * @param host The authorization host to send charges to.
+     */
+    public PayCard(AuthorizationHost host)
+    {
+        this(host, DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a card payment.
+     *
+     * @param host    The authorization host to send charges to.
+     * @param timeout How long a charge waits for the host's answer before it is treated as declined.
+     * @param unit    The unit of the timeout.
+     */
+    public PayCard(AuthorizationHost host, long timeout, TimeUnit unit)
+    {
+        if (host == null) throw new NullPointerException("host is null");
+        if (timeout <= 0) throw new IllegalArgumentException("The timeout must be positive: " + timeout);
+
+        this.host = host;
+        timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets a fixed amount to be paid by card. The next card read is charged for this amount, less what has been approved
+     * already and what is waiting for an answer.
+     *
+     * @param amount The amount to be paid by card.
+     */
+    public void setAmountDue(Money amount)
+    {
+        if (amount == null) throw new NullPointerException("amount is null");
+
+        setAmountDue(() -> amount);
+    }
+
+    /**
+     * Sets where the amount to be paid by card comes from. It is asked each time a card is read, on the card reader's
+     * thread, so items added or cash inserted after the card payment was chosen are taken into account; the card is
+     * charged for what it returns, less what has been approved already and what is waiting for an answer.
+     *
+     * @param amount The amount to be paid by card, as it stands when asked.
+     */
+    public synchronized void setAmountDue(Supplier<Money> amount)
+    {
+        if (amount == null) throw new NullPointerException("amount is null");
+
+        amountDue = amount;
+    }
+
+    /**
+     * @return The total of the charges approved.
+     */
+    public synchronized Money getTotalAuthorized()
+    {
+        return Money.ofMinor(authorized, currency);
+    }
+
+    /**
+     * @return The number of charges waiting for an answer from the host.
+     */
+    public synchronized int getPendingCount()
+    {
+        int count = 0;
+
+        for (Authorization authorization : authorizations)
+            if (authorization.getStatus() == Status.PENDING) count++;
+
+        return count;
+    }
+
+    /**
+     * @return Every charge sent to the host, in the order they were sent.
+     */
+    public synchronized List<Authorization> getAuthorizations()
+    {
+        return new ArrayList<>(authorizations);
+    }
+
+    /**
+     * @return A future completed once every charge sent so far has been answered or has timed out.
+     */
+    public synchronized CompletableFuture<Void> settled()
+    {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[authorizations.size()];
+
+        for (int i = 0; i < results.length; i++)
+            results[i] = authorizations.get(i).result;
+
+        return CompletableFuture.allOf(results);
+    }
+
+    @Override
+    public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+    }
+
+    @Override
+    public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+    }
+
+    @Override
+    public void cardInserted(CardReader reader)
+    {
+    }
+
+    @Override
+    public void cardRemoved(CardReader reader)
+    {
+    }
+
+    @Override
+    public void cardTapped(CardReader reader)
+    {
+    }
+
+    @Override
+    public void cardSwiped(CardReader reader)
+    {
+    }
+
+    /**
+     * Sends a charge for the amount still owed to the host and returns without waiting for the answer. Nothing is sent
+     * if the amount owed is already approved or waiting for an answer.
+     */
+    @Override
+    public void cardDataRead(CardReader reader, CardData data)
+    {
+        // Each read of the data may be corrupted differently, so the fields are read once
+        String cardType = data.getType();
+        String cardNumber = data.getNumber();
+        Supplier<Money> source;
+        Authorization authorization;
+
+        synchronized (this)
+        {
+            source = amountDue;
+        }
+
+        // Asked outside the lock, as the amount may come from state guarded by its own
+        Money due = source.get();
+
+        synchronized (this)
+        {
+            long charge = due.getMinorUnits() - authorized - pending;
+
+            if (charge <= 0) return;
+
+            pending += charge;
+            currency = due.getCurrency();
+            authorization = new Authorization(cardNumber, Money.ofMinor(charge, currency));
+            authorizations.add(authorization);
+        }
+
+        CompletableFuture<Boolean> answer;
+
+        try
+        {
+            answer = host.authorize(cardType, cardNumber, authorization.amount);
+        }
+        catch (RuntimeException e)
+        {
+            answer = CompletableFuture.failedFuture(e);
+        }
+
+        answer.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS).whenComplete((approved, failure) -> settle(authorization, cardType, cardNumber, approved, failure));
+    }
+
+    // Records the host's answer, or its absence, and releases the amount that was waiting for it
+    private void settle(Authorization authorization, String cardType, String cardNumber, Boolean approved, Throwable failure)
+    {
+        Status status;
+
+        if (failure instanceof CompletionException && failure.getCause() != null) failure = failure.getCause();
+
+        if (failure instanceof TimeoutException) status = Status.TIMED_OUT;
+        else if (failure != null) status = Status.FAILED;
+        else if (Boolean.TRUE.equals(approved)) status = Status.APPROVED;
+        else status = Status.DECLINED;
+
+        synchronized (this)
+        {
+            pending -= authorization.amount.getMinorUnits();
+
+            if (status == Status.APPROVED) authorized += authorization.amount.getMinorUnits();
+        }
+
+        if (status == Status.TIMED_OUT)
+        {
+            try
+            {
+                host.reverse(cardType, cardNumber, authorization.amount);
+            }
+            catch (RuntimeException e)
+            {
+                // The charge is timed out whether or not the reversal could be sent
+            }
+        }
+
+        authorization.result.complete(status);
+    }
+}
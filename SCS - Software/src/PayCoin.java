@@ -3,11 +3,14 @@ import org.lsmr.selfcheckout.devices.*;
 import org.lsmr.selfcheckout.devices.observers.*;
 
 import java.math.BigDecimal;
+import java.util.Currency;
 
 public class PayCoin implements CoinDispenserObserver, CoinSlotObserver, CoinStorageUnitObserver, CoinTrayObserver, CoinValidatorObserver
 {
 
-    public BigDecimal coinTotal = BigDecimal.valueOf(0);
+    // The value of the valid coins inserted, in cents of the currency
+    private final Currency currency;
+    private long coinTotal = 0;
     private boolean coinInserted;
     private boolean coinEjected;
     private boolean coinRemoved;
@@ -22,6 +25,31 @@ public class PayCoin implements CoinDispenserObserver, CoinSlotObserver, CoinSto
     private boolean CoinDispenserLoaded;
     private boolean CoinDispenserUnloaded;
 
+    /**
+     * Creates a coin payment that takes coins in the store's currency.
+     */
+    public PayCoin()
+    {
+        this(Money.DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Creates a coin payment.
+     *
+     * @param currency The currency of the coins accepted.
+     */
+    public PayCoin(Currency currency)
+    {
+        this.currency = currency;
+    }
+
+    /**
+     * @return The value of the valid coins inserted so far.
+     */
+    public Money getCoinTotal()
+    {
+        return Money.ofMinor(coinTotal, currency);
+    }
 
     @Override//not used but necessary to implement any observer
     public void enabled(AbstractDevice <? extends AbstractDeviceObserver> device)
@@ -38,12 +66,36 @@ public class PayCoin implements CoinDispenserObserver, CoinSlotObserver, CoinSto
 
     }
 
+    /**
+     * Adds the coin's value to the total. The value is converted to cents exactly, so 0.1 and 0.10 count the same.
+     *
+     * @throws IllegalArgumentException If the validator accepts a different currency from this payment.
+     * @throws ArithmeticException      If the value is not a whole number of cents.
+     */
     @Override
     public void validCoinDetected(CoinValidator validator, BigDecimal value)
     {
-        // TODO Auto-generated method stub
+        if (!currency.equals(validator.currency))
+            throw new IllegalArgumentException("Expected coins in " + currency + " but the validator accepts " + validator.currency);
+
+        validCoin = true;
+        coinTotal = Math.addExact(coinTotal, Money.toMinorUnits(value, currency));
+    }
+
+    /**
+     * Adds the value of a batch of coins of one value to the total in one step.
+     *
+     * @throws IllegalArgumentException If the validator accepts a different currency from this payment.
+     * @throws ArithmeticException      If the value is not a whole number of cents.
+     */
+    @Override
+    public void validCoinsDetected(CoinValidator validator, BigDecimal value, int count)
+    {
+        if (!currency.equals(validator.currency))
+            throw new IllegalArgumentException("Expected coins in " + currency + " but the validator accepts " + validator.currency);
+
         validCoin = true;
-        coinTotal = coinTotal.add(value);
+        coinTotal = Math.addExact(coinTotal, Math.multiplyExact(Money.toMinorUnits(value, currency), count));
     }
 
     @Override
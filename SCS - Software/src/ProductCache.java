@@ -0,0 +1,403 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+import org.lsmr.selfcheckout.Barcode;
+
+/**
+ * A bounded, read-through cache of catalog entries in front of a {@link ProductStore}, so a lane holds the products it
+ * is actually selling rather than the store's whole catalog.
+ * <p>
+ * Entries are evicted by W-TinyLFU. A new entry goes into a small window kept in least recently used order. When it
+ * leaves the window it is admitted to the main space only if it has been asked for more often than the entry it would
+ * evict, as estimated by a compact frequency sketch that forgets old counts over time. The main space is split into a
+ * probation and a protected segment, so a product asked for twice outlives any burst of barcodes scanned only once.
+ * <p>
+ * Barcodes the store does not know are cached as absent, so an unlisted barcode is not sent to the store on every scan.
+ * Lookups that miss at the same time for the same barcode share one load: the first thread loads it and the others
+ * wait for its result. A load that fails is not cached; the lookup returns null and the next one tries again.
+ * <p>
+ * The cache may be used by several threads at once. Its bookkeeping is kept under one lock, which is never held while
+ * the store is loading.
+ */
+public final class ProductCache
+{
+    // The segments an entry can be in
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    // A cached entry, linked into the segment it is in; the entry is null for a barcode the store does not know
+    private static final class Node
+    {
+        private final Barcode barcode;
+        private final CatalogEntry entry;
+        private final int hash;
+        private byte segment;
+        private Node previous;
+        private Node next;
+
+        private Node(Barcode barcode, CatalogEntry entry, int hash)
+        {
+            this.barcode = barcode;
+            this.entry = entry;
+            this.hash = hash;
+        }
+    }
+
+    // The nodes of a segment from least to most recently used, in a circular list around a sentinel
+    private static final class Segment
+    {
+        private final Node sentinel = new Node(null, null, 0);
+        private int size = 0;
+
+        private Segment()
+        {
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+        }
+
+        private Node first()
+        {
+            return sentinel.next == sentinel ? null : sentinel.next;
+        }
+
+        private void addLast(Node node)
+        {
+            node.previous = sentinel.previous;
+            node.next = sentinel;
+            sentinel.previous.next = node;
+            sentinel.previous = node;
+            size++;
+        }
+
+        private void remove(Node node)
+        {
+            node.previous.next = node.next;
+            node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        private void clear()
+        {
+            sentinel.previous = sentinel;
+            sentinel.next = sentinel;
+            size = 0;
+        }
+    }
+
+    // Estimates how often each barcode has been asked for, in four-bit counters spread over four rows; every count is
+    // halved once ten lookups per entry have been recorded, so products that were popular once fade
+    private static final class FrequencySketch
+    {
+        private static final long[] SEEDS = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long HALF_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int sampleSize;
+        private int additions = 0;
+
+        private FrequencySketch(int maximumSize)
+        {
+            int length = 1;
+            while (length < maximumSize)
+                length <<= 1;
+
+            table = new long[length];
+            sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        private int frequency(int hash)
+        {
+            int start = (hash & 3) << 2;
+            int frequency = 15;
+
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                int shift = (start + row) << 2;
+                frequency = Math.min(frequency, (int) (table[indexOf(hash, row)] >>> shift) & 0xF);
+            }
+
+            return frequency;
+        }
+
+        private void increment(int hash)
+        {
+            int start = (hash & 3) << 2;
+            boolean added = false;
+
+            for (int row = 0; row < SEEDS.length; row++)
+            {
+                int index = indexOf(hash, row);
+                int shift = (start + row) << 2;
+
+                if (((table[index] >>> shift) & 0xF) != 0xF)
+                {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+
+            if (added && ++additions == sampleSize)
+            {
+                for (int i = 0; i < table.length; i++)
+                    table[i] = (table[i] >>> 1) & HALF_MASK;
+
+                additions >>>= 1;
+            }
+        }
+
+        private int indexOf(int hash, int row)
+        {
+            long mixed = (hash + SEEDS[row]) * SEEDS[row];
+            mixed += mixed >>> 32;
+            return (int) mixed & (table.length - 1);
+        }
+    }
+
+    private final ProductStore store;
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final HashMap<Barcode, Node> nodes = new HashMap<Barcode, Node>();
+    private final HashMap<Barcode, CompletableFuture<CatalogEntry>> loading = new HashMap<Barcode, CompletableFuture<CatalogEntry>>();
+    private final Segment window = new Segment();
+    private final Segment probation = new Segment();
+    private final Segment protectedSegment = new Segment();
+    private final FrequencySketch sketch;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long loads = 0;
+    private long loadFailures = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param store       The store that entries not in the cache are loaded from.
+     * @param maximumSize The number of barcodes the cache holds at most, counting those cached as absent.
+     * @throws IllegalArgumentException If the maximum size is not positive.
+     */
+    public ProductCache(ProductStore store, int maximumSize)
+    {
+        if (store == null) throw new NullPointerException("store is null");
+        if (maximumSize <= 0) throw new IllegalArgumentException("The maximum size must be positive: " + maximumSize);
+
+        this.store = store;
+        this.maximumSize = maximumSize;
+        windowMaximum = Math.max(1, maximumSize / 100);
+        protectedMaximum = (int) ((maximumSize - windowMaximum) * 4L / 5);
+        sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Looks up a barcode, loading it from the store if it is not cached. If another thread is already loading the same
+     * barcode, this waits for that load instead of starting another.
+     *
+     * @param barcode The barcode to look up.
+     * @return The entry for the barcode, or null if the store does not have it or could not be read.
+     */
+    public CatalogEntry getEntry(Barcode barcode)
+    {
+        int hash = spread(barcode.hashCode());
+        CompletableFuture<CatalogEntry> load;
+        CompletableFuture<CatalogEntry> loadUnderWay;
+
+        synchronized (this)
+        {
+            sketch.increment(hash);
+            Node node = nodes.get(barcode);
+
+            if (node != null)
+            {
+                hits++;
+                touch(node);
+                return node.entry;
+            }
+
+            misses++;
+            loadUnderWay = loading.get(barcode);
+            load = new CompletableFuture<CatalogEntry>();
+
+            if (loadUnderWay == null) loading.put(barcode, load);
+        }
+
+        // The lock is released before waiting, since the thread loading needs it to finish
+        if (loadUnderWay != null) return loadUnderWay.join();
+
+        CatalogEntry entry = null;
+        boolean loaded = false;
+
+        try
+        {
+            entry = store.load(barcode);
+            loaded = true;
+        }
+        catch (IOException | RuntimeException e)
+        {
+            // Counted below and not cached, so the next lookup goes back to the store
+        }
+        finally
+        {
+            finishLoad(barcode, hash, load, entry, loaded);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Drops a barcode from the cache, so the next lookup loads it from the store again. A load of the barcode already
+     * under way is not cached when it finishes.
+     *
+     * @param barcode The barcode to drop.
+     */
+    public synchronized void invalidate(Barcode barcode)
+    {
+        Node node = nodes.remove(barcode);
+
+        if (node != null) segmentOf(node).remove(node);
+
+        loading.remove(barcode);
+    }
+
+    /**
+     * Drops every barcode from the cache, as after a price change at the store. Frequencies and statistics are kept.
+     */
+    public synchronized void invalidateAll()
+    {
+        nodes.clear();
+        loading.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    /**
+     * @return The number of barcodes cached, counting those cached as absent.
+     */
+    public synchronized int size()
+    {
+        return nodes.size();
+    }
+
+    /**
+     * @return The number of lookups answered from the cache, including those answered that the barcode is unknown.
+     */
+    public synchronized long getHitCount()
+    {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that were not answered from the cache, whether they loaded the barcode or waited
+     *         for another lookup to load it.
+     */
+    public synchronized long getMissCount()
+    {
+        return misses;
+    }
+
+    /**
+     * @return The number of loads from the store, including those that failed.
+     */
+    public synchronized long getLoadCount()
+    {
+        return loads;
+    }
+
+    /**
+     * @return The number of loads from the store that failed.
+     */
+    public synchronized long getLoadFailureCount()
+    {
+        return loadFailures;
+    }
+
+    /**
+     * @return The number of barcodes evicted to keep the cache within its maximum size.
+     */
+    public synchronized long getEvictionCount()
+    {
+        return evictions;
+    }
+
+    // Caches a load's result, unless it failed or the barcode was invalidated meanwhile, and wakes any waiting lookups
+    private void finishLoad(Barcode barcode, int hash, CompletableFuture<CatalogEntry> load, CatalogEntry entry, boolean loaded)
+    {
+        synchronized (this)
+        {
+            loads++;
+
+            if (!loaded) loadFailures++;
+
+            if (loading.remove(barcode, load) && loaded) insert(new Node(barcode, entry, hash));
+        }
+
+        load.complete(entry);
+    }
+
+    // Records a hit: recent in the window, promoted from probation, or recent in the protected segment
+    private void touch(Node node)
+    {
+        Segment segment = segmentOf(node);
+        segment.remove(node);
+
+        if (node.segment == PROBATION)
+        {
+            node.segment = PROTECTED;
+            protectedSegment.addLast(node);
+
+            if (protectedSegment.size > protectedMaximum)
+            {
+                Node demoted = protectedSegment.first();
+                protectedSegment.remove(demoted);
+                demoted.segment = PROBATION;
+                probation.addLast(demoted);
+            }
+        }
+        else segment.addLast(node);
+    }
+
+    // Adds a node to the window, moving the window's oldest to probation and evicting if the cache is over its size
+    private void insert(Node node)
+    {
+        nodes.put(node.barcode, node);
+        node.segment = WINDOW;
+        window.addLast(node);
+
+        if (window.size <= windowMaximum) return;
+
+        Node candidate = window.first();
+        window.remove(candidate);
+        candidate.segment = PROBATION;
+        probation.addLast(candidate);
+
+        if (nodes.size() <= maximumSize) return;
+
+        // The candidate has to be asked for more often than probation's oldest to take its place
+        Node victim = probation.first();
+
+        if (victim != candidate && sketch.frequency(candidate.hash) <= sketch.frequency(victim.hash)) victim = candidate;
+
+        probation.remove(victim);
+        nodes.remove(victim.barcode);
+        evictions++;
+    }
+
+    private Segment segmentOf(Node node)
+    {
+        if (node.segment == WINDOW) return window;
+        return node.segment == PROBATION ? probation : protectedSegment;
+    }
+
+    // Mixes the barcode's hash so that the sketch's rows and counters are chosen from well-spread bits
+    private static int spread(int hash)
+    {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
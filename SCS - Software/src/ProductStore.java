@@ -0,0 +1,22 @@
+import java.io.IOException;
+
+import org.lsmr.selfcheckout.Barcode;
+
+/**
+ * Where the store's full catalog of barcoded products is kept when a lane cannot hold it all. A lane reaches the store
+ * through a {@link ProductCache}, so the store can be a product service across the network or a local stand-in such as
+ * a {@link MappedCatalog}.
+ * <p>
+ * Loads are synchronous and may be slow; the cache makes sure each barcode is loaded by one thread at a time.
+ */
+public interface ProductStore
+{
+    /**
+     * Loads the catalog entry for a barcode.
+     *
+     * @param barcode The barcode to look up.
+     * @return The entry for the barcode, or null if the store has no such barcode.
+     * @throws IOException If the store cannot be reached or read.
+     */
+    CatalogEntry load(Barcode barcode) throws IOException;
+}
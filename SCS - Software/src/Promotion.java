@@ -0,0 +1,409 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.lsmr.selfcheckout.Barcode;
+
+/**
+ * A deal the store runs on some of its barcoded products. Three kinds are offered:
+ * <ul>
+ * <li>buy some, get some free: for every group of items bought from the promotion's barcodes, the cheapest of the group
+ * are free, e.g. buy 2 get 1 free;</li>
+ * <li>mix and match: any so many items from the promotion's barcodes together cost a set price, e.g. any 3 for $10;</li>
+ * <li>threshold: spending at least so much on the promotion's barcodes (or on anything) takes a set amount off.</li>
+ * </ul>
+ * A promotion is immutable and holds no basket's state, so one set of promotions can serve every lane at once. What a
+ * basket has towards each promotion is kept in a {@link Progress}, which a {@link PromotionEngine} updates as items are
+ * scanned and voided. Promotions that share a product {@link #overlaps(Promotion) overlap}, and the engine never applies
+ * two overlapping promotions to one basket.
+ */
+public final class Promotion
+{
+    private enum Kind
+    {
+        BUY_GET_FREE, MIX_AND_MATCH, THRESHOLD
+    }
+
+    /**
+     * What a basket has towards one promotion: how many items it holds from the promotion's barcodes, what they cost in
+     * total and in each tax class, the discount they earn, and how much of it is applied once overlapping promotions are
+     * taken into account.
+     */
+    static final class Progress
+    {
+        private final Promotion promotion;
+        private int count = 0;
+        private long spend = 0;
+        // How many items there are at each unit price, in order of price, for promotions that depend on which items
+        // are cheapest or dearest; a promotion covers a few products, so a sorted array is both small and quick
+        private long[] prices;
+        private int[] counts;
+        private int distinct = 0;
+        private long discount = 0;
+        // The part of the discount taken off the basket: all of it, or none if an overlapping promotion earns more
+        private long applied = 0;
+        // Where the promotion stands among the store's, which settles ties between overlapping promotions
+        private final int rank;
+        // The basket's progress towards the promotions this one overlaps
+        private final ArrayList<Progress> rivals = new ArrayList<Progress>();
+        // What the items cost in each tax class, and the part of the applied discount taken off each class's taxable
+        // subtotal, by the class's slot in the basket's tax engine
+        private long[] spendBySlot = new long[1];
+        private long[] bookedBySlot = new long[1];
+        private long booked = 0;
+
+        private Progress(Promotion promotion, int rank, boolean keepPrices)
+        {
+            this.promotion = promotion;
+            this.rank = rank;
+
+            int capacity = Math.min(4, promotion.barcodes == null ? 1 : promotion.barcodes.size());
+            prices = keepPrices ? new long[capacity] : null;
+            counts = keepPrices ? new int[capacity] : null;
+        }
+
+        /**
+         * @return The promotion this is progress towards.
+         */
+        Promotion getPromotion()
+        {
+            return promotion;
+        }
+
+        /**
+         * @return The discount earned at the last update, whether or not it is applied.
+         */
+        long getDiscount()
+        {
+            return discount;
+        }
+
+        /**
+         * @return The part of the discount taken off the basket.
+         */
+        long getApplied()
+        {
+            return applied;
+        }
+
+        /**
+         * @return The basket's progress towards the promotions this one overlaps, among those it has touched.
+         */
+        List<Progress> getRivals()
+        {
+            return rivals;
+        }
+
+        /**
+         * Records that this promotion and another overlap, each as a rival of the other.
+         *
+         * @param other The basket's progress towards a promotion this one overlaps.
+         */
+        void rivalOf(Progress other)
+        {
+            rivals.add(other);
+            other.rivals.add(this);
+        }
+
+        /**
+         * Works out again whether the discount is applied: it is if it earns more than every promotion it overlaps, or
+         * as much as any that ranks after it. Two overlapping promotions are never both applied, and whether one is
+         * depends only on what it and its rivals earn, so a change to one promotion affects no more than its rivals.
+         *
+         * @return How much the applied discount changed, in cents.
+         */
+        long reapply()
+        {
+            long newApplied = discount;
+
+            for (int i = 0; i < rivals.size() && newApplied != 0; i++)
+            {
+                Progress rival = rivals.get(i);
+                if (rival.discount > discount || (rival.discount == discount && rival.rank < rank)) newApplied = 0;
+            }
+
+            long change = newApplied - applied;
+            applied = newApplied;
+            return change;
+        }
+
+        /**
+         * Takes the applied discount off the taxable subtotals of the tax classes of the promotion's items, split in
+         * proportion to what was spent in each and rounded to the cent by largest remainder. No class has more taken
+         * off than was spent in it, so with overlapping promotions never both applied, no class's taxable subtotal goes
+         * below zero. Only the difference from what was taken off before is passed on.
+         *
+         * @param taxes The basket's taxable subtotals.
+         */
+        void book(TaxEngine taxes)
+        {
+            // Most promotions a basket touches earn nothing, and have nothing to split
+            if (applied == 0 && booked == 0) return;
+
+            long left = applied;
+
+            for (int slot = 0; slot < spendBySlot.length; slot++)
+            {
+                long share = spend == 0 ? 0 : Math.multiplyExact(applied, spendBySlot[slot]) / spend;
+                rebook(taxes, slot, share);
+                left -= share;
+            }
+
+            // The cents left over go one each to the classes whose shares were rounded down the most
+            for (; left > 0; left--)
+            {
+                int roundedMost = -1;
+                long largestRemainder = 0;
+
+                for (int slot = 0; slot < spendBySlot.length; slot++)
+                {
+                    long exact = applied * spendBySlot[slot];
+                    long remainder = exact - bookedBySlot[slot] * spend;
+
+                    if (remainder > largestRemainder)
+                    {
+                        roundedMost = slot;
+                        largestRemainder = remainder;
+                    }
+                }
+
+                rebook(taxes, roundedMost, bookedBySlot[roundedMost] + 1);
+            }
+        }
+
+        private void rebook(TaxEngine taxes, int slot, long share)
+        {
+            if (share != bookedBySlot[slot]) taxes.add(slot, bookedBySlot[slot] - share);
+            booked += share - bookedBySlot[slot];
+            bookedBySlot[slot] = share;
+        }
+
+        // Counts what was spent in a tax class
+        private void addSpend(int taxSlot, long amount)
+        {
+            if (taxSlot >= spendBySlot.length)
+            {
+                spendBySlot = Arrays.copyOf(spendBySlot, taxSlot + 1);
+                bookedBySlot = Arrays.copyOf(bookedBySlot, taxSlot + 1);
+            }
+
+            spendBySlot[taxSlot] += amount;
+        }
+    }
+
+    private final String name;
+    private final Kind kind;
+    // Null for a threshold on everything in the basket
+    private final List<Barcode> barcodes;
+    // The number of items in one deal, and how many of them are free
+    private final int quantity;
+    private final int free;
+    // The price of a deal, or the discount of a threshold, in cents
+    private final long amount;
+    private final long minimumSpend;
+
+    private Promotion(String name, Kind kind, Collection<Barcode> barcodes, int quantity, int free, long amount, long minimumSpend)
+    {
+        if (name == null) throw new NullPointerException("name is null");
+        if (barcodes != null && barcodes.isEmpty()) throw new IllegalArgumentException("A promotion needs at least one barcode");
+
+        this.name = name;
+        this.kind = kind;
+        this.barcodes = barcodes == null ? null : Collections.unmodifiableList(new ArrayList<Barcode>(barcodes));
+        this.quantity = quantity;
+        this.free = free;
+        this.amount = amount;
+        this.minimumSpend = minimumSpend;
+    }
+
+    /**
+     * Creates a buy some, get some free promotion. With several barcodes, the items may be mixed.
+     *
+     * @param name     The name shown to the customer.
+     * @param barcodes The barcodes of the products in the promotion.
+     * @param buy      The number of items paid for in each deal.
+     * @param free     The number of items free in each deal; the cheapest of the deal's items are the free ones.
+     * @return The promotion.
+     * @throws IllegalArgumentException If there are no barcodes, fewer than one item is paid for or none is free.
+     */
+    public static Promotion buyGetFree(String name, Collection<Barcode> barcodes, int buy, int free)
+    {
+        if (buy < 1 || free < 1) throw new IllegalArgumentException("A deal needs at least one item bought and one free: " + buy + ", " + free);
+
+        return new Promotion(name, Kind.BUY_GET_FREE, barcodes, buy + free, free, 0, 0);
+    }
+
+    /**
+     * Creates a mix and match promotion, in which any so many items from the barcodes together cost a set price. The
+     * dearest items are put into deals first.
+     *
+     * @param name     The name shown to the customer.
+     * @param barcodes The barcodes of the products in the promotion.
+     * @param quantity The number of items in each deal.
+     * @param price    The price of each deal.
+     * @return The promotion.
+     * @throws IllegalArgumentException If there are no barcodes, fewer than two items in a deal or the price is negative.
+     */
+    public static Promotion mixAndMatch(String name, Collection<Barcode> barcodes, int quantity, Money price)
+    {
+        if (quantity < 2) throw new IllegalArgumentException("A deal needs at least two items: " + quantity);
+        if (price.signum() < 0) throw new IllegalArgumentException("The price of a deal cannot be negative: " + price);
+
+        return new Promotion(name, Kind.MIX_AND_MATCH, barcodes, quantity, 0, price.getMinorUnits(), 0);
+    }
+
+    /**
+     * Creates a threshold promotion, which takes an amount off once enough is spent.
+     *
+     * @param name         The name shown to the customer.
+     * @param barcodes     The barcodes of the products that count towards the threshold, or null for every barcoded
+     *                     item.
+     * @param minimumSpend The amount that has to be spent on those products.
+     * @param discount     The amount taken off. It is never more than was spent on them.
+     * @return The promotion.
+     * @throws IllegalArgumentException If the barcodes are empty or an amount is not positive.
+     */
+    public static Promotion threshold(String name, Collection<Barcode> barcodes, Money minimumSpend, Money discount)
+    {
+        if (minimumSpend.signum() <= 0 || discount.signum() <= 0) throw new IllegalArgumentException("The minimum spend and discount must be positive: " + minimumSpend + ", " + discount);
+
+        return new Promotion(name, Kind.THRESHOLD, barcodes, 0, 0, discount.getMinorUnits(), minimumSpend.getMinorUnits());
+    }
+
+    /**
+     * @return The name shown to the customer.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The barcodes of the products in the promotion, or null if it is a threshold on every barcoded item.
+     */
+    public List<Barcode> getBarcodes()
+    {
+        return barcodes;
+    }
+
+    /**
+     * @param rank Where the promotion stands among the store's; of two overlapping promotions that earn as much, the
+     *             one ranked first is applied.
+     * @return A basket's progress towards the promotion before anything is added.
+     */
+    Progress start(int rank)
+    {
+        return new Progress(this, rank, kind != Kind.THRESHOLD);
+    }
+
+    /**
+     * Adds or removes items of one product from a basket's progress and works out its discount again. The work done
+     * depends on the items in this promotion only, never on the rest of the basket.
+     *
+     * @param progress  The basket's progress, which is updated.
+     * @param unitPrice The price of one item, in cents.
+     * @param delta     How many items were added, or removed if negative.
+     * @param taxSlot   The slot of the product's tax class in the basket's tax engine.
+     * @return How much the discount earned changed, in cents.
+     */
+    long update(Progress progress, long unitPrice, int delta, int taxSlot)
+    {
+        progress.count += delta;
+        progress.spend += unitPrice * delta;
+        progress.addSpend(taxSlot, unitPrice * delta);
+
+        if (progress.prices != null) addPrice(progress, unitPrice, delta);
+
+        long discount = discount(progress);
+        long change = discount - progress.discount;
+        progress.discount = discount;
+        return change;
+    }
+
+    /**
+     * Finds whether an item could count towards both this promotion and another.
+     *
+     * @param other Another promotion.
+     * @return true if the promotions share a barcode, or either is on every barcoded item.
+     */
+    boolean overlaps(Promotion other)
+    {
+        if (barcodes == null || other.barcodes == null) return true;
+
+        for (Barcode barcode : barcodes)
+            if (other.barcodes.contains(barcode)) return true;
+
+        return false;
+    }
+
+    private long discount(Progress progress)
+    {
+        int deals = quantity == 0 ? 0 : progress.count / quantity;
+
+        if (kind == Kind.THRESHOLD) return progress.spend >= minimumSpend ? Math.min(amount, progress.spend) : 0;
+        if (deals == 0) return 0;
+        if (kind == Kind.BUY_GET_FREE) return sum(progress, deals * free, true);
+
+        // A deal that would cost more than its items is not applied
+        return Math.max(0, sum(progress, deals * quantity, false) - deals * amount);
+    }
+
+    // Counts items in or out at a unit price, keeping the prices in order
+    private static void addPrice(Progress progress, long unitPrice, int delta)
+    {
+        int index = 0;
+
+        while (index < progress.distinct && progress.prices[index] < unitPrice)
+            index++;
+
+        if (index < progress.distinct && progress.prices[index] == unitPrice)
+        {
+            progress.counts[index] += delta;
+
+            if (progress.counts[index] == 0)
+            {
+                System.arraycopy(progress.prices, index + 1, progress.prices, index, progress.distinct - index - 1);
+                System.arraycopy(progress.counts, index + 1, progress.counts, index, progress.distinct - index - 1);
+                progress.distinct--;
+            }
+
+            return;
+        }
+
+        if (progress.distinct == progress.prices.length)
+        {
+            progress.prices = Arrays.copyOf(progress.prices, progress.distinct * 2);
+            progress.counts = Arrays.copyOf(progress.counts, progress.distinct * 2);
+        }
+
+        System.arraycopy(progress.prices, index, progress.prices, index + 1, progress.distinct - index);
+        System.arraycopy(progress.counts, index, progress.counts, index + 1, progress.distinct - index);
+        progress.prices[index] = unitPrice;
+        progress.counts[index] = delta;
+        progress.distinct++;
+    }
+
+    // Sums the prices of the cheapest (or dearest) items
+    private static long sum(Progress progress, int items, boolean cheapest)
+    {
+        long total = 0;
+
+        for (int i = 0; i < progress.distinct && items > 0; i++)
+        {
+            int index = cheapest ? i : progress.distinct - 1 - i;
+            int taken = Math.min(items, progress.counts[index]);
+            total += progress.prices[index] * taken;
+            items -= taken;
+        }
+
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,247 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lsmr.selfcheckout.Barcode;
+
+/**
+ * The store's promotions, indexed by barcode so that scanning or voiding an item re-evaluates only the promotions that
+ * item is in. A basket's discount is kept up to date one change at a time in a {@link Tally}; nothing ever walks the
+ * basket or the whole list of promotions, so the cost of a scan does not grow with the size of the cart or the number
+ * of promotions running.
+ * <p>
+ * Promotions that {@link Promotion#overlaps(Promotion) overlap} do not stack, so no item is discounted twice and a
+ * basket never costs less than nothing. A promotion is applied only if it earns more than every promotion it overlaps;
+ * of two that earn as much, the one listed first is applied. Whether a promotion applies depends only on it and the
+ * promotions it overlaps, so a scan re-evaluates no more than those. A threshold on every item overlaps every
+ * promotion.
+ * <p>
+ * The engine is immutable once created and may be shared by every lane; each basket keeps its own tally.
+ */
+public final class PromotionEngine
+{
+    private static final Promotion[] NONE = new Promotion[0];
+
+    /**
+     * A basket's progress towards each promotion it has touched, and the discount they add up to.
+     */
+    final class Tally
+    {
+        private final IdentityHashMap<Promotion, Promotion.Progress> progress = new IdentityHashMap<Promotion, Promotion.Progress>();
+        // The basket's progress towards the promotions on every item, which are rivals of all the others
+        private final ArrayList<Promotion.Progress> onEverything = new ArrayList<Promotion.Progress>();
+        private long discount = 0;
+
+        /**
+         * Finds the basket's progress towards each of a product's promotions, once, so that scanning the product again
+         * needs no lookups.
+         *
+         * @param promotions The promotions the product is in, from {@link PromotionEngine#promotionsFor(Barcode)}.
+         * @return The basket's progress towards each of them, starting any not yet touched.
+         */
+        Promotion.Progress[] progressFor(Promotion[] promotions)
+        {
+            Promotion.Progress[] found = new Promotion.Progress[promotions.length];
+
+            for (int i = 0; i < promotions.length; i++)
+            {
+                found[i] = progress.get(promotions[i]);
+
+                if (found[i] == null)
+                {
+                    found[i] = promotions[i].start(rankOf.get(promotions[i]));
+                    progress.put(promotions[i], found[i]);
+                    addRivals(found[i]);
+                }
+            }
+
+            return found;
+        }
+
+        // Links a promotion just touched with the promotions it overlaps that the basket has touched already
+        private void addRivals(Promotion.Progress touched)
+        {
+            Promotion promotion = touched.getPromotion();
+
+            if (promotion.getBarcodes() == null)
+            {
+                for (Promotion.Progress other : progress.values())
+                    if (other != touched) touched.rivalOf(other);
+
+                onEverything.add(touched);
+                return;
+            }
+
+            for (Promotion.Progress other : onEverything)
+                touched.rivalOf(other);
+
+            for (Promotion rival : rivalsOf.get(promotion))
+            {
+                Promotion.Progress other = progress.get(rival);
+                if (other != null) touched.rivalOf(other);
+            }
+        }
+
+        /**
+         * Adds or removes items of one product and works out again the promotions it is in, and whether they and the
+         * promotions they overlap are applied. Each applied discount is taken off the taxable subtotals of the tax
+         * classes of its promotion's items, in proportion to what was spent in each.
+         *
+         * @param productProgress The basket's progress towards the product's promotions, from
+         *                        {@link #progressFor(Promotion[])}.
+         * @param unitPrice       The price of one item, in cents.
+         * @param delta           How many items were added, or removed if negative.
+         * @param taxes           The basket's taxable subtotals.
+         * @param taxSlot         The slot of the product's tax class in the basket's tax engine.
+         * @return How much the basket's discount changed, in cents.
+         */
+        long update(Promotion.Progress[] productProgress, long unitPrice, int delta, TaxEngine taxes, int taxSlot)
+        {
+            long change = 0;
+
+            for (Promotion.Progress promotionProgress : productProgress)
+            {
+                if (promotionProgress.getPromotion().update(promotionProgress, unitPrice, delta, taxSlot) != 0)
+                {
+                    change += promotionProgress.reapply();
+
+                    for (Promotion.Progress rival : promotionProgress.getRivals())
+                    {
+                        long rivalChange = rival.reapply();
+
+                        if (rivalChange != 0) rival.book(taxes);
+
+                        change += rivalChange;
+                    }
+                }
+
+                // Even with the same discount applied, the split between tax classes follows what was spent in each
+                promotionProgress.book(taxes);
+            }
+
+            discount += change;
+            return change;
+        }
+
+        /**
+         * @return The discount the basket has earned from all its promotions, in cents.
+         */
+        long getDiscount()
+        {
+            return discount;
+        }
+
+        /**
+         * @param promotion A promotion.
+         * @return The discount the basket has earned from it, in cents.
+         */
+        long getDiscount(Promotion promotion)
+        {
+            Promotion.Progress basketProgress = progress.get(promotion);
+            return basketProgress == null ? 0 : basketProgress.getApplied();
+        }
+    }
+
+    // Where each promotion stands in the list it was given in, and the promotions it shares a barcode with
+    private final IdentityHashMap<Promotion, Integer> rankOf = new IdentityHashMap<Promotion, Integer>();
+    private final IdentityHashMap<Promotion, Promotion[]> rivalsOf = new IdentityHashMap<Promotion, Promotion[]>();
+    private final LongOpenHashMap<Promotion[]> packedIndex;
+    private final HashMap<Barcode, Promotion[]> unpackableIndex = new HashMap<Barcode, Promotion[]>();
+    // Thresholds on every barcoded item, which every scan touches
+    private final Promotion[] everyItem;
+    private final int size;
+
+    /**
+     * Creates an engine running the indicated promotions.
+     *
+     * @param promotions The promotions, in order of precedence between overlapping ones that earn as much. A product
+     *                   may be in any number of them, but of those that overlap only the one earning most is applied.
+     */
+    public PromotionEngine(Collection<Promotion> promotions)
+    {
+        HashMap<Barcode, List<Promotion>> byBarcode = new HashMap<Barcode, List<Promotion>>();
+        ArrayList<Promotion> onEverything = new ArrayList<Promotion>();
+
+        for (Promotion promotion : promotions)
+        {
+            rankOf.putIfAbsent(promotion, rankOf.size());
+
+            if (promotion.getBarcodes() == null)
+            {
+                onEverything.add(promotion);
+                continue;
+            }
+
+            // A barcode listed twice in one promotion still counts its items once
+            for (Barcode barcode : promotion.getBarcodes())
+            {
+                List<Promotion> listed = byBarcode.computeIfAbsent(barcode, b -> new ArrayList<Promotion>());
+                if (listed.isEmpty() || listed.get(listed.size() - 1) != promotion) listed.add(promotion);
+            }
+        }
+
+        findRivals(byBarcode);
+        everyItem = onEverything.toArray(NONE);
+        packedIndex = new LongOpenHashMap<Promotion[]>(byBarcode.size());
+
+        for (Map.Entry<Barcode, List<Promotion>> listed : byBarcode.entrySet())
+        {
+            listed.getValue().addAll(onEverything);
+            Promotion[] array = listed.getValue().toArray(NONE);
+            long key = BarcodeKey.pack(listed.getKey());
+
+            if (key == BarcodeKey.NOT_PACKABLE) unpackableIndex.put(listed.getKey(), array);
+            else packedIndex.put(key, array);
+        }
+
+        size = promotions.size();
+    }
+
+    // Lists the promotions each one shares a barcode with; those on every item are rivals of all and are not listed
+    private void findRivals(HashMap<Barcode, List<Promotion>> byBarcode)
+    {
+        IdentityHashMap<Promotion, List<Promotion>> found = new IdentityHashMap<Promotion, List<Promotion>>();
+
+        for (List<Promotion> listed : byBarcode.values())
+            for (Promotion promotion : listed)
+            {
+                List<Promotion> rivals = found.computeIfAbsent(promotion, p -> new ArrayList<Promotion>());
+
+                for (Promotion other : listed)
+                    if (other != promotion && !rivals.contains(other)) rivals.add(other);
+            }
+
+        for (Map.Entry<Promotion, List<Promotion>> rivals : found.entrySet())
+            rivalsOf.put(rivals.getKey(), rivals.getValue().toArray(NONE));
+    }
+
+    /**
+     * @return The number of promotions running.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param barcode A barcode.
+     * @return The promotions an item with the barcode counts towards, which may be none.
+     */
+    Promotion[] promotionsFor(Barcode barcode)
+    {
+        long key = BarcodeKey.pack(barcode);
+        Promotion[] promotions = key == BarcodeKey.NOT_PACKABLE ? unpackableIndex.get(barcode) : packedIndex.get(key);
+        return promotions == null ? everyItem : promotions;
+    }
+
+    /**
+     * @return A tally for a new basket, with nothing in it.
+     */
+    Tally newTally()
+    {
+        return new Tally();
+    }
+}
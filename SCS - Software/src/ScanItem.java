@@ -9,6 +9,20 @@ import java.util.ArrayList;
 public class ScanItem implements BarcodeScannerObserver
 {
     public ArrayList <Barcode> barcodesScanned = new ArrayList <>();
+    private Basket basket = null;
+
+    /**
+     * Connects the basket that scanned items are added to. Items already scanned are added to it straight away.
+     *
+     * @param basket The basket.
+     */
+    public void setBasket(Basket basket)
+    {
+        this.basket = basket;
+
+        for (Barcode barcode : barcodesScanned)
+            basket.add(barcode);
+    }
 
     /**
      * Announces that the indicated device has been enabled.
@@ -42,5 +56,7 @@ public class ScanItem implements BarcodeScannerObserver
     public void barcodeScanned(BarcodeScanner barcodeScanner, Barcode barcode)
     {
         barcodesScanned.add(barcode);
+
+        if (basket != null) basket.add(barcode);
     }
 }
@@ -0,0 +1,168 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+
+/**
+ * An authorization host that runs in the same process, for testing and simulation without a card network.
+ * <p>
+ * Each request is answered after a latency drawn uniformly between a minimum and a maximum. A card number that fails
+ * the Luhn check, as a corrupted read usually does, is always declined; otherwise the charge is declined with a
+ * configurable probability and approved the rest of the time. Answers are given on a background thread. The host
+ * decides each charge when it is asked, so a charge reversed before its answer is given is still released.
+ */
+public class SimulatedAuthorizationHost implements AuthorizationHost, AutoCloseable
+{
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "simulated-authorization-host");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private RandomGenerator random = new SplittableRandom();
+    private long minimumLatencyNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    private long maximumLatencyNanos = TimeUnit.MILLISECONDS.toNanos(500);
+    private double probabilityOfDecline = 0.05;
+    private long approved = 0;
+    private long declined = 0;
+    private long reversed = 0;
+    // The number of approved charges not yet reversed, by card number and amount
+    private final Map<String, Integer> outstanding = new HashMap<>();
+
+    /**
+     * Sets the source of randomness that decides each request's latency and whether it is declined. A seeded generator
+     * makes a simulation repeatable.
+     *
+     * @param random The source of randomness.
+     */
+    public synchronized void setRandomGenerator(RandomGenerator random)
+    {
+        if (random == null) throw new NullPointerException("random is null");
+
+        this.random = random;
+    }
+
+    /**
+     * Sets how long the host takes to answer. The defaults are 50 and 500 milliseconds.
+     *
+     * @param minimum The shortest latency.
+     * @param maximum The longest latency.
+     * @param unit    The unit of the latencies.
+     */
+    public synchronized void setLatency(long minimum, long maximum, TimeUnit unit)
+    {
+        if (minimum < 0 || maximum < minimum) throw new IllegalArgumentException("The latencies must satisfy 0 <= minimum <= maximum: " + minimum + ", " + maximum);
+
+        minimumLatencyNanos = unit.toNanos(minimum);
+        maximumLatencyNanos = unit.toNanos(maximum);
+    }
+
+    /**
+     * Sets the probability that a charge to a valid card number is declined. The default is 0.05.
+     *
+     * @param probability The probability, between 0 (never) and 1 (always).
+     */
+    public synchronized void setProbabilityOfDecline(double probability)
+    {
+        if (!(probability >= 0 && probability <= 1)) throw new IllegalArgumentException("The probability must be between 0 and 1: " + probability);
+
+        probabilityOfDecline = probability;
+    }
+
+    @Override
+    public synchronized CompletableFuture<Boolean> authorize(String cardType, String cardNumber, Money amount)
+    {
+        CompletableFuture<Boolean> answer = new CompletableFuture<>();
+        boolean approve = isValidNumber(cardNumber) && amount.signum() > 0 && random.nextDouble() >= probabilityOfDecline;
+        long latency = minimumLatencyNanos == maximumLatencyNanos ? minimumLatencyNanos : random.nextLong(minimumLatencyNanos, maximumLatencyNanos + 1);
+
+        if (approve)
+        {
+            approved++;
+            outstanding.merge(cardNumber + ' ' + amount.getMinorUnits(), 1, Integer::sum);
+        }
+        else declined++;
+
+        scheduler.schedule(() -> answer.complete(approve), latency, TimeUnit.NANOSECONDS);
+        return answer;
+    }
+
+    @Override
+    public synchronized void reverse(String cardType, String cardNumber, Money amount)
+    {
+        String key = cardNumber + ' ' + amount.getMinorUnits();
+        Integer count = outstanding.get(key);
+
+        if (count == null) return;
+
+        if (count == 1) outstanding.remove(key);
+        else outstanding.put(key, count - 1);
+
+        approved--;
+        reversed++;
+    }
+
+    /**
+     * @return The number of charges the host has approved and that have not been reversed.
+     */
+    public synchronized long getApprovedCount()
+    {
+        return approved;
+    }
+
+    /**
+     * @return The number of approved charges the host has reversed.
+     */
+    public synchronized long getReversedCount()
+    {
+        return reversed;
+    }
+
+    /**
+     * @return The number of charges the host has declined.
+     */
+    public synchronized long getDeclinedCount()
+    {
+        return declined;
+    }
+
+    /**
+     * Stops answering. Requests that have not been answered yet never will be.
+     */
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+    }
+
+    // The Luhn check digit: doubling every second digit from the right, the digits of the result sum to a multiple of 10
+    static boolean isValidNumber(String number)
+    {
+        if (number == null || number.isEmpty()) return false;
+
+        int sum = 0;
+
+        for (int i = 0; i < number.length(); i++)
+        {
+            int digit = number.charAt(number.length() - 1 - i) - '0';
+
+            if (digit < 0 || digit > 9) return false;
+
+            if ((i & 1) == 1)
+            {
+                digit *= 2;
+
+                if (digit > 9) digit -= 9;
+            }
+
+            sum += digit;
+        }
+
+        return sum % 10 == 0;
+    }
+}
@@ -0,0 +1,80 @@
+import java.math.BigDecimal;
+
+/**
+ * A class of goods that are taxed alike, such as standard-rated, reduced-rated or exempt, and the rate it is taxed at.
+ * Each {@link CatalogEntry} carries the class of its product; products not given one are {@link #EXEMPT}.
+ * <p>
+ * The rate is held as a whole number of millionths, so tax is worked out in long cents without a {@link BigDecimal}
+ * and rounds the same way on every lane. A tax class is immutable and compared by identity: the store creates each of
+ * its classes once and shares it between its products.
+ */
+public final class TaxClass
+{
+    /**
+     * The class of goods that are not taxed, which products are in unless given another.
+     */
+    public static final TaxClass EXEMPT = new TaxClass("Exempt", BigDecimal.ZERO);
+
+    private static final long ONE_MILLION = 1_000_000;
+
+    private final String name;
+    private final BigDecimal rate;
+    private final long ratePerMillion;
+
+    /**
+     * Creates a tax class.
+     *
+     * @param name The name printed on the receipt.
+     * @param rate The rate as a fraction of the price, e.g. 0.05 for 5%.
+     * @throws IllegalArgumentException If the rate is negative.
+     * @throws ArithmeticException      If the rate is not a whole number of millionths.
+     */
+    public TaxClass(String name, BigDecimal rate)
+    {
+        if (name == null) throw new NullPointerException("name is null");
+        if (rate.signum() < 0) throw new IllegalArgumentException("The rate cannot be negative: " + rate);
+
+        this.name = name;
+        this.rate = rate;
+        this.ratePerMillion = rate.movePointRight(6).longValueExact();
+    }
+
+    /**
+     * @return The name printed on the receipt.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The rate as a fraction of the price.
+     */
+    public BigDecimal getRate()
+    {
+        return rate;
+    }
+
+    /**
+     * Works out the tax on an amount, rounded half up (away from zero) to the cent.
+     *
+     * @param minorUnits The amount taxed, in cents. May be negative, as for a refund.
+     * @return The tax, in cents.
+     * @throws ArithmeticException If the tax overflows a long.
+     */
+    public long taxOn(long minorUnits)
+    {
+        long scaled = Math.multiplyExact(minorUnits, ratePerMillion);
+        long tax = scaled / ONE_MILLION;
+
+        if (Math.abs(scaled % ONE_MILLION) * 2 >= ONE_MILLION) tax += Long.signum(scaled);
+
+        return tax;
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The taxable amounts of one basket, kept as a subtotal per {@link TaxClass} that each scan or void adjusts by the
+ * difference it makes. Tax is worked out only when asked for, at tender, by rounding each class's subtotal once; so
+ * the tax on a receipt is the same however the items were scanned, and never needs another pass over the basket.
+ * <p>
+ * A store has a handful of tax classes, so they are kept in a small array in the order the basket first met them, and
+ * each line of the basket remembers the slot of its class so that scanning it again needs no lookup.
+ * <p>
+ * A tax engine is changed and read from the station's thread.
+ */
+public final class TaxEngine
+{
+    private TaxClass[] classes = new TaxClass[4];
+    // The taxable subtotal of each class, in cents
+    private long[] taxable = new long[4];
+    private int size = 0;
+
+    /**
+     * Creates an engine with nothing taxable.
+     */
+    TaxEngine()
+    {
+    }
+
+    /**
+     * Finds the slot a tax class's subtotal is kept in, once per line, so that scanning the line again needs no lookup.
+     *
+     * @param taxClass A tax class.
+     * @return The slot of its subtotal, starting one at zero if the class is new to the basket.
+     */
+    int slotFor(TaxClass taxClass)
+    {
+        for (int slot = 0; slot < size; slot++)
+            if (classes[slot] == taxClass) return slot;
+
+        if (size == classes.length)
+        {
+            classes = Arrays.copyOf(classes, size * 2);
+            taxable = Arrays.copyOf(taxable, size * 2);
+        }
+
+        classes[size] = taxClass;
+        return size++;
+    }
+
+    /**
+     * Adjusts the taxable subtotal of a class.
+     *
+     * @param slot   The slot of the class, from {@link #slotFor(TaxClass)}.
+     * @param amount The amount added to the class's subtotal, or removed if negative, in cents.
+     */
+    void add(int slot, long amount)
+    {
+        taxable[slot] += amount;
+    }
+
+    /**
+     * @return The tax classes with an amount taxable in the basket, in the order they were first scanned.
+     */
+    List<TaxClass> getTaxClasses()
+    {
+        ArrayList<TaxClass> found = new ArrayList<TaxClass>(size);
+
+        for (int slot = 0; slot < size; slot++)
+            if (taxable[slot] != 0) found.add(classes[slot]);
+
+        return found;
+    }
+
+    /**
+     * @param taxClass A tax class.
+     * @return The amount of the basket taxed in the class, after discounts, in cents.
+     */
+    long getTaxable(TaxClass taxClass)
+    {
+        for (int slot = 0; slot < size; slot++)
+            if (classes[slot] == taxClass) return taxable[slot];
+
+        return 0;
+    }
+
+    /**
+     * @param taxClass A tax class.
+     * @return The tax owed in the class, rounded once to the cent, in cents.
+     */
+    long getTax(TaxClass taxClass)
+    {
+        return taxClass.taxOn(getTaxable(taxClass));
+    }
+
+    /**
+     * @return The tax owed in all classes, each rounded once to the cent before they are added, in cents.
+     */
+    long getTotalTax()
+    {
+        long total = 0;
+
+        for (int slot = 0; slot < size; slot++)
+            total += classes[slot].taxOn(taxable[slot]);
+
+        return total;
+    }
+}
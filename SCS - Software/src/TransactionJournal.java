@@ -0,0 +1,753 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import org.lsmr.selfcheckout.Banknote;
+import org.lsmr.selfcheckout.Barcode;
+import org.lsmr.selfcheckout.Coin;
+import org.lsmr.selfcheckout.Numeral;
+import org.lsmr.selfcheckout.PLUCodedItem;
+import org.lsmr.selfcheckout.PriceLookupCode;
+import org.lsmr.selfcheckout.devices.AbstractDevice;
+import org.lsmr.selfcheckout.devices.BanknoteValidator;
+import org.lsmr.selfcheckout.devices.BarcodeScanner;
+import org.lsmr.selfcheckout.devices.CoinValidator;
+import org.lsmr.selfcheckout.devices.ElectronicScale;
+import org.lsmr.selfcheckout.devices.SelfCheckoutStation;
+import org.lsmr.selfcheckout.devices.observers.AbstractDeviceObserver;
+import org.lsmr.selfcheckout.devices.observers.BanknoteValidatorObserver;
+import org.lsmr.selfcheckout.devices.observers.BarcodeScannerObserver;
+import org.lsmr.selfcheckout.devices.observers.CoinValidatorObserver;
+import org.lsmr.selfcheckout.devices.observers.ElectronicScaleObserver;
+
+/**
+ * A write-ahead journal of the transaction in progress, so that a station that crashes or loses power can pick the
+ * transaction up where it left off instead of losing the customer's scans and money.
+ * <p>
+ * Every item scanned, change in the bagging area's weight, coin or banknote accepted and payout of change is appended
+ * to a memory-mapped file, and so is every PLU code entered and every item voided or quantity changed by hand, as a small binary record with a sequence number and a checksum. Appending is a handful of
+ * writes to memory, so the devices are not held up; a background thread forces the file to disk at most once per
+ * commit interval, so every record appended in that interval shares one write (group commit). {@link #sync()} waits
+ * until everything appended so far is on disk.
+ * <p>
+ * When the receipt is printed the transaction is over and the journal starts again from the top of the file. Sequence
+ * numbers keep counting up across transactions, so records left over from an earlier one are never mistaken for part
+ * of the current one. Opening a journal reads back the transaction that was in progress, stopping at the first record
+ * that is torn or out of sequence; {@link Recovery#replay(SelfCheckoutStation, Basket, AbstractDeviceObserver...)}
+ * feeds it to a fresh set of use cases and their basket. The recovered records stay in the journal, so a second crash
+ * loses nothing either.
+ */
+public class TransactionJournal implements BarcodeScannerObserver, ElectronicScaleObserver, CoinValidatorObserver, BanknoteValidatorObserver, AutoCloseable
+{
+    /**
+     * The size the journal's file starts at; it grows if a transaction needs more.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /**
+     * How long appends are gathered before they are forced to disk together, in milliseconds.
+     */
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 2;
+
+    private static final int MAGIC = 0x5343534A;
+    private static final int VERSION = 1;
+    private static final int FIRST_SEQUENCE_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    // The length, sequence number and type come before the payload and the checksum after it
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 1;
+    private static final int RECORD_OVERHEAD = RECORD_HEADER_SIZE + 4;
+    private static final int MAXIMUM_PAYLOAD = 256;
+
+    private static final byte SCAN = 1;
+    private static final byte WEIGHT = 2;
+    private static final byte COIN = 3;
+    private static final byte BANKNOTE = 4;
+    private static final byte CHANGE = 5;
+    private static final byte PLU = 6;
+    private static final byte VOID = 7;
+    private static final byte VOID_WEIGHED = 8;
+
+    private final FileChannel channel;
+    private final long commitNanos;
+    private final Thread committer;
+    private final CRC32C checksum = new CRC32C();
+    private final Recovery recovery;
+    private MappedByteBuffer buffer;
+
+    private long nextSequence;
+    // Each append and each end of a transaction is a write; the first durableWrites of them are on disk
+    private long writes = 0;
+    private long durableWrites = 0;
+    private long commitCount = 0;
+    private long appendedCount = 0;
+    private boolean syncRequested = false;
+    private boolean closed = false;
+
+    /**
+     * Opens a journal with the default capacity and commit interval, creating its file if need be, and reads back the
+     * transaction that was in progress.
+     *
+     * @param file The journal's file.
+     * @throws IOException If the file cannot be opened or is not a journal.
+     */
+    public TransactionJournal(Path file) throws IOException
+    {
+        this(file, DEFAULT_CAPACITY, DEFAULT_COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a journal, creating its file if need be, and reads back the transaction that was in progress.
+     *
+     * @param file           The journal's file.
+     * @param capacity       The size the file starts at, in bytes.
+     * @param commitInterval How long appends are gathered before they are forced to disk together.
+     * @param unit           The unit of the commit interval.
+     * @throws IOException If the file cannot be opened or is not a journal.
+     */
+    public TransactionJournal(Path file, int capacity, long commitInterval, TimeUnit unit) throws IOException
+    {
+        if (capacity < HEADER_SIZE + RECORD_OVERHEAD + MAXIMUM_PAYLOAD) throw new IllegalArgumentException("The capacity is too small: " + capacity);
+        if (commitInterval < 0) throw new IllegalArgumentException("The commit interval cannot be negative: " + commitInterval);
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        try
+        {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) throw new IOException("The journal is too large: " + file);
+            if (size > 0 && size < HEADER_SIZE) throw new IOException("Not a transaction journal: " + file);
+
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, capacity));
+
+            if (size == 0)
+            {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(FIRST_SEQUENCE_OFFSET, 0);
+                buffer.force();
+            }
+            else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) throw new IOException("Not a transaction journal: " + file);
+
+            recovery = recover();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+
+        commitNanos = unit.toNanos(commitInterval);
+        committer = new Thread(this::commitLoop, "transaction-journal-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Attaches the journal to the devices whose events it records.
+     *
+     * @param station The station.
+     */
+    public void attach(SelfCheckoutStation station)
+    {
+        station.scanner.attach(this);
+        station.scale.attach(this);
+        station.coinValidator.attach(this);
+        station.banknoteValidator.attach(this);
+    }
+
+    /**
+     * @return The transaction that was in progress when the journal was opened, which is empty if there was none.
+     */
+    public Recovery getRecovery()
+    {
+        return recovery;
+    }
+
+    @Override
+    public void enabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    @Override
+    public void disabled(AbstractDevice<? extends AbstractDeviceObserver> device)
+    {
+
+    }
+
+    @Override
+    public synchronized void barcodeScanned(BarcodeScanner barcodeScanner, Barcode barcode)
+    {
+        int digits = barcode.digitCount();
+        int start = begin(SCAN, 1 + digits);
+
+        buffer.put((byte) digits);
+        for (int i = 0; i < digits; i++)
+            buffer.put(barcode.getDigitAt(i).getValue());
+
+        end(start);
+    }
+
+    @Override
+    public synchronized void weightChanged(ElectronicScale scale, double weightInGrams)
+    {
+        int start = begin(WEIGHT, 8);
+
+        buffer.putDouble(weightInGrams);
+        end(start);
+    }
+
+    @Override
+    public void overload(ElectronicScale scale)
+    {
+
+    }
+
+    @Override
+    public void outOfOverload(ElectronicScale scale)
+    {
+
+    }
+
+    @Override
+    public synchronized void validCoinDetected(CoinValidator validator, BigDecimal value)
+    {
+        int start = begin(COIN, 3 + 8 + 4);
+
+        putCurrency(validator.currency);
+        buffer.putLong(value.unscaledValue().longValueExact());
+        buffer.putInt(value.scale());
+        end(start);
+    }
+
+    @Override
+    public void invalidCoinDetected(CoinValidator validator)
+    {
+
+    }
+
+    @Override
+    public synchronized void validBanknoteDetected(BanknoteValidator validator, Currency currency, int value)
+    {
+        int start = begin(BANKNOTE, 3 + 4);
+
+        putCurrency(currency);
+        buffer.putInt(value);
+        end(start);
+    }
+
+    @Override
+    public void invalidBanknoteDetected(BanknoteValidator validator)
+    {
+
+    }
+
+    /**
+     * Records change paid out to the customer.
+     *
+     * @param amount The amount paid out.
+     */
+    public synchronized void changeDispensed(Money amount)
+    {
+        int start = begin(CHANGE, 3 + 8);
+
+        putCurrency(amount.getCurrency());
+        buffer.putLong(amount.getMinorUnits());
+        end(start);
+    }
+
+    /**
+     * Records a PLU code entered by the customer, whose item is the next to be weighed.
+     *
+     * @param code The code entered.
+     */
+    public synchronized void pluCodeEntered(PriceLookupCode code)
+    {
+        int digits = code.numeralCount();
+        int start = begin(PLU, 1 + digits);
+
+        putNumerals(code);
+        end(start);
+    }
+
+    /**
+     * Records that the quantity of a barcoded item in the basket was lowered by a void or set by hand.
+     *
+     * @param barcode  The barcode of the item.
+     * @param quantity The quantity it was left at.
+     */
+    public synchronized void quantityChanged(Barcode barcode, int quantity)
+    {
+        int digits = barcode.digitCount();
+        int start = begin(VOID, 1 + digits + 4);
+
+        buffer.put((byte) digits);
+        for (int i = 0; i < digits; i++)
+            buffer.put(barcode.getDigitAt(i).getValue());
+
+        buffer.putInt(quantity);
+        end(start);
+    }
+
+    /**
+     * Records that an item sold by weight was voided.
+     *
+     * @param item The item, with its PLU code and the weight measured for it.
+     */
+    public synchronized void weighedItemVoided(PLUCodedItem item)
+    {
+        PriceLookupCode code = item.getPLUCode();
+        int start = begin(VOID_WEIGHED, 1 + code.numeralCount() + 8);
+
+        putNumerals(code);
+        buffer.putDouble(item.getWeight());
+        end(start);
+    }
+
+    /**
+     * Records that the receipt has been printed, which ends the transaction: nothing appended before is recovered
+     * afterwards.
+     */
+    public synchronized void transactionCompleted()
+    {
+        ensureOpen();
+
+        buffer.putLong(FIRST_SEQUENCE_OFFSET, nextSequence);
+        buffer.position(HEADER_SIZE);
+        markDirty();
+    }
+
+    /**
+     * Waits until everything appended so far is on disk.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized void sync() throws InterruptedException
+    {
+        long target = writes;
+
+        while (durableWrites < target)
+        {
+            ensureOpen();
+            syncRequested = true;
+            notifyAll();
+            wait();
+        }
+    }
+
+    /**
+     * @return The number of records appended since the journal was opened.
+     */
+    public synchronized long getAppendedCount()
+    {
+        return appendedCount;
+    }
+
+    /**
+     * @return The number of times the journal has been forced to disk since it was opened.
+     */
+    public synchronized long getCommitCount()
+    {
+        return commitCount;
+    }
+
+    /**
+     * Forces everything appended to disk and closes the journal's file. The transaction in progress, if any, is
+     * recovered when the journal is opened again.
+     *
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        synchronized (this)
+        {
+            if (closed) return;
+
+            closed = true;
+            notifyAll();
+        }
+
+        try
+        {
+            committer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this)
+        {
+            buffer.force();
+            durableWrites = writes;
+            notifyAll();
+        }
+
+        channel.close();
+    }
+
+    // Writes the start of a record and returns where it begins
+    private int begin(byte type, int payloadLength)
+    {
+        ensureOpen();
+
+        if (buffer.remaining() < RECORD_OVERHEAD + payloadLength) grow(RECORD_OVERHEAD + payloadLength);
+
+        int start = buffer.position();
+
+        buffer.putInt(payloadLength);
+        buffer.putLong(nextSequence);
+        buffer.put(type);
+        return start;
+    }
+
+    // Writes the checksum of the sequence number, type and payload after them, which makes the record valid
+    private void end(int start)
+    {
+        int end = buffer.position();
+
+        checksum.reset();
+        buffer.position(start + 4);
+        buffer.limit(end);
+        checksum.update(buffer);
+        buffer.limit(buffer.capacity());
+        buffer.putInt((int) checksum.getValue());
+
+        nextSequence++;
+        appendedCount++;
+        markDirty();
+    }
+
+    private void putCurrency(Currency currency)
+    {
+        String code = currency.getCurrencyCode();
+
+        for (int i = 0; i < 3; i++)
+            buffer.put((byte) code.charAt(i));
+    }
+
+    private void putNumerals(PriceLookupCode code)
+    {
+        int digits = code.numeralCount();
+
+        buffer.put((byte) digits);
+        for (int i = 0; i < digits; i++)
+            buffer.put(code.getNumeralAt(i).getValue());
+    }
+
+    private PriceLookupCode getPriceLookupCode(int offset)
+    {
+        StringBuilder code = new StringBuilder();
+        int digits = buffer.get(offset) & 0xFF;
+
+        for (int i = 0; i < digits; i++)
+            code.append(Numeral.valueOf(buffer.get(offset + 1 + i)).getValue());
+
+        return new PriceLookupCode(code.toString());
+    }
+
+    private Barcode getBarcode(int offset)
+    {
+        Numeral[] digits = new Numeral[buffer.get(offset) & 0xFF];
+
+        for (int i = 0; i < digits.length; i++)
+            digits[i] = Numeral.valueOf(buffer.get(offset + 1 + i));
+
+        return new Barcode(digits);
+    }
+
+    private Currency getCurrency(int offset)
+    {
+        byte[] code = new byte[3];
+
+        buffer.get(offset, code);
+        return Currency.getInstance(new String(code, StandardCharsets.US_ASCII));
+    }
+
+    // Wakes the committer on the first write since the last commit; later ones wait for the interval
+    private void markDirty()
+    {
+        if (++writes == durableWrites + 1) notifyAll();
+    }
+
+    private void ensureOpen()
+    {
+        if (closed) throw new IllegalStateException("The journal is closed.");
+    }
+
+    private void grow(int needed)
+    {
+        long capacity = Math.max(2L * buffer.capacity(), (long) buffer.position() + needed);
+
+        if (capacity > Integer.MAX_VALUE) throw new IllegalStateException("The journal is full.");
+
+        try
+        {
+            int position = buffer.position();
+
+            // The new mapping shares the file's pages with the old one, so nothing needs copying
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buffer.position(position);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void commitLoop()
+    {
+        try
+        {
+            while (true)
+            {
+                MappedByteBuffer toForce;
+                long target;
+
+                synchronized (this)
+                {
+                    while (!closed && durableWrites == writes)
+                        wait();
+
+                    if (closed) return;
+
+                    // Let the appends that arrive within the interval share this commit, unless someone is waiting
+                    if (!syncRequested && commitNanos > 0) TimeUnit.NANOSECONDS.timedWait(this, commitNanos);
+
+                    syncRequested = false;
+                    toForce = buffer;
+                    target = writes;
+                }
+
+                toForce.force();
+
+                synchronized (this)
+                {
+                    durableWrites = Math.max(durableWrites, target);
+                    commitCount++;
+                    notifyAll();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // Closing forces whatever is left
+        }
+    }
+
+    // Reads back the records of the transaction in progress and leaves the buffer positioned after them
+    private Recovery recover()
+    {
+        List<Object> events = new ArrayList<>();
+        long sequence = buffer.getLong(FIRST_SEQUENCE_OFFSET);
+        int position = HEADER_SIZE;
+        int capacity = buffer.capacity();
+
+        while (capacity - position >= RECORD_OVERHEAD)
+        {
+            int length = buffer.getInt(position);
+
+            if (length < 0 || length > MAXIMUM_PAYLOAD || capacity - position - RECORD_OVERHEAD < length) break;
+            if (buffer.getLong(position + 4) != sequence) break;
+
+            int payload = position + RECORD_HEADER_SIZE;
+
+            checksum.reset();
+            buffer.position(position + 4);
+            buffer.limit(payload + length);
+            checksum.update(buffer);
+            buffer.limit(capacity);
+
+            if ((int) checksum.getValue() != buffer.getInt(payload + length)) break;
+
+            Object event = decode(buffer.get(position + 12), payload, length);
+
+            if (event == null) break;
+
+            events.add(event);
+            sequence++;
+            position += RECORD_OVERHEAD + length;
+        }
+
+        buffer.position(position);
+        nextSequence = sequence;
+        return new Recovery(events);
+    }
+
+    // Returns null for a record that cannot be understood, which ends the recovery like a torn one
+    private Object decode(byte type, int offset, int length)
+    {
+        try
+        {
+            switch (type)
+            {
+                case SCAN:
+                    return getBarcode(offset);
+                case WEIGHT:
+                    return buffer.getDouble(offset);
+                case COIN:
+                    return new Coin(getCurrency(offset), new BigDecimal(BigInteger.valueOf(buffer.getLong(offset + 3)), buffer.getInt(offset + 11)));
+                case BANKNOTE:
+                    return new Banknote(getCurrency(offset), buffer.getInt(offset + 3));
+                case CHANGE:
+                    return Money.ofMinor(buffer.getLong(offset + 3), getCurrency(offset));
+                case PLU:
+                    return getPriceLookupCode(offset);
+                case VOID:
+                    return new QuantityChange(getBarcode(offset), buffer.getInt(offset + 1 + (buffer.get(offset) & 0xFF)));
+                case VOID_WEIGHED:
+                    PriceLookupCode code = getPriceLookupCode(offset);
+                    return new PLUCodedItem(code, buffer.getDouble(offset + 1 + code.numeralCount()));
+                default:
+                    return null;
+            }
+        }
+        catch (RuntimeException e)
+        {
+            return null;
+        }
+    }
+
+    // A quantity lowered by a void or set by hand
+    private static final class QuantityChange
+    {
+        private final Barcode barcode;
+        private final int quantity;
+
+        private QuantityChange(Barcode barcode, int quantity)
+        {
+            this.barcode = barcode;
+            this.quantity = quantity;
+        }
+    }
+
+    /**
+     * The events of a transaction read back from the journal, in the order they happened.
+     */
+    public static final class Recovery
+    {
+        // Barcodes scanned, weights as Doubles, coins and banknotes accepted, change paid out as Money, PLU codes
+        // entered, quantity changes, and weighed items voided as PLUCodedItems
+        private final List<Object> events;
+
+        private Recovery(List<Object> events)
+        {
+            this.events = events;
+        }
+
+        /**
+         * @return true if no transaction was in progress.
+         */
+        public boolean isEmpty()
+        {
+            return events.isEmpty();
+        }
+
+        /**
+         * @return The number of events recovered.
+         */
+        public int getEventCount()
+        {
+            return events.size();
+        }
+
+        /**
+         * @return The barcodes scanned, in order.
+         */
+        public List<Barcode> getScannedBarcodes()
+        {
+            List<Barcode> barcodes = new ArrayList<>();
+
+            for (Object event : events)
+                if (event instanceof Barcode) barcodes.add((Barcode) event);
+
+            return Collections.unmodifiableList(barcodes);
+        }
+
+        /**
+         * @return The change paid out so far, or null if none was.
+         */
+        public Money getChangeDispensed()
+        {
+            Money change = null;
+
+            for (Object event : events)
+                if (event instanceof Money) change = change == null ? (Money) event : change.add((Money) event);
+
+            return change;
+        }
+
+        /**
+         * Announces the recovered device events to observers, without the PLU codes entered or the items voided. See
+         * {@link #replay(SelfCheckoutStation, Basket, AbstractDeviceObserver...)}.
+         *
+         * @param station   The station whose devices are given as the source of each event.
+         * @param observers The observers to announce the events to, which should not include the journal itself.
+         */
+        public void replay(SelfCheckoutStation station, AbstractDeviceObserver... observers)
+        {
+            replay(station, null, observers);
+        }
+
+        /**
+         * Announces the recovered events to observers, as the station's devices announced them the first time, and
+         * makes the voids and quantity changes again on the basket, so that use cases attached to a fresh station end
+         * up where the crashed ones were. PLU codes are entered again on each {@link EnterPLUCode} among the observers,
+         * in order with the weights, so each is given the item weighed after it. Change paid out is not announced,
+         * since it has already left the station; see {@link #getChangeDispensed()}.
+         * <p>
+         * The journal should be given to the basket and use cases only afterwards, so the events are not recorded twice.
+         *
+         * @param station   The station whose devices are given as the source of each event.
+         * @param basket    The basket the scanned and weighed items are added to, or null to skip the voids.
+         * @param observers The observers to announce the events to, which should not include the journal itself.
+         */
+        public void replay(SelfCheckoutStation station, Basket basket, AbstractDeviceObserver... observers)
+        {
+            for (Object event : events)
+            {
+                if (event instanceof QuantityChange && basket != null)
+                {
+                    QuantityChange change = (QuantityChange) event;
+                    basket.setQuantity(change.barcode, change.quantity);
+                }
+                else if (event instanceof PLUCodedItem && basket != null)
+                {
+                    PLUCodedItem item = (PLUCodedItem) event;
+                    basket.voidWeighed(item.getPLUCode(), item.getWeight());
+                }
+
+                for (AbstractDeviceObserver observer : observers)
+                {
+                    if (event instanceof Barcode && observer instanceof BarcodeScannerObserver)
+                        ((BarcodeScannerObserver) observer).barcodeScanned(station.scanner, (Barcode) event);
+                    else if (event instanceof Double && observer instanceof ElectronicScaleObserver)
+                        ((ElectronicScaleObserver) observer).weightChanged(station.scale, (Double) event);
+                    else if (event instanceof Coin && observer instanceof CoinValidatorObserver)
+                        ((CoinValidatorObserver) observer).validCoinDetected(station.coinValidator, ((Coin) event).getValue());
+                    else if (event instanceof PriceLookupCode && observer instanceof EnterPLUCode)
+                        ((EnterPLUCode) observer).enterPLUCode((PriceLookupCode) event);
+                    else if (event instanceof Banknote && observer instanceof BanknoteValidatorObserver)
+                    {
+                        Banknote banknote = (Banknote) event;
+                        ((BanknoteValidatorObserver) observer).validBanknoteDetected(station.banknoteValidator, banknote.getCurrency(), banknote.getValue());
+                    }
+                }
+            }
+        }
+    }
+}